@@ -0,0 +1,43 @@
+package com.example.flexiMed.cluster;
+
+import java.util.function.Consumer;
+
+/**
+ * Best-effort publish/subscribe bus between the instances of a horizontally scaled deployment.
+ * It carries the state each node would otherwise only know locally (STOMP topic messages, ambulance locations,
+ * location follows), so that a client receives updates whichever node it is connected to.
+ * Messages published by a node are delivered to every other node, never back to the publisher.
+ */
+public interface ClusterBus {
+
+    /**
+     * Publishes a message to the other nodes.
+     *
+     * @param channel The channel name.
+     * @param payload The message, which must fit in {@link #maxPayloadBytes()} bytes of UTF-8.
+     */
+    void publish(String channel, String payload);
+
+    /**
+     * Registers a listener for messages published on a channel by other nodes.
+     * Listeners are invoked on the bus's delivery thread and must not block.
+     *
+     * @param channel  The channel name.
+     * @param listener The listener receiving message payloads.
+     */
+    void subscribe(String channel, Consumer<String> listener);
+
+    /**
+     * Returns whether messages actually leave this node, i.e. whether callers should bother publishing.
+     *
+     * @return True if other nodes may be listening.
+     */
+    boolean isDistributed();
+
+    /**
+     * Returns the maximum size of a payload in UTF-8 bytes.
+     *
+     * @return The maximum payload size.
+     */
+    int maxPayloadBytes();
+}
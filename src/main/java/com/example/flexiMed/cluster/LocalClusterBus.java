@@ -0,0 +1,35 @@
+package com.example.flexiMed.cluster;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/**
+ * Cluster bus for single-node deployments: there are no other nodes, so nothing is published or delivered.
+ * This is the default ({@code cluster.bus=local}).
+ */
+@Component
+@ConditionalOnProperty(name = "cluster.bus", havingValue = "local", matchIfMissing = true)
+public class LocalClusterBus implements ClusterBus {
+
+    @Override
+    public void publish(String channel, String payload) {
+        // Single node: nobody else to deliver to
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<String> listener) {
+        // Single node: no remote messages will ever arrive
+    }
+
+    @Override
+    public boolean isDistributed() {
+        return false;
+    }
+
+    @Override
+    public int maxPayloadBytes() {
+        return Integer.MAX_VALUE;
+    }
+}
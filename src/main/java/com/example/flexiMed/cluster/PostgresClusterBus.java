@@ -0,0 +1,287 @@
+package com.example.flexiMed.cluster;
+
+import com.example.flexiMed.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Cluster bus bridging nodes through PostgreSQL {@code LISTEN}/{@code NOTIFY} ({@code cluster.bus=postgres}),
+ * so a multi-node deployment needs no infrastructure beyond the database it already uses.
+ * <p>
+ * Publishing only queues the message; a publisher thread sends the queue with {@code pg_notify} over its own
+ * connection, so callers never wait on the database and a full queue drops messages instead of blocking.
+ * A listener thread holds another dedicated connection that listens on every subscribed channel, skips the node's
+ * own messages and hands the rest to the subscribers. Each message carries its send time, so the observed
+ * delivery lag is exported as a metric. Both connections are re-established with a back-off after failures;
+ * messages sent while a node is reconnecting are lost, which the bus's users tolerate.
+ */
+@Component
+@ConditionalOnProperty(name = "cluster.bus", havingValue = "postgres")
+public class PostgresClusterBus implements ClusterBus, MetricsSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostgresClusterBus.class);
+
+    /**
+     * PostgreSQL rejects NOTIFY payloads of 8000 bytes or more; leave room for the envelope.
+     */
+    private static final int MAX_PAYLOAD_BYTES = 7900;
+    private static final long RECONNECT_BACKOFF_MILLIS = 2000;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final int pollMillis;
+
+    private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+    private final BlockingQueue<Outbound> outbound;
+    private final Thread publisherThread;
+    private final Thread listenerThread;
+    private volatile boolean running = true;
+    private volatile boolean resubscribe;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder oversized = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder totalLagMillis = new LongAdder();
+    private volatile long maxLagMillis;
+
+    /**
+     * Constructs a PostgresClusterBus and starts its publisher and listener threads.
+     *
+     * @param dataSourceProperties The datasource settings used to open the dedicated connections.
+     * @param queueCapacity        The maximum number of messages waiting to be published.
+     * @param pollMillis           How long the listener waits for notifications before checking for new channels.
+     */
+    public PostgresClusterBus(DataSourceProperties dataSourceProperties,
+                              @Value("${cluster.postgres.queue-capacity:10000}") int queueCapacity,
+                              @Value("${cluster.postgres.poll-ms:500}") int pollMillis) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.pollMillis = pollMillis;
+        this.outbound = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.publisherThread = new Thread(this::runPublisher, "cluster-bus-publisher");
+        this.listenerThread = new Thread(this::runListener, "cluster-bus-listener");
+        publisherThread.setDaemon(true);
+        listenerThread.setDaemon(true);
+        publisherThread.start();
+        listenerThread.start();
+    }
+
+    @Override
+    public void publish(String channel, String payload) {
+        if (payload.getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES) {
+            oversized.increment();
+            logger.warn("Dropped cluster message on {}: payload exceeds {} bytes", channel, MAX_PAYLOAD_BYTES);
+            return;
+        }
+        if (!outbound.offer(new Outbound(channel, nodeId + "|" + System.currentTimeMillis() + "|" + payload))) {
+            dropped.increment();
+        }
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<String> listener) {
+        listeners.computeIfAbsent(channel, name -> new CopyOnWriteArrayList<>()).add(listener);
+        resubscribe = true;
+    }
+
+    @Override
+    public boolean isDistributed() {
+        return true;
+    }
+
+    @Override
+    public int maxPayloadBytes() {
+        return MAX_PAYLOAD_BYTES;
+    }
+
+    /**
+     * Publisher loop: sends queued messages with pg_notify, draining whatever has accumulated in one go.
+     */
+    private void runPublisher() {
+        Connection connection = null;
+        List<Outbound> batch = new ArrayList<>();
+        while (running) {
+            try {
+                batch.add(outbound.take());
+                outbound.drainTo(batch, 500);
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                if (connection == null) {
+                    connection = connect();
+                }
+                try (PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+                    for (Outbound message : batch) {
+                        statement.setString(1, message.channel);
+                        statement.setString(2, message.payload);
+                        statement.execute();
+                    }
+                }
+                published.add(batch.size());
+            } catch (SQLException e) {
+                dropped.add(batch.size());
+                logger.warn("Failed to publish cluster messages: {}", e.getMessage());
+                connection = close(connection);
+                sleep(RECONNECT_BACKOFF_MILLIS);
+            }
+            batch.clear();
+        }
+        close(connection);
+    }
+
+    /**
+     * Listener loop: listens on every subscribed channel and delivers messages from other nodes.
+     */
+    private void runListener() {
+        Connection connection = null;
+        while (running) {
+            try {
+                if (connection == null || resubscribe) {
+                    close(connection);
+                    resubscribe = false;
+                    connection = connect();
+                    try (Statement statement = connection.createStatement()) {
+                        for (String channel : listeners.keySet()) {
+                            statement.execute("LISTEN \"" + channel.replace("\"", "") + "\"");
+                        }
+                    }
+                }
+                PGNotification[] notifications = connection.unwrap(PGConnection.class).getNotifications(pollMillis);
+                if (notifications != null) {
+                    for (PGNotification notification : notifications) {
+                        deliver(notification.getName(), notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                logger.warn("Cluster bus listener connection failed: {}", e.getMessage());
+                connection = close(connection);
+                sleep(RECONNECT_BACKOFF_MILLIS);
+            }
+        }
+        close(connection);
+    }
+
+    private void deliver(String channel, String envelope) {
+        int nodeEnd = envelope.indexOf('|');
+        int timeEnd = nodeEnd < 0 ? -1 : envelope.indexOf('|', nodeEnd + 1);
+        if (timeEnd < 0 || nodeId.equals(envelope.substring(0, nodeEnd))) {
+            return;  // Malformed, or our own message echoed back
+        }
+        received.increment();
+        try {
+            long lag = System.currentTimeMillis() - Long.parseLong(envelope.substring(nodeEnd + 1, timeEnd));
+            totalLagMillis.add(Math.max(0, lag));
+            if (lag > maxLagMillis) {
+                maxLagMillis = lag;  // Racy maximum, good enough for monitoring; includes clock skew between nodes
+            }
+        } catch (NumberFormatException e) {
+            return;
+        }
+
+        String payload = envelope.substring(timeEnd + 1);
+        for (Consumer<String> listener : listeners.getOrDefault(channel, List.of())) {
+            try {
+                listener.accept(payload);
+            } catch (RuntimeException e) {
+                logger.error("Cluster bus listener failed on channel {}", channel, e);
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+        connection.setAutoCommit(true);
+        reconnects.increment();
+        return connection;
+    }
+
+    private Connection close(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.debug("Failed to close cluster bus connection: {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the publisher and listener threads and closes their connections.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        publisherThread.interrupt();
+        listenerThread.interrupt();
+    }
+
+    @Override
+    public String metricsName() {
+        return "clusterBus";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long receivedCount = received.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("nodeId", nodeId);
+        metrics.put("channels", listeners.keySet());
+        metrics.put("queueDepth", outbound.size());
+        metrics.put("published", published.sum());
+        metrics.put("received", receivedCount);
+        metrics.put("dropped", dropped.sum());
+        metrics.put("oversized", oversized.sum());
+        metrics.put("connects", reconnects.sum());
+        metrics.put("avgLagMillis", receivedCount == 0 ? 0.0 : (double) totalLagMillis.sum() / receivedCount);
+        metrics.put("maxLagMillis", maxLagMillis);
+        return metrics;
+    }
+
+    /**
+     * A message waiting to be published.
+     */
+    private record Outbound(String channel, String payload) {
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.flexiMed.cluster;
+
+import com.example.flexiMed.utils.MetricsSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bridges the in-memory STOMP broker across nodes over the {@link ClusterBus}.
+ * Installed as an interceptor on the broker channel, it copies every server-originated message for a
+ * {@code /topic} destination to the other nodes, which inject it into their own broker channel so their
+ * subscribers receive it too. Messages sent to a user destination ({@code /user/<user>/queue/...}) are copied
+ * before they are resolved, so each node resolves them against its own sessions of that user; the per-session
+ * queues they resolve to are never forwarded. Injected messages carry the {@value #CLUSTER_ORIGIN_HEADER} header
+ * and are not forwarded again. Not used with the external broker relay, which fans out across nodes by itself.
+ */
+@Component
+public class StompClusterBridge implements ChannelInterceptor, MetricsSource {
+
+    public static final String CHANNEL = "fleximed_stomp";
+    public static final String CLUSTER_ORIGIN_HEADER = "clusterOrigin";
+
+    private static final String TOPIC_PREFIX = "/topic/";
+    private static final String USER_PREFIX = "/user/";
+
+    private final ClusterBus clusterBus;
+    private final MessageChannel brokerChannel;
+
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder injected = new LongAdder();
+    private final LongAdder oversized = new LongAdder();
+
+    /**
+     * Constructs a StompClusterBridge and subscribes it to messages from other nodes.
+     *
+     * @param clusterBus    The bus connecting the nodes.
+     * @param brokerChannel The local broker channel, resolved lazily because the broker configuration
+     *                      itself depends on this bridge.
+     */
+    public StompClusterBridge(ClusterBus clusterBus, @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel) {
+        this.clusterBus = clusterBus;
+        this.brokerChannel = brokerChannel;
+        clusterBus.subscribe(CHANNEL, this::inject);
+    }
+
+    /**
+     * Forwards local topic and user destination messages to the other nodes.
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!clusterBus.isDistributed()) {
+            return message;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        String destination = accessor.getDestination();
+        if (destination == null || !(destination.startsWith(TOPIC_PREFIX) || destination.startsWith(USER_PREFIX))
+                || accessor.getHeader(CLUSTER_ORIGIN_HEADER) != null
+                || (accessor.getMessageType() != null && accessor.getMessageType() != SimpMessageType.MESSAGE)
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+
+        MimeType contentType = accessor.getContentType();
+        String envelope = destination + "\n" + (contentType == null ? "" : contentType.toString()) + "\n"
+                + Base64.getEncoder().encodeToString(payload);
+        if (envelope.length() > clusterBus.maxPayloadBytes()) {
+            oversized.increment();
+            return message;
+        }
+        clusterBus.publish(CHANNEL, envelope);
+        forwarded.increment();
+        return message;
+    }
+
+    /**
+     * Injects a message received from another node into the local broker channel.
+     *
+     * @param envelope The destination, content type and Base64 payload, separated by newlines.
+     */
+    private void inject(String envelope) {
+        String[] parts = envelope.split("\n", 3);
+        if (parts.length != 3) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(parts[0]);
+        if (!parts[1].isEmpty()) {
+            accessor.setContentType(MimeType.valueOf(parts[1]));
+        }
+        accessor.setHeader(CLUSTER_ORIGIN_HEADER, Boolean.TRUE);
+        brokerChannel.send(MessageBuilder.createMessage(Base64.getDecoder().decode(parts[2]),
+                accessor.getMessageHeaders()));
+        injected.increment();
+    }
+
+    @Override
+    public String metricsName() {
+        return "stompCluster";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("distributed", clusterBus.isDistributed());
+        metrics.put("forwarded", forwarded.sum());
+        metrics.put("injected", injected.sum());
+        metrics.put("oversized", oversized.sum());
+        return metrics;
+    }
+}
@@ -1,26 +1,92 @@
 package com.example.flexiMed.config;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 /**
  * Configuration class for the application.
  * This class is responsible for defining Spring Beans for various components in the application.
- * Specifically, it defines a `RestTemplate` bean for making HTTP requests.
+ * Specifically, it defines a `RestTemplate` bean for making HTTP requests, and a non-blocking `WebClient` for
+ * streaming AI responses.
+ * It also enables scheduling for periodic maintenance tasks.
  */
 @Configuration
+@EnableScheduling
 public class AppConfig {
 
     /**
      * Bean definition for RestTemplate.
      * The `RestTemplate` is used to perform HTTP requests to external APIs or services.
      * By defining it as a Spring Bean, it can be injected into other components in the application.
+     * Requests time out, so a slow or unreachable service cannot hold a request thread indefinitely.
      *
+     * @param connectTimeoutMillis The time allowed to establish a connection, in milliseconds.
+     * @param readTimeoutMillis    The time allowed between bytes of the response, in milliseconds.
      * @return a new instance of {@link RestTemplate}.
      */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(@Value("${http.client.connect-timeout-ms:2000}") int connectTimeoutMillis,
+                                     @Value("${http.client.read-timeout-ms:30000}") int readTimeoutMillis) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMillis);
+        requestFactory.setReadTimeout(readTimeoutMillis);
+        return new RestTemplate(requestFactory);
+    }
+
+    /**
+     * Bean definition for the connection pool of the AI WebClient.
+     * The pool bounds the number of concurrent AI calls; further calls wait for a connection, up to a limit
+     * and for a limited time, and then fail instead of queueing without bound.
+     *
+     * @param maxConnections             The maximum number of open connections.
+     * @param pendingAcquireMax          The maximum number of calls waiting for a connection.
+     * @param pendingAcquireTimeoutMillis How long a call may wait for a connection, in milliseconds.
+     * @param maxIdleMillis              How long an idle connection is kept open, in milliseconds.
+     * @return the connection pool, disposed when the application shuts down.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider aiConnectionProvider(@Value("${ai.stream.max-connections:50}") int maxConnections,
+                                                   @Value("${ai.stream.pending-acquire-max:200}") int pendingAcquireMax,
+                                                   @Value("${ai.stream.pending-acquire-timeout-ms:5000}") long pendingAcquireTimeoutMillis,
+                                                   @Value("${ai.stream.max-idle-ms:30000}") long maxIdleMillis) {
+        return ConnectionProvider.builder("ai")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMax)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMillis))
+                .maxIdleTime(Duration.ofMillis(maxIdleMillis))
+                .evictInBackground(Duration.ofMillis(maxIdleMillis))
+                .build();
+    }
+
+    /**
+     * Bean definition for the WebClient calling the AI API.
+     * Calls run on Reactor Netty's event loops, so waiting for the model does not hold a servlet thread.
+     *
+     * @param aiConnectionProvider The connection pool.
+     * @param connectTimeoutMillis The time allowed to establish a connection, in milliseconds.
+     * @param readTimeoutMillis    The time allowed between reads of the response, in milliseconds.
+     * @return a new instance of {@link WebClient}.
+     */
+    @Bean
+    public WebClient aiWebClient(ConnectionProvider aiConnectionProvider,
+                                 @Value("${ai.stream.connect-timeout-ms:2000}") int connectTimeoutMillis,
+                                 @Value("${ai.stream.read-timeout-ms:30000}") long readTimeoutMillis) {
+        HttpClient httpClient = HttpClient.create(aiConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                .responseTimeout(Duration.ofMillis(readTimeoutMillis));  // Applies between reads, not to the whole stream
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
     }
 }
@@ -1,20 +1,74 @@
 package com.example.flexiMed.config;
 
+import com.example.flexiMed.service.FileStorageService;
+import com.example.flexiMed.service.ImageVariantService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.servlet.resource.AbstractResourceResolver;
+import org.springframework.web.servlet.resource.HttpResource;
+import org.springframework.web.servlet.resource.PathResourceResolver;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * Configuration class for customizing Spring MVC resource handling.
  * This configuration allows serving static resources, such as files stored in a specific directory.
  * Specifically, it handles the `/uploads/**` URL pattern to serve files from the `uploads` directory.
+ * An image requested with a `size` parameter (e.g. `/uploads/ab/cd/<hash>.jpg?size=64`) is served as its
+ * thumbnail of that size when one has been generated.
+ * <p>
+ * Content-addressed uploads (`/uploads/ab/cd/<hash>.<ext>`) never change, so they are served with their hash as a
+ * strong ETag and an immutable one-year `Cache-Control`: browsers and proxies keep them without revalidating, and
+ * a conditional request is answered with `304`. Byte ranges are supported for all uploads, and large files are
+ * sent with the container's sendfile support (see {@link SendfileResourceConverters}).
  */
 @Configuration
 public class MvcConfig implements WebMvcConfigurer {
 
+    private static final String UPLOADS_PATTERN = "/uploads/**";
+    private static final String STORED_UPLOADS_PATTERN = "/uploads/*/*/*";
+
+    /**
+     * File names of content-addressed uploads and their variants: the hash, an optional size and an extension.
+     */
+    private static final Pattern STORED_FILE_NAME = Pattern.compile("^[0-9a-f]{64}(-\\d+)?\\.[a-z0-9]+$");
+
+    /**
+     * How long a thumbnail request answered with the original, while the thumbnail is generated, may be cached.
+     */
+    private static final String PENDING_VARIANT_CACHE_CONTROL = "public, max-age=60";
+
+    private final FileStorageService fileStorageService;
+    private final ImageVariantService imageVariantService;
+
+    /**
+     * Constructs the MVC configuration.
+     *
+     * @param fileStorageService  The storage locating uploaded files.
+     * @param imageVariantService The service locating thumbnails of uploaded images.
+     */
+    public MvcConfig(FileStorageService fileStorageService, ImageVariantService imageVariantService) {
+        this.fileStorageService = fileStorageService;
+        this.imageVariantService = imageVariantService;
+    }
+
     /**
      * Method to add custom resource handlers for static resources.
      * In this case, it serves files located in the `uploads` directory to clients who access
@@ -28,9 +82,103 @@ public class MvcConfig implements WebMvcConfigurer {
         Path uploadDir = Paths.get("uploads");
         String uploadPath = uploadDir.toAbsolutePath().toUri().toString();
 
+        // Content-addressed uploads and their thumbnails: cached forever, validated by their hash
+        registry.addResourceHandler(STORED_UPLOADS_PATTERN)
+                .addResourceLocations(uploadPath)
+                .setCacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable())
+                .setEtagGenerator(MvcConfig::contentHashEtag)
+                .resourceChain(false)
+                .addResolver(new ImageVariantResolver())
+                .addResolver(new PathResourceResolver());
+
         // Register the resource handler for `/uploads/**` URL pattern
-        // It maps the pattern to the upload directory's path
-        registry.addResourceHandler("/uploads/**")
+        // It maps the pattern to the upload directory's path (files uploaded before content addressing)
+        registry.addResourceHandler(UPLOADS_PATTERN)
                 .addResourceLocations(uploadPath);
     }
+
+    /**
+     * Uses the content hash in the file name of a content-addressed upload, or of one of its thumbnails, as its ETag.
+     */
+    private static String contentHashEtag(Resource resource) {
+        String fileName = resource.getFilename();
+        if (resource instanceof PendingVariantResource || fileName == null
+                || !STORED_FILE_NAME.matcher(fileName).matches()) {
+            return null;
+        }
+        return fileName.substring(0, fileName.lastIndexOf('.'));
+    }
+
+    /**
+     * Installs the sendfile converters on the upload resource handlers, which the registry does not expose.
+     *
+     * @param converters The sendfile converters.
+     * @return The post-processor configuring the resource handler mapping.
+     */
+    @Bean
+    public static BeanPostProcessor uploadSendfileInstaller(ObjectProvider<SendfileResourceConverters> converters) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof SimpleUrlHandlerMapping mapping) {
+                    mapping.getHandlerMap().forEach((pattern, handler) -> {
+                        if (pattern.startsWith("/uploads/") && handler instanceof ResourceHttpRequestHandler resources) {
+                            resources.setResourceHttpMessageConverter(converters.getObject().resourceConverter());
+                            resources.setResourceRegionHttpMessageConverter(converters.getObject().regionConverter());
+                        }
+                    });
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Resolves requests carrying a `size` parameter to the matching thumbnail, falling back to the original file
+     * while the thumbnail is generated.
+     */
+    private class ImageVariantResolver extends AbstractResourceResolver {
+
+        @Override
+        protected Resource resolveResourceInternal(HttpServletRequest request, String requestPath,
+                                                   List<? extends Resource> locations, ResourceResolverChain chain) {
+            String size = request == null ? null : request.getParameter("size");
+            Path original = fileStorageService.locate("/uploads/" + requestPath).orElse(null);
+            if (size != null && size.matches("\\d{1,4}") && original != null && Files.isRegularFile(original)) {
+                return imageVariantService.findVariant(original, Integer.parseInt(size))
+                        .<Resource>map(FileSystemResource::new)
+                        .orElseGet(() -> new PendingVariantResource(original));
+            }
+            return chain.resolveResource(request, requestPath, locations);
+        }
+
+        @Override
+        protected String resolveUrlPathInternal(String resourceUrlPath, List<? extends Resource> locations,
+                                                ResourceResolverChain chain) {
+            return chain.resolveUrlPath(resourceUrlPath, locations);
+        }
+    }
+
+    /**
+     * An original image served in place of a thumbnail that is not generated yet. It must not be cached as the
+     * thumbnail for long, so it has no validators and a short max-age, which replaces the immutable one.
+     */
+    private static class PendingVariantResource extends FileSystemResource implements HttpResource {
+
+        PendingVariantResource(Path original) {
+            super(original);
+        }
+
+        @Override
+        public long lastModified() {
+            return -1;
+        }
+
+        @Override
+        public HttpHeaders getResponseHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setCacheControl(PENDING_VARIANT_CACHE_CONTROL);
+            return headers;
+        }
+    }
 }
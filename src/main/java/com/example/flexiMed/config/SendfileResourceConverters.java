@@ -0,0 +1,137 @@
+package com.example.flexiMed.config;
+
+import com.example.flexiMed.utils.MetricsSource;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.converter.ResourceRegionHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Message converters that hand large files to the servlet container's sendfile support instead of copying them.
+ * <p>
+ * Spring writes a resource by reading it into a buffer and writing the buffer to the response, which costs two
+ * copies through user space per response. Tomcat's NIO connectors can instead send a file straight from the page
+ * cache to the socket ({@code sendfile}) once the servlet returns, when the request carries the
+ * {@code org.apache.tomcat.sendfile.*} attributes. These converters set those attributes for files of at least
+ * {@code uploads.sendfile-min-bytes}, for whole files and single byte ranges alike, and fall back to Spring's copy
+ * for small files, multipart ranges, non-file resources and containers without sendfile support.
+ */
+@Component
+public class SendfileResourceConverters implements MetricsSource {
+
+    private static final String SENDFILE_SUPPORTED_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    private final long minBytes;
+
+    private final LongAdder sendfileResponses = new LongAdder();
+    private final LongAdder sendfileBytes = new LongAdder();
+    private final LongAdder copiedResponses = new LongAdder();
+    private final LongAdder copiedBytes = new LongAdder();
+
+    /**
+     * Constructs the converters.
+     *
+     * @param minBytes The smallest response body sent with sendfile; smaller bodies are cheaper to copy.
+     */
+    public SendfileResourceConverters(@Value("${uploads.sendfile-min-bytes:49152}") long minBytes) {
+        this.minBytes = minBytes;
+    }
+
+    /**
+     * @return A converter writing whole resources.
+     */
+    public ResourceHttpMessageConverter resourceConverter() {
+        return new ResourceHttpMessageConverter() {
+            @Override
+            protected void writeContent(Resource resource, HttpOutputMessage outputMessage) throws IOException {
+                long length = resource.contentLength();
+                if (!sendfile(resource, 0, length)) {
+                    copiedResponses.increment();
+                    copiedBytes.add(length);
+                    super.writeContent(resource, outputMessage);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return A converter writing byte ranges of resources.
+     */
+    public ResourceRegionHttpMessageConverter regionConverter() {
+        return new ResourceRegionHttpMessageConverter() {
+            @Override
+            protected void writeResourceRegion(ResourceRegion region, HttpOutputMessage outputMessage)
+                    throws IOException {
+                Resource resource = region.getResource();
+                long resourceLength = resource.contentLength();
+                long start = region.getPosition();
+                long end = Math.min(start + region.getCount(), resourceLength);
+                if (start >= end || !sendfile(resource, start, end)) {
+                    copiedResponses.increment();
+                    copiedBytes.add(Math.max(0, end - start));
+                    super.writeResourceRegion(region, outputMessage);
+                    return;
+                }
+                HttpHeaders headers = outputMessage.getHeaders();
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + resourceLength);
+                headers.setContentLength(end - start);
+                outputMessage.getBody();  // Writes the headers; the container sends the body
+            }
+        };
+    }
+
+    /**
+     * Asks the container to send the given part of the file once the request returns.
+     *
+     * @return True if the container will send the body; false if it must be copied.
+     */
+    private boolean sendfile(Resource resource, long start, long end) throws IOException {
+        if (end - start < minBytes || !resource.isFile()
+                || !(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return false;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTRIBUTE))) {
+            return false;
+        }
+        File file = resource.getFile();
+        request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.getAbsolutePath());
+        request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+        request.setAttribute(SENDFILE_END_ATTRIBUTE, end);
+        sendfileResponses.increment();
+        sendfileBytes.add(end - start);
+        return true;
+    }
+
+    @Override
+    public String metricsName() {
+        return "uploadServing";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sendfileMinBytes", minBytes);
+        metrics.put("sendfileResponses", sendfileResponses.sum());
+        metrics.put("sendfileBytes", sendfileBytes.sum());
+        metrics.put("copiedResponses", copiedResponses.sum());
+        metrics.put("copiedBytes", copiedBytes.sum());
+        return metrics;
+    }
+}
@@ -1,13 +1,11 @@
 package com.example.flexiMed.controller;
 import com.example.flexiMed.service.AmbulanceService;
-import com.example.flexiMed.websocket.AmbulanceLocationHandler;
+import com.example.flexiMed.websocket.LocationPipeline;
 import com.example.flexiMed.dto.AmbulanceDTO;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -21,17 +19,17 @@ import java.util.UUID;
 public class AmbulanceController {
 
     private final AmbulanceService ambulanceService;
-    private final AmbulanceLocationHandler webSocketHandler;
+    private final LocationPipeline locationPipeline;
 
     /**
      * Constructor to inject the required services.
      *
      * @param ambulanceService The service class that handles ambulance-related operations.
-     * @param webSocketHandler The WebSocket handler that manages real-time location updates.
+     * @param locationPipeline The pipeline that pushes real-time location updates over WebSocket.
      */
-    public AmbulanceController(AmbulanceService ambulanceService, AmbulanceLocationHandler webSocketHandler) {
+    public AmbulanceController(AmbulanceService ambulanceService, LocationPipeline locationPipeline) {
         this.ambulanceService = ambulanceService;
-        this.webSocketHandler = webSocketHandler;
+        this.locationPipeline = locationPipeline;
     }
 
     /**
@@ -58,6 +56,8 @@ public class AmbulanceController {
     /**
      * Endpoint to update the location of a specific ambulance.
      * This updates the location in the database and notifies the requesting user through WebSocket.
+     * Pings faster than the user's broadcast rate are conflated to the latest position.
+     * Drivers streaming frequent pings should prefer the {@code /ws/driver} WebSocket, which batches database writes.
      *
      * @param id The UUID of the ambulance whose location is being updated.
      * @param latitude The latitude of the new location.
@@ -74,14 +74,9 @@ public class AmbulanceController {
         // Update the ambulance location in the database
         AmbulanceDTO updatedAmbulance = ambulanceService.updateLocation(id, latitude, longitude);
 
-        // Prepare the location data to send through WebSocket
-        Map<String, String> locationData = new HashMap<>();
-        locationData.put("ambulanceId", id.toString());
-        locationData.put("lat", String.valueOf(latitude));
-        locationData.put("lng", String.valueOf(longitude));
-
-        // Send location update to the requesting user via WebSocket
-        webSocketHandler.sendLocationToUser(userId, locationData.toString());
+        // Queue the location for the requesting user and other followers; it is pushed on the next broadcast tick
+        locationPipeline.follow(id, userId);
+        locationPipeline.broadcast(id, latitude, longitude);
 
         return ResponseEntity.ok(updatedAmbulance);
     }
@@ -0,0 +1,44 @@
+package com.example.flexiMed.controller;
+
+import com.example.flexiMed.utils.MetricsSource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Controller exposing runtime metrics collected from every {@link MetricsSource} in the application.
+ */
+@RestController
+@RequestMapping("/api/v1/metrics")
+public class MetricsController {
+
+    private final List<MetricsSource> metricsSources;
+
+    /**
+     * Constructor to initialize the MetricsController with all registered metrics sources.
+     *
+     * @param metricsSources The components exposing metrics.
+     */
+    public MetricsController(List<MetricsSource> metricsSources) {
+        this.metricsSources = metricsSources;
+    }
+
+    /**
+     * Endpoint to retrieve a snapshot of all runtime metrics, grouped by component.
+     *
+     * @return A map of metrics group names to their metrics.
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Map<String, Object>>> getMetrics() {
+        Map<String, Map<String, Object>> metrics = new TreeMap<>();
+        for (MetricsSource source : metricsSources) {
+            metrics.put(source.metricsName(), source.metrics());
+        }
+        return ResponseEntity.ok(metrics);
+    }
+}
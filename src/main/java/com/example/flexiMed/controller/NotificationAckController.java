@@ -0,0 +1,80 @@
+package com.example.flexiMed.controller;
+
+import com.example.flexiMed.model.UserEntity;
+import com.example.flexiMed.security.JwtPrincipal;
+import com.example.flexiMed.service.NotificationService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+import java.util.UUID;
+
+/**
+ * Controller receiving client acknowledgements of dispatch notifications.
+ * An acknowledgement cancels the pending fallback of the notification to SMS or email; only the recipient of a
+ * notification can acknowledge it. Clients may acknowledge over REST or, when connected, over STOMP at
+ * {@code /app/notifications/ack}.
+ */
+@RestController
+@RequestMapping("/api/v1/notifications")
+public class NotificationAckController {
+
+    private final NotificationService notificationService;
+
+    /**
+     * Constructor to initialize the NotificationAckController with the notification service.
+     *
+     * @param notificationService The service routing notifications.
+     */
+    public NotificationAckController(NotificationService notificationService) {
+        this.notificationService = notificationService;
+    }
+
+    /**
+     * Endpoint to acknowledge a notification.
+     *
+     * @param notificationId The ID of the notification received by the client.
+     * @param principal      The authenticated user, either loaded from the database or built from token claims.
+     * @return An empty response; acknowledging an unknown, already settled or another user's notification has no
+     * effect and is not reported, so that notification IDs cannot be probed.
+     */
+    @PostMapping("/{notificationId}/ack")
+    public ResponseEntity<Void> acknowledge(@PathVariable UUID notificationId, @AuthenticationPrincipal UserDetails principal) {
+        UUID userId = principal instanceof UserEntity user ? user.getUserId()
+                : principal instanceof JwtPrincipal jwtPrincipal ? jwtPrincipal.userId() : null;
+        notificationService.acknowledge(notificationId, userId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * STOMP handler acknowledging a notification received over the WebSocket.
+     *
+     * @param ack       The acknowledgement carrying the notification ID.
+     * @param principal The session's user, named by user ID.
+     */
+    @MessageMapping("/notifications/ack")
+    public void acknowledge(NotificationAck ack, Principal principal) {
+        if (ack == null || ack.notificationId() == null || principal == null) {
+            return;
+        }
+        try {
+            notificationService.acknowledge(ack.notificationId(), UUID.fromString(principal.getName()));
+        } catch (IllegalArgumentException e) {
+            // Not a user session
+        }
+    }
+
+    /**
+     * Payload of a STOMP acknowledgement.
+     *
+     * @param notificationId The ID of the acknowledged notification.
+     */
+    public record NotificationAck(UUID notificationId) {
+    }
+}
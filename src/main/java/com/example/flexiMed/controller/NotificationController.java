@@ -1,22 +1,38 @@
 package com.example.flexiMed.controller;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
 import java.util.UUID;
 
+/**
+ * Publishes dispatch notifications to users over STOMP.
+ * Notifications go to the user destination {@code /user/queue/ambulance}, which only sessions authenticated as
+ * the user can subscribe to. The legacy per-user topic {@code /topic/ambulance/<userId>} can be kept alongside
+ * while clients migrate ({@code websocket.notifications.legacy-topic=true}).
+ */
 @Controller
 public class NotificationController {
 
+    /**
+     * The queue users subscribe to, as {@code /user/queue/ambulance}, to receive their notifications.
+     */
+    public static final String USER_QUEUE = "/queue/ambulance";
+
     private final SimpMessagingTemplate messagingTemplate;
+    private final boolean legacyTopic;
 
     /**
      * Constructor to initialize the NotificationController with the messaging template.
      *
      * @param messagingTemplate The SimpMessagingTemplate to send WebSocket messages.
+     * @param legacyTopic       Whether notifications are also published to the legacy per-user topic.
      */
-    public NotificationController(SimpMessagingTemplate messagingTemplate) {
+    public NotificationController(SimpMessagingTemplate messagingTemplate,
+                                  @Value("${websocket.notifications.legacy-topic:false}") boolean legacyTopic) {
         this.messagingTemplate = messagingTemplate;
+        this.legacyTopic = legacyTopic;
     }
 
     /**
@@ -26,13 +42,17 @@ public class NotificationController {
      * @param notificationDTO The DTO containing details of the ambulance dispatch.
      */
     public void sendAmbulanceDispatchedNotification(UUID userId, AmbulanceNotificationDTO notificationDTO) {
-        messagingTemplate.convertAndSend("/topic/ambulance/" + userId, notificationDTO);
+        messagingTemplate.convertAndSendToUser(userId.toString(), USER_QUEUE, notificationDTO);
+        if (legacyTopic) {
+            messagingTemplate.convertAndSend("/topic/ambulance/" + userId, notificationDTO);
+        }
     }
 
     /**
      * DTO class to hold data about the ambulance notification.
      */
     public static class AmbulanceNotificationDTO {
+        private UUID notificationId;  // Echoed back by the client to acknowledge delivery
         private String message;
         private String ambulancePlateNumber;
         private String driverName;
@@ -56,6 +76,14 @@ public class NotificationController {
             this.eta = eta;
         }
 
+        public UUID getNotificationId() {
+            return notificationId;
+        }
+
+        public void setNotificationId(UUID notificationId) {
+            this.notificationId = notificationId;
+        }
+
         public String getMessage() {
             return message;
         }
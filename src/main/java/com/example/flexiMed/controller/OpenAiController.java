@@ -1,28 +1,36 @@
 package com.example.flexiMed.controller;
 
 import com.example.flexiMed.service.TogetherAiService;
+import com.example.flexiMed.service.TogetherAiStreamingService;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 
 /**
  * Controller for interacting with an AI service, specifically for chat functionality.
- * It enables users to send a prompt to the AI and receive a response.
+ * It enables users to send a prompt to the AI and receive a response, either whole or streamed as it is generated.
  */
 @RestController
 @RequestMapping("/api/ai")
 public class OpenAiController {
 
     private final TogetherAiService togetherAiService;
+    private final TogetherAiStreamingService togetherAiStreamingService;
 
     /**
-     * Constructor to initialize the OpenAiController with the given TogetherAiService.
+     * Constructor to initialize the OpenAiController with the given AI services.
      *
-     * @param togetherAiService The service responsible for interacting with the AI.
+     * @param togetherAiService          The service responsible for interacting with the AI.
+     * @param togetherAiStreamingService The service streaming AI responses.
      */
-    public OpenAiController(TogetherAiService togetherAiService) {
+    public OpenAiController(TogetherAiService togetherAiService,
+                            TogetherAiStreamingService togetherAiStreamingService) {
         this.togetherAiService = togetherAiService;
+        this.togetherAiStreamingService = togetherAiStreamingService;
     }
 
     /**
@@ -36,4 +44,17 @@ public class OpenAiController {
     public String chatWithAi(@RequestParam String prompt) {
         return togetherAiService.chatWithAi(prompt);
     }
+
+    /**
+     * Endpoint for chatting with the AI, streaming the response as Server-Sent Events.
+     * Each generated token is sent in a "token" event as soon as it arrives, followed by a "done" event, or an
+     * "error" event if the AI call fails. No request thread is held while waiting for the AI.
+     *
+     * @param prompt The input prompt to send to the AI.
+     * @return A stream of events carrying the AI's response.
+     */
+    @GetMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamChatWithAi(@RequestParam String prompt) {
+        return togetherAiStreamingService.streamChat(prompt);
+    }
 }
@@ -4,10 +4,12 @@ import com.example.flexiMed.enums.Role;
 import com.example.flexiMed.dto.UserDTO;
 import com.example.flexiMed.model.UserEntity;
 import com.example.flexiMed.mapper.UserMapper;
+import com.example.flexiMed.security.JwtPrincipal;
 import com.example.flexiMed.service.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -88,6 +90,19 @@ public class UserController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Endpoint to change a user's role.
+     * Restricted to administrators by the security filter chain.
+     *
+     * @param id The ID of the user to update.
+     * @param role The new role of the user.
+     * @return The updated user profile.
+     */
+    @PutMapping("/{id}/role")
+    public ResponseEntity<UserDTO> updateUserRole(@PathVariable UUID id, @RequestParam Role role) {
+        return ResponseEntity.ok(userService.updateUserRole(id, role));
+    }
+
     /**
      * Endpoint to update a user's profile.
      * Allows for updating the user's details and optionally uploading a new profile image.
@@ -111,15 +126,18 @@ public class UserController {
     /**
      * Endpoint to get the currently authenticated user's profile.
      *
-     * @param user The currently authenticated user.
+     * @param principal The currently authenticated user, either loaded from the database or built from token claims.
      * @return The current user's profile details.
      */
     @GetMapping("/me")
-    public ResponseEntity<UserDTO> getCurrentUser(@AuthenticationPrincipal UserEntity user) {
-        if (user == null) {
-            return ResponseEntity.badRequest().build();
+    public ResponseEntity<UserDTO> getCurrentUser(@AuthenticationPrincipal UserDetails principal) {
+        if (principal instanceof UserEntity user) {
+            return ResponseEntity.ok(UserMapper.toDTO(user));
+        }
+        if (principal instanceof JwtPrincipal jwtPrincipal) {
+            return ResponseEntity.ok(userService.getUserById(jwtPrincipal.userId()));
         }
-        return ResponseEntity.ok(UserMapper.toDTO(user));
+        return ResponseEntity.badRequest().build();
     }
 
 }
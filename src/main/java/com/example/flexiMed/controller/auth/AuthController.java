@@ -1,25 +1,39 @@
 package com.example.flexiMed.controller.auth;
 
 import com.example.flexiMed.dto.LoginRequestDTO;
+import com.example.flexiMed.dto.RefreshTokenRequestDTO;
+import com.example.flexiMed.exceptions.ErrorResponse;
 import com.example.flexiMed.security.JwtUtil;
+import com.example.flexiMed.security.LoginThrottle;
+import com.example.flexiMed.security.RefreshTokenCookie;
+import com.example.flexiMed.security.TokenRevocationService;
 import com.example.flexiMed.model.UserEntity;
 import com.example.flexiMed.service.UserService;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.CookieValue;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
  * Controller class responsible for handling user authentication and registration requests.
- * It supports login and registration, where login generates a JWT token for authenticated users.
- * During registration, the user's details are saved, and the user is automatically logged in.
+ * It supports login and registration, where login generates a short-lived JWT access token and a refresh token
+ * for authenticated users. During registration, the user's details are saved, and the user is automatically logged in.
+ * Refresh tokens are exchanged for new tokens against the database, so deleted users and role changes take effect
+ * within one access token lifetime.
+ * Login and registration attempts are throttled per client IP, and failed logins per account; throttled or overloaded
+ * requests are answered with HTTP 429 and a Retry-After header.
  */
 @RestController
 @RequestMapping("/api/auth")
@@ -28,6 +42,9 @@ public class AuthController {
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
     private final UserService userService;
+    private final TokenRevocationService tokenRevocationService;
+    private final LoginThrottle loginThrottle;
+    private final RefreshTokenCookie refreshTokenCookie;
 
     /**
      * Constructor to inject the required services.
@@ -35,22 +52,46 @@ public class AuthController {
      * @param authenticationManager The authentication manager used for authenticating the user.
      * @param jwtUtil The utility class for generating JWT tokens.
      * @param userService The service for managing user-related operations.
+     * @param tokenRevocationService The registry used to revoke tokens on logout and refresh.
+     * @param loginThrottle The rate limiter for login and registration attempts.
+     * @param refreshTokenCookie The builder of the cookie carrying refresh tokens issued through OAuth2 login.
      */
-    public AuthController(AuthenticationManager authenticationManager, JwtUtil jwtUtil, UserService userService) {
+    public AuthController(AuthenticationManager authenticationManager, JwtUtil jwtUtil, UserService userService,
+                          TokenRevocationService tokenRevocationService, LoginThrottle loginThrottle,
+                          RefreshTokenCookie refreshTokenCookie) {
         this.authenticationManager = authenticationManager;
         this.jwtUtil = jwtUtil;
         this.userService = userService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.loginThrottle = loginThrottle;
+        this.refreshTokenCookie = refreshTokenCookie;
     }
 
     /**
      * Endpoint to log in a user by verifying the provided credentials (email and password).
-     * If successful, a JWT token is generated and returned as part of the response.
+     * If successful, a JWT access token and a refresh token are generated and returned as part of the response.
      *
      * @param request The login request containing the email and password.
-     * @return A response containing the generated JWT token or an error message.
+     * @param httpRequest The HTTP request, whose remote address (the client behind the proxy) is used for throttling.
+     * @return A response containing the generated JWT tokens or an error message.
      */
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody @Valid LoginRequestDTO request) {
+    public ResponseEntity<?> login(@RequestBody @Valid LoginRequestDTO request, HttpServletRequest httpRequest) {
+        loginThrottle.checkLogin(httpRequest.getRemoteAddr(), request.getEmail());
+        ResponseEntity<?> response = authenticate(request);
+        if (response.getStatusCode() == HttpStatus.UNAUTHORIZED) {
+            loginThrottle.recordFailure(request.getEmail());  // Only failed attempts count against the account
+        }
+        return response;
+    }
+
+    /**
+     * Authenticates the given credentials and issues a JWT access token and a refresh token.
+     *
+     * @param request The login request containing the email and password.
+     * @return A response containing the generated JWT tokens or an error message.
+     */
+    private ResponseEntity<?> authenticate(LoginRequestDTO request) {
         try {
             // Authenticate the user with the provided credentials (email and password)
             Authentication authentication = authenticationManager.authenticate(
@@ -60,27 +101,136 @@ public class AuthController {
             // Set the authentication context for the current user
             SecurityContextHolder.getContext().setAuthentication(authentication);
 
-            // Generate a JWT token for the authenticated user
+            // Generate a JWT access token and a refresh token for the authenticated user
             String jwtToken = jwtUtil.generateToken(authentication);
+            String refreshToken = jwtUtil.generateRefreshToken((UserEntity) authentication.getPrincipal());
 
-            // Return the JWT token as part of the response
-            return ResponseEntity.ok(new AuthResponse(jwtToken));
+            // Return the JWT tokens as part of the response
+            return ResponseEntity.ok(new AuthResponse(jwtToken, refreshToken));
+        } catch (ErrorResponse.TooManyRequestsException e) {
+            throw e;  // Password hashing is saturated: let the handler answer 429
         } catch (Exception e) {
+            // The authentication provider wraps failures raised while loading the user
+            if (e.getCause() instanceof ErrorResponse.TooManyRequestsException tooManyRequests) {
+                throw tooManyRequests;
+            }
             // Return an error response if authentication fails
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Authentication failed: " + e.getMessage());
         }
     }
 
+    /**
+     * Endpoint to exchange a refresh token for a new access token and refresh token.
+     * The user is reloaded from the database, so the new access token reflects the user's current role
+     * and refresh fails for users that no longer exist. The presented refresh token is revoked (rotated)
+     * atomically, so each refresh token can only be used once, even by concurrent requests.
+     * The refresh token is read from the request body or, for clients signed in through OAuth2, from the
+     * HttpOnly refresh token cookie; in the latter case the rotated token is returned in the cookie as well.
+     *
+     * @param request The refresh request containing the refresh token (optional when the cookie is present).
+     * @param cookieToken The refresh token carried by the refresh token cookie (optional).
+     * @return A response containing the new JWT tokens or an error message.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody(required = false) RefreshTokenRequestDTO request,
+                                     @CookieValue(name = RefreshTokenCookie.NAME, required = false) String cookieToken) {
+        boolean fromBody = request != null && request.getRefreshToken() != null && !request.getRefreshToken().isBlank();
+        String refreshToken = fromBody ? request.getRefreshToken() : cookieToken;
+        if (refreshToken == null || refreshToken.isBlank()) {
+            return ResponseEntity.badRequest().body("Refresh token is required");
+        }
+        try {
+            // Verify the refresh token and make sure it is not an access token
+            Claims claims = jwtUtil.verifyToken(refreshToken);
+            if (!jwtUtil.isRefreshToken(claims)) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Token refresh failed: not a refresh token");
+            }
+            if (tokenRevocationService.isRevoked(claims.getId())) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Token refresh failed: token has been revoked");
+            }
+
+            // Reload the user so that deletions and role changes are honoured
+            UserEntity user = userService.loadUserByUsername(claims.getSubject());
+            if (!user.getUserId().toString().equals(claims.get(JwtUtil.CLAIM_USER_ID, String.class))) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Token refresh failed: unknown user");
+            }
+
+            // Rotate the refresh token so that it cannot be replayed; only the request that revokes it may proceed
+            if (!tokenRevocationService.revoke(claims.getId(), claims.getExpiration())) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Token refresh failed: token has been revoked");
+            }
+
+            Authentication authentication = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+            String accessToken = jwtUtil.generateToken(authentication);
+            String rotatedToken = jwtUtil.generateRefreshToken(user);
+            if (fromBody) {
+                return ResponseEntity.ok(new AuthResponse(accessToken, rotatedToken));
+            }
+            // Keep cookie-held refresh tokens out of reach of scripts
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.SET_COOKIE, refreshTokenCookie.create(rotatedToken).toString())
+                    .body(new AuthResponse(accessToken, null));
+        } catch (Exception e) {
+            // Return an error response if the refresh token is invalid or expired
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Token refresh failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Endpoint to log out a user by revoking the access token presented in the Authorization header
+     * and, if supplied, the refresh token from the request body or the refresh token cookie, which is cleared.
+     * Invalid or already expired tokens are ignored.
+     *
+     * @param authorizationHeader The Authorization header carrying the access token (optional).
+     * @param request The request containing the refresh token to revoke (optional).
+     * @param cookieToken The refresh token carried by the refresh token cookie (optional).
+     * @return An empty response with HTTP 204 No Content.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorizationHeader,
+                                       @RequestBody(required = false) RefreshTokenRequestDTO request,
+                                       @CookieValue(name = RefreshTokenCookie.NAME, required = false) String cookieToken) {
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
+            revokeQuietly(authorizationHeader.substring(7));
+        }
+        if (request != null && request.getRefreshToken() != null) {
+            revokeQuietly(request.getRefreshToken());
+        }
+        if (cookieToken == null) {
+            return ResponseEntity.noContent().build();
+        }
+        revokeQuietly(cookieToken);
+        return ResponseEntity.noContent()
+                .header(HttpHeaders.SET_COOKIE, refreshTokenCookie.clear().toString())
+                .build();
+    }
+
+    /**
+     * Revokes a token if it is valid, ignoring tokens that cannot be verified.
+     *
+     * @param token The token to revoke.
+     */
+    private void revokeQuietly(String token) {
+        try {
+            Claims claims = jwtUtil.verifyToken(token);
+            tokenRevocationService.revoke(claims.getId(), claims.getExpiration());
+        } catch (Exception e) {
+            // Expired or invalid tokens cannot be used anyway
+        }
+    }
+
     /**
      * Endpoint to register a new user.
      * After saving the user's details (including password hashing), the user is automatically logged in
      * and a JWT token is generated and returned.
      *
      * @param request The registration request containing the user's details.
+     * @param httpRequest The HTTP request, whose remote address (the client behind the proxy) is used for throttling.
      * @return A response containing the JWT token or an error message.
      */
     @PostMapping("/register")
-    public ResponseEntity<?> register(@RequestBody @Valid UserEntity request) {
+    public ResponseEntity<?> register(@RequestBody @Valid UserEntity request, HttpServletRequest httpRequest) {
+        loginThrottle.checkIp(httpRequest.getRemoteAddr());
         try {
             // Store the raw password temporarily to pass it to the login method after hashing
             String rawPassword = request.getPassword();
@@ -91,8 +241,10 @@ public class AuthController {
             // Create a login request with the plain password
             LoginRequestDTO loginRequest = new LoginRequestDTO(request.getEmail(), rawPassword);
 
-            // Call the login method to authenticate the newly registered user and generate a JWT token
-            return login(loginRequest);
+            // Authenticate the newly registered user and generate a JWT token
+            return authenticate(loginRequest);
+        } catch (ErrorResponse.TooManyRequestsException e) {
+            throw e;  // Password hashing is saturated: let the handler answer 429
         } catch (Exception e) {
             // Handle any errors that occur during registration
             e.printStackTrace();
@@ -102,8 +254,9 @@ public class AuthController {
 }
 
 /**
- * Record to represent the response containing the generated JWT token.
- * This response is returned after successful login or registration.
+ * Record to represent the response containing the generated JWT access token and refresh token.
+ * This response is returned after successful login, registration or token refresh. The refresh token is null
+ * when it is handed over in the HttpOnly refresh token cookie instead.
  */
-record AuthResponse(String token) {
+record AuthResponse(String token, String refreshToken) {
 }
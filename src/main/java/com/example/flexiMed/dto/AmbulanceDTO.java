@@ -70,6 +70,12 @@ public class AmbulanceDTO {
      */
     private LocalDateTime lastUpdatedAt;
 
+    /**
+     * Whether the driver's app has stopped reporting.
+     * Stale ambulances are not dispatched. Set by the server; ignored on input.
+     */
+    private boolean stale;
+
     // Default Constructor
     public AmbulanceDTO() {
     }
@@ -153,4 +159,12 @@ public class AmbulanceDTO {
     public void setLastUpdatedAt(LocalDateTime lastUpdatedAt) {
         this.lastUpdatedAt = lastUpdatedAt;
     }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
 }
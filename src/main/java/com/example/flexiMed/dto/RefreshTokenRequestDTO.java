@@ -0,0 +1,50 @@
+package com.example.flexiMed.dto;
+
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * Data Transfer Object (DTO) for representing a token refresh request.
+ * This class holds the refresh token the client exchanges for a new access token.
+ */
+public class RefreshTokenRequestDTO {
+
+    /**
+     * The refresh token issued at login.
+     */
+    @NotBlank(message = "Refresh token is required")
+    private String refreshToken;
+
+    /**
+     * Default constructor for RefreshTokenRequestDTO.
+     * This is required for frameworks that require a no-argument constructor.
+     */
+    public RefreshTokenRequestDTO() {
+    }
+
+    /**
+     * Constructor to initialize a new refresh request DTO with the provided refresh token.
+     *
+     * @param refreshToken The refresh token issued at login.
+     */
+    public RefreshTokenRequestDTO(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+
+    /**
+     * Gets the refresh token.
+     *
+     * @return The refresh token.
+     */
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    /**
+     * Sets the refresh token.
+     *
+     * @param refreshToken The refresh token to set.
+     */
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+}
@@ -179,6 +179,10 @@ public class ErrorResponse {
         public AiApiRequestException(String message) {
             super(message);
         }
+
+        public AiApiRequestException(String message, Throwable cause) {
+            super(message, cause);
+        }
     }
 
     /**
@@ -206,4 +210,21 @@ public class ErrorResponse {
             super(message, cause);
         }
     }
+
+    /**
+     * Exception for requests rejected because the server or the caller exceeded a rate or capacity limit.
+     * Carries the number of seconds after which the client may retry.
+     */
+    public static class TooManyRequestsException extends RuntimeException {
+        private final long retryAfterSeconds;
+
+        public TooManyRequestsException(String message, long retryAfterSeconds) {
+            super(message);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
 }
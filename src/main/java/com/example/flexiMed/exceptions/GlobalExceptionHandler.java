@@ -1,6 +1,7 @@
 package com.example.flexiMed.exceptions;
 
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -189,6 +190,33 @@ public class GlobalExceptionHandler {
         return buildErrorResponse(HttpStatus.BAD_REQUEST, ex.getMessage());
     }
 
+    /**
+     * Handles the exception thrown when the AI API fails or does not respond in time.
+     * It returns a 502 Bad Gateway status with an appropriate error message.
+     *
+     * @param ex the exception to handle.
+     * @return a ResponseEntity containing the error response.
+     */
+    @ExceptionHandler(ErrorResponse.AiApiRequestException.class)
+    public ResponseEntity<ErrorResponse> handleAiApiRequestException(ErrorResponse.AiApiRequestException ex) {
+        return buildErrorResponse(HttpStatus.BAD_GATEWAY, ex.getMessage());
+    }
+
+    /**
+     * Handles the exception thrown when a request is rejected by a rate or capacity limit.
+     * It returns a 429 Too Many Requests status with a Retry-After header.
+     *
+     * @param ex the exception to handle.
+     * @return a ResponseEntity containing the error response.
+     */
+    @ExceptionHandler(ErrorResponse.TooManyRequestsException.class)
+    public ResponseEntity<ErrorResponse> handleTooManyRequestsException(ErrorResponse.TooManyRequestsException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(HttpStatus.TOO_MANY_REQUESTS.value(), ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
     /**
      * A helper method to construct the error response.
      *
@@ -0,0 +1,78 @@
+package com.example.flexiMed.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing a revoked JWT.
+ * A token is identified by its ID (the {@code jti} claim) and the record is kept only until the token
+ * would have expired anyway, after which it is purged.
+ */
+@Entity
+@Table(name = "revoked_tokens")
+public class RevokedTokenEntity {
+
+    /**
+     * The ID of the revoked token, taken from its {@code jti} claim.
+     */
+    @Id
+    @Column(name = "token_id", length = 64, nullable = false, updatable = false)
+    private String tokenId;
+
+    /**
+     * The expiration time of the revoked token.
+     */
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    /**
+     * The time the token was revoked.
+     */
+    @Column(name = "revoked_at", nullable = false, updatable = false)
+    private LocalDateTime revokedAt;
+
+    /**
+     * Default constructor for RevokedTokenEntity.
+     * Required by JPA for entity management.
+     */
+    public RevokedTokenEntity() {
+    }
+
+    /**
+     * Constructor to initialize a RevokedTokenEntity with all fields.
+     *
+     * @param tokenId   The ID of the revoked token.
+     * @param expiresAt The expiration time of the revoked token.
+     * @param revokedAt The time the token was revoked.
+     */
+    public RevokedTokenEntity(String tokenId, LocalDateTime expiresAt, LocalDateTime revokedAt) {
+        this.tokenId = tokenId;
+        this.expiresAt = expiresAt;
+        this.revokedAt = revokedAt;
+    }
+
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    public void setTokenId(String tokenId) {
+        this.tokenId = tokenId;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public LocalDateTime getRevokedAt() {
+        return revokedAt;
+    }
+
+    public void setRevokedAt(LocalDateTime revokedAt) {
+        this.revokedAt = revokedAt;
+    }
+}
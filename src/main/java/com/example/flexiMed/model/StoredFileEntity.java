@@ -0,0 +1,94 @@
+package com.example.flexiMed.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing an uploaded file in content-addressed storage.
+ * A file is identified by the SHA-256 hash of its content, so identical uploads share one file on disk;
+ * the reference count tracks how many records (such as profile images) point to it, and the file is deleted
+ * when it drops to zero.
+ */
+@Entity
+@Table(name = "stored_files")
+public class StoredFileEntity {
+
+    /**
+     * The SHA-256 hash of the file's content, in lowercase hex.
+     */
+    @Id
+    @Column(name = "content_hash", length = 64, nullable = false, updatable = false)
+    private String contentHash;
+
+    /**
+     * The path of the file, relative to the uploads directory.
+     */
+    @Column(name = "path", length = 100, nullable = false, updatable = false)
+    private String path;
+
+    /**
+     * The size of the file in bytes.
+     */
+    @Column(name = "size_bytes", nullable = false, updatable = false)
+    private long sizeBytes;
+
+    /**
+     * The number of references to the file.
+     */
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    /**
+     * The time the file was first stored.
+     */
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * Default constructor for StoredFileEntity.
+     * Required by JPA for entity management.
+     */
+    public StoredFileEntity() {
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
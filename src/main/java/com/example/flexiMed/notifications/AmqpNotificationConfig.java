@@ -0,0 +1,125 @@
+package com.example.flexiMed.notifications;
+
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Broker topology and consumer settings for the AMQP notification transport.
+ * Jobs are published to a durable direct exchange and routed by channel key to one durable queue per channel,
+ * so each channel can be consumed and scaled independently. Consumers receive jobs in batches with a bounded
+ * prefetch to amortise broker round trips without hoarding messages on one node.
+ * Failed jobs wait out their backoff in a durable per-channel retry queue: each is published there with a
+ * per-message TTL and dead-lettered back to the channel's queue when it expires, so a pending retry survives a
+ * node restart.
+ */
+@Configuration
+@ConditionalOnProperty(name = "notifications.transport", havingValue = "amqp")
+public class AmqpNotificationConfig {
+
+    public static final String EXCHANGE = "fleximed.notifications";
+    public static final String WEBSOCKET_QUEUE = "fleximed.notifications.websocket";
+    public static final String SMS_QUEUE = "fleximed.notifications.sms";
+    public static final String EMAIL_QUEUE = "fleximed.notifications.email";
+
+    /**
+     * Returns the name of the queue holding jobs for the given channel.
+     *
+     * @param channel The notification channel.
+     * @return The queue name.
+     */
+    public static String queueName(NotificationChannel channel) {
+        return EXCHANGE + "." + channel.key();
+    }
+
+    /**
+     * Returns the name of the queue in which failed jobs of the given channel wait for their next attempt.
+     *
+     * @param channel The notification channel.
+     * @return The retry queue name.
+     */
+    public static String retryQueueName(NotificationChannel channel) {
+        return queueName(channel) + ".retry";
+    }
+
+    /**
+     * Declares the durable exchange, the per-channel durable queues and their bindings, and the per-channel retry
+     * queues that dead-letter expired jobs back to the exchange under the channel's routing key.
+     *
+     * @return The declarables registered with the broker on connection.
+     */
+    @Bean
+    public Declarables notificationTopology() {
+        DirectExchange exchange = new DirectExchange(EXCHANGE, true, false);
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(exchange);
+        for (NotificationChannel channel : NotificationChannel.values()) {
+            Queue queue = QueueBuilder.durable(queueName(channel)).build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(exchange).with(channel.key()));
+            declarables.add(QueueBuilder.durable(retryQueueName(channel))
+                    .deadLetterExchange(EXCHANGE)
+                    .deadLetterRoutingKey(channel.key())
+                    .build());
+        }
+        return new Declarables(declarables);
+    }
+
+    /**
+     * JSON converter for notification jobs, also picked up by the auto-configured RabbitTemplate.
+     * The target type is taken from the listener signature rather than from message headers,
+     * so only {@link NotificationJob} payloads are ever deserialized.
+     *
+     * @return The message converter.
+     */
+    @Bean
+    public MessageConverter notificationMessageConverter() {
+        Jackson2JsonMessageConverter converter = new Jackson2JsonMessageConverter();
+        converter.setAlwaysConvertToInferredType(true);
+        return converter;
+    }
+
+    /**
+     * Listener container factory delivering jobs to consumers in batches.
+     *
+     * @param connectionFactory The broker connection factory.
+     * @param converter         The converter for notification jobs.
+     * @param batchSize         The maximum number of jobs per batch.
+     * @param prefetch          The number of unacknowledged messages each consumer may hold.
+     * @param receiveTimeoutMs  How long a consumer waits to fill a batch before delivering a partial one.
+     * @return The container factory.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory notificationListenerContainerFactory(
+            ConnectionFactory connectionFactory, MessageConverter converter,
+            @Value("${notifications.amqp.batch-size:50}") int batchSize,
+            @Value("${notifications.amqp.prefetch:100}") int prefetch,
+            @Value("${notifications.amqp.receive-timeout-ms:200}") long receiveTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(converter);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);  // Ack the batch once every job is delivered, dead-lettered or in a retry queue
+        factory.setDefaultRequeueRejected(true);  // A batch whose retries could not be republished is redelivered
+        return factory;
+    }
+}
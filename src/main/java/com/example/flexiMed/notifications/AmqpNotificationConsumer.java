@@ -0,0 +1,161 @@
+package com.example.flexiMed.notifications;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Consumes batches of notification jobs from the per-channel broker queues and delivers them through the
+ * {@link NotificationDispatcher}. The jobs of a batch are attempted concurrently and the consumer thread waits for
+ * all of them. A job whose attempt failed is republished to its channel's retry queue with the backoff as its TTL
+ * and the next attempt number in the {@value #ATTEMPT_HEADER} header, so no retry is ever held only in memory.
+ * The batch is acknowledged only once every job has been delivered, dead-lettered or confirmed by the broker in the
+ * retry queue; if a retry cannot be republished the listener fails and the whole batch is redelivered, so a
+ * delivered job may occasionally be sent twice but none is lost.
+ */
+@Component
+@ConditionalOnProperty(name = "notifications.transport", havingValue = "amqp")
+public class AmqpNotificationConsumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AmqpNotificationConsumer.class);
+
+    /**
+     * Message header carrying the attempt number of a republished job; jobs without it are on their first attempt.
+     */
+    public static final String ATTEMPT_HEADER = "x-notification-attempt";
+
+    private final NotificationDispatcher notificationDispatcher;
+    private final RabbitTemplate rabbitTemplate;
+    private final long confirmTimeoutMillis;
+
+    /**
+     * Constructs an AmqpNotificationConsumer.
+     *
+     * @param notificationDispatcher The dispatcher performing delivery attempts and dead-lettering.
+     * @param rabbitTemplate         The template used to republish failed jobs to the retry queues.
+     * @param confirmTimeoutMillis   How long to wait for the broker to confirm a republished job.
+     */
+    public AmqpNotificationConsumer(NotificationDispatcher notificationDispatcher, RabbitTemplate rabbitTemplate,
+                                    @Value("${notifications.amqp.confirm-timeout-ms:5000}") long confirmTimeoutMillis) {
+        this.notificationDispatcher = notificationDispatcher;
+        this.rabbitTemplate = rabbitTemplate;
+        this.confirmTimeoutMillis = confirmTimeoutMillis;
+    }
+
+    /**
+     * Delivers a batch of WebSocket notifications.
+     *
+     * @param messages The jobs in the batch.
+     */
+    @RabbitListener(queues = AmqpNotificationConfig.WEBSOCKET_QUEUE, containerFactory = "notificationListenerContainerFactory",
+            concurrency = "${notifications.amqp.websocket.consumers:2}")
+    public void onWebSocketJobs(List<Message<NotificationJob>> messages) {
+        deliver(messages);
+    }
+
+    /**
+     * Delivers a batch of SMS notifications.
+     *
+     * @param messages The jobs in the batch.
+     */
+    @RabbitListener(queues = AmqpNotificationConfig.SMS_QUEUE, containerFactory = "notificationListenerContainerFactory",
+            concurrency = "${notifications.amqp.sms.consumers:4}")
+    public void onSmsJobs(List<Message<NotificationJob>> messages) {
+        deliver(messages);
+    }
+
+    /**
+     * Delivers a batch of email notifications.
+     *
+     * @param messages The jobs in the batch.
+     */
+    @RabbitListener(queues = AmqpNotificationConfig.EMAIL_QUEUE, containerFactory = "notificationListenerContainerFactory",
+            concurrency = "${notifications.amqp.email.consumers:4}")
+    public void onEmailJobs(List<Message<NotificationJob>> messages) {
+        deliver(messages);
+    }
+
+    /**
+     * Attempts every job of a batch and republishes the failed ones on the consumer thread, returning only once the
+     * broker has confirmed them.
+     *
+     * @param messages The jobs in the batch.
+     * @throws AmqpException If a failed job could not be republished; the container then redelivers the batch.
+     */
+    void deliver(List<Message<NotificationJob>> messages) {
+        List<NotificationJob> jobs = new ArrayList<>(messages.size());
+        List<Integer> attempts = new ArrayList<>(messages.size());
+        List<CompletableFuture<Long>> backoffs = new ArrayList<>(messages.size());
+        for (Message<NotificationJob> message : messages) {
+            NotificationJob job = message.getPayload();
+            int attempt = attempt(message);
+            jobs.add(job);
+            attempts.add(attempt);
+            backoffs.add(notificationDispatcher.attemptNow(job, attempt));
+        }
+        CompletableFuture.allOf(backoffs.toArray(CompletableFuture[]::new)).join();
+
+        List<CorrelationData> retries = new ArrayList<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            long backoff = backoffs.get(i).join();
+            if (backoff >= 0) {
+                retries.add(republish(jobs.get(i), attempts.get(i) + 1, backoff));
+            }
+        }
+        for (CorrelationData retry : retries) {
+            awaitConfirm(retry);
+        }
+    }
+
+    private static int attempt(Message<NotificationJob> message) {
+        Object header = message.getHeaders().get(ATTEMPT_HEADER);
+        return header instanceof Number number ? number.intValue() : 1;
+    }
+
+    /**
+     * Publishes a job to its channel's retry queue, from which it expires back to the channel's queue after the
+     * backoff.
+     */
+    private CorrelationData republish(NotificationJob job, int nextAttempt, long backoffMillis) {
+        CorrelationData correlation = new CorrelationData(job.id() + ":" + nextAttempt);
+        rabbitTemplate.convertAndSend("", AmqpNotificationConfig.retryQueueName(job.channel()), job, message -> {
+            message.getMessageProperties().setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+            message.getMessageProperties().setMessageId(job.id().toString());
+            message.getMessageProperties().setExpiration(Long.toString(backoffMillis));
+            message.getMessageProperties().setHeader(ATTEMPT_HEADER, nextAttempt);
+            return message;
+        }, correlation);
+        logger.debug("{} notification {} queued for attempt {} in {} ms", job.channel(), job.id(), nextAttempt, backoffMillis);
+        return correlation;
+    }
+
+    private void awaitConfirm(CorrelationData correlation) {
+        CorrelationData.Confirm confirm;
+        try {
+            confirm = correlation.getFuture().get(confirmTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpException("Interrupted while republishing notification retry " + correlation.getId(), e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new AmqpException("Broker did not confirm notification retry " + correlation.getId(), e);
+        }
+        if (!confirm.isAck()) {
+            throw new AmqpException("Broker rejected notification retry " + correlation.getId() + ": " + confirm.getReason());
+        }
+    }
+}
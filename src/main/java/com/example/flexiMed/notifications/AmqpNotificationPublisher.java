@@ -0,0 +1,95 @@
+package com.example.flexiMed.notifications;
+
+import com.example.flexiMed.utils.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes notification jobs as persistent messages to the durable notification exchange.
+ * Publisher confirms are tracked asynchronously: a job is only considered handed off once the broker has
+ * acknowledged it. If the broker is unreachable or negatively acknowledges a job, the job is delivered through
+ * the local {@link NotificationDispatcher} instead, so a broker outage degrades durability but not delivery.
+ * Requires {@code spring.rabbitmq.publisher-confirm-type=correlated}.
+ */
+@Component
+@ConditionalOnProperty(name = "notifications.transport", havingValue = "amqp")
+public class AmqpNotificationPublisher implements NotificationPublisher, MetricsSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(AmqpNotificationPublisher.class);
+
+    private final RabbitTemplate rabbitTemplate;
+    private final NotificationDispatcher localDispatcher;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder nacked = new LongAdder();
+    private final LongAdder localFallbacks = new LongAdder();
+
+    /**
+     * Constructs an AmqpNotificationPublisher.
+     *
+     * @param rabbitTemplate  The template used to publish to the broker, configured with the JSON converter.
+     * @param localDispatcher The in-process dispatcher used when the broker cannot take a job.
+     */
+    public AmqpNotificationPublisher(RabbitTemplate rabbitTemplate, NotificationDispatcher localDispatcher) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.localDispatcher = localDispatcher;
+    }
+
+    @Override
+    public void publish(NotificationJob job) {
+        CorrelationData correlation = new CorrelationData(job.id().toString());
+        correlation.getFuture().whenComplete((confirm, error) -> {
+            if (error == null && confirm.isAck()) {
+                confirmed.increment();
+            } else {
+                nacked.increment();
+                logger.warn("Broker did not confirm notification {}: {}", job.id(),
+                        error != null ? error.getMessage() : confirm.getReason());
+                fallback(job);
+            }
+        });
+
+        try {
+            rabbitTemplate.convertAndSend(AmqpNotificationConfig.EXCHANGE, job.channel().key(), job, message -> {
+                message.getMessageProperties().setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+                message.getMessageProperties().setMessageId(job.id().toString());
+                return message;
+            }, correlation);
+            published.increment();
+        } catch (AmqpException e) {
+            logger.warn("Failed to publish notification {} to the broker: {}", job.id(), e.getMessage());
+            fallback(job);
+        }
+    }
+
+    private void fallback(NotificationJob job) {
+        localFallbacks.increment();
+        localDispatcher.dispatch(job);
+    }
+
+    @Override
+    public String metricsName() {
+        return "notificationBroker";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("published", published.sum());
+        metrics.put("confirmed", confirmed.sum());
+        metrics.put("nacked", nacked.sum());
+        metrics.put("localFallbacks", localFallbacks.sum());
+        return metrics;
+    }
+}
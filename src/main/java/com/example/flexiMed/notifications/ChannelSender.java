@@ -0,0 +1,42 @@
+package com.example.flexiMed.notifications;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Delivers notification jobs over a single channel.
+ * Implementations throw on failure; the {@link NotificationDispatcher} decides whether to retry.
+ */
+public interface ChannelSender {
+
+    /**
+     * Returns the channel this sender delivers over.
+     *
+     * @return The channel.
+     */
+    NotificationChannel channel();
+
+    /**
+     * Delivers the given job.
+     *
+     * @param job The job to deliver.
+     * @throws IllegalArgumentException if the job can never be delivered (e.g. an invalid address); it is not retried.
+     * @throws Exception if delivery failed and may succeed on a retry.
+     */
+    void send(NotificationJob job) throws Exception;
+
+    /**
+     * Delivers the given job without waiting for the delivery to finish, for senders that hand jobs to their own
+     * asynchronous pool. The default implementation sends on the calling thread.
+     *
+     * @param job The job to deliver.
+     * @return A future completed once the job is delivered, or completed exceptionally as {@link #send} would throw.
+     */
+    default CompletableFuture<Void> sendAsync(NotificationJob job) {
+        try {
+            send(job);
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.flexiMed.notifications;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only store on local disk for notifications that could not be delivered.
+ * Each dead letter is written as one JSON line containing the job, the number of attempts and the last error,
+ * so that failed notifications can be inspected and replayed after an outage.
+ */
+@Component
+public class DeadLetterStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterStore.class);
+
+    private final Path file;
+    private final ObjectMapper objectMapper;
+    private final LongAdder written = new LongAdder();
+
+    /**
+     * Constructs a DeadLetterStore.
+     *
+     * @param path         The file dead letters are appended to, injected from application properties.
+     * @param objectMapper The mapper used to serialize dead letters.
+     */
+    public DeadLetterStore(@Value("${notifications.dead-letter.path:./dead-letters/notifications.jsonl}") String path,
+                           ObjectMapper objectMapper) {
+        this.file = Paths.get(path).toAbsolutePath().normalize();
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Appends a dead letter for the given job.
+     *
+     * @param job      The job that could not be delivered.
+     * @param attempts The number of delivery attempts made.
+     * @param error    The last delivery error, or null if the job was never attempted.
+     */
+    public void store(NotificationJob job, int attempts, Throwable error) {
+        DeadLetter deadLetter = new DeadLetter(job, attempts,
+                error == null ? null : error.getClass().getSimpleName() + ": " + error.getMessage(),
+                System.currentTimeMillis());
+        try {
+            byte[] line = (objectMapper.writeValueAsString(deadLetter) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+            synchronized (this) {
+                Files.createDirectories(file.getParent());
+                Files.write(file, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            written.increment();
+            logger.warn("Dead-lettered {} notification {} after {} attempts", job.channel(), job.id(), attempts);
+        } catch (IOException e) {
+            logger.error("Failed to write dead letter for notification {}: {}", job.id(), e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of dead letters written since startup.
+     *
+     * @return The dead letter count.
+     */
+    public long count() {
+        return written.sum();
+    }
+
+    /**
+     * A notification that could not be delivered.
+     *
+     * @param job            The undelivered job.
+     * @param attempts       The number of delivery attempts made.
+     * @param error          The last delivery error.
+     * @param failedAtMillis The time the job was given up on, in epoch milliseconds.
+     */
+    public record DeadLetter(NotificationJob job, int attempts, String error, long failedAtMillis) {
+    }
+}
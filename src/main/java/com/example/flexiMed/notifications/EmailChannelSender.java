@@ -0,0 +1,53 @@
+package com.example.flexiMed.notifications;
+
+import com.example.flexiMed.notifications.email.EmailService;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.context.Context;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Delivers notifications as emails rendered from the ambulance dispatch template. The recipient is an email address.
+ * Jobs are queued on the {@link EmailService}'s pooled SMTP senders, so a notification worker never waits for the
+ * server and queued messages are sent in batches over one session.
+ */
+@Component
+public class EmailChannelSender implements ChannelSender {
+
+    private static final String TEMPLATE = "ambulance-dispatch";
+    private static final String SUBJECT = "Ambulance Dispatched";
+
+    private final EmailService emailService;
+
+    /**
+     * Constructs an EmailChannelSender.
+     *
+     * @param emailService The service used to send emails.
+     */
+    public EmailChannelSender(EmailService emailService) {
+        this.emailService = emailService;
+    }
+
+    @Override
+    public NotificationChannel channel() {
+        return NotificationChannel.EMAIL;
+    }
+
+    @Override
+    public void send(NotificationJob job) throws Exception {
+        emailService.sendEmail(job.recipient(), SUBJECT, TEMPLATE, context(job));
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(NotificationJob job) {
+        return emailService.sendEmailAsync(job.recipient(), SUBJECT, TEMPLATE, context(job));
+    }
+
+    private static Context context(NotificationJob job) {
+        Context context = new Context();
+        context.setVariable("userName", job.recipientName());
+        context.setVariable("eta", job.payload().getEta());
+        context.setVariable("ambulanceNumber", job.payload().getAmbulancePlateNumber());
+        return context;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.flexiMed.notifications;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process publisher that queues jobs directly on the {@link NotificationDispatcher}.
+ * Used by default and for local development and load testing, where no message broker is available.
+ */
+@Component
+@ConditionalOnProperty(name = "notifications.transport", havingValue = "local", matchIfMissing = true)
+public class LocalNotificationPublisher implements NotificationPublisher {
+
+    private final NotificationDispatcher notificationDispatcher;
+
+    /**
+     * Constructs a LocalNotificationPublisher.
+     *
+     * @param notificationDispatcher The dispatcher jobs are queued on.
+     */
+    public LocalNotificationPublisher(NotificationDispatcher notificationDispatcher) {
+        this.notificationDispatcher = notificationDispatcher;
+    }
+
+    @Override
+    public void publish(NotificationJob job) {
+        notificationDispatcher.dispatch(job);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.flexiMed.notifications;
+
+/**
+ * Delivery channels supported by the {@link NotificationDispatcher}.
+ * Each channel has its own queue and worker pool, so a slow SMS or email provider cannot delay WebSocket pushes.
+ */
+public enum NotificationChannel {
+    WEBSOCKET, SMS, EMAIL;
+
+    /**
+     * Returns the lower-case key of the channel, used in property names and metrics.
+     *
+     * @return The channel key.
+     */
+    public String key() {
+        return name().toLowerCase();
+    }
+}
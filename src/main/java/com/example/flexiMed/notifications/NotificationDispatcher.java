@@ -0,0 +1,351 @@
+package com.example.flexiMed.notifications;
+
+import com.example.flexiMed.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous, per-channel notification delivery.
+ * Callers enqueue {@link NotificationJob}s and return immediately; each channel has a bounded queue drained by its
+ * own worker pool. Senders with their own asynchronous pool (such as SMS) are only handed the job by the worker,
+ * which does not wait for the delivery; each attempt is bounded by {@code notifications.retry.attempt-timeout-ms}.
+ * Failed deliveries are retried with exponential backoff and jitter, and jobs that exhaust their
+ * attempts, are not retryable, or do not fit in a full queue are written to the {@link DeadLetterStore}; a job
+ * carrying a {@link NotificationJob#fallback() fallback} then fails over to it.
+ * A notification failure therefore never fails the operation that triggered it.
+ */
+@Service
+public class NotificationDispatcher implements MetricsSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    private final Map<NotificationChannel, ChannelSender> senders = new EnumMap<>(NotificationChannel.class);
+    private final Map<NotificationChannel, ThreadPoolExecutor> workers = new EnumMap<>(NotificationChannel.class);
+    private final Map<NotificationChannel, ChannelStats> stats = new EnumMap<>(NotificationChannel.class);
+    private final ScheduledExecutorService retryScheduler;
+    private final DeadLetterStore deadLetterStore;
+
+    /**
+     * Retries waiting out their backoff. The scheduler only hands back opaque tasks on shutdown, so the deliveries
+     * are tracked here to dead-letter them.
+     */
+    private final Set<Delivery> scheduledRetries = ConcurrentHashMap.newKeySet();
+
+    private final int maxAttempts;
+    private final long attemptTimeoutMillis;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * Constructs a NotificationDispatcher with a worker pool for every available channel sender.
+     * Pool sizes are read from {@code notifications.<channel>.threads} and {@code notifications.<channel>.queue-capacity}.
+     *
+     * @param channelSenders  The senders, one per channel.
+     * @param deadLetterStore The store for undeliverable notifications.
+     * @param environment     The environment the pool and retry settings are read from.
+     */
+    public NotificationDispatcher(List<ChannelSender> channelSenders, DeadLetterStore deadLetterStore, Environment environment) {
+        this.deadLetterStore = deadLetterStore;
+        this.maxAttempts = environment.getProperty("notifications.retry.max-attempts", Integer.class, 5);
+        this.attemptTimeoutMillis = environment.getProperty("notifications.retry.attempt-timeout-ms", Long.class, 30000L);
+        this.initialBackoffMillis = environment.getProperty("notifications.retry.initial-backoff-ms", Long.class, 500L);
+        this.maxBackoffMillis = environment.getProperty("notifications.retry.max-backoff-ms", Long.class, 30000L);
+
+        for (ChannelSender sender : channelSenders) {
+            NotificationChannel channel = sender.channel();
+            int threads = environment.getProperty("notifications." + channel.key() + ".threads", Integer.class, 2);
+            int queueCapacity = environment.getProperty("notifications." + channel.key() + ".queue-capacity", Integer.class, 1000);
+
+            senders.put(channel, sender);
+            workers.put(channel, new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), namedThreads("notify-" + channel.key()),
+                    new ThreadPoolExecutor.AbortPolicy()));
+            stats.put(channel, new ChannelStats());
+        }
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(namedThreads("notify-retry"));
+    }
+
+    /**
+     * Enqueues a notification job for asynchronous delivery.
+     * If the channel's queue is full or the channel is not available, the job is dead-lettered instead.
+     *
+     * @param job The job to deliver.
+     * @return True if the job was queued, false if it was dead-lettered.
+     */
+    public boolean dispatch(NotificationJob job) {
+        ChannelStats channelStats = stats.get(job.channel());
+        if (channelStats == null) {
+            logger.error("No sender available for channel {}", job.channel());
+            deadLetterStore.store(job, 0, null);
+            return job.fallback() != null && dispatch(job.fallback());
+        }
+        channelStats.enqueued.increment();
+        return submit(new Delivery(job, 1));
+    }
+
+    /**
+     * Performs one delivery attempt of a job without scheduling a retry, for callers that keep retries durable
+     * themselves (such as the broker consumer). Jobs that cannot be retried are dead-lettered exactly as for
+     * queued jobs.
+     *
+     * @param job     The job to deliver.
+     * @param attempt The attempt number, starting at 1.
+     * @return A future completed with the delay the caller should wait before the next attempt, or -1 if the job
+     * was delivered or dead-lettered.
+     */
+    public CompletableFuture<Long> attemptNow(NotificationJob job, int attempt) {
+        ChannelStats channelStats = stats.get(job.channel());
+        if (channelStats == null) {
+            logger.error("No sender available for channel {}", job.channel());
+            deadLetterStore.store(job, attempt - 1, null);
+            if (job.fallback() != null) {
+                dispatch(job.fallback());
+            }
+            return CompletableFuture.completedFuture(-1L);
+        }
+        if (attempt == 1) {
+            channelStats.enqueued.increment();
+        }
+        return tryDeliver(job, attempt).thenApply(backoff -> {
+            if (backoff >= 0) {
+                channelStats.retries.increment();
+            }
+            return backoff;
+        });
+    }
+
+    /**
+     * Hands a delivery attempt to its channel's worker pool, dead-lettering it if the queue is full.
+     */
+    private boolean submit(Delivery delivery) {
+        try {
+            workers.get(delivery.job.channel()).execute(delivery);
+            return true;
+        } catch (RejectedExecutionException e) {
+            stats.get(delivery.job.channel()).rejected.increment();
+            deadLetter(delivery.job, delivery.attempt - 1, e);
+            return false;
+        }
+    }
+
+    /**
+     * Performs one delivery attempt and schedules a retry once it has failed. The calling worker does not wait
+     * for senders that deliver asynchronously.
+     */
+    private void attempt(Delivery delivery) {
+        tryDeliver(delivery.job, delivery.attempt).thenAccept(backoff -> {
+            if (backoff >= 0) {
+                scheduleRetry(delivery, backoff);
+            }
+        });
+    }
+
+    /**
+     * Performs one delivery attempt, recording its outcome and dead-lettering the job if it cannot be retried.
+     *
+     * @return A future completed with the delay before the next attempt, or -1 if the job was delivered or
+     * dead-lettered.
+     */
+    private CompletableFuture<Long> tryDeliver(NotificationJob job, int attempt) {
+        CompletableFuture<Void> sent;
+        try {
+            sent = senders.get(job.channel()).sendAsync(job);
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        // Copied so that the timeout never completes a future shared with other callers (e.g. coalesced SMS)
+        return sent.copy()
+                .orTimeout(attemptTimeoutMillis, TimeUnit.MILLISECONDS)
+                .handle((ignored, error) -> outcome(job, attempt, error));
+    }
+
+    private long outcome(NotificationJob job, int attempt, Throwable error) {
+        ChannelStats channelStats = stats.get(job.channel());
+        if (error == null) {
+            channelStats.delivered.increment();
+            channelStats.recordLatency(System.currentTimeMillis() - job.createdAtMillis());
+            return -1;
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        channelStats.failedAttempts.increment();
+        if (cause instanceof IllegalArgumentException || attempt >= maxAttempts) {
+            deadLetter(job, attempt, cause);
+            return -1;
+        }
+        long backoff = backoffMillis(attempt);
+        logger.warn("{} notification {} failed (attempt {}), retrying in {} ms: {}",
+                job.channel(), job.id(), attempt, backoff, cause.getMessage());
+        return backoff;
+    }
+
+    /**
+     * Schedules the next attempt of a failed delivery after its backoff.
+     */
+    private void scheduleRetry(Delivery delivery, long backoff) {
+        stats.get(delivery.job.channel()).retries.increment();
+        Delivery retry = new Delivery(delivery.job, delivery.attempt + 1);
+        scheduledRetries.add(retry);
+        try {
+            retryScheduler.schedule(() -> {
+                if (scheduledRetries.remove(retry)) {  // Not already dead-lettered by shutdown
+                    submit(retry);
+                }
+            }, backoff, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException shuttingDown) {
+            scheduledRetries.remove(retry);
+            deadLetter(delivery.job, delivery.attempt, shuttingDown);
+        }
+    }
+
+    /**
+     * Computes the delay before the next attempt: exponential in the attempt number, capped, with full jitter
+     * so that a burst of failures does not retry in lockstep.
+     */
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    private void deadLetter(NotificationJob job, int attempts, Throwable error) {
+        stats.get(job.channel()).deadLettered.increment();
+        deadLetterStore.store(job, attempts, error);
+        if (job.fallback() != null) {
+            stats.get(job.channel()).failedOver.increment();
+            logger.info("{} notification {} failed, falling back to {}", job.channel(), job.id(), job.fallback().channel());
+            dispatch(job.fallback());
+        }
+    }
+
+    /**
+     * Stops the worker pools on shutdown, dead-lettering every job that was still queued or waiting for a retry
+     * so that it is not lost.
+     */
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        for (Delivery retry : scheduledRetries) {
+            if (scheduledRetries.remove(retry)) {
+                logger.warn("Dead-lettering scheduled {} on shutdown", retry);
+                deadLetter(retry.job, retry.attempt - 1, null);
+            }
+        }
+        workers.values().forEach(executor -> {
+            for (Runnable pending : executor.shutdownNow()) {
+                if (pending instanceof Delivery delivery) {
+                    deadLetter(delivery.job, delivery.attempt - 1, null);
+                }
+            }
+        });
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public String metricsName() {
+        return "notifications";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        stats.forEach((channel, channelStats) -> {
+            Map<String, Object> channelMetrics = channelStats.snapshot();
+            channelMetrics.put("queueDepth", workers.get(channel).getQueue().size());
+            channelMetrics.put("activeWorkers", workers.get(channel).getActiveCount());
+            metrics.put(channel.key(), channelMetrics);
+        });
+        metrics.put("scheduledRetries", scheduledRetries.size());
+        metrics.put("deadLetters", deadLetterStore.count());
+        return metrics;
+    }
+
+    /**
+     * A queued delivery attempt. Kept as a named type so that pending work can be recovered on shutdown.
+     */
+    private final class Delivery implements Runnable {
+        private final NotificationJob job;
+        private final int attempt;
+
+        private Delivery(NotificationJob job, int attempt) {
+            this.job = job;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void run() {
+            attempt(this);
+        }
+
+        @Override
+        public String toString() {
+            return job.channel() + " notification " + job.id() + " attempt " + attempt;
+        }
+    }
+
+    /**
+     * Delivery counters and end-to-end latency (job creation to successful delivery) for one channel.
+     */
+    private static final class ChannelStats {
+        private final LongAdder enqueued = new LongAdder();
+        private final LongAdder delivered = new LongAdder();
+        private final LongAdder failedAttempts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder deadLettered = new LongAdder();
+        private final LongAdder failedOver = new LongAdder();
+        private final LongAdder totalLatencyMillis = new LongAdder();
+        private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+        private void recordLatency(long millis) {
+            totalLatencyMillis.add(millis);
+            maxLatencyMillis.accumulateAndGet(millis, Math::max);
+        }
+
+        private Map<String, Object> snapshot() {
+            long deliveredCount = delivered.sum();
+            long attempts = deliveredCount + failedAttempts.sum();
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("enqueued", enqueued.sum());
+            snapshot.put("delivered", deliveredCount);
+            snapshot.put("failedAttempts", failedAttempts.sum());
+            snapshot.put("retries", retries.sum());
+            snapshot.put("rejected", rejected.sum());
+            snapshot.put("deadLettered", deadLettered.sum());
+            snapshot.put("failedOver", failedOver.sum());
+            snapshot.put("failureRate", attempts == 0 ? 0.0 : (double) failedAttempts.sum() / attempts);
+            snapshot.put("avgLatencyMillis", deliveredCount == 0 ? 0.0 : (double) totalLatencyMillis.sum() / deliveredCount);
+            snapshot.put("maxLatencyMillis", maxLatencyMillis.get());
+            return snapshot;
+        }
+    }
+}
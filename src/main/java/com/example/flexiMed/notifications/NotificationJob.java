@@ -0,0 +1,46 @@
+package com.example.flexiMed.notifications;
+
+import com.example.flexiMed.controller.NotificationController.AmbulanceNotificationDTO;
+
+import java.util.UUID;
+
+/**
+ * A single notification to be delivered over one channel.
+ * Jobs are immutable and serializable to JSON so that they can be written to the dead-letter store.
+ *
+ * @param id              The unique ID of the job.
+ * @param channel         The channel the job is delivered over.
+ * @param recipient       The channel-specific address: a user ID, a phone number or an email address.
+ * @param recipientName   The display name of the recipient, used by templated channels.
+ * @param payload         The ambulance dispatch details being notified.
+ * @param createdAtMillis The time the job was created, in epoch milliseconds.
+ * @param fallback        The job to deliver instead if this one fails for good, or null. It travels with the job
+ *                        so that whichever node dead-letters the job can fail over.
+ */
+public record NotificationJob(UUID id, NotificationChannel channel, String recipient, String recipientName,
+                              AmbulanceNotificationDTO payload, long createdAtMillis, NotificationJob fallback) {
+
+    /**
+     * Creates a new job with a random ID, timestamped now.
+     *
+     * @param channel       The channel the job is delivered over.
+     * @param recipient     The channel-specific address.
+     * @param recipientName The display name of the recipient.
+     * @param payload       The ambulance dispatch details being notified.
+     * @return The new job.
+     */
+    public static NotificationJob of(NotificationChannel channel, String recipient, String recipientName,
+                                     AmbulanceNotificationDTO payload) {
+        return new NotificationJob(UUID.randomUUID(), channel, recipient, recipientName, payload, System.currentTimeMillis(), null);
+    }
+
+    /**
+     * Returns a copy of this job that fails over to the given job if it is dead-lettered.
+     *
+     * @param fallback The job to deliver instead, or null for none.
+     * @return The job with the fallback.
+     */
+    public NotificationJob withFallback(NotificationJob fallback) {
+        return new NotificationJob(id, channel, recipient, recipientName, payload, createdAtMillis, fallback);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.flexiMed.notifications;
+
+/**
+ * Entry point for submitting notification jobs.
+ * The implementation is selected with {@code notifications.transport}: {@code local} hands jobs straight to the
+ * in-process {@link NotificationDispatcher}, while {@code amqp} publishes them to a durable broker queue so that
+ * they survive a node crash.
+ */
+public interface NotificationPublisher {
+
+    /**
+     * Submits a job for asynchronous delivery. Never throws because of a delivery problem.
+     *
+     * @param job The job to deliver.
+     */
+    void publish(NotificationJob job);
+}
@@ -0,0 +1,283 @@
+package com.example.flexiMed.notifications;
+
+import com.example.flexiMed.cluster.ClusterBus;
+import com.example.flexiMed.controller.NotificationController;
+import com.example.flexiMed.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory table of users with a live WebSocket session subscribed to their notifications, either through the
+ * user destination {@code /user/queue/ambulance} (the user being the session's principal) or the legacy topic
+ * {@code /topic/ambulance/<userId>}. It is maintained from STOMP subscribe, unsubscribe and disconnect events
+ * and lets notification routing decide, without I/O, whether a user can be reached over WebSocket.
+ * <p>
+ * In a multi-node deployment a user's session may be on another node than the one sending the notification, so
+ * presence is shared over the {@link ClusterBus} as leases: each node announces a user as soon as they come online
+ * and withdraws them when their last subscription goes, and re-announces all its online users every
+ * {@code cluster.presence.refresh-ms}. A lease lapses after three refresh intervals, so users of a node that
+ * crashed, or whose withdrawal was lost, stop counting as online within that time. A user is online if they have a
+ * local subscription or an unexpired lease from another node.
+ */
+@Component
+public class PresenceTable implements MetricsSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceTable.class);
+
+    private static final String PRESENCE_CHANNEL = "fleximed_presence";
+    private static final int LEASE_REFRESHES = 3;
+
+    private static final String USER_DESTINATION = "/user" + NotificationController.USER_QUEUE;
+    private static final String USER_TOPIC_PREFIX = "/topic/ambulance/";
+
+    /**
+     * Notification subscriptions per STOMP session: session ID to subscription ID to user ID.
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, UUID>> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Number of live subscriptions per user.
+     */
+    private final ConcurrentHashMap<UUID, Integer> subscriptionCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Users online on other nodes: user ID to node ID to the epoch millisecond the node's lease lapses.
+     */
+    private final ConcurrentHashMap<UUID, ConcurrentHashMap<String, Long>> remoteLeases = new ConcurrentHashMap<>();
+
+    private final ClusterBus clusterBus;
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final long leaseMillis;
+    private final ScheduledExecutorService refresher;
+
+    private final LongAdder leasesSent = new LongAdder();
+    private final LongAdder leasesReceived = new LongAdder();
+
+    /**
+     * Constructs a PresenceTable and, in a multi-node deployment, starts sharing presence with the other nodes.
+     *
+     * @param clusterBus    The bus sharing presence with the other nodes.
+     * @param refreshMillis How often this node re-announces its online users.
+     */
+    public PresenceTable(ClusterBus clusterBus, @Value("${cluster.presence.refresh-ms:10000}") long refreshMillis) {
+        this.clusterBus = clusterBus;
+        this.leaseMillis = refreshMillis * LEASE_REFRESHES;
+        if (clusterBus.isDistributed()) {
+            clusterBus.subscribe(PRESENCE_CHANNEL, this::receiveLeases);
+            this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "presence-refresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.refresher = null;
+        }
+    }
+
+    /**
+     * Checks whether the user currently has at least one live WebSocket subscription to their notifications, on
+     * this node or another.
+     *
+     * @param userId The ID of the user.
+     * @return True if the user is online.
+     */
+    public boolean isOnline(UUID userId) {
+        if (userId == null) {
+            return false;
+        }
+        if (subscriptionCounts.containsKey(userId)) {
+            return true;
+        }
+        Map<String, Long> leases = remoteLeases.get(userId);
+        if (leases == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        return leases.values().stream().anyMatch(lapsesAt -> lapsesAt > now);
+    }
+
+    /**
+     * Records a subscription to a user's notifications.
+     *
+     * @param event The STOMP subscribe event.
+     */
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        UUID userId = parseSubscription(accessor.getDestination(), event.getUser());
+        if (userId == null || accessor.getSessionId() == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        UUID previous = sessions.computeIfAbsent(accessor.getSessionId(), id -> new ConcurrentHashMap<>())
+                .put(accessor.getSubscriptionId(), userId);
+        if (previous == null && subscriptionCounts.merge(userId, 1, Integer::sum) == 1) {
+            announce(List.of(userId), System.currentTimeMillis() + leaseMillis);
+        }
+    }
+
+    /**
+     * Removes a subscription to a user's notifications.
+     *
+     * @param event The STOMP unsubscribe event.
+     */
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, UUID> subscriptions = accessor.getSessionId() == null ? null : sessions.get(accessor.getSessionId());
+        if (subscriptions != null && accessor.getSubscriptionId() != null) {
+            release(subscriptions.remove(accessor.getSubscriptionId()));
+        }
+    }
+
+    /**
+     * Removes every subscription of a closed session.
+     *
+     * @param event The STOMP disconnect event.
+     */
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, UUID> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    private void release(UUID userId) {
+        if (userId != null
+                && subscriptionCounts.computeIfPresent(userId, (id, count) -> count > 1 ? count - 1 : null) == null) {
+            announce(List.of(userId), 0);
+        }
+    }
+
+    /**
+     * Re-announces every local online user and drops the lapsed leases of other nodes.
+     */
+    private void refresh() {
+        try {
+            announce(subscriptionCounts.keySet(), System.currentTimeMillis() + leaseMillis);
+            long now = System.currentTimeMillis();
+            remoteLeases.forEach((userId, leases) -> {
+                leases.values().removeIf(lapsesAt -> lapsesAt <= now);
+                if (leases.isEmpty()) {
+                    remoteLeases.remove(userId, leases);
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.error("Failed to refresh presence leases", e);
+        }
+    }
+
+    /**
+     * Publishes leases for the users to the other nodes, as a "nodeId,lapsesAt" line followed by one user ID per
+     * line, split into messages that fit the bus's payload limit. A lease lapsing at 0 withdraws the users.
+     */
+    private void announce(Collection<UUID> userIds, long lapsesAt) {
+        if (!clusterBus.isDistributed() || userIds.isEmpty()) {
+            return;
+        }
+        String header = nodeId + "," + lapsesAt + "\n";
+        StringBuilder message = new StringBuilder(header);
+        for (UUID userId : userIds) {
+            String line = userId + "\n";
+            if (message.length() + line.length() > clusterBus.maxPayloadBytes() && message.length() > header.length()) {
+                clusterBus.publish(PRESENCE_CHANNEL, message.toString());
+                message.setLength(0);
+                message.append(header);
+            }
+            message.append(line);
+            leasesSent.increment();
+        }
+        clusterBus.publish(PRESENCE_CHANNEL, message.toString());
+    }
+
+    private void receiveLeases(String message) {
+        String[] lines = message.split("\n");
+        String[] header = lines[0].split(",");
+        if (header.length != 2) {
+            return;
+        }
+        String node = header[0];
+        long lapsesAt = Long.parseLong(header[1]);
+        for (int i = 1; i < lines.length; i++) {
+            UUID userId = UUID.fromString(lines[i]);
+            leasesReceived.increment();
+            if (lapsesAt == 0) {
+                remoteLeases.computeIfPresent(userId, (id, leases) -> {
+                    leases.remove(node);
+                    return leases.isEmpty() ? null : leases;
+                });
+            } else {
+                remoteLeases.computeIfAbsent(userId, id -> new ConcurrentHashMap<>()).put(node, lapsesAt);
+            }
+        }
+    }
+
+    /**
+     * Stops re-announcing this node's users; their leases lapse on the other nodes.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Resolves the user whose notifications a subscription receives, or null if it is not a notification subscription.
+     */
+    private UUID parseSubscription(String destination, Principal user) {
+        String userId;
+        if (USER_DESTINATION.equals(destination)) {
+            userId = user == null ? null : user.getName();
+        } else if (destination != null && destination.startsWith(USER_TOPIC_PREFIX)) {
+            userId = destination.substring(USER_TOPIC_PREFIX.length());
+        } else {
+            return null;
+        }
+        if (userId == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(userId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "presence";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sessions", sessions.size());
+        metrics.put("onlineUsers", subscriptionCounts.size());
+        metrics.put("remoteUsers", remoteLeases.size());
+        metrics.put("leasesSent", leasesSent.sum());
+        metrics.put("leasesReceived", leasesReceived.sum());
+        return metrics;
+    }
+}
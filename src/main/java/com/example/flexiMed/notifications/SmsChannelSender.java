@@ -0,0 +1,49 @@
+package com.example.flexiMed.notifications;
+
+import com.example.flexiMed.notifications.sms.SMSService;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Delivers notifications as text messages. The recipient is a phone number.
+ * Jobs are handed to the {@link SMSService}'s own rate-limited pool, so a notification worker never waits for
+ * the provider and the SMS pool alone bounds how many messages are sent in parallel.
+ */
+@Component
+public class SmsChannelSender implements ChannelSender {
+
+    private final SMSService smsService;
+
+    /**
+     * Constructs an SmsChannelSender.
+     *
+     * @param smsService The service used to send text messages.
+     */
+    public SmsChannelSender(SMSService smsService) {
+        this.smsService = smsService;
+    }
+
+    @Override
+    public NotificationChannel channel() {
+        return NotificationChannel.SMS;
+    }
+
+    @Override
+    public void send(NotificationJob job) {
+        smsService.sendSms(job.recipient(), message(job));
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(NotificationJob job) {
+        return smsService.sendAsync(job.recipient(), message(job));
+    }
+
+    private static String message(NotificationJob job) {
+        String message = job.payload().getMessage();
+        if (job.payload().getEta() != null) {
+            message += " ETA: " + job.payload().getEta() + ".";
+        }
+        return message;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.flexiMed.notifications;
+
+import com.example.flexiMed.controller.NotificationController;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Delivers notifications to a user's WebSocket sessions. The recipient is the user's ID.
+ */
+@Component
+public class WebSocketChannelSender implements ChannelSender {
+
+    private final NotificationController notificationController;
+
+    /**
+     * Constructs a WebSocketChannelSender.
+     *
+     * @param notificationController The controller that publishes to the user's destination.
+     */
+    public WebSocketChannelSender(NotificationController notificationController) {
+        this.notificationController = notificationController;
+    }
+
+    @Override
+    public NotificationChannel channel() {
+        return NotificationChannel.WEBSOCKET;
+    }
+
+    @Override
+    public void send(NotificationJob job) {
+        notificationController.sendAmbulanceDispatchedNotification(UUID.fromString(job.recipient()), job.payload());
+    }
+}
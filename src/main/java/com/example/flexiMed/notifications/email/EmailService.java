@@ -1,9 +1,13 @@
 package com.example.flexiMed.notifications.email;
 
+import com.example.flexiMed.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
 import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
 import jakarta.mail.internet.MimeMessage;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 import org.thymeleaf.TemplateEngine;
@@ -12,13 +16,32 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Service class for sending emails using Spring Mail and Thymeleaf templates.
  * This class handles email sending with HTML content generated from Thymeleaf templates.
+ * Messages are queued and sent in batches by a fixed set of sender threads, each keeping its own authenticated
+ * SMTP connection open between batches, so the connect, TLS and login round trips are paid once per connection
+ * rather than once per message. Templates listed in {@code email.prerendered-templates} are rendered from
+ * pre-computed static segments.
  */
 @Service
-public class EmailService {
+public class EmailService implements MetricsSource {
 
     private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
 
@@ -31,19 +54,61 @@ public class EmailService {
     @Value("${spring.mail.username}")
     private String fromEmail;
 
+    private final Set<String> prerenderedTemplateNames;
+    private final Map<String, PrerenderedTemplate> prerenderedTemplates = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<OutgoingEmail> queue;
+    private final List<Thread> senders = new ArrayList<>();
+    private final int batchSize;
+    private final long maxIdleMillis;
+    private final long sendTimeoutMillis;
+    private volatile boolean running = true;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder connects = new LongAdder();
+    private final LongAdder prerenderedHits = new LongAdder();
+    private final LongAdder totalSendNanos = new LongAdder();
+
     /**
      * Constructs an EmailService with the provided JavaMailSender and TemplateEngine.
      *
-     * @param mailSender     The JavaMailSender instance used to send emails.
-     * @param templateEngine The TemplateEngine instance used to process Thymeleaf templates.
+     * @param mailSender              The JavaMailSender instance used to create sessions and messages.
+     * @param templateEngine          The TemplateEngine instance used to process Thymeleaf templates.
+     * @param senderThreads           The number of sender threads, and therefore of pooled SMTP connections.
+     * @param queueCapacity           The maximum number of messages waiting to be sent.
+     * @param batchSize               The maximum number of messages sent over one connection in one go.
+     * @param maxIdleMillis           How long a pooled connection may sit idle before it is reopened.
+     * @param sendTimeoutMillis       How long {@link #sendEmail} waits for its message to be sent.
+     * @param prerenderedTemplates    The templates rendered from pre-computed static segments.
      */
-    public EmailService(JavaMailSender mailSender, TemplateEngine templateEngine) {
+    public EmailService(JavaMailSender mailSender, TemplateEngine templateEngine,
+                        @Value("${email.sender-threads:4}") int senderThreads,
+                        @Value("${email.queue-capacity:1000}") int queueCapacity,
+                        @Value("${email.batch-size:20}") int batchSize,
+                        @Value("${email.smtp.max-idle-ms:60000}") long maxIdleMillis,
+                        @Value("${email.send-timeout-ms:30000}") long sendTimeoutMillis,
+                        @Value("${email.prerendered-templates:ambulance-dispatch}") Set<String> prerenderedTemplates) {
         this.mailSender = mailSender;
         this.templateEngine = templateEngine;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxIdleMillis = maxIdleMillis;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        this.prerenderedTemplateNames = prerenderedTemplates;
+
+        for (int i = 1; i <= senderThreads; i++) {
+            Thread sender = new Thread(this::runSender, "email-sender-" + i);
+            sender.setDaemon(true);
+            senders.add(sender);
+            sender.start();
+        }
     }
 
     /**
      * Sends an email with HTML content generated from a Thymeleaf template.
+     * The message is queued for a pooled SMTP connection and this method waits until it has been sent.
      *
      * @param to           The recipient's email address.
      * @param subject      The email subject.
@@ -53,27 +118,190 @@ public class EmailService {
      * @throws IllegalArgumentException If the provided email address is invalid.
      */
     public void sendEmail(String to, String subject, String templateName, Context context) throws MessagingException {
+        try {
+            sendEmailAsync(to, subject, templateName, context).get(sendTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException invalid) {
+                throw invalid;
+            }
+            logger.error("Failed to send email to {}", to, e.getCause());
+            if (e.getCause() instanceof MessagingException messagingException) {
+                throw messagingException;  // Re-throw the exception after logging it
+            }
+            throw new MessagingException("Failed to send email",
+                    e.getCause() instanceof Exception cause ? cause : new Exception(e.getCause()));
+        } catch (TimeoutException e) {
+            throw new MessagingException("Timed out sending email to " + to, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while sending email", e);
+        }
+    }
+
+    /**
+     * Queues an email with HTML content generated from a Thymeleaf template without waiting for it to be sent, so
+     * that callers with their own workers do not hold one per message and queued messages share an SMTP session.
+     *
+     * @param to           The recipient's email address.
+     * @param subject      The email subject.
+     * @param templateName The name of the Thymeleaf template to process.
+     * @param context      The Thymeleaf context containing variables for the template.
+     * @return A future completed once the message has been sent; it fails with an IllegalArgumentException for an
+     * invalid address and with a MessagingException if the message could not be built, queued or sent.
+     */
+    public CompletableFuture<Void> sendEmailAsync(String to, String subject, String templateName, Context context) {
         if (!isValidEmail(to)) {
             logger.error("Invalid email address: {}", to);
-            throw new IllegalArgumentException("Invalid email address");
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid email address"));
         }
 
+        OutgoingEmail email;
         try {
             MimeMessage message = mailSender.createMimeMessage();
             MimeMessageHelper helper = new MimeMessageHelper(message, MimeMessageHelper.MULTIPART_MODE_MIXED, StandardCharsets.UTF_8.name());
 
-            String htmlContent = templateEngine.process(templateName, context);
+            String htmlContent = render(templateName, context);
             helper.setTo(to);
             helper.setSubject(subject);
             helper.setFrom(fromEmail);
             helper.setText(htmlContent, true);
+            message.setSentDate(new Date());
+            message.saveChanges();
+            email = new OutgoingEmail(to, message, new CompletableFuture<>());
+        } catch (MessagingException e) {
+            failed.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        if (!queue.offer(email)) {
+            failed.increment();
+            return CompletableFuture.failedFuture(new MessagingException("Email queue is full, please retry later"));
+        }
+        return email.result;
+    }
+
+    /**
+     * Renders a template, using its pre-rendered segments when the template is registered for pre-rendering.
+     *
+     * @param templateName The name of the Thymeleaf template.
+     * @param context      The context containing variables for the template.
+     * @return The rendered HTML.
+     */
+    private String render(String templateName, Context context) {
+        if (!prerenderedTemplateNames.contains(templateName)) {
+            return templateEngine.process(templateName, context);
+        }
+        Set<String> variables = new TreeSet<>(context.getVariableNames());
+        PrerenderedTemplate template = prerenderedTemplates.computeIfAbsent(templateName + variables,
+                key -> PrerenderedTemplate.compile(templateEngine, templateName, variables));
+        prerenderedHits.increment();
+        return template.render(context);
+    }
+
+    /**
+     * Sender loop: takes queued messages in batches and sends them over this thread's SMTP connection,
+     * reconnecting when the connection has been idle too long or has failed.
+     */
+    private void runSender() {
+        Transport transport = null;
+        long lastUsed = 0;
+        List<OutgoingEmail> batch = new ArrayList<>(batchSize);
+
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+            } catch (InterruptedException e) {
+                break;
+            }
 
-            mailSender.send(message);
-            logger.info("Email sent successfully to {}", to);
+            if (transport != null && System.currentTimeMillis() - lastUsed > maxIdleMillis) {
+                transport = close(transport);  // The server has likely dropped the idle connection
+            }
+
+            batches.increment();
+            for (OutgoingEmail email : batch) {
+                long start = System.nanoTime();
+                try {
+                    transport = send(transport, email);
+                    totalSendNanos.add(System.nanoTime() - start);
+                    sent.increment();
+                    email.result.complete(null);
+                    logger.info("Email sent successfully to {}", email.to);
+                } catch (Exception e) {
+                    failed.increment();
+                    transport = close(transport);
+                    email.result.completeExceptionally(e);
+                }
+            }
+            lastUsed = System.currentTimeMillis();
+            batch.clear();
+        }
+
+        close(transport);
+        OutgoingEmail pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(new MessagingException("Email service is shutting down"));
+        }
+    }
+
+    /**
+     * Sends one message, opening a connection if needed and retrying once on a fresh connection
+     * if the pooled connection turns out to be broken.
+     *
+     * @return The connection to keep using.
+     */
+    private Transport send(Transport transport, OutgoingEmail email) throws MessagingException {
+        boolean reused = transport != null;
+        if (transport == null) {
+            transport = connect();
+        }
+        try {
+            transport.sendMessage(email.message, email.message.getAllRecipients());
+            return transport;
         } catch (MessagingException e) {
-            logger.error("Failed to send email to {}", to, e);
-            throw e;  // Re-throw the exception after logging it
+            if (!reused || transport.isConnected()) {
+                throw e;  // A genuine delivery failure, not a stale connection
+            }
+            close(transport);
+            transport = connect();
+            transport.sendMessage(email.message, email.message.getAllRecipients());
+            return transport;
+        }
+    }
+
+    private Transport connect() throws MessagingException {
+        if (!(mailSender instanceof JavaMailSenderImpl sender)) {
+            throw new MessagingException("Pooled sending requires a JavaMailSenderImpl");
+        }
+        String protocol = sender.getProtocol();
+        if (protocol == null) {
+            protocol = sender.getSession().getProperty("mail.transport.protocol");
         }
+        Transport transport = sender.getSession().getTransport(protocol == null ? "smtp" : protocol);
+        transport.connect(sender.getHost(), sender.getPort(), sender.getUsername(), sender.getPassword());
+        connects.increment();
+        return transport;
+    }
+
+    private Transport close(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                logger.debug("Failed to close SMTP connection: {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stops the sender threads, closing their connections and failing any queued messages.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        senders.forEach(Thread::interrupt);
     }
 
     /**
@@ -86,4 +314,31 @@ public class EmailService {
         // Basic email validation (you can extend this with a regex for better validation)
         return email != null && email.contains("@");
     }
-}
\ No newline at end of file
+
+    @Override
+    public String metricsName() {
+        return "email";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long sentCount = sent.sum();
+        long batchCount = batches.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueDepth", queue.size());
+        metrics.put("sent", sentCount);
+        metrics.put("failed", failed.sum());
+        metrics.put("batches", batchCount);
+        metrics.put("avgBatchSize", batchCount == 0 ? 0.0 : (double) (sentCount + failed.sum()) / batchCount);
+        metrics.put("connects", connects.sum());
+        metrics.put("prerenderedRenders", prerenderedHits.sum());
+        metrics.put("avgSendMillis", sentCount == 0 ? 0.0 : totalSendNanos.sum() / 1_000_000d / sentCount);
+        return metrics;
+    }
+
+    /**
+     * A message waiting for a sender thread, with the future its caller is waiting on.
+     */
+    private record OutgoingEmail(String to, MimeMessage message, CompletableFuture<Void> result) {
+    }
+}
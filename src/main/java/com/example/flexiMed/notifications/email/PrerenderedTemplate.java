@@ -0,0 +1,78 @@
+package com.example.flexiMed.notifications.email;
+
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A Thymeleaf template pre-rendered into static HTML segments separated by variable slots.
+ * The template is processed once with a unique marker in place of every variable; the output is then split on the
+ * markers, so rendering becomes string concatenation of the static segments with the HTML-escaped values.
+ * Only suitable for templates whose variables are plain text substitutions ({@code th:text}), without
+ * conditionals or iteration depending on the variables' values.
+ */
+public class PrerenderedTemplate {
+
+    private static final String MARKER_PREFIX = "@@FLEXIMED_SLOT_";
+    private static final String MARKER_SUFFIX = "@@";
+
+    private final String[] segments;
+    private final String[] slots;
+
+    private PrerenderedTemplate(String[] segments, String[] slots) {
+        this.segments = segments;
+        this.slots = slots;
+    }
+
+    /**
+     * Pre-renders a template for the given variable names.
+     *
+     * @param templateEngine The engine used to process the template once.
+     * @param templateName   The name of the template.
+     * @param variables      The names of the variables the template is rendered with.
+     * @return The pre-rendered template.
+     */
+    public static PrerenderedTemplate compile(TemplateEngine templateEngine, String templateName, Set<String> variables) {
+        Context context = new Context();
+        for (String variable : variables) {
+            context.setVariable(variable, MARKER_PREFIX + variable + MARKER_SUFFIX);
+        }
+        String html = templateEngine.process(templateName, context);
+
+        List<String> segments = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        int position = 0;
+        int start;
+        while ((start = html.indexOf(MARKER_PREFIX, position)) >= 0) {
+            int end = html.indexOf(MARKER_SUFFIX, start + MARKER_PREFIX.length());
+            segments.add(html.substring(position, start));
+            slots.add(html.substring(start + MARKER_PREFIX.length(), end));
+            position = end + MARKER_SUFFIX.length();
+        }
+        segments.add(html.substring(position));
+        return new PrerenderedTemplate(segments.toArray(new String[0]), slots.toArray(new String[0]));
+    }
+
+    /**
+     * Renders the template with the variables of the given context.
+     *
+     * @param context The context holding the variable values.
+     * @return The rendered HTML.
+     */
+    public String render(Context context) {
+        StringBuilder html = new StringBuilder(segments[0].length() * 2);
+        html.append(segments[0]);
+        for (int i = 0; i < slots.length; i++) {
+            Object value = context.getVariable(slots[i]);
+            if (value != null) {
+                html.append(HtmlUtils.htmlEscape(value.toString(), "UTF-8"));
+            }
+            html.append(segments[i + 1]);
+        }
+        return html.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.flexiMed.notifications.sms;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process SMS transport for local development and load testing.
+ * Messages are not sent anywhere; each send sleeps for a configurable latency to simulate the provider's
+ * round trip, so the throughput of the SMS pipeline can be measured without a provider account.
+ */
+@Component
+@ConditionalOnProperty(name = "sms.transport", havingValue = "fake")
+public class FakeSmsTransport implements SmsTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(FakeSmsTransport.class);
+
+    private final long latencyMillis;
+    private final LongAdder sent = new LongAdder();
+
+    /**
+     * Constructs a FakeSmsTransport.
+     *
+     * @param latencyMillis The simulated provider latency per message, injected from application properties.
+     */
+    public FakeSmsTransport(@Value("${sms.fake.latency-ms:50}") long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public void send(String to, String body) {
+        if (to == null || to.isBlank()) {
+            throw new IllegalArgumentException("Invalid phone number or message format.");
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while sending SMS", e);
+        }
+        sent.increment();
+        logger.debug("Fake SMS to {}: {}", to, body);
+    }
+
+    /**
+     * Returns the number of messages accepted by this transport.
+     *
+     * @return The sent message count.
+     */
+    public long sentCount() {
+        return sent.sum();
+    }
+}
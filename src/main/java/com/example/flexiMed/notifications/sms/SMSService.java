@@ -1,88 +1,226 @@
 package com.example.flexiMed.notifications.sms;
 
-import com.twilio.Twilio;
-import com.twilio.exception.ApiException;
-import com.twilio.exception.AuthenticationException;
-import com.twilio.exception.InvalidRequestException;
-import com.twilio.rest.api.v2010.account.Message;
-import jakarta.annotation.PostConstruct;
+import com.example.flexiMed.utils.MetricsSource;
+import com.example.flexiMed.utils.PhoneUtils;
+import com.example.flexiMed.utils.TokenBucket;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
- * Service class for sending SMS messages using the Twilio API.
- * This class handles Twilio initialization and provides a method to send SMS messages.
+ * Service class for sending SMS messages through the configured {@link SmsTransport}.
+ * Messages are sent in parallel on a bounded worker pool, throttled by a token bucket matching the provider's
+ * throughput, and identical messages to the same number within the coalescing window are sent only once.
  */
 @Service
-public class SMSService {
+public class SMSService implements MetricsSource {
 
     private static final Logger logger = LoggerFactory.getLogger(SMSService.class);
 
-    /**
-     * Twilio Account SID, injected from application properties.
-     */
-    @Value("${twilio.account.sid}")
-    private String accountSid;
+    private final SmsTransport transport;
+    private final TokenBucket rateLimiter;
+    private final ThreadPoolExecutor workers;
+    private final long coalesceWindowNanos;
+    private final long sendTimeoutMillis;
 
     /**
-     * Twilio Auth Token, injected from application properties.
+     * Messages sent or being sent within the coalescing window, keyed by normalized number and body.
      */
-    @Value("${twilio.auth.token}")
-    private String authToken;
+    private final ConcurrentHashMap<String, Coalesced> recent = new ConcurrentHashMap<>();
 
-    /**
-     * Twilio phone number used to send SMS, injected from application properties.
-     */
-    @Value("${twilio.phone.number}")
-    private String twilioNumber;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder rateLimitWaitNanos = new LongAdder();
+    private final LongAdder totalSendNanos = new LongAdder();
+    private final AtomicLong maxSendNanos = new AtomicLong();
 
     /**
-     * Initializes the Twilio client after all properties have been injected.
-     * This method is called by Spring after dependency injection is complete.
+     * Constructs an SMSService.
+     *
+     * @param transport           The transport messages are handed to.
+     * @param threads             The number of concurrent sends.
+     * @param queueCapacity       The maximum number of messages waiting for a worker.
+     * @param ratePerSecond       The sustained number of messages per second allowed by the provider.
+     * @param burst               The number of messages that may be sent at once before throttling starts.
+     * @param coalesceWindowMs    The window in which identical messages to the same number are sent once.
+     * @param sendTimeoutMs       How long {@link #sendSms(String, String)} waits for a message to be sent.
      */
-    @PostConstruct
-    public void init() {
-        Twilio.init(accountSid, authToken);
-        logger.info("Twilio initialized.");
+    public SMSService(SmsTransport transport,
+                      @Value("${sms.threads:16}") int threads,
+                      @Value("${sms.queue-capacity:1000}") int queueCapacity,
+                      @Value("${sms.rate-per-second:10}") double ratePerSecond,
+                      @Value("${sms.burst:10}") double burst,
+                      @Value("${sms.coalesce-window-ms:30000}") long coalesceWindowMs,
+                      @Value("${sms.send-timeout-ms:30000}") long sendTimeoutMs) {
+        this.transport = transport;
+        this.rateLimiter = new TokenBucket(burst, ratePerSecond);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "sms-sender-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.coalesceWindowNanos = TimeUnit.MILLISECONDS.toNanos(coalesceWindowMs);
+        this.sendTimeoutMillis = sendTimeoutMs;
     }
 
     /**
-     * Sends an SMS message to the specified phone number.
+     * Sends an SMS message to the specified phone number and waits until it has been handed to the provider.
      *
      * @param to      The recipient's phone number (in E.164 format).
      * @param message The message body to send.
-     * @throws RuntimeException      If an authentication error occurs with Twilio.
      * @throws IllegalArgumentException If an invalid phone number or message format is provided.
-     * @throws RuntimeException      If an API error occurs with Twilio.
-     * @throws RuntimeException      If any unexpected error occurs during SMS sending.
+     * @throws RuntimeException         If the provider fails, the send times out or the sender is saturated.
      */
     public void sendSms(String to, String message) {
         try {
-            // Send the SMS
-            Message sms = Message.creator(
-                    new com.twilio.type.PhoneNumber(to),
-                    new com.twilio.type.PhoneNumber(twilioNumber),
-                    message
-            ).create();
-            logger.info("SMS sent successfully to {}: {}", to, message);
-        } catch (AuthenticationException e) {
-            // Handle authentication errors (invalid SID or token)
-            logger.error("Authentication error with Twilio - Invalid SID or token: {}", e.getMessage());
-            throw new RuntimeException("Authentication error with Twilio. Please check your credentials.", e);
-        } catch (InvalidRequestException e) {
-            // Handle invalid arguments (e.g., wrong phone number format)
-            logger.error("Invalid argument error while sending SMS: {}", e.getMessage());
-            throw new IllegalArgumentException("Invalid phone number or message format.", e);
-        } catch (ApiException e) {
-            // Handle API errors (e.g., quota exceeded, service down)
-            logger.error("API error sending SMS to {}: {}", to, e.getMessage());
-            throw new RuntimeException("API error with Twilio while sending SMS. Please try again later.", e);
+            sendAsync(to, message).get(sendTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("Unexpected error sending SMS. Please contact support.", e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Timed out sending SMS to " + to, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while sending SMS", e);
+        }
+    }
+
+    /**
+     * Queues an SMS message for sending. If an identical message to the same number was sent successfully or is
+     * still being sent within the coalescing window, the existing send is returned instead of sending again.
+     *
+     * @param to      The recipient's phone number (in E.164 format).
+     * @param message The message body to send.
+     * @return A future completed once the message has been handed to the provider.
+     */
+    public CompletableFuture<Void> sendAsync(String to, String message) {
+        submitted.increment();
+        String normalized = PhoneUtils.normalize(to);
+        if (normalized == null) {
+            failed.increment();
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid phone number or message format."));
+        }
+
+        String key = normalized + '\n' + message;
+        long now = System.nanoTime();
+        Coalesced[] created = new Coalesced[1];
+        Coalesced entry = recent.compute(key, (k, existing) -> {
+            if (existing != null && now - existing.createdAtNanos < coalesceWindowNanos
+                    && !existing.future.isCompletedExceptionally()) {
+                return existing;
+            }
+            created[0] = new Coalesced(new CompletableFuture<>(), now);
+            return created[0];
+        });
+
+        if (created[0] == null) {
+            coalesced.increment();
+            return entry.future;
+        }
+
+        try {
+            workers.execute(() -> deliver(to, message, entry.future));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            recent.remove(key, entry);
+            entry.future.completeExceptionally(new RuntimeException("SMS sender is saturated, please retry later.", e));
+        }
+        return entry.future;
+    }
+
+    /**
+     * Sends a message on a worker thread once the rate limiter allows it.
+     */
+    private void deliver(String to, String message, CompletableFuture<Void> future) {
+        try {
+            rateLimitWaitNanos.add(rateLimiter.acquire());
+            long start = System.nanoTime();
+            transport.send(to, message);
+            long elapsed = System.nanoTime() - start;
+            totalSendNanos.add(elapsed);
+            maxSendNanos.accumulateAndGet(elapsed, Math::max);
+            sent.increment();
+            logger.info("SMS sent successfully to {}", to);
+            future.complete(null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.increment();
+            future.completeExceptionally(new RuntimeException("Interrupted while sending SMS", e));
         } catch (Exception e) {
-            // Catch any unexpected errors
-            logger.error("Unexpected error while sending SMS to {}: {}", to, e.getMessage());
-            throw new RuntimeException("Unexpected error sending SMS. Please contact support.", e);
+            failed.increment();
+            future.completeExceptionally(e instanceof RuntimeException ? e : new CompletionException(e));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Periodically drops coalescing entries older than the window.
+     */
+    @Scheduled(fixedDelayString = "${sms.coalesce-window-ms:30000}")
+    public void purgeCoalescingWindow() {
+        long now = System.nanoTime();
+        recent.values().removeIf(entry -> entry.future.isDone() && now - entry.createdAtNanos >= coalesceWindowNanos);
+    }
+
+    /**
+     * Stops the sender threads when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    @Override
+    public String metricsName() {
+        return "sms";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long sentCount = sent.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("transport", transport.getClass().getSimpleName());
+        metrics.put("submitted", submitted.sum());
+        metrics.put("coalesced", coalesced.sum());
+        metrics.put("sent", sentCount);
+        metrics.put("failed", failed.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("queueDepth", workers.getQueue().size());
+        metrics.put("rateLimitWaitMillis", rateLimitWaitNanos.sum() / 1_000_000);
+        metrics.put("avgSendMillis", sentCount == 0 ? 0.0 : totalSendNanos.sum() / 1_000_000d / sentCount);
+        metrics.put("maxSendMillis", maxSendNanos.get() / 1_000_000d);
+        return metrics;
+    }
+
+    /**
+     * A message sent or being sent within the coalescing window.
+     */
+    private record Coalesced(CompletableFuture<Void> future, long createdAtNanos) {
+    }
+}
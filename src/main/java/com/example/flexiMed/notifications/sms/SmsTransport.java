@@ -0,0 +1,18 @@
+package com.example.flexiMed.notifications.sms;
+
+/**
+ * Transport that hands a single text message to an SMS provider.
+ * Implementations are selected with {@code sms.transport}: {@code twilio} (default) or {@code fake}.
+ */
+public interface SmsTransport {
+
+    /**
+     * Sends a text message.
+     *
+     * @param to   The recipient's phone number (in E.164 format).
+     * @param body The message body.
+     * @throws IllegalArgumentException if the number or message is invalid and can never be delivered.
+     * @throws RuntimeException         if the provider failed and the send may succeed on a retry.
+     */
+    void send(String to, String body);
+}
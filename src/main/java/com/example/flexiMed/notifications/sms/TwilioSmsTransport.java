@@ -0,0 +1,61 @@
+package com.example.flexiMed.notifications.sms;
+
+import com.twilio.exception.ApiException;
+import com.twilio.exception.AuthenticationException;
+import com.twilio.exception.InvalidRequestException;
+import com.twilio.http.TwilioRestClient;
+import com.twilio.rest.api.v2010.account.Message;
+import com.twilio.type.PhoneNumber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * SMS transport backed by the Twilio REST API.
+ * It owns its own {@link TwilioRestClient} instead of relying on the global {@code Twilio.init} state,
+ * so the credentials are scoped to this bean and the client's HTTP connections are reused across sends.
+ */
+@Component
+@ConditionalOnProperty(name = "sms.transport", havingValue = "twilio", matchIfMissing = true)
+public class TwilioSmsTransport implements SmsTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwilioSmsTransport.class);
+
+    private final TwilioRestClient client;
+    private final PhoneNumber from;
+
+    /**
+     * Constructs a TwilioSmsTransport.
+     *
+     * @param accountSid   The Twilio Account SID, injected from application properties.
+     * @param authToken    The Twilio Auth Token, injected from application properties.
+     * @param twilioNumber The Twilio phone number used to send SMS, injected from application properties.
+     */
+    public TwilioSmsTransport(@Value("${twilio.account.sid}") String accountSid,
+                              @Value("${twilio.auth.token}") String authToken,
+                              @Value("${twilio.phone.number}") String twilioNumber) {
+        this.client = new TwilioRestClient.Builder(accountSid, authToken).build();
+        this.from = new PhoneNumber(twilioNumber);
+    }
+
+    @Override
+    public void send(String to, String body) {
+        try {
+            Message.creator(new PhoneNumber(to), from, body).create(client);
+        } catch (AuthenticationException e) {
+            // Handle authentication errors (invalid SID or token)
+            logger.error("Authentication error with Twilio - Invalid SID or token: {}", e.getMessage());
+            throw new RuntimeException("Authentication error with Twilio. Please check your credentials.", e);
+        } catch (InvalidRequestException e) {
+            // Handle invalid arguments (e.g., wrong phone number format)
+            logger.error("Invalid argument error while sending SMS: {}", e.getMessage());
+            throw new IllegalArgumentException("Invalid phone number or message format.", e);
+        } catch (ApiException e) {
+            // Handle API errors (e.g., quota exceeded, service down)
+            logger.error("API error sending SMS to {}: {}", to, e.getMessage());
+            throw new RuntimeException("API error with Twilio while sending SMS. Please try again later.", e);
+        }
+    }
+}
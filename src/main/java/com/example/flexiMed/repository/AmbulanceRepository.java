@@ -5,7 +5,6 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 
 /**
@@ -15,13 +14,6 @@ import java.util.UUID;
 @Repository
 public interface AmbulanceRepository extends JpaRepository<AmbulanceEntity, UUID> {
 
-    /**
-     * Finds the first AmbulanceEntity with availability status set to true.
-     *
-     * @return An Optional containing the first available AmbulanceEntity, or an empty Optional if none are found.
-     */
-    Optional<AmbulanceEntity> findFirstByAvailabilityStatusIsTrue();
-
     /**
      * Finds all AmbulanceEntity objects with availability status set to true.
      *
@@ -0,0 +1,57 @@
+package com.example.flexiMed.repository;
+
+import com.example.flexiMed.model.RevokedTokenEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository interface for managing {@link RevokedTokenEntity} objects in the database.
+ * Extends {@link JpaRepository} to provide standard CRUD operations and custom query methods.
+ */
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedTokenEntity, String> {
+
+    /**
+     * Finds all revoked tokens that have not yet expired.
+     *
+     * @param now The current time.
+     * @return A List of RevokedTokenEntity objects whose tokens are still live.
+     */
+    List<RevokedTokenEntity> findByExpiresAtAfter(LocalDateTime now);
+
+    /**
+     * Records a revoked token unless it has already been recorded.
+     * The insert is atomic, so when several requests revoke the same token concurrently, on this node or others,
+     * exactly one of them affects a record.
+     *
+     * @param tokenId   The ID of the revoked token.
+     * @param expiresAt The expiration time of the revoked token.
+     * @param revokedAt The time the token was revoked.
+     * @return The number of inserted records: 1 if this call revoked the token, 0 if it was already revoked.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO revoked_tokens (token_id, expires_at, revoked_at) "
+            + "VALUES (:tokenId, :expiresAt, :revokedAt) ON CONFLICT (token_id) DO NOTHING",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("tokenId") String tokenId, @Param("expiresAt") LocalDateTime expiresAt,
+                       @Param("revokedAt") LocalDateTime revokedAt);
+
+    /**
+     * Deletes all revoked tokens that have already expired.
+     *
+     * @param now The current time.
+     * @return The number of deleted records.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RevokedTokenEntity r WHERE r.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
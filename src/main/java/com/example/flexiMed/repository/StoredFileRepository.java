@@ -0,0 +1,58 @@
+package com.example.flexiMed.repository;
+
+import com.example.flexiMed.model.StoredFileEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository interface for managing {@link StoredFileEntity} objects in the database.
+ * Reference counts are only changed through single-statement updates, so concurrent uploads and releases
+ * of the same file never lose a count.
+ */
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFileEntity, String> {
+
+    /**
+     * Adds a reference to a file, registering the file on its first reference.
+     *
+     * @param contentHash The SHA-256 hash of the file's content.
+     * @param path        The path of the file, relative to the uploads directory.
+     * @param sizeBytes   The size of the file in bytes.
+     * @return The number of affected records.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO stored_files (content_hash, path, size_bytes, ref_count, created_at) "
+            + "VALUES (:contentHash, :path, :sizeBytes, 1, CURRENT_TIMESTAMP) "
+            + "ON CONFLICT (content_hash) DO UPDATE SET ref_count = stored_files.ref_count + 1",
+            nativeQuery = true)
+    int addReference(@Param("contentHash") String contentHash, @Param("path") String path,
+                     @Param("sizeBytes") long sizeBytes);
+
+    /**
+     * Removes a reference to a file.
+     *
+     * @param contentHash The SHA-256 hash of the file's content.
+     * @return The number of affected records.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredFileEntity f SET f.refCount = f.refCount - 1 WHERE f.contentHash = :contentHash "
+            + "AND f.refCount > 0")
+    int removeReference(@Param("contentHash") String contentHash);
+
+    /**
+     * Deletes a file's record if nothing references it anymore.
+     *
+     * @param contentHash The SHA-256 hash of the file's content.
+     * @return The number of deleted records: 1 if the file itself may be deleted.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StoredFileEntity f WHERE f.contentHash = :contentHash AND f.refCount <= 0")
+    int deleteIfUnreferenced(@Param("contentHash") String contentHash);
+}
@@ -0,0 +1,39 @@
+package com.example.flexiMed.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * PasswordEncoder decorator that runs the delegate's hashing on the {@link PasswordHashingExecutor},
+ * so that both registration (encode) and login (matches) are isolated from the request threads.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final PasswordHashingExecutor executor;
+
+    /**
+     * Constructs a BoundedPasswordEncoder.
+     *
+     * @param delegate The encoder performing the actual hashing.
+     * @param executor The bounded executor the hashing runs on.
+     */
+    public BoundedPasswordEncoder(PasswordEncoder delegate, PasswordHashingExecutor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return executor.execute(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return executor.execute(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);  // Only inspects the hash prefix, no hashing involved
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.flexiMed.security;
 
 import com.example.flexiMed.service.UserService;
+import io.jsonwebtoken.Claims;
 import io.micrometer.common.lang.NonNull;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -21,6 +22,7 @@ import java.io.IOException;
  * This class is a filter that intercepts incoming HTTP requests and validates JWT tokens.
  * It checks the Authorization header for a valid JWT token, extracts the username,
  * and validates the token before setting the user authentication in the Spring Security context.
+ * In stateless mode, access tokens carrying user ID and role claims are authenticated without touching the database.
  */
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
@@ -29,17 +31,27 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;  // Utility for handling JWT token operations
     private final UserService userService;  // Service for loading user details from the database
+    private final PrincipalCache principalCache;  // Cache of authenticated principals keyed by subject
+    private final boolean statelessAuth;  // Whether principals are built from token claims instead of the database
+    private final TokenRevocationService tokenRevocationService;  // Registry of revoked (logged out) tokens
 
     /**
      * Constructor for JwtAuthenticationFilter.
-     * Initializes the filter with the JwtUtil and UserService dependencies.
+     * Initializes the filter with the JwtUtil, UserService and PrincipalCache dependencies.
      *
-     * @param jwtUtil      The utility class for generating and validating JWT tokens.
-     * @param userService  The service for retrieving user details by username.
+     * @param jwtUtil        The utility class for generating and validating JWT tokens.
+     * @param userService    The service for retrieving user details by username.
+     * @param principalCache The cache of principals, consulted before falling back to the database.
+     * @param statelessAuth  Whether to authenticate tokens carrying user ID and role claims without loading the user.
+     * @param tokenRevocationService The registry used to reject revoked tokens.
      */
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserService userService) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserService userService, PrincipalCache principalCache,
+                                   boolean statelessAuth, TokenRevocationService tokenRevocationService) {
         this.jwtUtil = jwtUtil;
         this.userService = userService;
+        this.principalCache = principalCache;
+        this.statelessAuth = statelessAuth;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     /**
@@ -93,25 +105,38 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         // Extract the token from the "Bearer " prefix
         String token = authorizationHeader.substring(7);
-        String username;
+        Claims claims;
 
         try {
-            // Extract the username (subject) from the JWT token
-            username = jwtUtil.extractUsername(token);
+            // Verify the token once; the verified claims are reused for every check below
+            claims = jwtUtil.verifyToken(token);
         } catch (Exception e) {
-            // Log error if there's an issue extracting the username from the token
+            // Log error if the token is malformed, tampered with or expired
             logger.error("Error extracting username from token: {}", e.getMessage());
             chain.doFilter(request, response);  // Continue the filter chain
             return;
         }
 
+        // Reject tokens that have been revoked (e.g. on logout)
+        if (tokenRevocationService.isRevoked(claims.getId())) {
+            logger.warn("Revoked token presented for request: {}", request.getRequestURI());
+            chain.doFilter(request, response);
+            return;
+        }
+        String username = claims.getSubject();
+
         // Check if the username exists and the user is not already authenticated in the security context
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            // Load the user details from the database
-            UserDetails userDetails = userService.loadUserByUsername(username);
+            // In stateless mode, build the principal purely from the verified claims; tokens issued without
+            // user ID and role claims fall back to loading the user
+            UserDetails userDetails = statelessAuth ? jwtUtil.toPrincipal(claims) : null;
+            if (userDetails == null) {
+                // Load the user details from the principal cache, hitting the database only on a miss
+                userDetails = principalCache.get(username, userService::loadUserByUsername);
+            }
 
-            // Validate the JWT token
-            if (jwtUtil.validateToken(token, userDetails)) {
+            // Validate the verified claims against the loaded user
+            if (jwtUtil.validateClaims(claims, userDetails)) {
                 // If the token is valid, create an Authentication object and set it in the security context
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
@@ -0,0 +1,37 @@
+package com.example.flexiMed.security;
+
+import com.example.flexiMed.enums.Role;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Principal built purely from the verified claims of a stateless access token.
+ * It carries just enough identity (user ID, email and role) to authorise a request without loading the user
+ * from the database; the authorities mirror those of {@link com.example.flexiMed.model.UserEntity}.
+ *
+ * @param userId The unique identifier of the user.
+ * @param email  The email of the user, used as the username.
+ * @param role   The role of the user.
+ */
+public record JwtPrincipal(UUID userId, String email, Role role) implements UserDetails {
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+}
@@ -1,6 +1,12 @@
 package com.example.flexiMed.security;
 
+import com.example.flexiMed.enums.Role;
+import com.example.flexiMed.model.UserEntity;
+import com.example.flexiMed.utils.ExpiringCache;
+import com.example.flexiMed.utils.MetricsSource;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -9,46 +15,186 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 /**
  * Utility class for handling JWT (JSON Web Token) operations.
  * This class provides methods for generating, validating, and extracting information from JWT tokens.
+ * Tokens are parsed with a single shared parser, and the claims of already-verified tokens are cached
+ * (keyed by a SHA-256 hash of the token) until the token expires, so repeat requests skip signature verification.
+ * Access tokens are short-lived and carry the user ID and role so that requests can be authenticated statelessly;
+ * long-lived refresh tokens are exchanged for new access tokens against the database.
  */
 @Component
-public class JwtUtil {
+public class JwtUtil implements MetricsSource {
+
+    public static final String CLAIM_USER_ID = "uid"; // Claim holding the user's ID
+    public static final String CLAIM_ROLE = "role"; // Claim holding the user's role
+    public static final String CLAIM_TYPE = "typ"; // Claim distinguishing access tokens from refresh tokens
+    public static final String TYPE_ACCESS = "access";
+    public static final String TYPE_REFRESH = "refresh";
 
     private final Key key; // Secret key for signing and verifying JWT tokens
+    private final Duration accessTokenTtl; // Lifetime of access tokens
+    private final Duration refreshTokenTtl; // Lifetime of refresh tokens
+    private final JwtParser parser; // Thread-safe parser built once and reused for every token
+    private final ExpiringCache<String, Claims> verifiedTokens; // Claims of verified tokens, keyed by token hash
+    private final LongAdder signatureVerifications = new LongAdder(); // Number of full parse-and-verify operations
 
     /**
      * Constructor that initializes the JwtUtil class with a secret key for signing JWT tokens.
      *
-     * @param secretKey The secret key used for signing JWT tokens, injected from application properties.
+     * @param secretKey           The secret key used for signing JWT tokens, injected from application properties.
+     * @param verifiedCacheSize   The maximum number of verified tokens kept in memory, injected from application properties.
+     * @param accessTokenMinutes  The lifetime of access tokens in minutes, injected from application properties.
+     * @param refreshTokenDays    The lifetime of refresh tokens in days, injected from application properties.
      */
-    public JwtUtil(@Value("${jwt.secret}") String secretKey) {
+    public JwtUtil(@Value("${jwt.secret}") String secretKey,
+                   @Value("${jwt.verified-cache.max-size:10000}") int verifiedCacheSize,
+                   @Value("${jwt.access-token.ttl-minutes:15}") long accessTokenMinutes,
+                   @Value("${jwt.refresh-token.ttl-days:7}") long refreshTokenDays) {
         byte[] keyBytes = Decoders.BASE64.decode(secretKey); // Decode the Base64-encoded secret key
         this.key = Keys.hmacShaKeyFor(keyBytes); // Generate the key using HMAC SHA algorithm
+        this.accessTokenTtl = Duration.ofMinutes(accessTokenMinutes);
+        this.refreshTokenTtl = Duration.ofDays(refreshTokenDays);
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.verifiedTokens = new ExpiringCache<>(verifiedCacheSize, Duration.ZERO);
     }
 
     /**
-     * Generates a JWT token based on the provided Authentication object.
-     * The token is signed with a secret key and includes user information such as username, issue date, and expiration.
+     * Generates a JWT access token based on the provided Authentication object.
+     * The token is signed with a secret key and includes the username, issue date and expiration.
+     * When the principal is a {@link UserEntity}, the user's ID and role are embedded as claims so that
+     * the token can later be authenticated without a database lookup.
      *
      * @param authentication The Authentication object containing the user's details (username).
      * @return The generated JWT token as a string.
      */
     public String generateToken(Authentication authentication) {
         UserDetails userDetails = (UserDetails) authentication.getPrincipal(); // Get user details from authentication
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(userDetails.getUsername()) // Set the subject of the token (usually the username)
-                .setIssuedAt(new Date()) // Set the issue date of the token
-                .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10)) // Set the expiration time (10 hours)
+                .claim(CLAIM_TYPE, TYPE_ACCESS);
+        if (userDetails instanceof UserEntity user) {
+            builder.claim(CLAIM_USER_ID, user.getUserId().toString()) // Embed the identity needed for stateless auth
+                    .claim(CLAIM_ROLE, user.getRole().name());
+        }
+        return sign(builder, accessTokenTtl);
+    }
+
+    /**
+     * Generates a long-lived refresh token for the given user.
+     * Refresh tokens cannot authenticate API calls; they are only exchanged for new access tokens.
+     *
+     * @param user The user the token is issued to.
+     * @return The generated refresh token as a string.
+     */
+    public String generateRefreshToken(UserEntity user) {
+        JwtBuilder builder = Jwts.builder()
+                .setSubject(user.getUsername())
+                .claim(CLAIM_TYPE, TYPE_REFRESH)
+                .claim(CLAIM_USER_ID, user.getUserId().toString());
+        return sign(builder, refreshTokenTtl);
+    }
+
+    /**
+     * Sets a unique token ID, used for revocation, and the issue and expiration dates on a token and signs it.
+     *
+     * @param builder The token builder holding the subject and claims.
+     * @param ttl     The lifetime of the token.
+     * @return The signed token as a compact string.
+     */
+    private String sign(JwtBuilder builder, Duration ttl) {
+        long now = System.currentTimeMillis();
+        return builder
+                .setId(UUID.randomUUID().toString()) // Set a unique token ID so the token can be revoked
+                .setIssuedAt(new Date(now)) // Set the issue date of the token
+                .setExpiration(new Date(now + ttl.toMillis())) // Set the expiration time
                 .signWith(key) // Sign the token with the secret key
                 .compact(); // Return the token as a compact string
     }
 
+    /**
+     * Builds a principal directly from the verified claims of an access token.
+     *
+     * @param claims The verified claims of the token.
+     * @return The principal, or null if the token is not an access token carrying user ID and role claims.
+     */
+    public JwtPrincipal toPrincipal(Claims claims) {
+        String userId = claims.get(CLAIM_USER_ID, String.class);
+        String role = claims.get(CLAIM_ROLE, String.class);
+        if (!isAccessToken(claims) || userId == null || role == null) {
+            return null;
+        }
+        return new JwtPrincipal(UUID.fromString(userId), claims.getSubject(), Role.valueOf(role));
+    }
+
+    /**
+     * Checks whether the claims belong to an access token. Tokens issued before token types were introduced
+     * carry no type claim and are treated as access tokens.
+     *
+     * @param claims The verified claims of the token.
+     * @return True if the token may be used to authenticate API calls.
+     */
+    public boolean isAccessToken(Claims claims) {
+        return !TYPE_REFRESH.equals(claims.get(CLAIM_TYPE, String.class));
+    }
+
+    /**
+     * Checks whether the claims belong to a refresh token.
+     *
+     * @param claims The verified claims of the token.
+     * @return True if the token is a refresh token.
+     */
+    public boolean isRefreshToken(Claims claims) {
+        return TYPE_REFRESH.equals(claims.get(CLAIM_TYPE, String.class));
+    }
+
+    /**
+     * Returns the lifetime of access tokens.
+     *
+     * @return The access token lifetime.
+     */
+    public Duration getAccessTokenTtl() {
+        return accessTokenTtl;
+    }
+
+    /**
+     * Parses and verifies the JWT token, returning its claims.
+     * The signature is verified at most once per token: verified claims are cached until the token expires.
+     *
+     * @param token The JWT token.
+     * @return The verified claims of the token.
+     * @throws io.jsonwebtoken.JwtException If the token is malformed, has an invalid signature or has expired.
+     */
+    public Claims verifyToken(String token) {
+        String tokenHash = hash(token);
+        Claims claims = verifiedTokens.get(tokenHash);
+        if (claims != null) {
+            return claims;
+        }
+
+        signatureVerifications.increment();
+        claims = parser.parseClaimsJws(token).getBody(); // Verify the signature and extract the claims body
+
+        // Keep the verified claims only until the token itself expires
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            verifiedTokens.put(tokenHash, claims, Duration.ofMillis(expiration.getTime() - System.currentTimeMillis()));
+        }
+        return claims;
+    }
+
     /**
      * Extracts the username (subject) from the JWT token.
      *
@@ -79,12 +225,7 @@ public class JwtUtil {
      * @return The extracted claim value.
      */
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        Claims claims = Jwts.parserBuilder()  // Parse the JWT token
-                .setSigningKey(key) // Use the secret key to verify the token's signature
-                .build()
-                .parseClaimsJws(token) // Parse the JWT and extract claims
-                .getBody(); // Extract the claims body (payload)
-        return claimsResolver.apply(claims); // Apply the claim resolver function to extract the desired claim
+        return claimsResolver.apply(verifyToken(token)); // Apply the claim resolver function to extract the desired claim
     }
 
     /**
@@ -96,16 +237,56 @@ public class JwtUtil {
      * @return True if the token is valid (username matches and token is not expired), false otherwise.
      */
     public boolean validateToken(String token, UserDetails userDetails) {
-        return extractUsername(token).equals(userDetails.getUsername()) && !isTokenExpired(token); // Validate token
+        return validateClaims(verifyToken(token), userDetails); // Validate token
     }
 
     /**
-     * Checks if the JWT token has expired by comparing the expiration date to the current date.
+     * Validates already-verified claims by checking if they belong to an access token, if the subject matches
+     * the provided UserDetails and if the token is not expired.
      *
-     * @param token The JWT token.
+     * @param claims The verified claims of the token.
+     * @param userDetails The UserDetails object containing the user information.
+     * @return True if the subject matches and the token is not expired, false otherwise.
+     */
+    public boolean validateClaims(Claims claims, UserDetails userDetails) {
+        return isAccessToken(claims) && claims.getSubject().equals(userDetails.getUsername()) && !isExpired(claims);
+    }
+
+    /**
+     * Checks if the claims have expired by comparing the expiration date to the current date.
+     *
+     * @param claims The verified claims of the token.
      * @return True if the token is expired, false otherwise.
      */
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date()); // Check if expiration date is in the past
+    private boolean isExpired(Claims claims) {
+        return claims.getExpiration().before(new Date()); // Check if expiration date is in the past
+    }
+
+    /**
+     * Computes the SHA-256 hash of a token, used as the key of the verified-token cache
+     * so that raw bearer tokens are never held in memory.
+     *
+     * @param token The JWT token.
+     * @return The hex-encoded hash of the token.
+     */
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "jwtVerification";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = verifiedTokens.stats();
+        metrics.put("signatureVerifications", signatureVerifications.sum());
+        return metrics;
     }
 }
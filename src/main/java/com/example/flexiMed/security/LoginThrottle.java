@@ -0,0 +1,86 @@
+package com.example.flexiMed.security;
+
+import com.example.flexiMed.exceptions.ErrorResponse;
+import com.example.flexiMed.utils.StripedTokenBuckets;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-client-IP and per-account throttling of authentication attempts.
+ * Each attempt consumes a token from the caller's IP bucket, which bounds credential stuffing from one address.
+ * The target account's bucket is only charged for failed attempts and checked before each attempt, which bounds
+ * guessing against one account from many addresses without letting anyone lock out a user who keeps signing in
+ * successfully.
+ * Buckets are striped, so memory use is fixed regardless of how many distinct IPs or accounts are seen.
+ */
+@Component
+public class LoginThrottle {
+
+    private final StripedTokenBuckets ipBuckets;
+    private final StripedTokenBuckets accountBuckets;
+
+    /**
+     * Constructs a LoginThrottle.
+     *
+     * @param stripes                The number of buckets per key space.
+     * @param ipCapacity             The burst of attempts allowed per IP.
+     * @param ipRefillPerMinute      The sustained attempts per minute allowed per IP.
+     * @param accountCapacity        The burst of attempts allowed per account.
+     * @param accountRefillPerMinute The sustained attempts per minute allowed per account.
+     */
+    public LoginThrottle(@Value("${security.login-throttle.stripes:4096}") int stripes,
+                         @Value("${security.login-throttle.ip.capacity:20}") double ipCapacity,
+                         @Value("${security.login-throttle.ip.refill-per-minute:20}") double ipRefillPerMinute,
+                         @Value("${security.login-throttle.account.capacity:5}") double accountCapacity,
+                         @Value("${security.login-throttle.account.refill-per-minute:5}") double accountRefillPerMinute) {
+        this.ipBuckets = new StripedTokenBuckets(stripes, ipCapacity, ipRefillPerMinute / 60);
+        this.accountBuckets = new StripedTokenBuckets(stripes, accountCapacity, accountRefillPerMinute / 60);
+    }
+
+    /**
+     * Records an authentication attempt from the given IP.
+     *
+     * @param ip The client IP address.
+     * @throws ErrorResponse.TooManyRequestsException if the IP has exceeded its rate.
+     */
+    public void checkIp(String ip) {
+        reject(ipBuckets.tryConsume(ip));
+    }
+
+    /**
+     * Records an authentication attempt from the given IP against the given account.
+     * The account's budget is only checked here; it is charged by {@link #recordFailure(String)}.
+     *
+     * @param ip      The client IP address.
+     * @param account The account (email) being authenticated.
+     * @throws ErrorResponse.TooManyRequestsException if the IP has exceeded its rate or the account has
+     *                                                exceeded its rate of failed attempts.
+     */
+    public void checkLogin(String ip, String account) {
+        checkIp(ip);
+        if (account != null) {
+            reject(accountBuckets.peek(account.toLowerCase(Locale.ROOT)));
+        }
+    }
+
+    /**
+     * Charges a failed authentication attempt to the given account.
+     *
+     * @param account The account (email) whose authentication failed.
+     */
+    public void recordFailure(String account) {
+        if (account != null) {
+            accountBuckets.tryConsume(account.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private void reject(long waitNanos) {
+        if (waitNanos > 0) {
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            throw new ErrorResponse.TooManyRequestsException("Too many login attempts, please retry later", retryAfter);
+        }
+    }
+}
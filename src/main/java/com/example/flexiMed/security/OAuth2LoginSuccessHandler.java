@@ -5,6 +5,7 @@ import com.example.flexiMed.service.UserService;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -20,23 +21,27 @@ import java.util.Collections;
  * Custom success handler for OAuth2 login.
  * This handler is triggered after a successful OAuth2 authentication (e.g., Google login).
  * It generates a JWT token for the authenticated user and redirects to the front-end application
- * with the JWT token as a query parameter.
+ * with the JWT token as a query parameter. The refresh token is never put in the redirect URL: it is set in an
+ * HttpOnly cookie that {@code /api/auth/refresh} reads.
  */
 @Component
 public class OAuth2LoginSuccessHandler extends SimpleUrlAuthenticationSuccessHandler {
 
     private final JwtUtil jwtUtil;
     private final UserService userService;
+    private final RefreshTokenCookie refreshTokenCookie;
 
     /**
      * Constructor for dependency injection.
      *
      * @param jwtUtil The JwtUtil service for generating JWT tokens.
      * @param userService The UserService for accessing user information.
+     * @param refreshTokenCookie The builder of the cookie carrying the refresh token.
      */
-    public OAuth2LoginSuccessHandler(JwtUtil jwtUtil, UserService userService) {
+    public OAuth2LoginSuccessHandler(JwtUtil jwtUtil, UserService userService, RefreshTokenCookie refreshTokenCookie) {
         this.jwtUtil = jwtUtil;
         this.userService = userService;
+        this.refreshTokenCookie = refreshTokenCookie;
     }
 
     /**
@@ -67,10 +72,14 @@ public class OAuth2LoginSuccessHandler extends SimpleUrlAuthenticationSuccessHan
                 Collections.singleton(new SimpleGrantedAuthority(user.getRole().name())) // Set roles for the user
         );
 
-        // Generate a JWT token based on the user's authentication details
+        // Generate a JWT access token and a refresh token based on the user's authentication details
         String jwtToken = jwtUtil.generateToken(auth);
+        String refreshToken = jwtUtil.generateRefreshToken(user);
 
-        // Build the redirect URL, adding the JWT token as a query parameter
+        // Hand the refresh token over in an HttpOnly cookie, keeping it out of the redirect URL
+        response.addHeader(HttpHeaders.SET_COOKIE, refreshTokenCookie.create(refreshToken).toString());
+
+        // Build the redirect URL, adding the JWT access token as a query parameter
         String redirectUrl = UriComponentsBuilder.fromUriString("https://flexi-med-front-itcp.vercel.app/")
                 .queryParam("token", jwtToken) // Add the JWT token to the redirect URL
                 .build().toUriString();
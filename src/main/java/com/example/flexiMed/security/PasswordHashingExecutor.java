@@ -0,0 +1,146 @@
+package com.example.flexiMed.security;
+
+import com.example.flexiMed.exceptions.ErrorResponse;
+import com.example.flexiMed.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dedicated, bounded thread pool for password hashing.
+ * BCrypt is deliberately slow, so running it on request threads lets a login storm occupy every servlet worker
+ * and starve unrelated endpoints such as emergency requests. Hashing is instead queued here with a fixed number
+ * of threads and a bounded queue; when the queue is full, callers are rejected immediately with
+ * {@link ErrorResponse.TooManyRequestsException} (HTTP 429) rather than piling up.
+ */
+@Component
+public class PasswordHashingExecutor implements MetricsSource {
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    private final long retryAfterSeconds;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder totalHashNanos = new LongAdder();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+
+    /**
+     * Constructs a PasswordHashingExecutor.
+     *
+     * @param threads           The number of hashing threads.
+     * @param queueCapacity     The maximum number of hashing tasks waiting for a thread.
+     * @param timeoutMillis     How long a caller waits for its hash before giving up.
+     * @param retryAfterSeconds The Retry-After value sent to rejected clients.
+     */
+    public PasswordHashingExecutor(@Value("${security.password-hashing.threads:4}") int threads,
+                                   @Value("${security.password-hashing.queue-capacity:64}") int queueCapacity,
+                                   @Value("${security.password-hashing.timeout-ms:5000}") long timeoutMillis,
+                                   @Value("${security.password-hashing.retry-after-seconds:1}") long retryAfterSeconds) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutMillis = timeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Runs a hashing task on the hashing pool and waits for its result.
+     *
+     * @param task The hashing task.
+     * @param <T>  The type of the result.
+     * @return The result of the task.
+     * @throws ErrorResponse.TooManyRequestsException if the pool is saturated or the task does not finish in time.
+     */
+    public <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timed(task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ErrorResponse.TooManyRequestsException("Server is busy, please retry later", retryAfterSeconds);
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timedOut.increment();
+            throw new ErrorResponse.TooManyRequestsException("Server is busy, please retry later", retryAfterSeconds);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    /**
+     * Runs the task on the current (hashing) thread and records its latency.
+     */
+    private <T> T timed(Callable<T> task) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return task.call();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            completed.increment();
+            totalHashNanos.add(elapsed);
+            maxHashNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    /**
+     * Stops the hashing threads when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String metricsName() {
+        return "passwordHashing";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long count = completed.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("poolSize", executor.getMaximumPoolSize());
+        metrics.put("activeThreads", executor.getActiveCount());
+        metrics.put("queueDepth", executor.getQueue().size());
+        metrics.put("queueCapacity", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+        metrics.put("completed", count);
+        metrics.put("rejected", rejected.sum());
+        metrics.put("timedOut", timedOut.sum());
+        metrics.put("avgHashMillis", count == 0 ? 0.0 : totalHashNanos.sum() / 1_000_000d / count);
+        metrics.put("maxHashMillis", maxHashNanos.get() / 1_000_000d);
+        return metrics;
+    }
+}
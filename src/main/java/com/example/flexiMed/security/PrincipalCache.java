@@ -0,0 +1,99 @@
+package com.example.flexiMed.security;
+
+import com.example.flexiMed.model.UserEntity;
+import com.example.flexiMed.utils.ExpiringCache;
+import com.example.flexiMed.utils.MetricsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded, time-limited cache of authenticated principals keyed by JWT subject (the user's email).
+ * It lets {@link JwtAuthenticationFilter} authenticate repeat requests without querying the users table.
+ * Entries are invalidated by {@link com.example.flexiMed.service.UserService} whenever a user's profile,
+ * role or existence changes, and expire after a short TTL as a safety net.
+ * <p>
+ * An invalidation inside a transaction is repeated after the commit, since until then a concurrent request can
+ * still load the old row. A load that overlaps an invalidation is returned but not cached, so the old row cannot
+ * be put back after the invalidation has run.
+ */
+@Component
+public class PrincipalCache implements MetricsSource {
+
+    private final ExpiringCache<String, UserEntity> cache;
+
+    /**
+     * Incremented by every invalidation; a load only caches its result if no invalidation ran meanwhile.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Constructs a PrincipalCache.
+     *
+     * @param maxSize    The maximum number of cached principals, injected from application properties.
+     * @param ttlSeconds The time-to-live of a cached principal in seconds, injected from application properties.
+     */
+    public PrincipalCache(@Value("${security.principal-cache.max-size:10000}") int maxSize,
+                          @Value("${security.principal-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.cache = new ExpiringCache<>(maxSize, Duration.ofSeconds(ttlSeconds));
+    }
+
+    /**
+     * Returns the cached principal for the given subject, loading it on a miss.
+     *
+     * @param subject The JWT subject (email).
+     * @param loader  The function used to load the user from the database on a miss.
+     * @return The authenticated principal.
+     */
+    public UserEntity get(String subject, Function<String, UserEntity> loader) {
+        UserEntity user = cache.get(subject);
+        if (user != null) {
+            return user;
+        }
+        long invalidationsBefore = invalidations.get();
+        user = loader.apply(subject);
+        if (user != null && invalidations.get() == invalidationsBefore) {
+            cache.put(subject, user);
+        }
+        return user;
+    }
+
+    /**
+     * Removes the cached principal for the given subject, and again once the current transaction, if any,
+     * has committed.
+     *
+     * @param subject The JWT subject (email).
+     */
+    public void invalidate(String subject) {
+        evict(subject);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(subject);
+                }
+            });
+        }
+    }
+
+    private void evict(String subject) {
+        invalidations.incrementAndGet();
+        cache.invalidate(subject);
+    }
+
+    @Override
+    public String metricsName() {
+        return "principalCache";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        return cache.stats();
+    }
+}
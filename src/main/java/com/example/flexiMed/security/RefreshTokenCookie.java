@@ -0,0 +1,66 @@
+package com.example.flexiMed.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Builds the cookie that carries the refresh token issued by the OAuth2 login flow.
+ * The cookie is HttpOnly and Secure, so the refresh token is neither readable by scripts nor put in a redirect URL
+ * (where it would end up in browser history, proxy logs and Referer headers), and it is scoped to the
+ * authentication endpoints that consume it.
+ * The SameSite attribute is configurable: the front end is served from another site, which requires {@code None};
+ * deployments serving the front end from the same site should use {@code Strict}.
+ */
+@Component
+public class RefreshTokenCookie {
+
+    public static final String NAME = "refresh_token";
+    private static final String PATH = "/api/auth";
+
+    private final Duration maxAge;
+    private final String sameSite;
+
+    /**
+     * Constructs a RefreshTokenCookie.
+     *
+     * @param refreshTokenDays The lifetime of refresh tokens in days, used as the cookie's max age.
+     * @param sameSite         The SameSite attribute of the cookie ({@code Strict}, {@code Lax} or {@code None}).
+     */
+    public RefreshTokenCookie(@Value("${jwt.refresh-token.ttl-days:7}") long refreshTokenDays,
+                              @Value("${jwt.refresh-cookie.same-site:None}") String sameSite) {
+        this.maxAge = Duration.ofDays(refreshTokenDays);
+        this.sameSite = sameSite;
+    }
+
+    /**
+     * Creates the cookie carrying the given refresh token.
+     *
+     * @param refreshToken The refresh token.
+     * @return The cookie, to be sent in a Set-Cookie header.
+     */
+    public ResponseCookie create(String refreshToken) {
+        return build(refreshToken, maxAge);
+    }
+
+    /**
+     * Creates a cookie that removes the refresh token cookie from the browser.
+     *
+     * @return The expired cookie, to be sent in a Set-Cookie header.
+     */
+    public ResponseCookie clear() {
+        return build("", Duration.ZERO);
+    }
+
+    private ResponseCookie build(String value, Duration maxAge) {
+        return ResponseCookie.from(NAME, value)
+                .httpOnly(true)
+                .secure(true)
+                .sameSite(sameSite)
+                .path(PATH)
+                .maxAge(maxAge)
+                .build();
+    }
+}
@@ -1,9 +1,13 @@
 package com.example.flexiMed.security;
 
+import com.example.flexiMed.enums.Role;
 import com.example.flexiMed.service.oauth.CustomOAuth2UserService;
 import com.example.flexiMed.service.UserService;
+import jakarta.servlet.DispatcherType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -33,16 +37,27 @@ public class SecurityConfig {
     private final UserService userService;  // Service for loading users from the database
     private final CustomOAuth2UserService customOAuth2UserService;  // Custom OAuth2 user service
     private final OAuth2LoginSuccessHandler oAuth2LoginSuccessHandler;  // Handler for successful OAuth2 login
+    private final PrincipalCache principalCache;  // Cache of authenticated principals
+    private final boolean statelessAuth;  // Whether access tokens are authenticated from their claims alone
+    private final TokenRevocationService tokenRevocationService;  // Registry of revoked tokens
+    private final PasswordHashingExecutor passwordHashingExecutor;  // Bounded pool that password hashing runs on
 
     /**
      * Constructor to inject dependencies into the configuration class.
      */
     public SecurityConfig(JwtUtil jwtUtil, UserService userService, CustomOAuth2UserService customOAuth2UserService,
-                          OAuth2LoginSuccessHandler oAuth2LoginSuccessHandler) {
+                          OAuth2LoginSuccessHandler oAuth2LoginSuccessHandler, PrincipalCache principalCache,
+                          @Value("${jwt.stateless-auth.enabled:true}") boolean statelessAuth,
+                          TokenRevocationService tokenRevocationService,
+                          PasswordHashingExecutor passwordHashingExecutor) {
         this.jwtUtil = jwtUtil;
         this.userService = userService;
         this.customOAuth2UserService = customOAuth2UserService;
         this.oAuth2LoginSuccessHandler = oAuth2LoginSuccessHandler;
+        this.principalCache = principalCache;
+        this.statelessAuth = statelessAuth;
+        this.tokenRevocationService = tokenRevocationService;
+        this.passwordHashingExecutor = passwordHashingExecutor;
     }
 
     /**
@@ -51,7 +66,7 @@ public class SecurityConfig {
      */
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
-        return new JwtAuthenticationFilter(jwtUtil, userService);
+        return new JwtAuthenticationFilter(jwtUtil, userService, principalCache, statelessAuth, tokenRevocationService);
     }
 
     /**
@@ -80,6 +95,9 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())  // Disable CSRF protection
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))  // Enable CORS with custom configuration
                 .authorizeHttpRequests(auth -> auth
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()  // Completion of streamed responses, authorized on the original request
+                        .requestMatchers(HttpMethod.PUT, "/api/v1/users/*/role").hasRole(Role.ADMIN.name())  // Only administrators may change roles
+                        .requestMatchers("/api/v1/metrics/**").hasRole(Role.ADMIN.name())  // Only administrators may read runtime metrics
                         .requestMatchers(getPublicUrls().toArray(new String[0])).permitAll()  // Public URLs (no authentication required)
                         .anyRequest().authenticated()  // Require authentication for all other requests
                 )
@@ -116,6 +134,8 @@ public class SecurityConfig {
                 "/",
                 "/api/auth/register",  // Public URL for user registration
                 "/api/auth/login",  // Public URL for login
+                "/api/auth/refresh",  // Public URL for exchanging a refresh token
+                "/api/auth/logout",  // Public URL for revoking tokens
                 "/api/auth/oauth2",  // Public URL for OAuth2 authorization
                 "/oauth2/authorization/**",  // Public OAuth2 authorization URL
                 "/login/oauth2/**",  // Public login callback URL
@@ -154,9 +174,10 @@ public class SecurityConfig {
     /**
      * Bean to configure the Password Encoder.
      * This encoder is used to hash and verify passwords using BCrypt encryption.
+     * Hashing runs on the bounded {@link PasswordHashingExecutor} instead of the request thread.
      */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();  // Using BCrypt for password encryption
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), passwordHashingExecutor);  // Using BCrypt for password encryption
     }
 }
@@ -0,0 +1,189 @@
+package com.example.flexiMed.security;
+
+import com.example.flexiMed.model.RevokedTokenEntity;
+import com.example.flexiMed.repository.RevokedTokenRepository;
+import com.example.flexiMed.utils.BloomFilter;
+import com.example.flexiMed.utils.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service that keeps track of revoked JWTs (logout, refresh token rotation).
+ * Revoked token IDs are persisted in the database and mirrored in memory: membership checks on the
+ * authentication hot path consult a Bloom filter first and only fall back to the exact set on a filter hit,
+ * so the common case of a non-revoked token costs a few hash probes.
+ * Entries are dropped once the underlying token has expired, and the state is periodically reloaded from the
+ * database so that revocations made on other nodes are picked up.
+ */
+@Service
+public class TokenRevocationService implements MetricsSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final long expectedTokens;
+    private final double falsePositiveRate;
+
+    /**
+     * Exact set of revoked token IDs mapped to their expiration time in epoch milliseconds.
+     */
+    private final ConcurrentHashMap<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder filterHits = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * Constructs a TokenRevocationService.
+     *
+     * @param revokedTokenRepository The repository used to persist revoked token IDs.
+     * @param expectedTokens         The number of live revoked tokens the Bloom filter is sized for.
+     * @param falsePositiveRate      The target false positive rate of the Bloom filter.
+     */
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+                                  @Value("${jwt.revocation.expected-tokens:100000}") long expectedTokens,
+                                  @Value("${jwt.revocation.false-positive-rate:0.001}") double falsePositiveRate) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expectedTokens = expectedTokens;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new BloomFilter(expectedTokens, falsePositiveRate);
+    }
+
+    /**
+     * Checks whether the token with the given ID has been revoked.
+     * Tokens without an ID were issued before revocation support and are never considered revoked.
+     *
+     * @param tokenId The ID of the token (its {@code jti} claim).
+     * @return True if the token has been revoked.
+     */
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null) {
+            return false;
+        }
+        checks.increment();
+        if (!filter.mightContain(tokenId)) {
+            return false;
+        }
+        filterHits.increment();
+        Long expiresAt = revokedTokens.get(tokenId);
+        if (expiresAt == null) {
+            falsePositives.increment();
+            return false;
+        }
+        return expiresAt > System.currentTimeMillis();
+    }
+
+    /**
+     * Revokes the token with the given ID until its expiration time.
+     * The revocation is recorded with an atomic insert-if-absent, so the return value tells concurrent callers
+     * apart: only the call that actually revoked the token gets {@code true}. Refresh token rotation relies on
+     * this to let each refresh token be exchanged exactly once.
+     *
+     * @param tokenId   The ID of the token (its {@code jti} claim).
+     * @param expiresAt The expiration time of the token.
+     * @return True if this call revoked the token; false if it was already revoked, has no ID or has expired.
+     */
+    public synchronized boolean revoke(String tokenId, Date expiresAt) {
+        if (tokenId == null || expiresAt == null || expiresAt.getTime() <= System.currentTimeMillis()) {
+            return false; // Nothing to revoke: legacy token without an ID, or already expired
+        }
+        if (revokedTokens.containsKey(tokenId)) {
+            return false; // Already revoked on this node
+        }
+        int inserted = revokedTokenRepository.insertIfAbsent(tokenId,
+                LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault()), LocalDateTime.now());
+        revokedTokens.put(tokenId, expiresAt.getTime());
+        filter.put(tokenId);
+        if (inserted == 0) {
+            return false; // Revoked on another node since our last refresh
+        }
+        logger.info("Revoked token {}", tokenId);
+        return true;
+    }
+
+    /**
+     * Loads the revoked tokens from the database once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRevokedTokens() {
+        refresh();
+    }
+
+    /**
+     * Periodically purges expired revocations and reloads the revoked set from the database,
+     * rebuilding the Bloom filter so that it only contains live tokens.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.refresh-interval-ms:60000}",
+            initialDelayString = "${jwt.revocation.refresh-interval-ms:60000}")
+    public void refresh() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            int purged = revokedTokenRepository.deleteExpired(now);
+
+            Map<String, Long> live = new LinkedHashMap<>();
+            for (RevokedTokenEntity token : revokedTokenRepository.findByExpiresAtAfter(now)) {
+                live.put(token.getTokenId(), token.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            }
+            rebuild(live);
+
+            if (purged > 0) {
+                logger.info("Purged {} expired token revocations", purged);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to refresh token revocations: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the in-memory state with the given live revocations, keeping any revocation made locally
+     * that is not yet visible in the loaded snapshot.
+     *
+     * @param live The live revocations loaded from the database.
+     */
+    private synchronized void rebuild(Map<String, Long> live) {
+        long now = System.currentTimeMillis();
+        revokedTokens.forEach((tokenId, expiresAt) -> {
+            if (expiresAt > now) {
+                live.putIfAbsent(tokenId, expiresAt);
+            }
+        });
+
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedTokens, live.size()), falsePositiveRate);
+        live.keySet().forEach(rebuilt::put);
+
+        revokedTokens.keySet().retainAll(live.keySet());
+        revokedTokens.putAll(live);
+        filter = rebuilt;
+    }
+
+    @Override
+    public String metricsName() {
+        return "tokenRevocation";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("revokedTokens", revokedTokens.size());
+        metrics.put("filterBits", filter.bitSize());
+        metrics.put("filterHashFunctions", filter.hashFunctions());
+        metrics.put("checks", checks.sum());
+        metrics.put("filterHits", filterHits.sum());
+        metrics.put("falsePositives", falsePositives.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.flexiMed.service;
+
+import com.example.flexiMed.utils.HierarchicalTimingWheel;
+import com.example.flexiMed.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks whether each ambulance's driver app is alive, from the heartbeats recorded on every location ping or
+ * driver WebSocket frame. An ambulance without a heartbeat for {@code presence.stale-after-ms} is stale: it is
+ * excluded from dispatch and flagged on dashboards, which are also told of every change on
+ * {@value #PRESENCE_TOPIC}.
+ * <p>
+ * A heartbeat only records the time; deadlines live in a {@link HierarchicalTimingWheel}. When an ambulance's
+ * deadline comes up, it is either moved to one timeout after its latest heartbeat or, if there was none since,
+ * the ambulance is marked stale. The wheel therefore handles about one entry per ambulance per timeout, whatever
+ * the ping rate, and no periodic scan of all ambulances (or of the ambulances table) is needed.
+ * <p>
+ * Ambulances without a heartbeat since this node started fall back to their {@code lastUpdatedAt} time.
+ */
+@Service
+public class AmbulancePresence implements MetricsSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(AmbulancePresence.class);
+
+    public static final String PRESENCE_TOPIC = "/topic/ambulance-presence";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long staleAfterMillis;
+    private final HierarchicalTimingWheel<UUID> deadlines;
+    private final ScheduledExecutorService ticker;
+
+    private final ConcurrentHashMap<UUID, Heartbeat> heartbeats = new ConcurrentHashMap<>();
+
+    private final LongAdder heartbeatCount = new LongAdder();
+    private final LongAdder rescheduled = new LongAdder();
+    private final LongAdder becameStale = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+
+    /**
+     * Constructs an AmbulancePresence and starts its ticker.
+     *
+     * @param messagingTemplate The template used to announce presence changes.
+     * @param staleAfterMillis  How long an ambulance may go without a heartbeat before it is stale.
+     * @param tickMillis        The resolution of the deadline wheel; staleness is detected at most one tick late.
+     */
+    public AmbulancePresence(SimpMessagingTemplate messagingTemplate,
+                             @Value("${presence.stale-after-ms:30000}") long staleAfterMillis,
+                             @Value("${presence.tick-ms:1000}") long tickMillis) {
+        this.messagingTemplate = messagingTemplate;
+        this.staleAfterMillis = staleAfterMillis;
+        this.deadlines = new HierarchicalTimingWheel<>(tickMillis, System.currentTimeMillis());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records a sign of life from the ambulance's driver app.
+     *
+     * @param ambulanceId The ID of the ambulance.
+     */
+    public void heartbeat(UUID ambulanceId) {
+        long now = System.currentTimeMillis();
+        heartbeatCount.increment();
+        Heartbeat heartbeat = heartbeats.get(ambulanceId);
+        if (heartbeat == null) {
+            heartbeat = heartbeats.computeIfAbsent(ambulanceId, id -> {
+                deadlines.schedule(id, now + staleAfterMillis);
+                return new Heartbeat(now);
+            });
+        }
+        heartbeat.lastSeen = now;
+        if (heartbeat.stale.get() && heartbeat.stale.compareAndSet(true, false)) {
+            deadlines.schedule(ambulanceId, now + staleAfterMillis);
+            recovered.increment();
+            announce(ambulanceId, false, now);
+        }
+    }
+
+    /**
+     * Checks whether the ambulance's driver app has gone silent.
+     *
+     * @param ambulanceId   The ID of the ambulance.
+     * @param lastUpdatedAt The ambulance's last recorded update, used if no heartbeat was seen since startup.
+     * @return True if the ambulance is stale.
+     */
+    public boolean isStale(UUID ambulanceId, LocalDateTime lastUpdatedAt) {
+        Heartbeat heartbeat = ambulanceId == null ? null : heartbeats.get(ambulanceId);
+        if (heartbeat != null) {
+            return heartbeat.stale.get();
+        }
+        return lastUpdatedAt == null
+                || lastUpdatedAt.isBefore(LocalDateTime.now().minusNanos(staleAfterMillis * 1_000_000));
+    }
+
+    /**
+     * Advances the deadline wheel: ambulances heard from since their deadline was set get a new deadline,
+     * the others become stale.
+     */
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            deadlines.advance(now, ambulanceId -> {
+                Heartbeat heartbeat = heartbeats.get(ambulanceId);
+                if (heartbeat == null) {
+                    return;
+                }
+                long deadline = heartbeat.lastSeen + staleAfterMillis;
+                if (deadline > now) {
+                    deadlines.schedule(ambulanceId, deadline);
+                    rescheduled.increment();
+                } else if (heartbeat.stale.compareAndSet(false, true)) {
+                    if (heartbeat.lastSeen + staleAfterMillis > now) {
+                        // A heartbeat raced with the expiry; whichever side clears the flag schedules the deadline
+                        if (heartbeat.stale.compareAndSet(true, false)) {
+                            deadlines.schedule(ambulanceId, heartbeat.lastSeen + staleAfterMillis);
+                        }
+                        return;
+                    }
+                    becameStale.increment();
+                    announce(ambulanceId, true, heartbeat.lastSeen);
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.error("Failed to advance ambulance presence", e);
+        }
+    }
+
+    private void announce(UUID ambulanceId, boolean stale, long lastSeen) {
+        logger.info("Ambulance {} is {}", ambulanceId, stale ? "stale" : "reporting again");
+        try {
+            messagingTemplate.convertAndSend(PRESENCE_TOPIC, new PresenceChange(ambulanceId, stale, lastSeen));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to announce presence of ambulance {}: {}", ambulanceId, e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the ticker when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    @Override
+    public String metricsName() {
+        return "ambulancePresence";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long stale = heartbeats.values().stream().filter(heartbeat -> heartbeat.stale.get()).count();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("tracked", heartbeats.size());
+        metrics.put("stale", stale);
+        metrics.put("pendingDeadlines", deadlines.size());
+        metrics.put("heartbeats", heartbeatCount.sum());
+        metrics.put("deadlinesRescheduled", rescheduled.sum());
+        metrics.put("becameStale", becameStale.sum());
+        metrics.put("recovered", recovered.sum());
+        return metrics;
+    }
+
+    /**
+     * The latest heartbeat of an ambulance and whether it has gone stale.
+     */
+    private static final class Heartbeat {
+
+        private volatile long lastSeen;
+        private final AtomicBoolean stale = new AtomicBoolean();
+
+        private Heartbeat(long lastSeen) {
+            this.lastSeen = lastSeen;
+        }
+    }
+
+    /**
+     * A change of an ambulance's presence, published to dashboards.
+     *
+     * @param ambulanceId The ID of the ambulance.
+     * @param stale       Whether the ambulance is now stale.
+     * @param lastSeen    The time of its latest heartbeat, in epoch milliseconds.
+     */
+    public record PresenceChange(UUID ambulanceId, boolean stale, long lastSeen) {
+    }
+}
@@ -32,16 +32,23 @@ public class AmbulanceService {
 
     private final AmbulanceRepository ambulanceRepository;
     private final RequestRepository requestRepository;
+    private final DispatcherDirectory dispatcherDirectory;
+    private final AmbulancePresence ambulancePresence;
 
     /**
      * Constructs an {@code AmbulanceService} with the specified repositories.
      *
      * @param ambulanceRepository The repository for accessing ambulance records.
      * @param requestRepository   The repository for accessing request records.
+     * @param dispatcherDirectory The in-memory contact directory, updated whenever an ambulance's driver changes.
+     * @param ambulancePresence   The tracker telling which ambulances have stopped reporting.
      */
-    public AmbulanceService(AmbulanceRepository ambulanceRepository, RequestRepository requestRepository) {
+    public AmbulanceService(AmbulanceRepository ambulanceRepository, RequestRepository requestRepository,
+                            DispatcherDirectory dispatcherDirectory, AmbulancePresence ambulancePresence) {
         this.ambulanceRepository = ambulanceRepository;
         this.requestRepository = requestRepository;
+        this.dispatcherDirectory = dispatcherDirectory;
+        this.ambulancePresence = ambulancePresence;
     }
 
     /**
@@ -53,8 +60,9 @@ public class AmbulanceService {
      */
     public AmbulanceDTO saveAmbulance(AmbulanceDTO ambulance) {
         try {
-            AmbulanceEntity newAmbulance = AmbulanceMapper.toEntity(ambulance);
-            return AmbulanceMapper.toDTO(ambulanceRepository.save(newAmbulance));
+            AmbulanceEntity newAmbulance = ambulanceRepository.save(AmbulanceMapper.toEntity(ambulance));
+            dispatcherDirectory.onAmbulanceSaved(newAmbulance);
+            return AmbulanceMapper.toDTO(newAmbulance);
         } catch (ObjectOptimisticLockingFailureException e) {
             throw new RuntimeException("Ambulance record was modified by another transaction. Please retry.", e);
         }
@@ -63,10 +71,23 @@ public class AmbulanceService {
     /**
      * Retrieves all ambulances from the database.
      *
-     * @return A list of AmbulanceDTO objects representing all ambulances.
+     * @return A list of AmbulanceDTO objects representing all ambulances, flagged if stale.
      */
     public List<AmbulanceDTO> getAllAmbulances() {
-        return ambulanceRepository.findAll().stream().map(AmbulanceMapper::toDTO).toList();
+        return ambulanceRepository.findAll().stream().map(this::toDTOWithPresence).toList();
+    }
+
+    /**
+     * Maps an ambulance to a DTO, flagging it if its driver's app has stopped reporting.
+     */
+    private AmbulanceDTO toDTOWithPresence(AmbulanceEntity ambulance) {
+        AmbulanceDTO dto = AmbulanceMapper.toDTO(ambulance);
+        dto.setStale(isStale(ambulance));
+        return dto;
+    }
+
+    private boolean isStale(AmbulanceEntity ambulance) {
+        return ambulancePresence.isStale(ambulance.getId(), ambulance.getLastUpdatedAt());
     }
 
     /**
@@ -87,7 +108,9 @@ public class AmbulanceService {
                     ambulance.setDriverName(driverName);
                     ambulance.setDriverContact(driverContact);
                     ambulance.setLastUpdatedAt(LocalDateTime.now());
-                    return AmbulanceMapper.toDTO(ambulanceRepository.save(ambulance));
+                    AmbulanceEntity savedAmbulance = ambulanceRepository.save(ambulance);
+                    dispatcherDirectory.onAmbulanceSaved(savedAmbulance);
+                    return AmbulanceMapper.toDTO(savedAmbulance);
                 })
                 .orElseThrow(() -> new RuntimeException("Ambulance not found with ID: " + id));
     }
@@ -110,6 +133,7 @@ public class AmbulanceService {
 
         if (!ambulance.isAvailabilityStatus()) {
             ambulanceRepository.deleteById(id);
+            dispatcherDirectory.onAmbulanceDeleted(id);
         } else {
             throw new ErrorResponse.AmbulanceNotAvailableException("Ambulance is not available for deletion.");
         }
@@ -138,6 +162,7 @@ public class AmbulanceService {
 
     /**
      * Finds the closest available ambulance to a given user's location.
+     * Ambulances whose driver's app has stopped reporting are not considered.
      *
      * @param userLatitude  The latitude of the user.
      * @param userLongitude The longitude of the user.
@@ -145,7 +170,9 @@ public class AmbulanceService {
      * @throws RuntimeException If no available ambulances are found or a suitable ambulance cannot be found.
      */
     public AmbulanceDTO findClosestAmbulance(double userLatitude, double userLongitude) {
-        List<AmbulanceEntity> availableAmbulances = ambulanceRepository.findByAvailabilityStatusIsTrue();
+        List<AmbulanceEntity> availableAmbulances = ambulanceRepository.findByAvailabilityStatusIsTrue().stream()
+                .filter(ambulance -> !isStale(ambulance))
+                .toList();
 
         if (availableAmbulances.isEmpty()) {
             throw new RuntimeException("No available ambulances at the moment");
@@ -161,18 +188,21 @@ public class AmbulanceService {
     }
 
     /**
-     * Dispatches an ambulance to handle a request.
+     * Dispatches the chosen ambulance to handle a request.
+     * The ambulance is reloaded in this transaction and must still be available, so the caller can notify about
+     * and track exactly the ambulance it chose.
      *
-     * @param request The RequestEntity containing request details.
+     * @param request  The RequestEntity containing request details.
+     * @param chosen   The ambulance chosen for the request.
      * @return The updated RequestDTO with arrival time.
-     * @throws IllegalArgumentException If the closest ambulance is not found.
+     * @throws ErrorResponse.AmbulanceNotAvailableException If the ambulance no longer exists or was dispatched meanwhile.
      */
     @Transactional
-    public RequestDTO dispatchAmbulance(RequestEntity request) {
-        // Find the closest available ambulance.
-        AmbulanceDTO ambulanceDTO = findClosestAmbulance(request.getLatitude(), request.getLongitude());
-        AmbulanceEntity ambulance = ambulanceRepository.findById(ambulanceDTO.getId()).orElseThrow(() ->
-                new IllegalArgumentException(("Ambulance not found")));
+    public RequestDTO dispatchAmbulance(RequestEntity request, AmbulanceEntity chosen) {
+        AmbulanceEntity ambulance = ambulanceRepository.findById(chosen.getId())
+                .filter(AmbulanceEntity::isAvailabilityStatus)
+                .orElseThrow(() -> new ErrorResponse.AmbulanceNotAvailableException(
+                        "Ambulance " + chosen.getPlateNumber() + " is no longer available."));
 
         // Assign the ambulance to the request and update request status.
         request.setAmbulance(ambulance);
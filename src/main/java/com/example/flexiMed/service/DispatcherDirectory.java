@@ -0,0 +1,275 @@
+package com.example.flexiMed.service;
+
+import com.example.flexiMed.enums.Role;
+import com.example.flexiMed.model.AmbulanceEntity;
+import com.example.flexiMed.model.UserEntity;
+import com.example.flexiMed.repository.AmbulanceRepository;
+import com.example.flexiMed.repository.UserRepository;
+import com.example.flexiMed.utils.MetricsSource;
+import com.example.flexiMed.utils.PhoneUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory directory of user contacts keyed by normalized phone number, together with the driver phone number
+ * of every ambulance. It resolves who to notify when an ambulance is dispatched without querying the database
+ * or converting entities to DTOs and back.
+ * The directory is loaded once the application has started and kept coherent by {@link UserService} and
+ * {@link AmbulanceService}, which report their writes after the surrounding transaction commits.
+ * A periodic reload picks up changes made by other nodes, and misses fall back to a single query.
+ */
+@Service
+public class DispatcherDirectory implements MetricsSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(DispatcherDirectory.class);
+
+    private final UserRepository userRepository;
+    private final AmbulanceRepository ambulanceRepository;
+
+    private final ConcurrentHashMap<String, Contact> contactsByPhone = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, String> phoneByUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, String> driverPhoneByAmbulance = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs a DispatcherDirectory.
+     *
+     * @param userRepository      The repository used to load user contacts.
+     * @param ambulanceRepository The repository used to load ambulance driver contacts.
+     */
+    public DispatcherDirectory(UserRepository userRepository, AmbulanceRepository ambulanceRepository) {
+        this.userRepository = userRepository;
+        this.ambulanceRepository = ambulanceRepository;
+    }
+
+    /**
+     * Resolves the contact of the driver of the given ambulance.
+     * The ambulance's current driver contact is used, falling back to a database lookup on a directory miss.
+     *
+     * @param ambulance The dispatched ambulance.
+     * @return The driver's contact, or empty if no user is registered with the driver's phone number.
+     */
+    public Optional<Contact> resolveForAmbulance(AmbulanceEntity ambulance) {
+        String phone = PhoneUtils.normalize(ambulance.getDriverContact());
+        if (phone == null) {
+            return Optional.empty();
+        }
+        Contact contact = contactsByPhone.get(phone);
+        if (contact != null) {
+            hits.increment();
+            return Optional.of(contact);
+        }
+        misses.increment();
+        return userRepository.findByPhoneNumber(ambulance.getDriverContact()).map(user -> {
+            userSaved(user);
+            return contactsByPhone.get(phone);
+        });
+    }
+
+    /**
+     * Resolves the contact of the driver of the ambulance with the given ID from the directory alone.
+     *
+     * @param ambulanceId The ID of the ambulance.
+     * @return The driver's contact, or empty if unknown.
+     */
+    public Optional<Contact> findByAmbulanceId(UUID ambulanceId) {
+        String phone = driverPhoneByAmbulance.get(ambulanceId);
+        return phone == null ? Optional.empty() : findByPhone(phone);
+    }
+
+    /**
+     * Resolves a contact by phone number from the directory alone.
+     *
+     * @param phoneNumber The phone number, in any formatting.
+     * @return The contact registered with the phone number, or empty if unknown.
+     */
+    public Optional<Contact> findByPhone(String phoneNumber) {
+        String phone = PhoneUtils.normalize(phoneNumber);
+        return phone == null ? Optional.empty() : Optional.ofNullable(contactsByPhone.get(phone));
+    }
+
+    /**
+     * Records a created or updated user once the current transaction (if any) commits.
+     *
+     * @param user The saved user.
+     */
+    public void onUserSaved(UserEntity user) {
+        Contact contact = Contact.of(user);
+        afterCommit(() -> userSaved(contact));
+    }
+
+    /**
+     * Removes a deleted user once the current transaction (if any) commits.
+     *
+     * @param userId The ID of the deleted user.
+     */
+    public void onUserDeleted(UUID userId) {
+        afterCommit(() -> userDeleted(userId));
+    }
+
+    /**
+     * Records a created or updated ambulance once the current transaction (if any) commits.
+     *
+     * @param ambulance The saved ambulance.
+     */
+    public void onAmbulanceSaved(AmbulanceEntity ambulance) {
+        UUID ambulanceId = ambulance.getId();
+        String phone = PhoneUtils.normalize(ambulance.getDriverContact());
+        afterCommit(() -> ambulanceSaved(ambulanceId, phone));
+    }
+
+    /**
+     * Removes a deleted ambulance once the current transaction (if any) commits.
+     *
+     * @param ambulanceId The ID of the deleted ambulance.
+     */
+    public void onAmbulanceDeleted(UUID ambulanceId) {
+        afterCommit(() -> driverPhoneByAmbulance.remove(ambulanceId));
+    }
+
+    /**
+     * Loads the directory once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+    }
+
+    /**
+     * Periodically reloads the directory from the database so that writes made by other nodes are picked up.
+     */
+    @Scheduled(fixedDelayString = "${dispatcher-directory.refresh-interval-ms:300000}",
+            initialDelayString = "${dispatcher-directory.refresh-interval-ms:300000}")
+    public synchronized void reload() {
+        try {
+            Map<String, Contact> contacts = new ConcurrentHashMap<>();
+            Map<UUID, String> phones = new ConcurrentHashMap<>();
+            for (UserEntity user : userRepository.findAll()) {
+                Contact contact = Contact.of(user);
+                if (contact.phoneNumber() != null) {
+                    contacts.put(contact.phoneNumber(), contact);
+                    phones.put(contact.userId(), contact.phoneNumber());
+                }
+            }
+            Map<UUID, String> drivers = new ConcurrentHashMap<>();
+            for (AmbulanceEntity ambulance : ambulanceRepository.findAll()) {
+                String phone = PhoneUtils.normalize(ambulance.getDriverContact());
+                if (phone != null) {
+                    drivers.put(ambulance.getId(), phone);
+                }
+            }
+
+            // Replace entries in place; readers may briefly see a mix of old and new entries, never an empty map
+            contactsByPhone.putAll(contacts);
+            contactsByPhone.keySet().retainAll(contacts.keySet());
+            phoneByUser.putAll(phones);
+            phoneByUser.keySet().retainAll(phones.keySet());
+            driverPhoneByAmbulance.putAll(drivers);
+            driverPhoneByAmbulance.keySet().retainAll(drivers.keySet());
+        } catch (Exception e) {
+            logger.error("Failed to load dispatcher directory: {}", e.getMessage());
+        }
+    }
+
+    private void userSaved(UserEntity user) {
+        userSaved(Contact.of(user));
+    }
+
+    private synchronized void userSaved(Contact contact) {
+        String previousPhone = contact.phoneNumber() == null
+                ? phoneByUser.remove(contact.userId())
+                : phoneByUser.put(contact.userId(), contact.phoneNumber());
+        if (previousPhone != null && !previousPhone.equals(contact.phoneNumber())) {
+            contactsByPhone.computeIfPresent(previousPhone,
+                    (phone, existing) -> existing.userId().equals(contact.userId()) ? null : existing);
+        }
+        if (contact.phoneNumber() != null) {
+            contactsByPhone.put(contact.phoneNumber(), contact);
+        }
+    }
+
+    private synchronized void userDeleted(UUID userId) {
+        String phone = phoneByUser.remove(userId);
+        if (phone != null) {
+            contactsByPhone.computeIfPresent(phone, (key, existing) -> existing.userId().equals(userId) ? null : existing);
+        }
+    }
+
+    private void ambulanceSaved(UUID ambulanceId, String phone) {
+        if (phone == null) {
+            driverPhoneByAmbulance.remove(ambulanceId);
+        } else {
+            driverPhoneByAmbulance.put(ambulanceId, phone);
+        }
+    }
+
+    /**
+     * Runs the given action after the current transaction commits, or immediately when there is no transaction,
+     * so that rolled-back writes never reach the directory.
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "dispatcherDirectory";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("contacts", contactsByPhone.size());
+        metrics.put("ambulances", driverPhoneByAmbulance.size());
+        metrics.put("hits", hits.sum());
+        metrics.put("misses", misses.sum());
+        return metrics;
+    }
+
+    /**
+     * Immutable snapshot of the contact details needed to notify a user.
+     *
+     * @param userId      The ID of the user.
+     * @param name        The name of the user.
+     * @param email       The email address of the user.
+     * @param phoneNumber The normalized phone number of the user.
+     * @param role        The role of the user.
+     */
+    public record Contact(UUID userId, String name, String email, String phoneNumber, Role role) {
+
+        /**
+         * Creates a contact snapshot from a user entity.
+         *
+         * @param user The user.
+         * @return The user's contact details.
+         */
+        public static Contact of(UserEntity user) {
+            return new Contact(user.getUserId(), user.getName(), user.getEmail(),
+                    PhoneUtils.normalize(user.getPhoneNumber()), user.getRole());
+        }
+    }
+}
@@ -1,31 +1,107 @@
 package com.example.flexiMed.service;
 
 import com.example.flexiMed.exceptions.ErrorResponse.FileStorageException;
+import com.example.flexiMed.model.StoredFileEntity;
+import com.example.flexiMed.repository.StoredFileRepository;
 import com.example.flexiMed.utils.FileUtils;
+import com.example.flexiMed.utils.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.UUID;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Stores uploaded files in content-addressed storage.
+ * <p>
+ * An upload is streamed into a temporary file while its SHA-256 hash is computed, then moved atomically to
+ * {@code uploads/ab/cd/<hash>.<ext>}, where {@code ab} and {@code cd} are the first bytes of the hash; the sharding
+ * keeps directories small. Readers therefore never see a partial file, file names never collide, and identical
+ * uploads collapse into a single file. Images get the extension of their sniffed format; other files keep the
+ * extension they were uploaded with, and later identical uploads reuse the path of the first one whatever their
+ * name. The {@code stored_files} table counts the references to each file, and {@link #release(String)} deletes a
+ * file, along with its resized variants ({@code <hash>-<size>.<ext>}), once its last reference is gone. A file moved
+ * into place by a transaction that rolls back is deleted again unless another reference to it exists.
+ */
 @Service
-public class FileStorageService {
+public class FileStorageService implements MetricsSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileStorageService.class);
+
+    private static final String URL_PREFIX = "/uploads/";
+
+    /**
+     * The URLs of content-addressed files: two shard directories, the hash and an extension.
+     */
+    private static final Pattern STORED_URL = Pattern.compile(
+            "^/uploads/([0-9a-f]{2})/([0-9a-f]{2})/(\\1\\2[0-9a-f]{60})\\.([a-z0-9]+)$");
+
+    /**
+     * Locks striped by hash, serializing the move of a new file with the deletion of an unreferenced one.
+     */
+    private final Object[] locks = new Object[64];
+
+    /**
+     * The number of saves per hash whose transaction has not completed yet, guarded by the hash's lock.
+     */
+    private final Map<String, Integer> pendingSaves = new ConcurrentHashMap<>();
 
     private final Path uploadLocation;
+    private final Path tempLocation;
+    private final StoredFileRepository storedFileRepository;
+
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder deleted = new LongAdder();
+
+    /**
+     * Constructs a FileStorageService and creates its directories.
+     *
+     * @param storedFileRepository The repository counting references to stored files.
+     */
+    public FileStorageService(StoredFileRepository storedFileRepository) {
+        this.storedFileRepository = storedFileRepository;
 
-    public FileStorageService() {
         // Dynamically resolve the project root and construct the uploads path
         String projectRoot = System.getProperty("user.dir");
         this.uploadLocation = Paths.get(projectRoot, "uploads").toAbsolutePath();
+        // Outside the served directory, but on the same file system so that files can be moved atomically
+        this.tempLocation = Paths.get(projectRoot, ".uploads-tmp").toAbsolutePath();
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
 
         try {
-            if (!Files.exists(this.uploadLocation)) {
-                Files.createDirectories(this.uploadLocation);
-            }
-            if (!Files.isWritable(this.uploadLocation)) {
+            Files.createDirectories(this.uploadLocation);
+            Files.createDirectories(this.tempLocation);
+            if (!Files.isWritable(this.uploadLocation) || !Files.isWritable(this.tempLocation)) {
                 throw new FileStorageException("Upload directory is not writable.");
             }
         } catch (IOException e) {
@@ -33,25 +109,219 @@ public class FileStorageService {
         }
     }
 
-    public String saveFile(MultipartFile file, UUID userId) {
+    /**
+     * Stores an uploaded file and adds a reference to it.
+     *
+     * @param file The uploaded file.
+     * @return The URL of the stored file.
+     * @throws FileStorageException If the file is empty or cannot be stored.
+     */
+    public String saveFile(MultipartFile file) {
+        if (file.isEmpty()) {
+            throw new FileStorageException("Failed to store empty file.");
+        }
+
+        Path tempFile = null;
         try {
-            if (file.isEmpty()) {
-                throw new FileStorageException("Failed to store empty file.");
+            tempFile = Files.createTempFile(tempLocation, "upload-", ".part");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size = copy(file, tempFile, digest);
+            String hash = HexFormat.of().formatHex(digest.digest());
+
+            String extension = FileUtils.detectExtension(tempFile, file.getOriginalFilename());
+            String relativePath = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + "." + extension;
+
+            synchronized (lockFor(hash)) {
+                storedFileRepository.addReference(hash, relativePath, size);
+                // Identical content uploaded earlier under another extension keeps its original path
+                relativePath = storedFileRepository.findById(hash).map(StoredFileEntity::getPath).orElse(relativePath);
+                Path destinationFile = uploadLocation.resolve(relativePath);
+                onRollback(hash, destinationFile);
+                if (Files.exists(destinationFile)) {
+                    deduplicated.increment();
+                } else {
+                    Files.createDirectories(destinationFile.getParent());
+                    move(tempFile, destinationFile);
+                    tempFile = null;
+                    stored.increment();
+                    bytesWritten.add(size);
+                }
             }
+            return URL_PREFIX + relativePath;
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to store file.", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    logger.warn("Could not delete temporary upload {}: {}", tempFile, e.getMessage());
+                }
+            }
+        }
+    }
 
-            String fileName = "user_" + userId + "_" + FileUtils.sanitizeFilename(file.getOriginalFilename());
-            Path destinationFile = this.uploadLocation.resolve(Paths.get(fileName)).normalize().toAbsolutePath();
+    /**
+     * Removes a reference to a stored file, deleting the file after the current transaction commits if nothing
+     * references it anymore. URLs of files outside content-addressed storage (such as external OAuth pictures or
+     * files uploaded before it) are ignored.
+     *
+     * @param url The URL returned by {@link #saveFile(MultipartFile)}.
+     */
+    public void release(String url) {
+        Matcher matcher = url == null ? null : STORED_URL.matcher(url);
+        if (matcher == null || !matcher.matches()) {
+            return;
+        }
+        String hash = matcher.group(3);
+        Path file = uploadLocation.resolve(url.substring(URL_PREFIX.length()));
+        storedFileRepository.removeReference(hash);
+        released.increment();
+        afterCommit(() -> deleteIfUnreferenced(hash, file));
+    }
 
-            if (!destinationFile.getParent().equals(this.uploadLocation)) {
-                throw new FileStorageException("Cannot store file outside current directory.");
+    /**
+     * Locates the file behind the URL of a content-addressed upload.
+     *
+     * @param url The URL returned by {@link #saveFile(MultipartFile)}.
+     * @return The path of the file, or empty if the URL is not a content-addressed upload.
+     */
+    public Optional<Path> locate(String url) {
+        if (url == null || !STORED_URL.matcher(url).matches()) {
+            return Optional.empty();
+        }
+        return Optional.of(uploadLocation.resolve(url.substring(URL_PREFIX.length())));
+    }
+
+    /**
+     * Streams the upload into the temporary file, hashing it on the way. The upload is read through a
+     * {@link DigestInputStream} and written with {@link FileChannel#transferFrom}, without an intermediate copy
+     * of the whole file in memory.
+     */
+    private long copy(MultipartFile file, Path tempFile, MessageDigest digest) throws IOException {
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest);
+             ReadableByteChannel source = Channels.newChannel(in);
+             FileChannel target = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            long position = 0;
+            long transferred;
+            while ((transferred = target.transferFrom(source, position, Long.MAX_VALUE - position)) > 0) {
+                position += transferred;
             }
+            target.force(true);
+            return position;
+        }
+    }
 
-            Files.copy(file.getInputStream(), destinationFile);
+    private void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 
-            return "/uploads/" + fileName;
+    private void deleteIfUnreferenced(String hash, Path file) {
+        synchronized (lockFor(hash)) {
+            try {
+                if (storedFileRepository.deleteIfUnreferenced(hash) > 0) {
+                    delete(hash, file);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not delete unreferenced file {}: {}", file, e.getMessage());
+            }
+        }
+    }
 
-        } catch (IOException e) {
-            throw new FileStorageException("Failed to store file.", e);
+    /**
+     * Deletes a file that a rolled-back save moved into place, unless a committed record or another save still
+     * in flight references it.
+     */
+    private void deleteIfOrphaned(String hash, Path file) {
+        synchronized (lockFor(hash)) {
+            if (pendingSaves.containsKey(hash)) {
+                return;
+            }
+            try {
+                if (storedFileRepository.existsById(hash)) {
+                    deleteIfUnreferenced(hash, file);
+                } else {
+                    delete(hash, file);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not delete orphaned file {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private void delete(String hash, Path file) throws IOException {
+        try (DirectoryStream<Path> variants = Files.newDirectoryStream(file.getParent(), hash + "-*")) {
+            for (Path variant : variants) {
+                Files.deleteIfExists(variant);
+            }
+        }
+        if (Files.deleteIfExists(file)) {
+            deleted.increment();
         }
     }
+
+    private Object lockFor(String hash) {
+        return locks[Integer.parseInt(hash.substring(0, 2), 16) % locks.length];
+    }
+
+    /**
+     * Runs the given action after the current transaction commits, or immediately when there is no transaction,
+     * so that a rolled-back release never deletes a file that is still referenced.
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Tracks a save made in the current transaction until the transaction completes, and deletes the file again
+     * if the transaction rolls back. Must be called with the hash's lock held.
+     */
+    private void onRollback(String hash, Path file) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return; // The reference was committed by the repository's own transaction
+        }
+        pendingSaves.merge(hash, 1, Integer::sum);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                synchronized (lockFor(hash)) {
+                    pendingSaves.computeIfPresent(hash, (key, count) -> count == 1 ? null : count - 1);
+                    if (status != STATUS_COMMITTED) {
+                        deleteIfOrphaned(hash, file);
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public String metricsName() {
+        return "fileStorage";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("stored", stored.sum());
+        metrics.put("deduplicated", deduplicated.sum());
+        metrics.put("bytesWritten", bytesWritten.sum());
+        metrics.put("released", released.sum());
+        metrics.put("deleted", deleted.sum());
+        return metrics;
+    }
 }
@@ -0,0 +1,380 @@
+package com.example.flexiMed.service;
+
+import com.example.flexiMed.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Generates and locates resized variants of uploaded images, so that clients rendering avatars download a
+ * thumbnail instead of the full-resolution upload.
+ * <p>
+ * For each size in {@code images.variant-sizes}, an image is center-cropped to a square and scaled down with
+ * ImageIO, then written next to the original as {@code <hash>-<size>.<ext>}: JPEG for opaque formats, PNG for
+ * formats that may be transparent. Since uploads are content-addressed, a variant never goes out of date and is
+ * deleted together with its original. Variants are generated after the upload's transaction commits, on a small
+ * bounded pool ({@code images.workers}, {@code images.queue-capacity}) so image decoding never competes with
+ * request threads; if the queue is full the work is skipped and retried on the next request for a missing variant.
+ * <p>
+ * Only originals ImageIO can decode are queued; others, such as WebP, are served as they are. An image's
+ * dimensions are read from its header before it is decoded, and images of more than {@code images.max-pixels}
+ * pixels are rejected, so a small upload declaring huge dimensions cannot exhaust the heap. Rejected and
+ * undecodable originals are remembered, and requests for their variants are answered with the original instead of
+ * queueing them again.
+ */
+@Service
+public class ImageVariantService implements MetricsSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantService.class);
+
+    private static final float JPEG_QUALITY = 0.85f;
+    private static final int MAX_REMEMBERED_UNUSABLE = 10_000;
+
+    /**
+     * The file extensions of the formats the installed ImageIO plugins can decode.
+     */
+    private static final Set<String> DECODABLE_EXTENSIONS = Arrays.stream(ImageIO.getReaderFileSuffixes())
+            .map(suffix -> suffix.toLowerCase(Locale.ROOT))
+            .collect(Collectors.toUnmodifiableSet());
+
+    private final FileStorageService fileStorageService;
+    private final int[] sizes;
+    private final long maxPixels;
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * Originals whose variants are queued or being generated.
+     */
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Originals that turned out too large or undecodable; their variants are never generated.
+     */
+    private final Set<Path> unusable = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder oversized = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder served = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder totalGenerateNanos = new LongAdder();
+
+    /**
+     * Constructs an ImageVariantService and starts its workers.
+     *
+     * @param fileStorageService The storage holding the original images.
+     * @param sizes              The edge lengths, in pixels, of the square variants.
+     * @param maxPixels          The largest width times height of an image that is decoded.
+     * @param threads            The number of worker threads.
+     * @param queueCapacity      The maximum number of images waiting for a worker.
+     */
+    public ImageVariantService(FileStorageService fileStorageService,
+                               @Value("${images.variant-sizes:64,128,256}") int[] sizes,
+                               @Value("${images.max-pixels:40000000}") long maxPixels,
+                               @Value("${images.workers:2}") int threads,
+                               @Value("${images.queue-capacity:100}") int queueCapacity) {
+        this.fileStorageService = fileStorageService;
+        this.sizes = Arrays.stream(sizes).filter(size -> size > 0).sorted().distinct().toArray();
+        this.maxPixels = maxPixels;
+        AtomicInteger count = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Generates the variants of an uploaded image in the background, once the current transaction commits.
+     * URLs that are not content-addressed uploads, and images ImageIO cannot decode, are ignored.
+     *
+     * @param url The URL of the uploaded image.
+     */
+    public void generateAsync(String url) {
+        fileStorageService.locate(url)
+                .filter(this::canGenerate)
+                .ifPresent(original -> afterCommit(() -> submit(original)));
+    }
+
+    /**
+     * Finds the file to serve for a requested size: the smallest variant at least as large, or the original if
+     * no variant is that large or the original has no variants. A missing variant is scheduled for generation, and
+     * the caller serves the original meanwhile.
+     *
+     * @param original      The path of the original image.
+     * @param requestedSize The requested edge length, in pixels.
+     * @return The path of the file to serve, or empty while the variant is generated.
+     */
+    public Optional<Path> findVariant(Path original, int requestedSize) {
+        int size = Arrays.stream(sizes).filter(candidate -> candidate >= requestedSize).findFirst().orElse(-1);
+        if (size < 0 || !canGenerate(original)) {
+            return Optional.of(original);
+        }
+        Path variant = variantPath(original, size);
+        if (Files.isRegularFile(variant)) {
+            served.increment();
+            return Optional.of(variant);
+        }
+        if (Files.isRegularFile(original)) {
+            submit(original);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Checks whether variants of an original may be generated: ImageIO can decode its format and it was not
+     * already found too large or undecodable.
+     */
+    private boolean canGenerate(Path original) {
+        String name = original.getFileName().toString();
+        String extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return DECODABLE_EXTENSIONS.contains(extension) && !unusable.contains(original);
+    }
+
+    private void markUnusable(Path original) {
+        if (unusable.size() >= MAX_REMEMBERED_UNUSABLE) {
+            unusable.clear();  // Forgotten originals are merely retried once more
+        }
+        unusable.add(original);
+    }
+
+    private void submit(Path original) {
+        if (!pending.add(original)) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    generate(original);
+                } finally {
+                    pending.remove(original);
+                }
+            });
+            queued.increment();
+        } catch (RejectedExecutionException e) {
+            pending.remove(original);
+            skipped.increment();
+        }
+    }
+
+    /**
+     * Generates the missing variants of an image.
+     */
+    private void generate(Path original) {
+        long startedAt = System.nanoTime();
+        try {
+            BufferedImage image = read(original);
+            if (image == null) {
+                markUnusable(original);
+                return;
+            }
+            long originalBytes = Files.size(original);
+            BufferedImage square = cropToSquare(image);
+            for (int size : sizes) {
+                Path variant = variantPath(original, size);
+                if (Files.exists(variant)) {
+                    continue;
+                }
+                BufferedImage scaled = scale(square, Math.min(size, square.getWidth()));
+                write(scaled, variant);
+                generated.increment();
+                bytesSaved.add(Math.max(0, originalBytes - Files.size(variant)));
+            }
+        } catch (IOException | RuntimeException e) {
+            markUnusable(original);  // Uploads are immutable, so a corrupt original stays corrupt
+            failed.increment();
+            logger.warn("Failed to generate variants of {}: {}", original.getFileName(), e.getMessage());
+        } finally {
+            totalGenerateNanos.add(System.nanoTime() - startedAt);
+        }
+    }
+
+    /**
+     * Decodes an image after checking the dimensions in its header against the pixel limit.
+     *
+     * @return The image, or null if ImageIO has no reader for it or it has too many pixels.
+     */
+    private BufferedImage read(Path original) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    oversized.increment();
+                    logger.warn("Skipped variants of {}: {}x{} exceeds {} pixels", original.getFileName(),
+                            reader.getWidth(0), reader.getHeight(0), maxPixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage cropToSquare(BufferedImage image) {
+        int edge = Math.min(image.getWidth(), image.getHeight());
+        return image.getSubimage((image.getWidth() - edge) / 2, (image.getHeight() - edge) / 2, edge, edge);
+    }
+
+    /**
+     * Scales a square image down by repeated halving and a final bilinear step, which keeps thumbnails of large
+     * photos smooth without the cost of area-averaging scaling.
+     */
+    private static BufferedImage scale(BufferedImage image, int size) {
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = image;
+        int edge = image.getWidth();
+        do {
+            edge = Math.max(size, edge / 2);
+            BufferedImage next = new BufferedImage(edge, edge, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(current, 0, 0, edge, edge, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (edge > size);
+        return current;
+    }
+
+    /**
+     * Writes a variant to a temporary file next to it and moves it into place, so a variant is never served
+     * half-written.
+     */
+    private static void write(BufferedImage image, Path variant) throws IOException {
+        Path temp = Files.createTempFile(variant.getParent(), ".variant-", ".part");
+        try {
+            if (variant.getFileName().toString().endsWith(".png")) {
+                ImageIO.write(image, "png", temp.toFile());
+            } else {
+                writeJpeg(image, temp);
+            }
+            try {
+                Files.move(temp, variant, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, variant, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Gives the path of a variant: {@code <hash>-<size>.png} for PNG and GIF originals, which may be transparent,
+     * and {@code <hash>-<size>.jpg} otherwise.
+     */
+    private static Path variantPath(Path original, int size) {
+        String name = original.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String extension = name.substring(dot + 1);
+        String variantExtension = extension.equals("png") || extension.equals("gif") ? "png" : "jpg";
+        return original.resolveSibling(name.substring(0, dot) + "-" + size + "." + variantExtension);
+    }
+
+    /**
+     * Runs the given action after the current transaction commits, or immediately when there is no transaction,
+     * so that variants are only generated for uploads that were kept.
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Stops the workers when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    @Override
+    public String metricsName() {
+        return "imageVariants";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long count = generated.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sizes", sizes);
+        metrics.put("queueDepth", workers.getQueue().size());
+        metrics.put("queued", queued.sum());
+        metrics.put("generated", count);
+        metrics.put("skipped", skipped.sum());
+        metrics.put("oversized", oversized.sum());
+        metrics.put("unusable", unusable.size());
+        metrics.put("failed", failed.sum());
+        metrics.put("served", served.sum());
+        metrics.put("bytesSavedPerVariant", count == 0 ? 0 : bytesSaved.sum() / count);
+        metrics.put("totalGenerateMillis", totalGenerateNanos.sum() / 1_000_000);
+        return metrics;
+    }
+}
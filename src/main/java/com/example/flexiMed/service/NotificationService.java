@@ -1,41 +1,116 @@
 package com.example.flexiMed.service;
 
 import com.example.flexiMed.controller.NotificationController;
-import com.example.flexiMed.exceptions.ErrorResponse.NotificationFailedException;
 import com.example.flexiMed.model.AmbulanceEntity;
 import com.example.flexiMed.model.UserEntity;
+import com.example.flexiMed.notifications.NotificationChannel;
+import com.example.flexiMed.notifications.NotificationJob;
+import com.example.flexiMed.notifications.NotificationPublisher;
+import com.example.flexiMed.notifications.PresenceTable;
+import com.example.flexiMed.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Service class responsible for sending notifications related to ambulance dispatch.
- * This service interacts with the {@link NotificationController} to send notifications
- * to users when an ambulance is dispatched.
+ * Notifications are routed over the cheapest channel that can reach the recipient: a live WebSocket session
+ * (according to the {@link PresenceTable}), then SMS, then email. Only WebSocket notifications are acknowledged by
+ * the client: if the recipient does not acknowledge one within the acknowledgement timeout, it is sent again over
+ * the next channel, and an acknowledgement cancels that fallback. SMS and email have no acknowledgement, so a
+ * delivered SMS is final and the email is only sent if the SMS fails for good; the email travels with the SMS job
+ * as its {@link NotificationJob#fallback() fallback}. Delivery itself is asynchronous through the {@link NotificationPublisher},
+ * so a slow or failing delivery never delays or fails the dispatch itself.
  */
 @Service
-public class NotificationService {
+public class NotificationService implements MetricsSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationService.class);
+
+    private final NotificationPublisher notificationPublisher;
+    private final PresenceTable presenceTable;
+    private final long ackTimeoutMillis;
+    private final int maxPending;
+
+    /**
+     * Notifications awaiting acknowledgement that still have fallback channels, keyed by notification ID.
+     */
+    private final ConcurrentHashMap<UUID, PendingRoute> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService fallbackScheduler;
 
-    private final NotificationController notificationController;
+    private final Map<NotificationChannel, LongAdder> firstChannel = new EnumMap<>(NotificationChannel.class);
+    private final Map<NotificationChannel, LongAdder> fallbacks = new EnumMap<>(NotificationChannel.class);
+    private final LongAdder unreachable = new LongAdder();
+    private final LongAdder acknowledged = new LongAdder();
+    private final LongAdder foreignAcks = new LongAdder();
+    private final LongAdder totalAckMillis = new LongAdder();
 
     /**
-     * Constructs a {@code NotificationService} with the specified {@link NotificationController}.
+     * Constructs a {@code NotificationService}.
      *
-     * @param notificationController the controller responsible for handling notifications.
+     * @param notificationPublisher the publisher that queues notifications for delivery.
+     * @param presenceTable         the table of users with a live WebSocket session.
+     * @param ackTimeoutMillis      how long to wait for an acknowledgement before falling back to the next channel.
+     * @param maxPending            the maximum number of notifications tracked for fallback at once.
      */
-    public NotificationService(NotificationController notificationController) {
-        this.notificationController = notificationController;
+    public NotificationService(NotificationPublisher notificationPublisher, PresenceTable presenceTable,
+                               @Value("${notifications.routing.ack-timeout-ms:15000}") long ackTimeoutMillis,
+                               @Value("${notifications.routing.max-pending:10000}") int maxPending) {
+        this.notificationPublisher = notificationPublisher;
+        this.presenceTable = presenceTable;
+        this.ackTimeoutMillis = ackTimeoutMillis;
+        this.maxPending = maxPending;
+        this.fallbackScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notify-fallback");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (NotificationChannel channel : NotificationChannel.values()) {
+            firstChannel.put(channel, new LongAdder());
+            fallbacks.put(channel, new LongAdder());
+        }
     }
 
     /**
      * Sends a notification to a user informing them that an ambulance has been dispatched.
      *
+     * @param message     the message to send.
      * @param user        the {@link UserEntity} representing the user receiving the notification.
      * @param ambulance   the {@link AmbulanceEntity} representing the dispatched ambulance.
      * @param etaInMinutes the estimated time of arrival (ETA) of the ambulance in minutes.
-     * @throws NotificationFailedException if sending the notification fails.
      */
     public void sendUserNotifications(String message, UserEntity user, AmbulanceEntity ambulance, String etaInMinutes) {
+        sendUserNotifications(message, DispatcherDirectory.Contact.of(user), ambulance, etaInMinutes);
+    }
+
+    /**
+     * Sends a notification to the given recipient informing them that an ambulance has been dispatched.
+     * The notification is queued on the cheapest reachable channel and this method returns immediately.
+     *
+     * @param message     the message to send.
+     * @param recipient   the contact details of the recipient.
+     * @param ambulance   the {@link AmbulanceEntity} representing the dispatched ambulance.
+     * @param etaInMinutes the estimated time of arrival (ETA) of the ambulance in minutes.
+     */
+    public void sendUserNotifications(String message, DispatcherDirectory.Contact recipient, AmbulanceEntity ambulance,
+                                      String etaInMinutes) {
         NotificationController.AmbulanceNotificationDTO notificationDTO = new NotificationController.AmbulanceNotificationDTO();
-        notificationDTO.setUserId(user.getUserId());
+        notificationDTO.setNotificationId(UUID.randomUUID());
+        notificationDTO.setUserId(recipient.userId());
         notificationDTO.setAmbulanceId(ambulance.getId());
         notificationDTO.setMessage(message);
         notificationDTO.setAmbulancePlateNumber(ambulance.getPlateNumber());
@@ -43,10 +118,139 @@ public class NotificationService {
         notificationDTO.setDriverContact(ambulance.getDriverContact());
         notificationDTO.setEta(etaInMinutes);
 
-        try {
-            notificationController.sendAmbulanceDispatchedNotification(user.getUserId(), notificationDTO);
-        } catch (Exception e) {
-            throw new NotificationFailedException("Failed to send ambulance dispatched notification", e);
+        route(recipient, notificationDTO);
+    }
+
+    /**
+     * Records the client's acknowledgement of a notification, cancelling its pending fallback.
+     * Only the recipient of a notification may acknowledge it.
+     *
+     * @param notificationId the ID of the acknowledged notification.
+     * @param userId         the ID of the user acknowledging it.
+     * @return true if a pending fallback was cancelled, false if the notification was unknown, already settled or
+     * addressed to another user.
+     */
+    public boolean acknowledge(UUID notificationId, UUID userId) {
+        PendingRoute route = pending.get(notificationId);
+        if (route == null) {
+            return false;
+        }
+        if (userId == null || !userId.equals(route.recipient.userId())) {
+            foreignAcks.increment();
+            logger.warn("User {} tried to acknowledge notification {} of another user", userId, notificationId);
+            return false;
+        }
+        if (!pending.remove(notificationId, route)) {
+            return false;
+        }
+        acknowledged.increment();
+        totalAckMillis.add(System.currentTimeMillis() - route.createdAtMillis);
+        return true;
+    }
+
+    /**
+     * Sends the notification over the first reachable channel. A WebSocket notification is kept pending so that it
+     * falls back to the remaining channels if it is not acknowledged in time; the other channels are chained so
+     * that each is only used if the previous one fails.
+     */
+    private void route(DispatcherDirectory.Contact recipient, NotificationController.AmbulanceNotificationDTO notificationDTO) {
+        List<NotificationChannel> channels = new ArrayList<>(3);
+        if (presenceTable.isOnline(recipient.userId())) {
+            channels.add(NotificationChannel.WEBSOCKET);
+        }
+        if (recipient.phoneNumber() != null) {
+            channels.add(NotificationChannel.SMS);
+        }
+        if (recipient.email() != null) {
+            channels.add(NotificationChannel.EMAIL);
+        }
+        if (channels.isEmpty()) {
+            unreachable.increment();
+            logger.warn("No channel available to notify user {}", recipient.userId());
+            return;
         }
+
+        firstChannel.get(channels.get(0)).increment();
+        if (channels.get(0) != NotificationChannel.WEBSOCKET) {
+            notificationPublisher.publish(chain(channels, recipient, notificationDTO));
+            return;
+        }
+
+        notificationPublisher.publish(job(NotificationChannel.WEBSOCKET, recipient, notificationDTO));
+        if (channels.size() > 1 && pending.size() < maxPending) {
+            PendingRoute route = new PendingRoute(recipient, notificationDTO,
+                    channels.subList(1, channels.size()), System.currentTimeMillis());
+            pending.put(notificationDTO.getNotificationId(), route);
+            fallbackScheduler.schedule(() -> fallBack(notificationDTO.getNotificationId()), ackTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends an unacknowledged WebSocket notification over the remaining channels.
+     */
+    private void fallBack(UUID notificationId) {
+        PendingRoute route = pending.remove(notificationId);
+        if (route == null) {
+            return;  // Acknowledged in the meantime
+        }
+        fallbacks.get(route.remaining.get(0)).increment();
+        notificationPublisher.publish(chain(route.remaining, route.recipient, route.payload));
+    }
+
+    /**
+     * Builds the job for the first channel, failing over to a job for each following channel in turn.
+     */
+    private static NotificationJob chain(List<NotificationChannel> channels, DispatcherDirectory.Contact recipient,
+                                         NotificationController.AmbulanceNotificationDTO notificationDTO) {
+        NotificationJob job = null;
+        for (int i = channels.size() - 1; i >= 0; i--) {
+            job = job(channels.get(i), recipient, notificationDTO).withFallback(job);
+        }
+        return job;
+    }
+
+    private static NotificationJob job(NotificationChannel channel, DispatcherDirectory.Contact recipient,
+                                       NotificationController.AmbulanceNotificationDTO notificationDTO) {
+        String address = switch (channel) {
+            case WEBSOCKET -> recipient.userId().toString();
+            case SMS -> recipient.phoneNumber();
+            case EMAIL -> recipient.email();
+        };
+        return NotificationJob.of(channel, address, recipient.name(), notificationDTO);
+    }
+
+    /**
+     * Stops the fallback scheduler when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        fallbackScheduler.shutdownNow();
+    }
+
+    @Override
+    public String metricsName() {
+        return "notificationRouting";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long acks = acknowledged.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        firstChannel.forEach((channel, count) -> metrics.put("first." + channel.key(), count.sum()));
+        fallbacks.forEach((channel, count) -> metrics.put("fallback." + channel.key(), count.sum()));
+        metrics.put("unreachable", unreachable.sum());
+        metrics.put("pending", pending.size());
+        metrics.put("acknowledged", acks);
+        metrics.put("foreignAcks", foreignAcks.sum());
+        metrics.put("avgAckMillis", acks == 0 ? 0.0 : (double) totalAckMillis.sum() / acks);
+        return metrics;
+    }
+
+    /**
+     * A WebSocket notification awaiting acknowledgement, with the channels to fall back to.
+     */
+    private record PendingRoute(DispatcherDirectory.Contact recipient,
+                                NotificationController.AmbulanceNotificationDTO payload,
+                                List<NotificationChannel> remaining, long createdAtMillis) {
     }
 }
@@ -1,10 +1,10 @@
 package com.example.flexiMed.service;
 
+import com.example.flexiMed.dto.AmbulanceDTO;
 import com.example.flexiMed.dto.PatientRecordsDTO;
 import com.example.flexiMed.dto.RequestDTO;
 import com.example.flexiMed.dto.ServiceHistoryDTO;
 import com.example.flexiMed.mapper.RequestMapper;
-import com.example.flexiMed.mapper.UserMapper;
 import com.example.flexiMed.model.AmbulanceEntity;
 import com.example.flexiMed.model.RequestEntity;
 import com.example.flexiMed.model.UserEntity;
@@ -13,10 +13,14 @@ import com.example.flexiMed.repository.RequestRepository;
 import com.example.flexiMed.repository.UserRepository;
 import com.example.flexiMed.utils.GeoUtils;
 import com.example.flexiMed.utils.TimeUtils;
+import com.example.flexiMed.websocket.LocationPipeline;
 import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
@@ -28,6 +32,8 @@ import java.util.UUID;
 @Service
 public class RequestService {
 
+    private static final Logger logger = LoggerFactory.getLogger(RequestService.class);
+
     private final RequestRepository requestRepository;
     private final AmbulanceRepository ambulanceRepository;
     private final AmbulanceService ambulanceService;
@@ -36,6 +42,8 @@ public class RequestService {
     private final ServiceHistoryService serviceHistoryService;
     private final UserService userService;
     private final NotificationService notificationService;
+    private final DispatcherDirectory dispatcherDirectory;
+    private final LocationPipeline locationPipeline;
 
     /**
      * Constructor to initialize dependencies.
@@ -48,6 +56,8 @@ public class RequestService {
      * @param serviceHistoryService    Service for managing service history logs.
      * @param userService              Service for managing user operations.
      * @param notificationService      Service for sending notifications.
+     * @param dispatcherDirectory      In-memory directory used to resolve the driver of a dispatched ambulance.
+     * @param locationPipeline         Pipeline streaming ambulance locations to the users following them.
      */
     public RequestService(RequestRepository requestRepository, AmbulanceRepository ambulanceRepository,
                           UserRepository userRepository,
@@ -55,7 +65,9 @@ public class RequestService {
                           AmbulanceService ambulanceService,
                           ServiceHistoryService serviceHistoryService,
                           UserService userService,
-                          NotificationService notificationService) {
+                          NotificationService notificationService,
+                          DispatcherDirectory dispatcherDirectory,
+                          LocationPipeline locationPipeline) {
         this.requestRepository = requestRepository;
         this.ambulanceRepository = ambulanceRepository;
         this.ambulanceService = ambulanceService;
@@ -64,10 +76,15 @@ public class RequestService {
         this.serviceHistoryService = serviceHistoryService;
         this.userService = userService;
         this.notificationService = notificationService;
+        this.dispatcherDirectory = dispatcherDirectory;
+        this.locationPipeline = locationPipeline;
     }
 
     /**
      * Creates a new ambulance request.
+     * One ambulance is chosen for the request and used for the dispatch, the notifications and the location streams.
+     * Once the ambulance is dispatched nothing fails the request: if no user matches the driver's contact, only the
+     * dispatcher's notification and location stream are skipped.
      *
      * @param request The RequestDTO containing request details.
      * @return The created RequestDTO.
@@ -78,8 +95,9 @@ public class RequestService {
         UserEntity user = userRepository.findById(request.getUserId())
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        // Find the first available ambulance.
-        AmbulanceEntity ambulance = ambulanceRepository.findFirstByAvailabilityStatusIsTrue()
+        // Find the closest available ambulance whose driver's app is still reporting.
+        AmbulanceDTO closest = ambulanceService.findClosestAmbulance(request.getLatitude(), request.getLongitude());
+        AmbulanceEntity ambulance = ambulanceRepository.findById(closest.getId())
                 .orElseThrow(() -> new RuntimeException("No available ambulance at the moment"));
 
         // Create a RequestEntity from the DTO, associating it with the user and ambulance.
@@ -101,6 +119,13 @@ public class RequestService {
         );
         patientRecordsService.addPatientRecord(patientRecord);
 
+        // Record the service history of the request.
+        recordServiceHistory(savedRequest);
+
+        // Dispatch the chosen ambulance first, so that notifications and location streams refer to the
+        // ambulance actually sent.
+        RequestDTO dispatched = ambulanceService.dispatchAmbulance(savedRequest, ambulance);
+
         // Calculate the estimated time of arrival (ETA).
         long etaInMinutes = GeoUtils.calculateETA(ambulance.getLatitude(), ambulance.getLongitude(),
                 request.getLatitude(), request.getLongitude());
@@ -108,15 +133,19 @@ public class RequestService {
         // Send real-time notifications to the user and the ambulance dispatcher.
         notificationService.sendUserNotifications("Ambulance has been dispatched to your location", user,
                 ambulance, TimeUtils.formatTime(etaInMinutes));
-        notificationService.sendUserNotifications("Your ambulance has been dispatched to Lat: " + request.getLatitude()
-                        + " and Long: " + request.getLongitude(), getDispatcher(ambulance.getDriverContact()), ambulance,
-                TimeUtils.formatTime(etaInMinutes));
-
-        // Record the service history of the request.
-        recordServiceHistory(savedRequest);
-
-        // Dispatch the ambulance and return the updated request DTO.
-        return ambulanceService.dispatchAmbulance(savedRequest);
+        Optional<DispatcherDirectory.Contact> dispatcher = dispatcherDirectory.resolveForAmbulance(ambulance);
+        dispatcher.ifPresentOrElse(contact -> notificationService.sendUserNotifications(
+                        "Your ambulance has been dispatched to Lat: " + request.getLatitude()
+                                + " and Long: " + request.getLongitude(), contact, ambulance,
+                        TimeUtils.formatTime(etaInMinutes)),
+                () -> logger.warn("No dispatcher found for phone {} of ambulance {}; request {} dispatched without "
+                        + "notifying one", ambulance.getDriverContact(), ambulance.getPlateNumber(), savedRequest.getId()));
+
+        // Stream the ambulance's location to the user and the dispatcher while it is en route.
+        locationPipeline.follow(ambulance.getId(), user.getUserId().toString());
+        dispatcher.ifPresent(contact -> locationPipeline.follow(ambulance.getId(), contact.userId().toString()));
+
+        return dispatched;
     }
 
     /**
@@ -158,15 +187,15 @@ public class RequestService {
     }
 
     /**
-     * Retrieves the user entity of the ambulance dispatcher based on the driver's contact.
+     * Retrieves the contact of the ambulance dispatcher based on the driver's contact,
+     * using the in-memory {@link DispatcherDirectory}.
      *
-     * @param driverContact The contact information of the driver.
-     * @return The UserEntity of the dispatcher.
+     * @param ambulance The dispatched ambulance.
+     * @return The contact of the dispatcher.
      * @throws EntityNotFoundException If the dispatcher is not found.
      */
-    public UserEntity getDispatcher(String driverContact) {
-        return userService.getUserByPhoneNumber(driverContact)
-                .map(UserMapper::toEntity)
-                .orElseThrow(() -> new EntityNotFoundException("Dispatcher not found for phone: " + driverContact));
+    public DispatcherDirectory.Contact getDispatcher(AmbulanceEntity ambulance) {
+        return dispatcherDirectory.resolveForAmbulance(ambulance)
+                .orElseThrow(() -> new EntityNotFoundException("Dispatcher not found for phone: " + ambulance.getDriverContact()));
     }
 }
\ No newline at end of file
@@ -1,57 +1,174 @@
 package com.example.flexiMed.service;
 
 import com.example.flexiMed.exceptions.ErrorResponse.AiApiRequestException;
+import com.example.flexiMed.utils.ExpiringCache;
+import com.example.flexiMed.utils.MetricsSource;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
+
+import java.text.Normalizer;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Service class for interacting with the Together AI API.
  * This class handles sending chat prompts to the AI model and retrieving responses.
+ * <p>
+ * Many users ask the same first-aid questions, so responses are cached in a bounded, time-limited cache keyed by
+ * the normalized prompt (case, Unicode form and whitespace ignored) and the model parameters. Concurrent requests
+ * for a prompt that is not cached share a single upstream call instead of each posting it (single-flight).
+ * Failed calls are never cached.
  */
 @Service
-public class TogetherAiService {
+public class TogetherAiService implements MetricsSource {
+
+    private final RestTemplate restTemplate;
 
     /**
      * API key for authenticating requests to the Together AI API.
      * Retrieved from application properties.
      */
-    @Value("${TOGETHER_API_KEY}")
-    private String apiKey;
+    private final String apiKey;
+    private final String apiUrl;
+    private final String model;
+    private final int maxTokens;
 
-    private final RestTemplate restTemplate;
+    private final ExpiringCache<String, String> responses;
+
+    /**
+     * Upstream calls in progress, keyed like the cache; callers asking for the same prompt join the call.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder upstreamCalls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalUpstreamNanos = new LongAdder();
 
     /**
      * Constructor for TogetherAiService.
-     * @param restTemplate RestTemplate for making HTTP requests.
+     *
+     * @param restTemplate     RestTemplate for making HTTP requests.
+     * @param apiKey           The API key of the Together AI account.
+     * @param apiUrl           The chat completions endpoint.
+     * @param model            The model answering the prompts.
+     * @param maxTokens        The maximum length of a response, in tokens.
+     * @param cacheSize        The maximum number of cached responses.
+     * @param cacheTtlSeconds  How long a response is reused, in seconds; 0 disables the cache.
      */
-    public TogetherAiService(RestTemplate restTemplate) {
+    public TogetherAiService(RestTemplate restTemplate,
+                             @Value("${TOGETHER_API_KEY}") String apiKey,
+                             @Value("${ai.api.url:https://api.together.xyz/v1/chat/completions}") String apiUrl,
+                             @Value("${ai.model:mistralai/Mixtral-8x7B-Instruct-v0.1}") String model,
+                             @Value("${ai.max-tokens:200}") int maxTokens,
+                             @Value("${ai.cache.max-size:1000}") int cacheSize,
+                             @Value("${ai.cache.ttl-seconds:3600}") long cacheTtlSeconds) {
         this.restTemplate = restTemplate;
+        this.apiKey = apiKey;
+        this.apiUrl = apiUrl;
+        this.model = model;
+        this.maxTokens = maxTokens;
+        this.responses = new ExpiringCache<>(cacheSize, Duration.ofSeconds(cacheTtlSeconds));
     }
 
     /**
-     * Sends a chat prompt to the AI model and retrieves a response.
+     * Sends a chat prompt to the AI model and retrieves a response, reusing a cached or in-progress response to
+     * the same prompt.
+     *
      * @param prompt The user-provided message to send to the AI.
      * @return The AI-generated response as a String.
      * @throws AiApiRequestException if the API request fails.
      */
     public String chatWithAi(String prompt) {
+        String key = cacheKey(prompt);
+        String cached = responses.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            coalesced.increment();
+            return join(existing);
+        }
+        try {
+            // Another caller may have completed the same prompt between the cache lookup and putIfAbsent
+            String response = responses.get(key);
+            if (response == null) {
+                response = callApi(prompt);
+                responses.put(key, response);
+            }
+            call.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            failures.increment();
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * Posts the prompt to the API.
+     */
+    private String callApi(String prompt) {
         HttpHeaders headers = createHeaders();
         Map<String, Object> requestBody = createRequestBody(prompt);
         HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
 
-        String API_URL = "https://api.together.xyz/v1/chat/completions";
-        ResponseEntity<String> response = restTemplate.postForEntity(API_URL, request, String.class);
-
-        if (response.getStatusCode() == HttpStatus.OK) {
-            return response.getBody();
-        } else {
+        upstreamCalls.increment();
+        long startedAt = System.nanoTime();
+        try {
+            ResponseEntity<String> response = restTemplate.postForEntity(apiUrl, request, String.class);
+            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
+                return response.getBody();
+            }
             throw new AiApiRequestException("Failed to get valid response from AI API. Status code: " + response.getStatusCode());
+        } catch (RestClientResponseException e) {
+            throw new AiApiRequestException("Failed to get valid response from AI API. Status code: " + e.getStatusCode(), e);
+        } catch (ResourceAccessException e) {
+            throw new AiApiRequestException("AI API did not respond in time.", e);
+        } catch (RestClientException e) {
+            throw new AiApiRequestException("Failed to call AI API.", e);
+        } finally {
+            totalUpstreamNanos.add(System.nanoTime() - startedAt);
         }
     }
 
+    private static String join(CompletableFuture<String> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Builds the cache key of a prompt: the model parameters and the prompt in NFKC form, lower case, with
+     * runs of whitespace collapsed, so trivially different spellings of a question share a response.
+     */
+    private String cacheKey(String prompt) {
+        String normalized = Normalizer.normalize(prompt, Normalizer.Form.NFKC)
+                .strip()
+                .replaceAll("\\s+", " ")
+                .toLowerCase(Locale.ROOT);
+        return model + "\n" + maxTokens + "\n" + normalized;
+    }
+
     /**
      * Creates HTTP headers required for the API request.
      * @return HttpHeaders object with authorization and content type set.
@@ -70,9 +187,26 @@ public class TogetherAiService {
      */
     private Map<String, Object> createRequestBody(String prompt) {
         Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("model", "mistralai/Mixtral-8x7B-Instruct-v0.1");
+        requestBody.put("model", model);
         requestBody.put("messages", List.of(Map.of("role", "user", "content", prompt)));
-        requestBody.put("max_tokens", 200);
+        requestBody.put("max_tokens", maxTokens);
         return requestBody;
     }
+
+    @Override
+    public String metricsName() {
+        return "aiChat";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long calls = upstreamCalls.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>(responses.stats());
+        metrics.put("upstreamCalls", calls);
+        metrics.put("coalesced", coalesced.sum());
+        metrics.put("inFlight", inFlight.size());
+        metrics.put("failures", failures.sum());
+        metrics.put("avgUpstreamMillis", calls == 0 ? 0.0 : totalUpstreamNanos.sum() / 1_000_000.0 / calls);
+        return metrics;
+    }
 }
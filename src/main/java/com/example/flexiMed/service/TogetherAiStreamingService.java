@@ -0,0 +1,217 @@
+package com.example.flexiMed.service;
+
+import com.example.flexiMed.exceptions.ErrorResponse.AiApiRequestException;
+import com.example.flexiMed.utils.MetricsSource;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.handler.timeout.ReadTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streams AI chat responses token by token from the Together AI API.
+ * <p>
+ * Requests go through the non-blocking {@code aiWebClient}, so no thread waits while the model generates: a
+ * request thread is only used briefly to start the stream and to write each token to the caller. Tokens are
+ * relayed as Server-Sent Events named {@value #TOKEN_EVENT}, followed by a {@value #DONE_EVENT} event, or by an
+ * {@value #ERROR_EVENT} event if the call fails after the response has started.
+ */
+@Service
+public class TogetherAiStreamingService implements MetricsSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(TogetherAiStreamingService.class);
+
+    public static final String TOKEN_EVENT = "token";
+    public static final String DONE_EVENT = "done";
+    public static final String ERROR_EVENT = "error";
+
+    /**
+     * The data of the last event of an upstream stream.
+     */
+    private static final String UPSTREAM_DONE = "[DONE]";
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> EVENT_TYPE =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+    private final String apiKey;
+    private final String apiUrl;
+    private final String model;
+    private final int maxTokens;
+
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder firstTokens = new LongAdder();
+    private final LongAdder totalFirstTokenNanos = new LongAdder();
+
+    /**
+     * Constructs a TogetherAiStreamingService.
+     *
+     * @param aiWebClient  The pooled WebClient used to call the API.
+     * @param objectMapper The mapper used to read the streamed chunks.
+     * @param apiKey       The API key of the Together AI account.
+     * @param apiUrl       The chat completions endpoint.
+     * @param model        The model answering the prompts.
+     * @param maxTokens    The maximum length of a response, in tokens.
+     */
+    public TogetherAiStreamingService(WebClient aiWebClient, ObjectMapper objectMapper,
+                                      @Value("${TOGETHER_API_KEY}") String apiKey,
+                                      @Value("${ai.api.url:https://api.together.xyz/v1/chat/completions}") String apiUrl,
+                                      @Value("${ai.model:mistralai/Mixtral-8x7B-Instruct-v0.1}") String model,
+                                      @Value("${ai.max-tokens:200}") int maxTokens) {
+        this.webClient = aiWebClient;
+        this.objectMapper = objectMapper;
+        this.apiKey = apiKey;
+        this.apiUrl = apiUrl;
+        this.model = model;
+        this.maxTokens = maxTokens;
+    }
+
+    /**
+     * Sends a chat prompt to the AI model and streams its response as it is generated. The upstream call is
+     * made on subscription, and cancelled if the subscriber cancels (for example when the caller disconnects).
+     *
+     * @param prompt The user-provided message to send to the AI.
+     * @return The response tokens, then a done event; an error event replaces the rest of the stream on failure.
+     */
+    public Flux<ServerSentEvent<String>> streamChat(String prompt) {
+        return Flux.defer(() -> {
+            long startedAt = System.nanoTime();
+            AtomicBoolean firstToken = new AtomicBoolean(true);
+            started.increment();
+            activeStreams.incrementAndGet();
+            return webClient.post()
+                    .uri(apiUrl)
+                    .headers(headers -> headers.setBearerAuth(apiKey))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .bodyValue(createRequestBody(prompt))
+                    .retrieve()
+                    .bodyToFlux(EVENT_TYPE)
+                    .mapNotNull(ServerSentEvent::data)
+                    .takeWhile(data -> !UPSTREAM_DONE.equals(data.strip()))
+                    .map(this::extractToken)
+                    .filter(token -> !token.isEmpty())
+                    .doOnNext(token -> {
+                        tokens.increment();
+                        if (firstToken.compareAndSet(true, false)) {
+                            firstTokens.increment();
+                            totalFirstTokenNanos.add(System.nanoTime() - startedAt);
+                        }
+                    })
+                    .map(token -> event(TOKEN_EVENT, token))
+                    .concatWith(Mono.fromSupplier(() -> {
+                        completed.increment();
+                        return event(DONE_EVENT, "");
+                    }))
+                    .onErrorResume(error -> {
+                        failed.increment();
+                        String message = describe(error);
+                        logger.warn("AI chat stream failed: {}", message);
+                        return Mono.just(event(ERROR_EVENT, message));
+                    })
+                    .doOnTerminate(activeStreams::decrementAndGet)
+                    .doOnCancel(() -> {
+                        activeStreams.decrementAndGet();
+                        cancelled.increment();
+                    });
+        });
+    }
+
+    /**
+     * Extracts the generated text from a streamed completion chunk: the delta of a chat completion, or the text
+     * of a plain completion.
+     */
+    private String extractToken(String data) {
+        try {
+            JsonNode choice = objectMapper.readTree(data).path("choices").path(0);
+            JsonNode content = choice.path("delta").path("content");
+            return content.isTextual() ? content.asText() : choice.path("text").asText("");
+        } catch (JsonProcessingException e) {
+            throw new AiApiRequestException("Malformed chunk in AI API stream.", e);
+        }
+    }
+
+    /**
+     * Describes a failed call in terms fit for the caller.
+     */
+    private static String describe(Throwable error) {
+        // Failures while reading the body are wrapped in a WebClientResponseException with the 200 status
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ReadTimeoutException || cause instanceof ConnectTimeoutException
+                    || cause instanceof TimeoutException) {
+                return "AI API did not respond in time.";
+            }
+        }
+        if (error instanceof WebClientResponseException responseError && responseError.getStatusCode().isError()) {
+            return "Failed to get valid response from AI API. Status code: " + responseError.getStatusCode();
+        }
+        if (error instanceof AiApiRequestException) {
+            return error.getMessage();
+        }
+        return "Failed to call AI API.";
+    }
+
+    private static ServerSentEvent<String> event(String name, String data) {
+        return ServerSentEvent.builder(data).event(name).build();
+    }
+
+    /**
+     * Constructs the request body of a streamed chat completion.
+     * @param prompt The user message to send to the AI.
+     * @return A Map representing the JSON request body.
+     */
+    private Map<String, Object> createRequestBody(String prompt) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+        requestBody.put("messages", List.of(Map.of("role", "user", "content", prompt)));
+        requestBody.put("max_tokens", maxTokens);
+        requestBody.put("stream", true);
+        return requestBody;
+    }
+
+    @Override
+    public String metricsName() {
+        return "aiChatStream";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long first = firstTokens.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("activeStreams", activeStreams.get());
+        metrics.put("started", started.sum());
+        metrics.put("completed", completed.sum());
+        metrics.put("failed", failed.sum());
+        metrics.put("cancelled", cancelled.sum());
+        metrics.put("tokens", tokens.sum());
+        metrics.put("avgFirstTokenMillis", first == 0 ? 0.0 : totalFirstTokenNanos.sum() / 1_000_000.0 / first);
+        return metrics;
+    }
+}
@@ -6,6 +6,7 @@ import com.example.flexiMed.exceptions.ErrorResponse;
 import com.example.flexiMed.mapper.UserMapper;
 import com.example.flexiMed.model.UserEntity;
 import com.example.flexiMed.repository.UserRepository;
+import com.example.flexiMed.security.PrincipalCache;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -30,6 +31,9 @@ public class UserService implements UserDetailsService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final FileStorageService fileStorageService;
+    private final ImageVariantService imageVariantService;
+    private final PrincipalCache principalCache;
+    private final DispatcherDirectory dispatcherDirectory;
 
     /**
      * Constructor for {@link UserService} class.
@@ -37,12 +41,19 @@ public class UserService implements UserDetailsService {
      * @param userRepository    the repository used to interact with the user database.
      * @param passwordEncoder   the password encoder used to encode user passwords.
      * @param fileStorageService the service used for handling user profile image uploads.
+     * @param imageVariantService the service generating thumbnails of uploaded profile images.
+     * @param principalCache    the cache of authenticated principals, invalidated whenever a user changes.
+     * @param dispatcherDirectory the in-memory contact directory, updated whenever a user changes.
      */
     public UserService(UserRepository userRepository, @Lazy PasswordEncoder passwordEncoder,
-                       FileStorageService fileStorageService) {
+                       FileStorageService fileStorageService, ImageVariantService imageVariantService,
+                       PrincipalCache principalCache, DispatcherDirectory dispatcherDirectory) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.fileStorageService = fileStorageService;
+        this.imageVariantService = imageVariantService;
+        this.principalCache = principalCache;
+        this.dispatcherDirectory = dispatcherDirectory;
     }
 
     /**
@@ -134,7 +145,9 @@ public class UserService implements UserDetailsService {
             user.setPassword(passwordEncoder.encode(user.getPassword()));
         }
 
-        return userRepository.save(user);
+        UserEntity savedUser = userRepository.save(user);
+        dispatcherDirectory.onUserSaved(savedUser);
+        return savedUser;
     }
 
     /**
@@ -150,17 +163,47 @@ public class UserService implements UserDetailsService {
     public UserDTO updateUserProfile(UUID userId, UserDTO updatedUser, MultipartFile profileImage) {
         UserEntity user = userRepository.findById(userId)
                 .orElseThrow(() -> new ErrorResponse.NoSuchUserExistsException("User not found."));
+        String previousEmail = user.getEmail();
 
         user.setName(updatedUser.getName());
         user.setEmail(updatedUser.getEmail());
         user.setPhoneNumber(updatedUser.getPhoneNumber());
 
         if (profileImage != null && !profileImage.isEmpty()) {
-            String imageUrl = fileStorageService.saveFile(profileImage, userId);
+            String previousImageUrl = user.getProfileImageUrl();
+            String imageUrl = fileStorageService.saveFile(profileImage);
             user.setProfileImageUrl(imageUrl);
+            fileStorageService.release(previousImageUrl);
+            imageVariantService.generateAsync(imageUrl);
         }
 
         userRepository.save(user);
+
+        // Drop cached principals under both the old and the new email
+        principalCache.invalidate(previousEmail);
+        principalCache.invalidate(user.getEmail());
+        dispatcherDirectory.onUserSaved(user);
+        return UserMapper.toDTO(user);
+    }
+
+    /**
+     * Changes the role of a user.
+     *
+     * @param userId the unique identifier of the user to be updated.
+     * @param role   the new role of the user.
+     * @return the updated {@link UserDTO}.
+     * @throws ErrorResponse.NoSuchUserExistsException if the user is not found.
+     */
+    @Transactional
+    public UserDTO updateUserRole(UUID userId, Role role) {
+        UserEntity user = userRepository.findById(userId)
+                .orElseThrow(() -> new ErrorResponse.NoSuchUserExistsException("User not found."));
+
+        user.setRole(role);
+        userRepository.save(user);
+
+        principalCache.invalidate(user.getEmail());
+        dispatcherDirectory.onUserSaved(user);
         return UserMapper.toDTO(user);
     }
 
@@ -171,8 +214,11 @@ public class UserService implements UserDetailsService {
      * @throws ErrorResponse.NoSuchUserExistsException if the user is not found.
      */
     public void deleteUser(UUID id) {
-        userRepository.findById(id).orElseThrow(
+        UserEntity user = userRepository.findById(id).orElseThrow(
                 () -> new ErrorResponse.NoSuchUserExistsException("User does not exist"));
         userRepository.deleteById(id);
+        fileStorageService.release(user.getProfileImageUrl());
+        principalCache.invalidate(user.getEmail());
+        dispatcherDirectory.onUserDeleted(id);
     }
 }
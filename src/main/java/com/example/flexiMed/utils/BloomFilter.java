@@ -0,0 +1,114 @@
+package com.example.flexiMed.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter for string keys.
+ * Membership checks never return false negatives; false positives occur at roughly the configured rate
+ * as long as no more than the expected number of keys are inserted.
+ * Keys are hashed directly from their characters, so checks neither allocate nor take locks.
+ */
+public class BloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashFunctions;
+
+    /**
+     * Constructs a Bloom filter sized for the expected number of keys and the target false positive rate.
+     *
+     * @param expectedInsertions The number of keys the filter is sized for.
+     * @param falsePositiveRate  The target probability of a false positive, between 0 and 1.
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter sizing.");
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (LN2 * LN2));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (bits + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount * 64;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * LN2));
+    }
+
+    /**
+     * Adds a key to the filter.
+     *
+     * @param key The key to add.
+     */
+    public void put(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            long mask = 1L << bit;
+            int index = (int) (bit >>> 6);
+            long word = words.get(index);
+            while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+                word = words.get(index);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a key may have been added to the filter.
+     *
+     * @param key The key to check.
+     * @return False if the key was definitely never added, true if it might have been.
+     */
+    public boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the size of the filter in bits.
+     *
+     * @return The number of bits in the filter.
+     */
+    public long bitSize() {
+        return bitCount;
+    }
+
+    /**
+     * Returns the number of hash functions applied per key.
+     *
+     * @return The number of hash functions.
+     */
+    public int hashFunctions() {
+        return hashFunctions;
+    }
+
+    /**
+     * Computes the 64-bit FNV-1a hash of a string's characters.
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Applies the MurmurHash3 64-bit finalizer, used to spread bits and derive the second hash.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h | 1; // Keep the second hash odd so successive probes never collapse onto one bit
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.flexiMed.utils;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread-safe in-memory cache whose entries expire after a time-to-live.
+ * Reads are lock-free; when the cache grows past its maximum size, expired entries are purged first
+ * and then the entries closest to expiry are evicted.
+ * Hit, miss and eviction counters are kept so that callers can export the cache's effectiveness.
+ *
+ * @param <K> The type of the cache keys.
+ * @param <V> The type of the cached values.
+ */
+public class ExpiringCache<K, V> {
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final long defaultTtlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs an ExpiringCache.
+     *
+     * @param maxSize    The maximum number of entries kept in the cache.
+     * @param defaultTtl The time-to-live applied to entries stored without an explicit TTL.
+     */
+    public ExpiringCache(int maxSize, Duration defaultTtl) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive.");
+        }
+        this.maxSize = maxSize;
+        this.defaultTtlNanos = defaultTtl.toNanos();
+    }
+
+    /**
+     * Returns the cached value for the given key, or null if it is absent or expired.
+     *
+     * @param key The cache key.
+     * @return The cached value, or null on a miss.
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Returns the cached value for the given key, loading and caching it with the default TTL on a miss.
+     * A null result from the loader is not cached.
+     *
+     * @param key    The cache key.
+     * @param loader The function used to load the value on a miss.
+     * @return The cached or freshly loaded value.
+     */
+    public V getOrLoad(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = loader.apply(key);
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Stores a value with the default TTL.
+     *
+     * @param key   The cache key.
+     * @param value The value to cache.
+     */
+    public void put(K key, V value) {
+        put(key, value, defaultTtlNanos);
+    }
+
+    /**
+     * Stores a value with an explicit TTL. Non-positive TTLs are ignored.
+     *
+     * @param key   The cache key.
+     * @param value The value to cache.
+     * @param ttl   How long the entry remains valid.
+     */
+    public void put(K key, V value, Duration ttl) {
+        put(key, value, ttl.toNanos());
+    }
+
+    private void put(K key, V value, long ttlNanos) {
+        if (ttlNanos <= 0) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+        if (entries.size() > maxSize) {
+            shrink();
+        }
+    }
+
+    /**
+     * Removes the entry for the given key.
+     *
+     * @param key The cache key.
+     */
+    public void invalidate(K key) {
+        if (key != null) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Removes every entry from the cache.
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of entries currently held, including entries that have expired but not yet been purged.
+     *
+     * @return The current cache size.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns a snapshot of the cache counters.
+     *
+     * @return A map containing size, hits, misses, evictions and hit rate.
+     */
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.size());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.sum());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+        return stats;
+    }
+
+    /**
+     * Brings the cache back under its maximum size by purging expired entries and,
+     * if that is not enough, evicting the entries that would expire soonest.
+     */
+    private synchronized void shrink() {
+        long now = System.nanoTime();
+        entries.entrySet().removeIf(e -> {
+            boolean expired = e.getValue().isExpired(now);
+            if (expired) {
+                evictions.increment();
+            }
+            return expired;
+        });
+
+        int excess = entries.size() - maxSize;
+        if (excess <= 0) {
+            return;
+        }
+
+        // Evict roughly a tenth of the cache at once so that shrinking is amortised over many puts.
+        long threshold = entries.values().stream()
+                .mapToLong(e -> e.expiresAtNanos)
+                .sorted()
+                .skip(Math.min(entries.size() - 1, excess + maxSize / 10))
+                .findFirst()
+                .orElse(Long.MAX_VALUE);
+
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue().expiresAtNanos - threshold <= 0) {
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * A cached value together with its expiry deadline.
+     */
+    private record Entry<V>(V value, long expiresAtNanos) {
+        boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+}
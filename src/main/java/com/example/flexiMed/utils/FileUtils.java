@@ -1,11 +1,22 @@
 package com.example.flexiMed.utils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 /**
  * Utility class for file-related operations.
- * Provides methods for sanitizing filenames to ensure they are safe for file systems.
+ * Provides methods for sanitizing filenames to ensure they are safe for file systems,
+ * and for recognizing image files by their content.
  */
 public class FileUtils {
 
+    private static final Pattern EXTENSION = Pattern.compile("\\.([a-z0-9]{1,10})$");
+
     /**
      * Sanitizes a filename by replacing or removing potentially dangerous characters.
      * This method replaces characters that are not alphanumeric, periods, or hyphens with underscores.
@@ -16,4 +27,63 @@ public class FileUtils {
     public static String sanitizeFilename(String filename) {
         return filename.replaceAll("[^a-zA-Z0-9.\\-]", "_");
     }
-}
\ No newline at end of file
+
+    /**
+     * Detects the extension of a file from its first bytes, falling back to the extension of the name it was
+     * uploaded under for formats that are not recognized.
+     *
+     * @param file             The file.
+     * @param originalFilename The name the file was uploaded under (optional).
+     * @return {@code png}, {@code jpg}, {@code gif} or {@code webp} for images of these formats, otherwise the
+     * lower-cased alphanumeric extension of the original name, or {@code bin} if it has none.
+     * @throws IOException If the file cannot be read.
+     */
+    public static String detectExtension(Path file, String originalFilename) throws IOException {
+        String sniffed = detectImageExtension(file);
+        if (sniffed != null) {
+            return sniffed;
+        }
+        Matcher matcher = originalFilename == null ? null : EXTENSION.matcher(originalFilename.toLowerCase(Locale.ROOT));
+        return matcher != null && matcher.find() ? matcher.group(1) : "bin";
+    }
+
+    /**
+     * Detects the extension of an image from its first bytes, so that identical content always gets the same
+     * extension whatever name it was uploaded under.
+     *
+     * @param file The file.
+     * @return {@code png}, {@code jpg}, {@code gif} or {@code webp} for images of these formats, null otherwise.
+     * @throws IOException If the file cannot be read.
+     */
+    public static String detectImageExtension(Path file) throws IOException {
+        byte[] header;
+        try (InputStream in = Files.newInputStream(file)) {
+            header = in.readNBytes(12);
+        }
+        if (startsWith(header, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "png";
+        }
+        if (startsWith(header, 0, 0xFF, 0xD8, 0xFF)) {
+            return "jpg";
+        }
+        if (startsWith(header, 0, 'G', 'I', 'F', '8')) {
+            return "gif";
+        }
+        if (startsWith(header, 0, 'R', 'I', 'F', 'F') && startsWith(header, 8, 'W', 'E', 'B', 'P')) {
+            return "webp";
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int... expected) {
+        if (data.length < offset + expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if ((data[offset + i] & 0xFF) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.flexiMed.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel tracking one deadline per key.
+ * <p>
+ * Time advances in ticks of {@code tickMillis}. The wheel has {@value #LEVELS} levels of {@value #SLOTS} slots:
+ * level 0 holds deadlines less than 64 ticks away, one slot per tick, and each higher level covers 64 times the
+ * span of the one below. When time reaches a higher-level slot, its entries are cascaded down to finer slots, so
+ * each entry is moved at most {@value #LEVELS} times before it expires. Scheduling, rescheduling and cancelling
+ * are O(1), and advancing one tick only touches the entries due in that tick; nothing ever scans all entries.
+ * Deadlines beyond the wheel's span (64^4 ticks) are parked in the last level and rescheduled when reached.
+ * <p>
+ * Thread-safe: all operations synchronize on the wheel. Expiry callbacks run while the lock is held and may
+ * reschedule keys.
+ *
+ * @param <K> The type of the keys.
+ */
+public class HierarchicalTimingWheel<K> {
+
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_DELTA_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final Node<K>[][] wheels;
+    private final Map<K, Node<K>> nodes = new HashMap<>();
+    private long currentTick;
+
+    /**
+     * Constructs a timing wheel starting at the given time.
+     *
+     * @param tickMillis The resolution of the wheel; deadlines fire at most one tick late.
+     * @param nowMillis  The current time, in epoch milliseconds.
+     */
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimingWheel(long tickMillis, long nowMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+        this.wheels = new Node[LEVELS][SLOTS];
+        for (Node<K>[] wheel : wheels) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                wheel[slot] = Node.sentinel();
+            }
+        }
+    }
+
+    /**
+     * Schedules the key to expire at the deadline, replacing any deadline it already had.
+     *
+     * @param key            The key.
+     * @param deadlineMillis The deadline, in epoch milliseconds.
+     */
+    public synchronized void schedule(K key, long deadlineMillis) {
+        Node<K> node = nodes.get(key);
+        if (node == null) {
+            node = new Node<>(key);
+            nodes.put(key, node);
+        } else {
+            node.unlink();
+        }
+        // Round up, so a deadline never fires early; a deadline already past fires on the next tick
+        node.deadlineTick = Math.max(currentTick + 1, (deadlineMillis + tickMillis - 1) / tickMillis);
+        insert(node);
+    }
+
+    /**
+     * Cancels the deadline of the key.
+     *
+     * @param key The key.
+     * @return True if the key had a deadline.
+     */
+    public synchronized boolean cancel(K key) {
+        Node<K> node = nodes.remove(key);
+        if (node == null) {
+            return false;
+        }
+        node.unlink();
+        return true;
+    }
+
+    /**
+     * Advances the wheel to the given time, removing every key whose deadline has passed and passing it to the
+     * callback, in deadline order (to the tick).
+     *
+     * @param nowMillis The current time, in epoch milliseconds.
+     * @param expired   The callback receiving expired keys.
+     * @return The number of keys that expired.
+     */
+    public synchronized int advance(long nowMillis, Consumer<K> expired) {
+        long targetTick = nowMillis / tickMillis;
+        int count = 0;
+        List<Node<K>> due = new ArrayList<>();
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Cascade coarse levels first: entries they move down may belong to a finer slot starting now
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    Node<K> head = wheels[level][slotIndex(currentTick, level)];
+                    for (Node<K> node = head.next; node != head; ) {
+                        Node<K> next = node.next;
+                        node.unlink();
+                        insert(node);
+                        node = next;
+                    }
+                }
+            }
+
+            Node<K> head = wheels[0][(int) (currentTick & SLOT_MASK)];
+            for (Node<K> node = head.next; node != head; ) {
+                Node<K> next = node.next;
+                node.unlink();
+                due.add(node);
+                node = next;
+            }
+            for (Node<K> node : due) {
+                if (node.deadlineTick > currentTick) {
+                    insert(node);  // Was parked beyond the wheel's span
+                } else {
+                    nodes.remove(node.key);
+                    count++;
+                    expired.accept(node.key);
+                }
+            }
+            due.clear();
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of keys with a pending deadline.
+     */
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    private void insert(Node<K> node) {
+        long delta = Math.min(node.deadlineTick - currentTick, MAX_DELTA_TICKS);
+        long placedTick = currentTick + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        wheels[level][slotIndex(placedTick, level)].append(node);
+    }
+
+    private static int slotIndex(long tick, int level) {
+        return (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+    }
+
+    /**
+     * An entry in a slot's circular doubly linked list; each slot has a sentinel head.
+     */
+    private static final class Node<K> {
+
+        private final K key;
+        private long deadlineTick;
+        private Node<K> previous = this;
+        private Node<K> next = this;
+
+        private Node(K key) {
+            this.key = key;
+        }
+
+        static <K> Node<K> sentinel() {
+            return new Node<>(null);
+        }
+
+        void append(Node<K> node) {
+            node.previous = previous;
+            node.next = this;
+            previous.next = node;
+            previous = node;
+        }
+
+        void unlink() {
+            previous.next = next;
+            next.previous = previous;
+            previous = this;
+            next = this;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.flexiMed.utils;
+
+import java.util.Map;
+
+/**
+ * Implemented by components that expose runtime metrics (cache hit rates, queue depths, latencies).
+ * All implementations are collected by the metrics endpoint and reported under their {@link #metricsName()}.
+ */
+public interface MetricsSource {
+
+    /**
+     * Returns the name under which this component's metrics are reported.
+     *
+     * @return The metrics group name.
+     */
+    String metricsName();
+
+    /**
+     * Returns a point-in-time snapshot of this component's metrics.
+     *
+     * @return A map of metric names to values.
+     */
+    Map<String, Object> metrics();
+}
@@ -0,0 +1,39 @@
+package com.example.flexiMed.utils;
+
+/**
+ * Utility class for phone number handling.
+ * Provides normalization so that numbers entered with different formatting compare equal.
+ */
+public class PhoneUtils {
+
+    /**
+     * Normalizes a phone number by stripping formatting characters (spaces, dashes, dots, parentheses).
+     * A leading "+" is kept and a leading international "00" prefix is rewritten to "+".
+     *
+     * @param phoneNumber The phone number to normalize.
+     * @return The normalized phone number, or null if the input contains no digits.
+     */
+    public static String normalize(String phoneNumber) {
+        if (phoneNumber == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(phoneNumber.length());
+        boolean international = false;
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (c == '+' && digits.isEmpty()) {
+                international = true;
+            }
+        }
+        if (digits.isEmpty()) {
+            return null;
+        }
+        if (!international && digits.length() > 2 && digits.charAt(0) == '0' && digits.charAt(1) == '0') {
+            digits.delete(0, 2);
+            international = true;
+        }
+        return international ? "+" + digits : digits.toString();
+    }
+}
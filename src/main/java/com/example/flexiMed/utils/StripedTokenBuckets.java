@@ -0,0 +1,61 @@
+package com.example.flexiMed.utils;
+
+/**
+ * A fixed set of token buckets selected by hashing a key, used to rate limit an unbounded key space
+ * (client IPs, account names) in constant memory.
+ * Keys that share a stripe share a bucket, so with enough stripes a collision only makes throttling
+ * slightly stricter for the keys involved; contention is spread across the stripes' independent locks.
+ */
+public class StripedTokenBuckets {
+
+    private final TokenBucket[] stripes;
+    private final int mask;
+
+    /**
+     * Constructs a StripedTokenBuckets.
+     *
+     * @param stripes         The number of buckets, rounded up to a power of two.
+     * @param capacity        The burst size of each bucket.
+     * @param refillPerSecond The refill rate of each bucket in tokens per second.
+     */
+    public StripedTokenBuckets(int stripes, double capacity, double refillPerSecond) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Stripe count must be positive.");
+        }
+        int size = Integer.highestOneBit(Math.min(stripes, 1 << 30));
+        if (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new TokenBucket[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new TokenBucket(capacity, refillPerSecond);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Tries to consume a token from the bucket for the given key.
+     *
+     * @param key The key being rate limited.
+     * @return 0 if a token was consumed, otherwise the number of nanoseconds until a token becomes available.
+     */
+    public long tryConsume(String key) {
+        return stripe(key).tryConsume();
+    }
+
+    /**
+     * Checks whether the bucket for the given key has a token, without consuming it.
+     *
+     * @param key The key being rate limited.
+     * @return 0 if a token is available, otherwise the number of nanoseconds until one becomes available.
+     */
+    public long peek(String key) {
+        return stripe(key).peek();
+    }
+
+    private TokenBucket stripe(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);  // Spread the high bits so that similar keys land on different stripes
+        return stripes[h & mask];
+    }
+}
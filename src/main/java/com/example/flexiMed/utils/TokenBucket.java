@@ -0,0 +1,85 @@
+package com.example.flexiMed.utils;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A thread-safe token bucket rate limiter.
+ * The bucket holds up to {@code capacity} tokens and refills continuously at a fixed rate;
+ * each permitted operation consumes one token.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * Constructs a full TokenBucket.
+     *
+     * @param capacity        The maximum number of tokens (burst size).
+     * @param refillPerSecond The number of tokens added per second.
+     */
+    public TokenBucket(double capacity, double refillPerSecond) {
+        if (capacity <= 0 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Token bucket capacity and refill rate must be positive.");
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Tries to consume a single token.
+     *
+     * @return 0 if a token was consumed, otherwise the number of nanoseconds until a token becomes available.
+     */
+    public synchronized long tryConsume() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return waitNanos();
+    }
+
+    /**
+     * Checks whether a token is available without consuming it.
+     *
+     * @return 0 if a token is available, otherwise the number of nanoseconds until one becomes available.
+     */
+    public synchronized long peek() {
+        refill();
+        return tokens >= 1 ? 0 : waitNanos();
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+
+    private long waitNanos() {
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    /**
+     * Consumes a single token, waiting until one becomes available.
+     *
+     * @return The number of nanoseconds spent waiting.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public long acquire() throws InterruptedException {
+        long start = System.nanoTime();
+        long waitNanos;
+        while ((waitNanos = tryConsume()) > 0) {
+            LockSupport.parkNanos(this, waitNanos);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
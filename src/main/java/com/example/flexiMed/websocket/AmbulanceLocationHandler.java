@@ -2,34 +2,68 @@ package com.example.flexiMed.websocket;
 
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
 /**
  * Handles WebSocket communication for ambulance location updates.
  * This class extends TextWebSocketHandler to manage WebSocket sessions and send location data to specific users.
+ * Sessions belong to the user authenticated by the {@link JwtHandshakeInterceptor} during the handshake.
+ * Sessions are kept in a {@link SessionRegistry}, so a user may have several open sessions and a slow client
+ * never blocks the thread publishing the update.
+ * Clients offering the {@value LocationFrameCodec#SUBPROTOCOL} subprotocol receive binary frames; others receive JSON.
+ * permessage-deflate is negotiated by the servlet container when the client offers it.
  */
 @Service
-public class AmbulanceLocationHandler extends TextWebSocketHandler {
+public class AmbulanceLocationHandler extends TextWebSocketHandler implements SubProtocolCapable {
+
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+
+    private final SessionRegistry sessionRegistry;
+    private final LocationBroadcaster locationBroadcaster;
 
     /**
-     * A thread-safe map to store WebSocket sessions associated with user IDs.
+     * Constructs an AmbulanceLocationHandler.
+     *
+     * @param sessionRegistry     The registry holding the open sessions of every user.
+     * @param locationBroadcaster The broadcaster pushing conflated location frames to subscribed sessions.
      */
-    private final ConcurrentHashMap<String, WebSocketSession> userSessions = new ConcurrentHashMap<>();
+    public AmbulanceLocationHandler(SessionRegistry sessionRegistry, LocationBroadcaster locationBroadcaster) {
+        this.sessionRegistry = sessionRegistry;
+        this.locationBroadcaster = locationBroadcaster;
+    }
 
     /**
      * Called after a WebSocket connection has been established.
-     * Stores the WebSocket session associated with the user ID extracted from the session.
+     * Registers the WebSocket session under the authenticated user's ID
+     * and subscribes it to location frames at the rate of its subscriber class.
      *
      * @param session The WebSocketSession representing the connection.
      */
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         String userId = getUserIdFromSession(session);
-        userSessions.put(userId, session);
+        sessionRegistry.register(userId, session);
+        boolean binary = LocationFrameCodec.SUBPROTOCOL.equals(session.getAcceptedProtocol());
+        boolean deflate = session.getExtensions().stream()
+                .anyMatch(extension -> PERMESSAGE_DEFLATE.equals(extension.getName()));
+        locationBroadcaster.subscribe(session.getId(), userId, getQueryParam(session, "class"), binary, deflate);
+    }
+
+    /**
+     * Returns the subprotocols this handler supports, offered to clients during the handshake.
+     *
+     * @return The binary location frame subprotocol.
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(LocationFrameCodec.SUBPROTOCOL);
     }
 
     /**
@@ -46,7 +80,7 @@ public class AmbulanceLocationHandler extends TextWebSocketHandler {
 
     /**
      * Called after a WebSocket connection has been closed.
-     * Removes the WebSocket session associated with the user ID.
+     * Unregisters the WebSocket session from the user ID.
      *
      * @param session The WebSocketSession that was closed.
      * @param status  The CloseStatus indicating the reason for the closure.
@@ -54,35 +88,42 @@ public class AmbulanceLocationHandler extends TextWebSocketHandler {
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         String userId = getUserIdFromSession(session);
-        userSessions.remove(userId);
+        locationBroadcaster.unsubscribe(session.getId());
+        sessionRegistry.unregister(userId, session);
     }
 
     /**
-     * Sends a location update to a specific user.
+     * Sends a location update to every open session of a specific user.
+     * The update is queued for each session and this method returns without waiting for the clients.
      *
      * @param userId       The ID of the user to send the location update to.
      * @param locationJson The location data in JSON format.
      */
     public void sendLocationToUser(String userId, String locationJson) {
-        WebSocketSession session = userSessions.get(userId);
-        if (session != null && session.isOpen()) {
-            try {
-                session.sendMessage(new TextMessage(locationJson));
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
+        sessionRegistry.sendToUser(userId, new TextMessage(locationJson));
     }
 
     /**
-     * Extracts the user ID from the WebSocket session's query parameters.
+     * Returns the ID of the user authenticated during the handshake.
      *
      * @param session The WebSocketSession.
-     * @return The user ID extracted from the query parameters, or "unknown" if not found.
+     * @return The user ID stored by the {@link JwtHandshakeInterceptor}.
      */
     private String getUserIdFromSession(WebSocketSession session) {
-        // Extract user ID from query params (e.g., ws://localhost:8080/ws/ambulance-updates?userId=USER123)
-        String query = session.getUri().getQuery();
-        return query != null && query.startsWith("userId=") ? query.split("=")[1] : "unknown";
+        return session.getAttributes().get(JwtHandshakeInterceptor.USER_ID_ATTRIBUTE).toString();
+    }
+
+    /**
+     * Returns a query parameter of the session's handshake URI.
+     *
+     * @param session The WebSocketSession.
+     * @param name    The name of the query parameter.
+     * @return The first value of the parameter, or null if absent.
+     */
+    private String getQueryParam(WebSocketSession session, String name) {
+        if (session.getUri() == null) {
+            return null;
+        }
+        return UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().getFirst(name);
     }
 }
\ No newline at end of file
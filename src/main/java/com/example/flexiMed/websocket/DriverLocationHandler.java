@@ -0,0 +1,198 @@
+package com.example.flexiMed.websocket;
+
+import com.example.flexiMed.enums.Role;
+import com.example.flexiMed.service.AmbulancePresence;
+import com.example.flexiMed.service.DispatcherDirectory;
+import com.example.flexiMed.utils.MetricsSource;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ingest endpoint for driver GPS pings over a persistent WebSocket.
+ * The connection is authenticated once by the {@link JwtHandshakeInterceptor}; each message then costs a JSON parse,
+ * an in-memory authorization check and a hand-off to the {@link LocationPipeline}, with no token parsing, user lookup
+ * or transaction per ping.
+ * <p>
+ * A message is a ping object, or an array of ping objects sent together:
+ * {@code {"ambulanceId": "...", "lat": -1.29, "lng": 36.82, "ts": 1760000000000}}, where {@code ts} is optional
+ * and defaults to the time of receipt. Drivers may only report the ambulance whose driver contact matches their
+ * phone number; administrators may report any ambulance.
+ * <p>
+ * Every frame counts as a heartbeat of the driver's ambulance, so an app with nothing new to report can keep its
+ * ambulance available by sending any frame (such as {@code {}}) on the connection.
+ */
+@Component
+public class DriverLocationHandler extends TextWebSocketHandler implements MetricsSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(DriverLocationHandler.class);
+
+    /**
+     * How far in the future a ping timestamp may be before it is clamped to the time of receipt.
+     */
+    private static final long MAX_CLOCK_SKEW_MILLIS = 5_000;
+
+    /**
+     * Session attribute holding the ambulance of the session's latest accepted ping.
+     */
+    private static final String AMBULANCE_ID_ATTRIBUTE = "ambulanceId";
+
+    private final LocationPipeline locationPipeline;
+    private final DispatcherDirectory dispatcherDirectory;
+    private final AmbulancePresence ambulancePresence;
+    private final ObjectMapper objectMapper;
+
+    private final LongAdder connections = new LongAdder();
+    private final LongAdder pings = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+
+    /**
+     * Constructs a DriverLocationHandler.
+     *
+     * @param locationPipeline    The pipeline receiving accepted pings.
+     * @param dispatcherDirectory The directory used to check which ambulance a driver drives.
+     * @param ambulancePresence   The tracker recording a heartbeat for frames without a position.
+     * @param objectMapper        The mapper used to parse pings.
+     */
+    public DriverLocationHandler(LocationPipeline locationPipeline, DispatcherDirectory dispatcherDirectory,
+                                 AmbulancePresence ambulancePresence, ObjectMapper objectMapper) {
+        this.locationPipeline = locationPipeline;
+        this.dispatcherDirectory = dispatcherDirectory;
+        this.ambulancePresence = ambulancePresence;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Only drivers and administrators may stream pings.
+     *
+     * @param session The WebSocketSession representing the connection.
+     * @throws IOException If the session cannot be closed.
+     */
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        Role role = (Role) session.getAttributes().get(JwtHandshakeInterceptor.ROLE_ATTRIBUTE);
+        if (role != Role.DRIVER && role != Role.ADMIN) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Only drivers may stream locations"));
+            return;
+        }
+        connections.increment();
+    }
+
+    /**
+     * Handles a ping, or an array of pings, from the driver.
+     *
+     * @param session The WebSocketSession from which the message was received.
+     * @param message The TextMessage received.
+     */
+    @Override
+    public void handleTextMessage(WebSocketSession session, TextMessage message) {
+        UUID lastAmbulanceId = (UUID) session.getAttributes().get(AMBULANCE_ID_ATTRIBUTE);
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(message.getPayload());
+        } catch (IOException e) {
+            malformed.increment();
+            root = null;
+        }
+
+        UUID userId = (UUID) session.getAttributes().get(JwtHandshakeInterceptor.USER_ID_ATTRIBUTE);
+        Role role = (Role) session.getAttributes().get(JwtHandshakeInterceptor.ROLE_ATTRIBUTE);
+        UUID reported = null;
+        if (root != null && root.isArray()) {
+            for (JsonNode ping : root) {
+                UUID ambulanceId = handlePing(ping, userId, role);
+                reported = ambulanceId != null ? ambulanceId : reported;
+            }
+        } else if (root != null && !root.isEmpty()) {  // An empty object is a bare heartbeat
+            reported = handlePing(root, userId, role);
+        }
+
+        if (reported != null) {
+            if (!reported.equals(lastAmbulanceId)) {
+                session.getAttributes().put(AMBULANCE_ID_ATTRIBUTE, reported);
+            }
+        } else if (lastAmbulanceId != null) {
+            ambulancePresence.heartbeat(lastAmbulanceId);  // No position in this frame, but the app is alive
+        }
+    }
+
+    /**
+     * Handles one ping.
+     *
+     * @return The ID of the reported ambulance, or null if the ping was rejected.
+     */
+    private UUID handlePing(JsonNode ping, UUID userId, Role role) {
+        UUID ambulanceId;
+        try {
+            ambulanceId = UUID.fromString(ping.path("ambulanceId").asText());
+        } catch (IllegalArgumentException e) {
+            malformed.increment();
+            return null;
+        }
+        JsonNode lat = ping.get("lat");
+        JsonNode lng = ping.get("lng");
+        if (lat == null || lng == null || !lat.isNumber() || !lng.isNumber()
+                || Math.abs(lat.asDouble()) > 90 || Math.abs(lng.asDouble()) > 180) {
+            malformed.increment();
+            return null;
+        }
+        if (!mayReport(userId, role, ambulanceId)) {
+            rejected.increment();
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        long timestamp = ping.path("ts").asLong(now);
+        if (timestamp > now + MAX_CLOCK_SKEW_MILLIS) {
+            timestamp = now;
+        }
+        pings.increment();
+        locationPipeline.submit(ambulanceId, lat.asDouble(), lng.asDouble(), timestamp);
+        return ambulanceId;
+    }
+
+    /**
+     * Checks whether the user may report the location of the ambulance, using the in-memory dispatcher directory.
+     */
+    private boolean mayReport(UUID userId, Role role, UUID ambulanceId) {
+        if (role == Role.ADMIN) {
+            return true;
+        }
+        return dispatcherDirectory.findByAmbulanceId(ambulanceId)
+                .map(driver -> driver.userId().equals(userId))
+                .orElse(false);
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        logger.debug("Driver WebSocket transport error on session {}: {}", session.getId(), exception.getMessage());
+    }
+
+    @Override
+    public String metricsName() {
+        return "driverIngest";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("connections", connections.sum());
+        metrics.put("pings", pings.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("malformed", malformed.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.flexiMed.websocket;
+
+import com.example.flexiMed.utils.MetricsSource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.AbstractSubscriptionRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.PathMatcher;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Subscription registry for the in-memory STOMP broker, indexed by destination.
+ * <p>
+ * Spring's default registry answers a destination it has not cached by scanning every subscription of every
+ * session, and caches only a limited number of destinations. User destinations give each session its own queue
+ * ({@code /queue/ambulance-user<sessionId>}), and a user is notified rarely, so nearly every lookup is a miss:
+ * with 100k connected users each notification cost a scan of 100k subscriptions (10 to 17 ms in a benchmark).
+ * Here exact destinations are kept in a hash index, so a lookup costs the same with 10 or 100k sessions; only
+ * pattern subscriptions (such as {@code /topic/fleet/**}) are matched one by one, and there are few of them.
+ * <p>
+ * Message selectors ({@code selector} subscription headers) are not supported; the application does not use them.
+ */
+@Component
+public class IndexedSubscriptionRegistry extends AbstractSubscriptionRegistry implements MetricsSource {
+
+    private static final MultiValueMap<String, String> EMPTY =
+            CollectionUtils.unmodifiableMultiValueMap(new LinkedMultiValueMap<>());
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    /**
+     * Subscribers per exact destination.
+     */
+    private final ConcurrentHashMap<String, Subscribers> exactSubscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Subscribers per destination pattern.
+     */
+    private final ConcurrentHashMap<String, Subscribers> patternSubscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Session ID to subscription ID to destination, used to unregister subscriptions.
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, String>> sessions = new ConcurrentHashMap<>();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder snapshotBuilds = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+
+    @Override
+    protected void addSubscriptionInternal(String sessionId, String subscriptionId, String destination,
+                                           Message<?> message) {
+        String previous = sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                .put(subscriptionId, destination);
+        if (previous != null) {
+            unindex(previous, sessionId, subscriptionId);  // Subscription ID reused for another destination
+        }
+        // Structural changes go through compute() so a concurrent removal cannot drop a new subscription
+        indexFor(destination).compute(destination, (key, subscribers) -> {
+            Subscribers result = subscribers != null ? subscribers : new Subscribers();
+            result.add(sessionId, subscriptionId);
+            return result;
+        });
+    }
+
+    @Override
+    protected void removeSubscriptionInternal(String sessionId, String subscriptionId, Message<?> message) {
+        Map<String, String> subscriptions = sessions.get(sessionId);
+        String destination = subscriptions == null ? null : subscriptions.remove(subscriptionId);
+        if (destination != null) {
+            unindex(destination, sessionId, subscriptionId);
+        }
+        sessions.computeIfPresent(sessionId, (id, remaining) -> remaining.isEmpty() ? null : remaining);
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+        Map<String, String> subscriptions = sessions.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.forEach((subscriptionId, destination) -> unindex(destination, sessionId, subscriptionId));
+        }
+    }
+
+    @Override
+    protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+        lookups.increment();
+        Subscribers exact = exactSubscriptions.get(destination);
+        MultiValueMap<String, String> result = exact == null ? EMPTY : exact.snapshot();
+        if (!patternSubscriptions.isEmpty()) {
+            for (Map.Entry<String, Subscribers> entry : patternSubscriptions.entrySet()) {
+                if (pathMatcher.match(entry.getKey(), destination)) {
+                    result = merge(result, entry.getValue().snapshot());
+                }
+            }
+        }
+        matches.add(result.size());
+        return result;
+    }
+
+    private MultiValueMap<String, String> merge(MultiValueMap<String, String> first,
+                                                MultiValueMap<String, String> second) {
+        if (first.isEmpty()) {
+            return second;
+        }
+        MultiValueMap<String, String> merged = new LinkedMultiValueMap<>(first.size() + second.size());
+        first.forEach(merged::addAll);
+        second.forEach(merged::addAll);
+        return merged;
+    }
+
+    private void unindex(String destination, String sessionId, String subscriptionId) {
+        indexFor(destination).computeIfPresent(destination, (key, subscribers) ->
+                subscribers.remove(sessionId, subscriptionId) ? null : subscribers);
+    }
+
+    private ConcurrentHashMap<String, Subscribers> indexFor(String destination) {
+        return pathMatcher.isPattern(destination) ? patternSubscriptions : exactSubscriptions;
+    }
+
+    @Override
+    public String metricsName() {
+        return "stompSubscriptions";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sessions", sessions.size());
+        metrics.put("destinations", exactSubscriptions.size());
+        metrics.put("patterns", patternSubscriptions.size());
+        metrics.put("lookups", lookups.sum());
+        metrics.put("snapshotBuilds", snapshotBuilds.sum());
+        metrics.put("matchedSessions", matches.sum());
+        return metrics;
+    }
+
+    /**
+     * The subscribers of one destination or pattern, with an immutable snapshot of them that is reused by
+     * lookups until the subscribers change, so broadcasting to a topic with many subscribers does not copy
+     * them on every message.
+     */
+    private final class Subscribers {
+
+        /**
+         * Session ID to subscription IDs.
+         */
+        private final ConcurrentHashMap<String, Set<String>> subscriptions = new ConcurrentHashMap<>();
+        private final AtomicLong version = new AtomicLong();
+        private volatile Snapshot snapshot;
+
+        void add(String sessionId, String subscriptionId) {
+            subscriptions.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet()).add(subscriptionId);
+            version.incrementAndGet();
+        }
+
+        /**
+         * Removes a subscription.
+         *
+         * @return True if no subscriptions remain.
+         */
+        boolean remove(String sessionId, String subscriptionId) {
+            subscriptions.computeIfPresent(sessionId, (id, subscriptionIds) -> {
+                subscriptionIds.remove(subscriptionId);
+                return subscriptionIds.isEmpty() ? null : subscriptionIds;
+            });
+            version.incrementAndGet();
+            return subscriptions.isEmpty();
+        }
+
+        MultiValueMap<String, String> snapshot() {
+            Snapshot current = snapshot;
+            long currentVersion = version.get();
+            if (current != null && current.version == currentVersion) {
+                return current.subscriptions;
+            }
+            // Read the version first: a change racing with the copy leaves the snapshot outdated, not wrong
+            LinkedMultiValueMap<String, String> copy = new LinkedMultiValueMap<>(subscriptions.size());
+            subscriptions.forEach((sessionId, subscriptionIds) -> copy.put(sessionId, List.copyOf(subscriptionIds)));
+            MultiValueMap<String, String> result = CollectionUtils.unmodifiableMultiValueMap(copy);
+            snapshot = new Snapshot(currentVersion, result);
+            snapshotBuilds.increment();
+            return result;
+        }
+    }
+
+    private record Snapshot(long version, MultiValueMap<String, String> subscriptions) {
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.flexiMed.websocket;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * Authenticates WebSocket handshakes with a JWT access token, so that a long-lived connection is authenticated
+ * once instead of on every message. The token is read from the {@code Authorization: Bearer} header or, since
+ * browsers cannot set headers on WebSocket requests, from the {@code access_token} query parameter, and verified
+ * by the {@link WebSocketAuthenticator}.
+ * On success the user's ID and role are stored in the session attributes under {@link #USER_ID_ATTRIBUTE} and
+ * {@link #ROLE_ATTRIBUTE}; otherwise the handshake is refused with 401.
+ */
+@Component
+public class JwtHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String USER_ID_ATTRIBUTE = "userId";
+    public static final String ROLE_ATTRIBUTE = "role";
+
+    private final WebSocketAuthenticator authenticator;
+
+    /**
+     * Constructs a JwtHandshakeInterceptor.
+     *
+     * @param authenticator The authenticator verifying the presented token.
+     */
+    public JwtHandshakeInterceptor(WebSocketAuthenticator authenticator) {
+        this.authenticator = authenticator;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        WebSocketAuthenticator.AuthenticatedUser user = authenticator.authenticate(extractToken(request));
+        if (user == null) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        attributes.put(USER_ID_ATTRIBUTE, user.userId());
+        attributes.put(ROLE_ATTRIBUTE, user.role());
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+        // Nothing to do after the handshake
+    }
+
+    /**
+     * Extracts the bearer token from the Authorization header or the access_token query parameter.
+     *
+     * @param request The handshake request.
+     * @return The token, or null if none was supplied.
+     */
+    private String extractToken(ServerHttpRequest request) {
+        String authorizationHeader = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
+            return authorizationHeader.substring(7);
+        }
+        return UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("access_token");
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.flexiMed.websocket;
+
+import com.example.flexiMed.utils.MetricsSource;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Conflating broadcaster for ambulance locations.
+ * Driver pings only overwrite the latest position of the ambulance for each interested user; nothing is sent
+ * when a ping arrives. Instead, a fixed-rate tick per subscriber class pushes one frame to each subscribed session
+ * containing every ambulance that moved since that session's previous frame. Outbound message count is therefore
+ * bounded by subscribers × ticks, however fast drivers ping.
+ * <p>
+ * Subscriber classes are listed in {@code websocket.broadcast.classes}, each with its own
+ * {@code websocket.broadcast.<class>.tick-ms}; sessions choose one with the {@code class} query parameter
+ * and fall back to {@value #DEFAULT_CLASS}.
+ * <p>
+ * Sessions that negotiated the {@value LocationFrameCodec#SUBPROTOCOL} subprotocol receive compact binary frames
+ * (see {@link LocationFrameCodec}); other clients keep receiving JSON text frames.
+ */
+@Component
+public class LocationBroadcaster implements MetricsSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationBroadcaster.class);
+    public static final String DEFAULT_CLASS = "default";
+
+    private final SessionRegistry sessionRegistry;
+    private final ObjectMapper objectMapper;
+    private final long retentionMillis;
+    private final Map<String, Long> tickMillisByClass = new LinkedHashMap<>();
+    private final ScheduledExecutorService ticker;
+
+    /**
+     * Latest known position of each ambulance, per interested user.
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<UUID, Position>> positionsByUser = new ConcurrentHashMap<>();
+
+    /**
+     * Subscribed sessions keyed by session ID.
+     */
+    private final ConcurrentHashMap<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Sequence stamped on every position, so each session can tell which positions it has not seen.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final LongAdder pings = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder positionsSent = new LongAdder();
+    private final LongAdder framesDropped = new LongAdder();
+    private final LongAdder binaryBytes = new LongAdder();
+    private final LongAdder jsonBytes = new LongAdder();
+
+    /**
+     * Constructs a LocationBroadcaster and starts one tick per subscriber class.
+     *
+     * @param sessionRegistry The registry used to send frames to sessions.
+     * @param objectMapper    The mapper used to serialize frames.
+     * @param environment     The environment holding the per-class tick intervals.
+     */
+    public LocationBroadcaster(SessionRegistry sessionRegistry, ObjectMapper objectMapper, Environment environment) {
+        this.sessionRegistry = sessionRegistry;
+        this.objectMapper = objectMapper;
+        this.retentionMillis = environment.getProperty("websocket.broadcast.retention-ms", Long.class, 300000L);
+
+        String[] classes = environment.getProperty("websocket.broadcast.classes", String[].class,
+                new String[]{DEFAULT_CLASS});
+        tickMillisByClass.put(DEFAULT_CLASS, environment.getProperty(
+                "websocket.broadcast." + DEFAULT_CLASS + ".tick-ms", Long.class, 1000L));
+        for (String subscriberClass : classes) {
+            tickMillisByClass.putIfAbsent(subscriberClass.trim(), environment.getProperty(
+                    "websocket.broadcast." + subscriberClass.trim() + ".tick-ms", Long.class, 1000L));
+        }
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "location-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        tickMillisByClass.forEach((subscriberClass, tickMillis) -> ticker.scheduleAtFixedRate(
+                () -> tick(subscriberClass), tickMillis, tickMillis, TimeUnit.MILLISECONDS));
+        ticker.scheduleWithFixedDelay(this::purgeStalePositions, retentionMillis, retentionMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records the latest position of an ambulance for a user. The position is sent on the next tick
+     * of each of the user's sessions, superseding any position not yet sent.
+     *
+     * @param userId      The ID of the user following the ambulance.
+     * @param ambulanceId The ID of the ambulance.
+     * @param latitude    The latitude of the ambulance.
+     * @param longitude   The longitude of the ambulance.
+     */
+    public void publish(String userId, UUID ambulanceId, double latitude, double longitude) {
+        pings.increment();
+        positionsByUser.computeIfAbsent(userId, id -> new ConcurrentHashMap<>())
+                .put(ambulanceId, new Position(ambulanceId, latitude, longitude, System.currentTimeMillis(),
+                        sequence.incrementAndGet()));
+    }
+
+    /**
+     * Subscribes a session to the locations published for its user.
+     *
+     * @param sessionId       The ID of the session.
+     * @param userId          The ID of the user owning the session.
+     * @param subscriberClass The requested subscriber class; unknown classes fall back to the default class.
+     * @param binary          Whether the session negotiated binary frames.
+     * @param deflate         Whether the session negotiated permessage-deflate compression.
+     */
+    public void subscribe(String sessionId, String userId, String subscriberClass, boolean binary, boolean deflate) {
+        String resolved = subscriberClass != null && tickMillisByClass.containsKey(subscriberClass)
+                ? subscriberClass : DEFAULT_CLASS;
+        subscribers.put(sessionId, new Subscriber(sessionId, userId, resolved,
+                binary ? new LocationFrameCodec.Encoder() : null, deflate));
+    }
+
+    /**
+     * Unsubscribes a closed session.
+     *
+     * @param sessionId The ID of the session.
+     */
+    public void unsubscribe(String sessionId) {
+        subscribers.remove(sessionId);
+    }
+
+    /**
+     * Sends each session of the given class one frame with the positions it has not seen yet.
+     */
+    private void tick(String subscriberClass) {
+        try {
+            for (Subscriber subscriber : subscribers.values()) {
+                if (subscriber.subscriberClass.equals(subscriberClass)) {
+                    flush(subscriber);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Location broadcast tick failed for class {}", subscriberClass, e);  // Keep the tick alive
+        }
+    }
+
+    private void flush(Subscriber subscriber) {
+        Map<UUID, Position> positions = positionsByUser.get(subscriber.userId);
+        if (positions == null) {
+            return;
+        }
+        List<Position> changed = new ArrayList<>();
+        for (Position position : positions.values()) {
+            Long sent = subscriber.sentSequences.get(position.ambulanceId);
+            if (sent == null || sent != position.sequence) {
+                changed.add(position);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        WebSocketMessage<?> frame;
+        if (subscriber.encoder != null) {
+            frame = new BinaryMessage(subscriber.encoder.encode(changed, System.currentTimeMillis()));
+        } else {
+            try {
+                frame = new TextMessage(objectMapper.writeValueAsString(changed));
+            } catch (JsonProcessingException e) {
+                logger.error("Failed to serialize location frame", e);
+                return;
+            }
+        }
+
+        if (sessionRegistry.sendToSession(subscriber.sessionId, frame)) {
+            changed.forEach(position -> subscriber.sentSequences.put(position.ambulanceId, position.sequence));
+            frames.increment();
+            positionsSent.add(changed.size());
+            (subscriber.encoder != null ? binaryBytes : jsonBytes).add(frame.getPayloadLength());
+        } else {
+            framesDropped.increment();  // Retried with the latest positions on the next tick
+            if (subscriber.encoder != null) {
+                subscriber.encoder.reset();  // The client missed a delta; resynchronise with a key frame
+                subscriber.sentSequences.clear();
+            }
+        }
+    }
+
+    /**
+     * Forgets positions that have not been updated within the retention period.
+     */
+    private void purgeStalePositions() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        positionsByUser.forEach((userId, positions) -> {
+            positions.values().removeIf(position -> position.timestamp < cutoff);
+            if (positions.isEmpty()) {
+                positionsByUser.remove(userId, positions);
+            }
+        });
+        for (Subscriber subscriber : subscribers.values()) {
+            Map<UUID, Position> positions = positionsByUser.get(subscriber.userId);
+            subscriber.sentSequences.keySet().removeIf(id -> positions == null || !positions.containsKey(id));
+        }
+    }
+
+    /**
+     * Stops the ticks when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    @Override
+    public String metricsName() {
+        return "locationBroadcast";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long pingCount = pings.sum();
+        long sentCount = positionsSent.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("tickMillisByClass", tickMillisByClass);
+        metrics.put("subscribers", subscribers.size());
+        metrics.put("trackedUsers", positionsByUser.size());
+        metrics.put("pings", pingCount);
+        metrics.put("frames", frames.sum());
+        metrics.put("framesDropped", framesDropped.sum());
+        metrics.put("positionsSent", sentCount);
+        metrics.put("conflatedPings", Math.max(0, pingCount - sentCount));
+        metrics.put("binarySubscribers", subscribers.values().stream().filter(s -> s.encoder != null).count());
+        metrics.put("deflateSubscribers", subscribers.values().stream().filter(s -> s.deflate).count());
+        metrics.put("binaryBytes", binaryBytes.sum());
+        metrics.put("jsonBytes", jsonBytes.sum());
+        return metrics;
+    }
+
+    /**
+     * The latest position of an ambulance, as sent to clients.
+     *
+     * @param ambulanceId The ID of the ambulance.
+     * @param lat         The latitude.
+     * @param lng         The longitude.
+     * @param timestamp   When the position was received, in epoch milliseconds.
+     * @param sequence    The global sequence number of the update (not serialized).
+     */
+    public record Position(UUID ambulanceId, double lat, double lng, long timestamp,
+                           @JsonIgnore long sequence) {
+    }
+
+    /**
+     * A subscribed session, its binary encoder (null for JSON clients) and the sequence of the last position it
+     * was sent for each ambulance. Only the ticker thread uses the encoder and the sent sequences.
+     */
+    private static final class Subscriber {
+        private final String sessionId;
+        private final String userId;
+        private final String subscriberClass;
+        private final LocationFrameCodec.Encoder encoder;
+        private final boolean deflate;
+        private final Map<UUID, Long> sentSequences = new HashMap<>();
+
+        private Subscriber(String sessionId, String userId, String subscriberClass,
+                           LocationFrameCodec.Encoder encoder, boolean deflate) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.subscriberClass = subscriberClass;
+            this.encoder = encoder;
+            this.deflate = deflate;
+        }
+    }
+}
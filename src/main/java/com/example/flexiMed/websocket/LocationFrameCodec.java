@@ -0,0 +1,221 @@
+package com.example.flexiMed.websocket;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact, versioned binary encoding of location frames, negotiated with the {@value #SUBPROTOCOL} WebSocket
+ * subprotocol. Coordinates are sent as fixed-point microdegrees (about 11 cm) and, once an ambulance is known to the
+ * client, as deltas against the previous position sent for it, so a typical update fits in a handful of bytes.
+ *
+ * <pre>
+ * frame     := version:u8 flags:u8 timestamp count:varint entry*
+ * flags     := bit 0 KEY - the client must drop its state; every position is absolute and every ambulance defined
+ * timestamp := KEY ? varint(epoch millis) : zigzag(epoch millis - previous frame's epoch millis)
+ * entry     := ref:varint [uuid:16 bytes if ref &amp; 1] lat:zigzag lng:zigzag age:zigzag
+ * ref       := index &lt;&lt; 1 | define    (index is a per-connection ambulance number)
+ * lat, lng  := microdegrees; absolute for a defined entry, otherwise delta from the ambulance's previous value
+ * age       := frame timestamp - position timestamp, in milliseconds
+ * </pre>
+ * Integers are unsigned LEB128 varints; signed values are zigzag-encoded first.
+ */
+public final class LocationFrameCodec {
+
+    public static final String SUBPROTOCOL = "fleximed.location.v1";
+    public static final int VERSION = 1;
+    public static final int FLAG_KEY = 1;
+
+    private static final double MICRODEGREES = 1_000_000d;
+
+    private LocationFrameCodec() {
+    }
+
+    /**
+     * Stateful encoder for one connection. Not thread-safe: a connection's frames are encoded by a single thread.
+     */
+    public static final class Encoder {
+
+        private final Map<UUID, Integer> indices = new HashMap<>();
+        private final List<int[]> lastSent = new ArrayList<>();  // Last lat/lng sent, by index
+        private long lastFrameMillis;
+        private boolean keyPending = true;
+        private byte[] buffer = new byte[256];
+        private int length;
+
+        /**
+         * Encodes the given positions as one frame, updating the delta state.
+         *
+         * @param positions   The positions to send.
+         * @param frameMillis The frame timestamp, in epoch milliseconds.
+         * @return The encoded frame.
+         */
+        public byte[] encode(List<LocationBroadcaster.Position> positions, long frameMillis) {
+            boolean key = keyPending;
+            if (key) {
+                indices.clear();
+                lastSent.clear();
+            }
+            length = 0;
+            writeByte(VERSION);
+            writeByte(key ? FLAG_KEY : 0);
+            if (key) {
+                writeVarint(frameMillis);
+            } else {
+                writeVarint(zigzag(frameMillis - lastFrameMillis));
+            }
+            writeVarint(positions.size());
+
+            for (LocationBroadcaster.Position position : positions) {
+                int lat = (int) Math.round(position.lat() * MICRODEGREES);
+                int lng = (int) Math.round(position.lng() * MICRODEGREES);
+                Integer index = indices.get(position.ambulanceId());
+                if (index == null) {
+                    index = indices.size();
+                    indices.put(position.ambulanceId(), index);
+                    lastSent.add(new int[]{lat, lng});
+                    writeVarint((long) index << 1 | 1);
+                    writeUuid(position.ambulanceId());
+                    writeVarint(zigzag(lat));
+                    writeVarint(zigzag(lng));
+                } else {
+                    int[] previous = lastSent.get(index);
+                    writeVarint((long) index << 1);
+                    writeVarint(zigzag((long) lat - previous[0]));
+                    writeVarint(zigzag((long) lng - previous[1]));
+                    previous[0] = lat;
+                    previous[1] = lng;
+                }
+                writeVarint(zigzag(frameMillis - position.timestamp()));
+            }
+
+            lastFrameMillis = frameMillis;
+            keyPending = false;
+            return Arrays.copyOf(buffer, length);
+        }
+
+        /**
+         * Makes the next frame a key frame, e.g. after a frame could not be delivered and the client's
+         * delta state can no longer be trusted.
+         */
+        public void reset() {
+            keyPending = true;
+        }
+
+        private void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[length++] = (byte) value;
+        }
+
+        private void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        private void writeUuid(UUID uuid) {
+            ensureCapacity(16);
+            ByteBuffer.wrap(buffer, length, 16)
+                    .putLong(uuid.getMostSignificantBits())
+                    .putLong(uuid.getLeastSignificantBits());
+            length += 16;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+    }
+
+    /**
+     * Stateful decoder for one connection, mirroring {@link Encoder}. Provided as the reference for client
+     * implementations.
+     */
+    public static final class Decoder {
+
+        private final List<UUID> ambulances = new ArrayList<>();
+        private final List<int[]> lastSeen = new ArrayList<>();
+        private long lastFrameMillis;
+
+        /**
+         * Decodes one frame, updating the delta state.
+         *
+         * @param frame The encoded frame.
+         * @return The positions in the frame.
+         * @throws IllegalArgumentException If the frame has an unsupported version or is malformed.
+         */
+        public List<LocationBroadcaster.Position> decode(byte[] frame) {
+            ByteBuffer in = ByteBuffer.wrap(frame);
+            int version = in.get() & 0xFF;
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported location frame version " + version);
+            }
+            boolean key = (in.get() & FLAG_KEY) != 0;
+            if (key) {
+                ambulances.clear();
+                lastSeen.clear();
+                lastFrameMillis = readVarint(in);
+            } else {
+                lastFrameMillis += unzigzag(readVarint(in));
+            }
+
+            int count = (int) readVarint(in);
+            List<LocationBroadcaster.Position> positions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long ref = readVarint(in);
+                int index = (int) (ref >>> 1);
+                int[] coordinates;
+                if ((ref & 1) != 0) {
+                    UUID ambulanceId = new UUID(in.getLong(), in.getLong());
+                    coordinates = new int[]{(int) unzigzag(readVarint(in)), (int) unzigzag(readVarint(in))};
+                    if (index == ambulances.size()) {
+                        ambulances.add(ambulanceId);
+                        lastSeen.add(coordinates);
+                    } else {
+                        ambulances.set(index, ambulanceId);
+                        lastSeen.set(index, coordinates);
+                    }
+                } else {
+                    if (index >= lastSeen.size()) {
+                        throw new IllegalArgumentException("Unknown ambulance index " + index);
+                    }
+                    coordinates = lastSeen.get(index);
+                    coordinates[0] += (int) unzigzag(readVarint(in));
+                    coordinates[1] += (int) unzigzag(readVarint(in));
+                }
+                long timestamp = lastFrameMillis - unzigzag(readVarint(in));
+                positions.add(new LocationBroadcaster.Position(ambulances.get(index),
+                        coordinates[0] / MICRODEGREES, coordinates[1] / MICRODEGREES, timestamp, 0));
+            }
+            return positions;
+        }
+
+        private static long readVarint(ByteBuffer in) {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
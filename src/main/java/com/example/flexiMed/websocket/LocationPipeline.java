@@ -0,0 +1,330 @@
+package com.example.flexiMed.websocket;
+
+import com.example.flexiMed.cluster.ClusterBus;
+import com.example.flexiMed.service.AmbulancePresence;
+import com.example.flexiMed.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Location pipeline shared by the REST location endpoint and the driver WebSocket.
+ * Every accepted position is handed to the {@link LocationBroadcaster} for the users following the ambulance.
+ * Positions streamed by drivers are also persisted, but not one by one: only the latest position of each ambulance
+ * is kept in memory and the pending positions are written in a single JDBC batch every flush interval, so the
+ * database sees at most one update per ambulance per interval however fast drivers ping.
+ * <p>
+ * Users follow an ambulance when it is dispatched to them or when they request its location over REST; a follow
+ * lapses after {@code locations.follow-ttl-ms} unless renewed.
+ * <p>
+ * In a multi-node deployment follows and positions are shared over the {@link ClusterBus}, since a user's
+ * WebSocket may be connected to a different node than the one receiving the driver's pings. Follows are forwarded
+ * as they happen; positions are conflated per ambulance and forwarded in batches every
+ * {@code cluster.locations.flush-ms}, which bounds both the bus traffic and the extra latency for remote users.
+ */
+@Component
+public class LocationPipeline implements MetricsSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationPipeline.class);
+
+    private static final String POSITIONS_CHANNEL = "fleximed_locations";
+    private static final String FOLLOWS_CHANNEL = "fleximed_follows";
+
+    private static final String UPDATE_LOCATION_SQL = "UPDATE ambulances SET latitude = ?, longitude = ?, "
+            + "last_updated_at = ?, version = COALESCE(version, 0) + 1 WHERE id = ?";
+
+    private final LocationBroadcaster locationBroadcaster;
+    private final JdbcTemplate jdbcTemplate;
+    private final ClusterBus clusterBus;
+    private final AmbulancePresence ambulancePresence;
+    private final int batchSize;
+    private final long followTtlMillis;
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Latest streamed position of each ambulance, and the ambulances whose latest position is not yet written.
+     */
+    private final ConcurrentHashMap<UUID, Ping> latest = new ConcurrentHashMap<>();
+    private final Set<UUID> pendingWrites = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Users following each ambulance, mapped to the epoch millisecond their follow lapses.
+     */
+    private final ConcurrentHashMap<UUID, ConcurrentHashMap<String, Long>> followers = new ConcurrentHashMap<>();
+
+    /**
+     * Latest local position of each ambulance not yet forwarded to the other nodes.
+     */
+    private final ConcurrentHashMap<UUID, double[]> clusterOutbox = new ConcurrentHashMap<>();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder outOfOrder = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder unknownAmbulances = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder remotePositions = new LongAdder();
+    private volatile long lastFlushMillis;
+
+    /**
+     * Constructs a LocationPipeline and starts the periodic flush.
+     *
+     * @param locationBroadcaster The broadcaster pushing positions to following users.
+     * @param jdbcTemplate        The template used for batched location writes.
+     * @param clusterBus          The bus sharing follows and positions with the other nodes.
+     * @param ambulancePresence   The tracker recording a heartbeat for every position.
+     * @param flushIntervalMillis How often pending positions are written to the database.
+     * @param batchSize           The maximum number of rows per JDBC batch.
+     * @param followTtlMillis     How long a user keeps following an ambulance without renewal.
+     * @param clusterFlushMillis  How often conflated positions are forwarded to the other nodes.
+     */
+    public LocationPipeline(LocationBroadcaster locationBroadcaster, JdbcTemplate jdbcTemplate, ClusterBus clusterBus,
+                            AmbulancePresence ambulancePresence,
+                            @Value("${locations.flush-interval-ms:1000}") long flushIntervalMillis,
+                            @Value("${locations.batch-size:500}") int batchSize,
+                            @Value("${locations.follow-ttl-ms:7200000}") long followTtlMillis,
+                            @Value("${cluster.locations.flush-ms:100}") long clusterFlushMillis) {
+        this.locationBroadcaster = locationBroadcaster;
+        this.jdbcTemplate = jdbcTemplate;
+        this.clusterBus = clusterBus;
+        this.ambulancePresence = ambulancePresence;
+        this.batchSize = batchSize;
+        this.followTtlMillis = followTtlMillis;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "location-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+
+        if (clusterBus.isDistributed()) {
+            clusterBus.subscribe(POSITIONS_CHANNEL, this::receivePositions);
+            clusterBus.subscribe(FOLLOWS_CHANNEL, this::receiveFollow);
+            flusher.scheduleWithFixedDelay(this::forwardPositions, clusterFlushMillis, clusterFlushMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Makes a user follow an ambulance, or renews an existing follow.
+     *
+     * @param ambulanceId The ID of the ambulance.
+     * @param userId      The ID of the user.
+     */
+    public void follow(UUID ambulanceId, String userId) {
+        long lapsesAt = System.currentTimeMillis() + followTtlMillis;
+        followLocally(ambulanceId, userId, lapsesAt);
+        if (clusterBus.isDistributed()) {
+            clusterBus.publish(FOLLOWS_CHANNEL, ambulanceId + "," + userId + "," + lapsesAt);
+        }
+    }
+
+    private void followLocally(UUID ambulanceId, String userId, long lapsesAt) {
+        followers.computeIfAbsent(ambulanceId, id -> new ConcurrentHashMap<>()).merge(userId, lapsesAt, Math::max);
+    }
+
+    /**
+     * Accepts a position streamed by a driver: it is broadcast to the ambulance's followers and queued for the
+     * next batched database write. Positions older than the latest accepted one for the ambulance are ignored.
+     *
+     * @param ambulanceId The ID of the ambulance.
+     * @param latitude    The latitude.
+     * @param longitude   The longitude.
+     * @param timestamp   When the position was taken, in epoch milliseconds.
+     * @return True if the position was accepted, false if it arrived out of order.
+     */
+    public boolean submit(UUID ambulanceId, double latitude, double longitude, long timestamp) {
+        Ping ping = new Ping(latitude, longitude, timestamp);
+        Ping merged = latest.merge(ambulanceId, ping,
+                (previous, next) -> next.timestamp >= previous.timestamp ? next : previous);
+        if (merged != ping) {
+            ambulancePresence.heartbeat(ambulanceId);  // Late, but still a sign of life
+            outOfOrder.increment();
+            return false;
+        }
+        pendingWrites.add(ambulanceId);
+        broadcast(ambulanceId, latitude, longitude);
+        return true;
+    }
+
+    /**
+     * Broadcasts a position that has already been persisted (e.g. by the REST endpoint) to the ambulance's followers.
+     *
+     * @param ambulanceId The ID of the ambulance.
+     * @param latitude    The latitude.
+     * @param longitude   The longitude.
+     */
+    public void broadcast(UUID ambulanceId, double latitude, double longitude) {
+        accepted.increment();
+        ambulancePresence.heartbeat(ambulanceId);
+        if (clusterBus.isDistributed()) {
+            clusterOutbox.put(ambulanceId, new double[]{latitude, longitude});
+        }
+        broadcastLocally(ambulanceId, latitude, longitude);
+    }
+
+    private void broadcastLocally(UUID ambulanceId, double latitude, double longitude) {
+        Map<String, Long> following = followers.get(ambulanceId);
+        if (following == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        following.forEach((userId, lapsesAt) -> {
+            if (lapsesAt > now) {
+                locationBroadcaster.publish(userId, ambulanceId, latitude, longitude);
+            }
+        });
+    }
+
+    /**
+     * Writes the pending positions in JDBC batches and drops lapsed follows.
+     */
+    private void flush() {
+        List<Object[]> rows = new ArrayList<>(pendingWrites.size());
+        for (UUID ambulanceId : pendingWrites) {
+            // A ping arriving after the removal marks the ambulance pending again for the next flush
+            pendingWrites.remove(ambulanceId);
+            Ping ping = latest.get(ambulanceId);
+            rows.add(new Object[]{ping.latitude, ping.longitude, Timestamp.valueOf(LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(ping.timestamp), ZoneId.systemDefault())), ambulanceId});
+        }
+
+        try {
+            for (int from = 0; from < rows.size(); from += batchSize) {
+                List<Object[]> batch = rows.subList(from, Math.min(rows.size(), from + batchSize));
+                int[] counts = jdbcTemplate.batchUpdate(UPDATE_LOCATION_SQL, batch);
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) {
+                        unknownAmbulances.increment();  // Deleted, or never existed
+                        latest.remove((UUID) batch.get(i)[3]);
+                    } else {
+                        rowsWritten.increment();  // Drivers may report success without a row count
+                    }
+                }
+            }
+            if (!rows.isEmpty()) {
+                flushes.increment();
+            }
+            lastFlushMillis = System.currentTimeMillis();
+        } catch (Exception e) {
+            flushFailures.increment();
+            rows.forEach(row -> pendingWrites.add((UUID) row[3]));  // Retried on the next flush; the writes are idempotent
+            logger.error("Failed to write batched ambulance locations: {}", e.getMessage());
+        }
+
+        long now = System.currentTimeMillis();
+        followers.forEach((ambulanceId, following) -> {
+            following.values().removeIf(lapsesAt -> lapsesAt <= now);
+            if (following.isEmpty()) {
+                followers.remove(ambulanceId, following);
+            }
+        });
+    }
+
+    /**
+     * Forwards the conflated local positions to the other nodes, as lines of "ambulanceId,lat,lng"
+     * split into messages that fit the bus's payload limit.
+     */
+    private void forwardPositions() {
+        try {
+            StringBuilder message = new StringBuilder();
+            for (UUID ambulanceId : clusterOutbox.keySet()) {
+                double[] position = clusterOutbox.remove(ambulanceId);
+                if (position == null) {
+                    continue;
+                }
+                String line = ambulanceId + "," + position[0] + "," + position[1] + "\n";
+                if (message.length() + line.length() > clusterBus.maxPayloadBytes()) {
+                    clusterBus.publish(POSITIONS_CHANNEL, message.toString());
+                    message.setLength(0);
+                }
+                message.append(line);
+            }
+            if (!message.isEmpty()) {
+                clusterBus.publish(POSITIONS_CHANNEL, message.toString());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to forward ambulance locations to the cluster", e);
+        }
+    }
+
+    private void receivePositions(String message) {
+        for (String line : message.split("\n")) {
+            String[] fields = line.split(",");
+            if (fields.length == 3) {
+                remotePositions.increment();
+                UUID ambulanceId = UUID.fromString(fields[0]);
+                ambulancePresence.heartbeat(ambulanceId);  // The driver is connected to another node
+                broadcastLocally(ambulanceId, Double.parseDouble(fields[1]), Double.parseDouble(fields[2]));
+            }
+        }
+    }
+
+    private void receiveFollow(String message) {
+        String[] fields = message.split(",");
+        if (fields.length == 3) {
+            followLocally(UUID.fromString(fields[0]), fields[1], Long.parseLong(fields[2]));
+        }
+    }
+
+    /**
+     * Writes the remaining positions and stops the flusher when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            if (flusher.awaitTermination(5, TimeUnit.SECONDS)) {
+                flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "locationPipeline";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("accepted", accepted.sum());
+        metrics.put("outOfOrder", outOfOrder.sum());
+        metrics.put("pendingWrites", pendingWrites.size());
+        metrics.put("rowsWritten", rowsWritten.sum());
+        metrics.put("unknownAmbulances", unknownAmbulances.sum());
+        metrics.put("flushes", flushes.sum());
+        metrics.put("flushFailures", flushFailures.sum());
+        metrics.put("lastFlushMillis", lastFlushMillis);
+        metrics.put("followedAmbulances", followers.size());
+        metrics.put("remotePositions", remotePositions.sum());
+        return metrics;
+    }
+
+    /**
+     * A position waiting to be written.
+     */
+    private record Ping(double latitude, double longitude, long timestamp) {
+    }
+}
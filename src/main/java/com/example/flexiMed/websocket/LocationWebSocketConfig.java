@@ -0,0 +1,50 @@
+package com.example.flexiMed.websocket;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * Configuration class for the raw (non-STOMP) WebSocket endpoints: {@code /ws/locations} streams ambulance
+ * locations to authenticated users, and {@code /ws/driver} ingests GPS pings from authenticated drivers.
+ * Both handshakes are authenticated by the {@link JwtHandshakeInterceptor}.
+ */
+@Configuration
+@EnableWebSocket
+public class LocationWebSocketConfig implements WebSocketConfigurer {
+
+    private final AmbulanceLocationHandler ambulanceLocationHandler;
+    private final DriverLocationHandler driverLocationHandler;
+    private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
+
+    /**
+     * Constructs a LocationWebSocketConfig.
+     *
+     * @param ambulanceLocationHandler The handler managing location sessions.
+     * @param driverLocationHandler    The handler ingesting driver pings.
+     * @param jwtHandshakeInterceptor  The interceptor authenticating handshakes.
+     */
+    public LocationWebSocketConfig(AmbulanceLocationHandler ambulanceLocationHandler,
+                                   DriverLocationHandler driverLocationHandler,
+                                   JwtHandshakeInterceptor jwtHandshakeInterceptor) {
+        this.ambulanceLocationHandler = ambulanceLocationHandler;
+        this.driverLocationHandler = driverLocationHandler;
+        this.jwtHandshakeInterceptor = jwtHandshakeInterceptor;
+    }
+
+    /**
+     * Registers the location endpoints.
+     *
+     * @param registry The WebSocketHandlerRegistry used to register handlers.
+     */
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(ambulanceLocationHandler, "/ws/locations")
+                .addInterceptors(jwtHandshakeInterceptor)
+                .setAllowedOrigins("http://localhost:3000", "https://flexi-med-front-itcp.vercel.app");
+        registry.addHandler(driverLocationHandler, "/ws/driver")
+                .addInterceptors(jwtHandshakeInterceptor)
+                .setAllowedOriginPatterns("*");  // Driver apps are native clients; the JWT authenticates them
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.flexiMed.websocket;
+
+import com.example.flexiMed.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of raw WebSocket sessions, supporting any number of sessions per user (several tabs or devices).
+ * Every session has its own outbound queue, drained in order by at most one thread of a small shared pool at a
+ * time, so messages reach each client in the order they were queued (which delta-encoded frames rely on) and the
+ * thread publishing an update never performs socket I/O itself. A session is closed as a slow consumer once a send
+ * has been blocked longer than the send-time limit or its queued messages exceed the buffer-size limit, instead of
+ * stalling everyone else.
+ */
+@Component
+public class SessionRegistry implements MetricsSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionRegistry.class);
+    private static final int SLOWEST_SESSIONS_REPORTED = 10;
+
+    private final ConcurrentHashMap<String, Set<RegisteredSession>> sessionsByUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RegisteredSession> sessionsById = new ConcurrentHashMap<>();
+    private final int sendTimeLimitMillis;
+    private final int bufferSizeLimit;
+    private final ThreadPoolExecutor sendExecutor;
+
+    private final AtomicInteger openSessions = new AtomicInteger();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder slowConsumersDropped = new LongAdder();
+    private final LongAdder totalSendNanos = new LongAdder();
+    private volatile long maxSendNanos;
+
+    /**
+     * Constructs a SessionRegistry.
+     *
+     * @param sendTimeLimitMillis The time a send may stay blocked before the session is considered too slow.
+     * @param bufferSizeLimit     The maximum number of bytes queued for a session before it is considered too slow.
+     * @param sendThreads         The number of threads writing to sessions.
+     */
+    public SessionRegistry(@Value("${websocket.sessions.send-time-limit-ms:5000}") int sendTimeLimitMillis,
+                           @Value("${websocket.sessions.buffer-size-limit:524288}") int bufferSizeLimit,
+                           @Value("${websocket.sessions.send-threads:4}") int sendThreads) {
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.bufferSizeLimit = bufferSizeLimit;
+        AtomicInteger threadCount = new AtomicInteger();
+        // Holds at most one drain task per session, so it is bounded by the number of sessions
+        this.sendExecutor = new ThreadPoolExecutor(sendThreads, sendThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ws-send-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Registers a newly opened session for the given user.
+     *
+     * @param userId  The ID of the user owning the session.
+     * @param session The raw WebSocket session.
+     */
+    public void register(String userId, WebSocketSession session) {
+        TimedSession timed = new TimedSession(session);
+        RegisteredSession registered = new RegisteredSession(session.getId(), userId, timed, new Outbox(timed));
+        sessionsByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(registered);
+        sessionsById.put(registered.id, registered);
+        openSessions.incrementAndGet();
+    }
+
+    /**
+     * Removes a closed session.
+     *
+     * @param userId  The ID of the user owning the session.
+     * @param session The raw WebSocket session.
+     */
+    public void unregister(String userId, WebSocketSession session) {
+        sessionsById.remove(session.getId());
+        sessionsByUser.computeIfPresent(userId, (id, sessions) -> {
+            if (sessions.removeIf(registered -> registered.id.equals(session.getId()))) {
+                openSessions.decrementAndGet();
+            }
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+
+    /**
+     * Sends a message to every open session of the given user.
+     * The call only queues the sends; it never blocks on a client.
+     *
+     * @param userId  The ID of the user.
+     * @param message The message to send.
+     * @return The number of sessions the message was queued for.
+     */
+    public int sendToUser(String userId, WebSocketMessage<?> message) {
+        Collection<RegisteredSession> sessions = sessionsByUser.get(userId);
+        if (sessions == null) {
+            return 0;
+        }
+        int queued = 0;
+        for (RegisteredSession registered : sessions) {
+            if (enqueue(registered, message)) {
+                queued++;
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Sends a message to a single session. The call only queues the send; it never blocks on the client.
+     *
+     * @param sessionId The ID of the session.
+     * @param message   The message to send.
+     * @return True if the message was queued, false if the session is unknown or the send queue is full.
+     */
+    public boolean sendToSession(String sessionId, WebSocketMessage<?> message) {
+        RegisteredSession registered = sessionsById.get(sessionId);
+        return registered != null && enqueue(registered, message);
+    }
+
+    private boolean enqueue(RegisteredSession registered, WebSocketMessage<?> message) {
+        if (!registered.outbox.offer(message)) {
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of open sessions of the given user.
+     *
+     * @param userId The ID of the user.
+     * @return The number of open sessions.
+     */
+    public int sessionCount(String userId) {
+        Set<RegisteredSession> sessions = sessionsByUser.get(userId);
+        return sessions == null ? 0 : sessions.size();
+    }
+
+    /**
+     * Stops the send threads and closes every registered session.
+     */
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
+        List<RegisteredSession> all = new ArrayList<>();
+        sessionsByUser.values().forEach(all::addAll);
+        for (RegisteredSession registered : all) {
+            try {
+                registered.timed.close(CloseStatus.GOING_AWAY);
+            } catch (IOException e) {
+                logger.debug("Failed to close WebSocket session {}: {}", registered.id, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "locationSessions";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        long sentCount = sent.sum();
+        long maxBuffered = 0;
+        long maxBlockedMillis = 0;
+        List<RegisteredSession> all = new ArrayList<>();
+        for (Set<RegisteredSession> sessions : sessionsByUser.values()) {
+            for (RegisteredSession registered : sessions) {
+                maxBuffered = Math.max(maxBuffered, registered.outbox.bufferedBytes());
+                maxBlockedMillis = Math.max(maxBlockedMillis, registered.outbox.timeSinceSendStarted());
+                all.add(registered);
+            }
+        }
+
+        // Per-session latency for the slowest sessions only, to keep the snapshot small with many clients
+        Map<String, Object> slowest = new LinkedHashMap<>();
+        all.stream()
+                .sorted(Comparator.comparingDouble((RegisteredSession r) -> r.timed.avgSendMillis()).reversed())
+                .limit(SLOWEST_SESSIONS_REPORTED)
+                .forEach(r -> slowest.put(r.id, Map.of("userId", r.userId, "sent", r.timed.sendCount.sum(),
+                        "avgSendMillis", r.timed.avgSendMillis(), "bufferedBytes", r.outbox.bufferedBytes())));
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("users", sessionsByUser.size());
+        metrics.put("sessions", openSessions.get());
+        metrics.put("sessionsWaitingForThread", sendExecutor.getQueue().size());
+        metrics.put("sent", sentCount);
+        metrics.put("failed", failed.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("slowConsumersDropped", slowConsumersDropped.sum());
+        metrics.put("avgSendMillis", sentCount == 0 ? 0.0 : totalSendNanos.sum() / 1_000_000d / sentCount);
+        metrics.put("maxSendMillis", maxSendNanos / 1_000_000d);
+        metrics.put("maxBufferedBytes", maxBuffered);
+        metrics.put("maxBlockedSendMillis", maxBlockedMillis);
+        metrics.put("slowestSessions", slowest);
+        return metrics;
+    }
+
+    /**
+     * A registered session, identified by the ID of the underlying raw session.
+     */
+    private record RegisteredSession(String id, String userId, TimedSession timed, Outbox outbox) {
+    }
+
+    /**
+     * The outbound queue of one session. Offering a message schedules a drain task unless one is already scheduled
+     * or running, so at most one thread writes to the session at a time and messages leave in the order they were
+     * offered.
+     */
+    private final class Outbox implements Runnable {
+
+        private final TimedSession session;
+        private final ConcurrentLinkedQueue<WebSocketMessage<?>> messages = new ConcurrentLinkedQueue<>();
+        private final AtomicLong bufferedBytes = new AtomicLong();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long sendStartedMillis;
+        private volatile boolean closing;
+
+        private Outbox(TimedSession session) {
+            this.session = session;
+        }
+
+        /**
+         * Queues a message, closing the session instead if it is not keeping up.
+         *
+         * @return True if the message was queued.
+         */
+        boolean offer(WebSocketMessage<?> message) {
+            if (closing || !session.isOpen()) {
+                return false;
+            }
+            long started = sendStartedMillis;
+            if (started != 0 && System.currentTimeMillis() - started > sendTimeLimitMillis) {
+                dropSlowConsumer("send blocked for more than " + sendTimeLimitMillis + " ms");
+                return false;
+            }
+            if (bufferedBytes.addAndGet(message.getPayloadLength()) > bufferSizeLimit) {
+                bufferedBytes.addAndGet(-message.getPayloadLength());
+                dropSlowConsumer("more than " + bufferSizeLimit + " bytes queued");
+                return false;
+            }
+            messages.add(message);
+            schedule();
+            return true;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    sendExecutor.execute(this);
+                } catch (RejectedExecutionException shuttingDown) {
+                    logger.debug("Not sending to WebSocket session {}: registry is shutting down", session.getId());
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            WebSocketMessage<?> message;
+            while ((message = messages.poll()) != null) {
+                bufferedBytes.addAndGet(-message.getPayloadLength());
+                if (closing || !session.isOpen()) {
+                    continue;
+                }
+                sendStartedMillis = System.currentTimeMillis();
+                try {
+                    session.sendMessage(message);
+                } catch (IOException | RuntimeException e) {
+                    failed.increment();
+                    logger.debug("Failed to send to WebSocket session {}: {}", session.getId(), e.getMessage());
+                } finally {
+                    sendStartedMillis = 0;
+                }
+            }
+            scheduled.set(false);
+            if (!messages.isEmpty()) {
+                schedule();  // Offered after the queue was found empty but before the flag was cleared
+            }
+        }
+
+        private void dropSlowConsumer(String reason) {
+            if (closing) {
+                return;
+            }
+            closing = true;
+            slowConsumersDropped.increment();
+            logger.warn("Dropped slow WebSocket session {}: {}", session.getId(), reason);
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);  // afterConnectionClosed then unregisters the session
+            } catch (IOException e) {
+                logger.debug("Failed to close WebSocket session {}: {}", session.getId(), e.getMessage());
+            }
+        }
+
+        long bufferedBytes() {
+            return bufferedBytes.get();
+        }
+
+        long timeSinceSendStarted() {
+            long started = sendStartedMillis;
+            return started == 0 ? 0 : System.currentTimeMillis() - started;
+        }
+    }
+
+    /**
+     * Decorator timing each write to the underlying session, i.e. the actual socket I/O rather than the time
+     * a message spent queued in the session's {@link Outbox}.
+     */
+    private class TimedSession extends WebSocketSessionDecorator {
+
+        private final LongAdder sendCount = new LongAdder();
+        private final LongAdder sendNanos = new LongAdder();
+
+        TimedSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            long start = System.nanoTime();
+            super.sendMessage(message);
+            long elapsed = System.nanoTime() - start;
+            sendCount.increment();
+            sendNanos.add(elapsed);
+            sent.increment();
+            totalSendNanos.add(elapsed);
+            if (elapsed > maxSendNanos) {
+                maxSendNanos = elapsed;  // Racy maximum, good enough for monitoring
+            }
+        }
+
+        double avgSendMillis() {
+            long count = sendCount.sum();
+            return count == 0 ? 0.0 : sendNanos.sum() / 1_000_000d / count;
+        }
+    }
+}
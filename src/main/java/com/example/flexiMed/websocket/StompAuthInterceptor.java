@@ -0,0 +1,144 @@
+package com.example.flexiMed.websocket;
+
+import com.example.flexiMed.enums.Role;
+import com.example.flexiMed.utils.MetricsSource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Authenticates STOMP connections and guards their subscriptions. Installed on the client inbound channel.
+ * <p>
+ * A CONNECT frame must carry a JWT access token in its {@code Authorization: Bearer} or {@code access_token}
+ * header, unless the connection was already authenticated on the handshake by the {@link JwtHandshakeInterceptor}.
+ * The session's principal is named after the user's ID, so {@code convertAndSendToUser(userId, ...)} reaches
+ * every session of the user through their {@code /user/queue/...} destinations. Subscriptions to another user's
+ * legacy topic ({@code /topic/ambulance/<userId>}) and direct subscriptions to the per-session queues behind user
+ * destinations are refused.
+ */
+@Component
+public class StompAuthInterceptor implements ChannelInterceptor, MetricsSource {
+
+    private static final String LEGACY_USER_TOPIC_PREFIX = "/topic/ambulance/";
+    private static final String QUEUE_PREFIX = "/queue/";
+
+    private final WebSocketAuthenticator authenticator;
+
+    private final LongAdder connects = new LongAdder();
+    private final LongAdder rejectedConnects = new LongAdder();
+    private final LongAdder rejectedSubscriptions = new LongAdder();
+
+    /**
+     * Constructs a StompAuthInterceptor.
+     *
+     * @param authenticator The authenticator verifying the token of a CONNECT frame.
+     */
+    public StompAuthInterceptor(WebSocketAuthenticator authenticator) {
+        this.authenticator = authenticator;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+        switch (accessor.getCommand()) {
+            case CONNECT, STOMP -> authenticate(message, accessor);
+            case SUBSCRIBE -> authorizeSubscription(message, accessor);
+            default -> {
+                // Other frames are bound to the principal established on CONNECT
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Sets the principal of a connecting session, or refuses the connection.
+     */
+    private void authenticate(Message<?> message, StompHeaderAccessor accessor) {
+        WebSocketAuthenticator.AuthenticatedUser user = fromHandshake(accessor.getSessionAttributes());
+        if (user == null) {
+            user = authenticator.authenticate(extractToken(accessor));
+        }
+        if (user == null) {
+            rejectedConnects.increment();
+            throw new MessageDeliveryException(message, "Missing or invalid access token");
+        }
+        accessor.setUser(new UsernamePasswordAuthenticationToken(user.userId().toString(), null,
+                List.of(new SimpleGrantedAuthority("ROLE_" + user.role().name()))));
+        connects.increment();
+    }
+
+    /**
+     * Refuses subscriptions to another user's notifications.
+     */
+    private void authorizeSubscription(Message<?> message, StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        Principal user = accessor.getUser();
+        if (destination == null) {
+            return;
+        }
+        boolean allowed;
+        if (destination.startsWith(LEGACY_USER_TOPIC_PREFIX)) {
+            allowed = user != null && destination.substring(LEGACY_USER_TOPIC_PREFIX.length()).equals(user.getName());
+        } else {
+            // Per-session queues are only reachable through user destinations such as /user/queue/ambulance
+            allowed = !destination.startsWith(QUEUE_PREFIX);
+        }
+        if (!allowed) {
+            rejectedSubscriptions.increment();
+            throw new MessageDeliveryException(message, "Subscription to " + destination + " is not permitted");
+        }
+    }
+
+    private WebSocketAuthenticator.AuthenticatedUser fromHandshake(Map<String, Object> sessionAttributes) {
+        if (sessionAttributes == null
+                || !(sessionAttributes.get(JwtHandshakeInterceptor.USER_ID_ATTRIBUTE) instanceof UUID userId)
+                || !(sessionAttributes.get(JwtHandshakeInterceptor.ROLE_ATTRIBUTE) instanceof Role role)) {
+            return null;
+        }
+        return new WebSocketAuthenticator.AuthenticatedUser(userId, role);
+    }
+
+    /**
+     * Extracts the bearer token from the Authorization or access_token header of the CONNECT frame.
+     */
+    private String extractToken(StompHeaderAccessor accessor) {
+        String authorizationHeader = accessor.getFirstNativeHeader("Authorization");
+        if (authorizationHeader == null) {
+            authorizationHeader = accessor.getFirstNativeHeader("authorization");
+        }
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
+            return authorizationHeader.substring(7);
+        }
+        return accessor.getFirstNativeHeader("access_token");
+    }
+
+    @Override
+    public String metricsName() {
+        return "stompAuth";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("connects", connects.sum());
+        metrics.put("rejectedConnects", rejectedConnects.sum());
+        metrics.put("rejectedSubscriptions", rejectedSubscriptions.sum());
+        return metrics;
+    }
+}
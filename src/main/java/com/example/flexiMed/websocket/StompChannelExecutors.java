@@ -0,0 +1,224 @@
+package com.example.flexiMed.websocket;
+
+import com.example.flexiMed.utils.MetricsSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, instrumented executors for the STOMP client inbound and outbound channels.
+ * <p>
+ * Each channel gets a fixed pool with a bounded queue, read from {@code websocket.channels.<inbound|outbound>.*},
+ * and exports its queue depth, active threads, and per-message queue wait and handling time, so a delay can be
+ * attributed to the broker side (messages waiting here) or to the network (slow sends).
+ * <p>
+ * When a queue fills up, broadcast traffic is shed first: messages to shared {@code /topic} destinations, such as
+ * location updates, are dropped once the queue is more than {@code shed-ratio} full. Messages addressed to a user
+ * (user destinations and the legacy {@code /topic/ambulance/<userId>} notification topic) and protocol frames
+ * (CONNECT, SUBSCRIBE, heartbeats, ...) are never dropped; if the queue is completely full they run on the
+ * submitting thread, which slows the sender down instead of losing a dispatch notification.
+ */
+@Component
+public class StompChannelExecutors implements MetricsSource {
+
+    private static final String TOPIC_PREFIX = "/topic/";
+    private static final String NOTIFICATION_TOPIC_PREFIX = "/topic/ambulance/";
+
+    private final PrioritizedExecutor inbound;
+    private final PrioritizedExecutor outbound;
+
+    /**
+     * Constructs the inbound and outbound executors.
+     *
+     * @param environment The environment the pool settings are read from.
+     */
+    public StompChannelExecutors(Environment environment) {
+        this.inbound = create("inbound", environment);
+        this.outbound = create("outbound", environment);
+    }
+
+    private static PrioritizedExecutor create(String name, Environment environment) {
+        String prefix = "websocket.channels." + name + ".";
+        int threads = environment.getProperty(prefix + "threads", Integer.class,
+                Runtime.getRuntime().availableProcessors() * 2);
+        int queueCapacity = environment.getProperty(prefix + "queue-capacity", Integer.class, 10000);
+        double shedRatio = environment.getProperty(prefix + "shed-ratio", Double.class, 0.5);
+        return new PrioritizedExecutor(name, threads, queueCapacity, shedRatio);
+    }
+
+    /**
+     * @return The executor of the client inbound channel.
+     */
+    public Executor inbound() {
+        return inbound;
+    }
+
+    /**
+     * @return The executor of the client outbound channel.
+     */
+    public Executor outbound() {
+        return outbound;
+    }
+
+    /**
+     * Checks whether a message may be dropped under load: a message to a shared topic, other than a user's
+     * notification topic.
+     *
+     * @param message The message handled by the task.
+     * @return True if the message may be dropped.
+     */
+    static boolean isSheddable(Message<?> message) {
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        if (messageType != SimpMessageType.MESSAGE) {
+            return false;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        return destination != null && destination.startsWith(TOPIC_PREFIX)
+                && !destination.startsWith(NOTIFICATION_TOPIC_PREFIX);
+    }
+
+    /**
+     * Stops both executors.
+     */
+    @PreDestroy
+    public void shutdown() {
+        inbound.shutdown();
+        outbound.shutdown();
+    }
+
+    @Override
+    public String metricsName() {
+        return "stompChannels";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("inbound", inbound.metrics());
+        metrics.put("outbound", outbound.metrics());
+        return metrics;
+    }
+
+    /**
+     * A fixed thread pool with a bounded queue that sheds broadcast messages before critical ones.
+     * Spring's WebSocket statistics require the channel executors to be TaskExecutors, and log the pool and queue
+     * of ThreadPoolExecutors.
+     */
+    private static final class PrioritizedExecutor extends ThreadPoolExecutor implements TaskExecutor {
+
+        private final int queueCapacity;
+        private final int shedThreshold;
+
+        private final LongAdder executed = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+        private final LongAdder callerRuns = new LongAdder();
+        private final LongAdder totalWaitNanos = new LongAdder();
+        private final LongAdder totalHandleNanos = new LongAdder();
+        private volatile long maxWaitNanos;
+        private volatile long maxHandleNanos;
+
+        PrioritizedExecutor(String name, int threads, int queueCapacity, double shedRatio) {
+            super(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                    namedThreads("stomp-" + name), new ThreadPoolExecutor.AbortPolicy());
+            this.queueCapacity = queueCapacity;
+            this.shedThreshold = (int) (queueCapacity * shedRatio);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            boolean sheddable = task instanceof MessageHandlingRunnable handling && isSheddable(handling.getMessage());
+            if (sheddable && getQueue().size() >= shedThreshold) {
+                shed.increment();
+                return;
+            }
+            TimedTask timedTask = new TimedTask(task);
+            try {
+                super.execute(timedTask);
+            } catch (RejectedExecutionException e) {
+                if (sheddable || isShutdown()) {
+                    shed.increment();
+                    return;
+                }
+                callerRuns.increment();
+                timedTask.run();  // Never drop a critical message; slow the submitting thread down instead
+            }
+        }
+
+        Map<String, Object> metrics() {
+            long count = executed.sum();
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("threads", getMaximumPoolSize());
+            metrics.put("activeThreads", getActiveCount());
+            metrics.put("queueDepth", getQueue().size());
+            metrics.put("queueCapacity", queueCapacity);
+            metrics.put("shedThreshold", shedThreshold);
+            metrics.put("executed", count);
+            metrics.put("shed", shed.sum());
+            metrics.put("callerRuns", callerRuns.sum());
+            metrics.put("avgQueueWaitMicros", count == 0 ? 0.0 : totalWaitNanos.sum() / 1000.0 / count);
+            metrics.put("maxQueueWaitMicros", maxWaitNanos / 1000);
+            metrics.put("avgHandleMicros", count == 0 ? 0.0 : totalHandleNanos.sum() / 1000.0 / count);
+            metrics.put("maxHandleMicros", maxHandleNanos / 1000);
+            return metrics;
+        }
+
+        /**
+         * Wraps a task to measure how long it waited in the queue and how long it took to handle.
+         */
+        private final class TimedTask implements Runnable {
+
+            private final Runnable task;
+            private final long submittedAt = System.nanoTime();
+
+            TimedTask(Runnable task) {
+                this.task = task;
+            }
+
+            @Override
+            public void run() {
+                long startedAt = System.nanoTime();
+                try {
+                    task.run();
+                } finally {
+                    long finishedAt = System.nanoTime();
+                    long wait = startedAt - submittedAt;
+                    long handle = finishedAt - startedAt;
+                    executed.increment();
+                    totalWaitNanos.add(wait);
+                    totalHandleNanos.add(handle);
+                    if (wait > maxWaitNanos) {
+                        maxWaitNanos = wait;  // Racy maximum, good enough for monitoring
+                    }
+                    if (handle > maxHandleNanos) {
+                        maxHandleNanos = handle;
+                    }
+                }
+            }
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.flexiMed.websocket;
+
+import com.example.flexiMed.enums.Role;
+import com.example.flexiMed.model.UserEntity;
+import com.example.flexiMed.security.JwtPrincipal;
+import com.example.flexiMed.security.JwtUtil;
+import com.example.flexiMed.security.PrincipalCache;
+import com.example.flexiMed.security.TokenRevocationService;
+import com.example.flexiMed.service.UserService;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Verifies the JWT access tokens presented by WebSocket clients, either on the HTTP handshake
+ * ({@link JwtHandshakeInterceptor}) or in the STOMP CONNECT frame ({@link StompAuthInterceptor}).
+ * A token is accepted if it is a valid, unrevoked access token; the user's ID and role are taken from its claims,
+ * or loaded through the principal cache for tokens issued without them.
+ */
+@Component
+public class WebSocketAuthenticator {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketAuthenticator.class);
+
+    private final JwtUtil jwtUtil;
+    private final TokenRevocationService tokenRevocationService;
+    private final PrincipalCache principalCache;
+    private final UserService userService;
+
+    /**
+     * Constructs a WebSocketAuthenticator.
+     *
+     * @param jwtUtil                The utility used to verify tokens.
+     * @param tokenRevocationService The registry used to reject revoked tokens.
+     * @param principalCache         The cache of principals, for tokens issued without user ID and role claims.
+     * @param userService            The service loading users on a principal cache miss.
+     */
+    public WebSocketAuthenticator(JwtUtil jwtUtil, TokenRevocationService tokenRevocationService,
+                                  PrincipalCache principalCache, UserService userService) {
+        this.jwtUtil = jwtUtil;
+        this.tokenRevocationService = tokenRevocationService;
+        this.principalCache = principalCache;
+        this.userService = userService;
+    }
+
+    /**
+     * Authenticates a bearer token.
+     *
+     * @param token The JWT access token.
+     * @return The authenticated user, or null if the token is missing, invalid, revoked or not an access token.
+     */
+    public AuthenticatedUser authenticate(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            Claims claims = jwtUtil.verifyToken(token);
+            if (!jwtUtil.isAccessToken(claims) || tokenRevocationService.isRevoked(claims.getId())) {
+                return null;
+            }
+
+            JwtPrincipal principal = jwtUtil.toPrincipal(claims);
+            if (principal != null) {
+                return new AuthenticatedUser(principal.userId(), principal.role());
+            }
+            // Tokens issued without user ID and role claims fall back to loading the user
+            UserEntity user = principalCache.get(claims.getSubject(), userService::loadUserByUsername);
+            if (!jwtUtil.validateClaims(claims, user)) {
+                return null;
+            }
+            return new AuthenticatedUser(user.getUserId(), user.getRole());
+        } catch (Exception e) {
+            logger.warn("Rejected WebSocket token: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The identity of an authenticated WebSocket client.
+     *
+     * @param userId The ID of the user.
+     * @param role   The role of the user.
+     */
+    public record AuthenticatedUser(UUID userId, Role role) {
+    }
+}
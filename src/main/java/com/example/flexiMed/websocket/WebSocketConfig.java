@@ -1,6 +1,13 @@
 package com.example.flexiMed.websocket;
 
+import com.example.flexiMed.cluster.StompClusterBridge;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
@@ -9,21 +16,81 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 /**
  * Configuration class for WebSocket messaging using STOMP.
  * This class enables and configures WebSocket message broker capabilities for the application.
+ * With {@code websocket.broker=simple} (the default) topics are served by the in-memory broker, bridged to the
+ * other nodes by the {@link StompClusterBridge}; with {@code websocket.broker=relay} they are relayed to an external
+ * STOMP broker (e.g. RabbitMQ with the STOMP plugin), which fans messages out across nodes itself.
+ * <p>
+ * Connections are authenticated on CONNECT by the {@link StompAuthInterceptor}, and per-user messages use user
+ * destinations ({@code /user/queue/...}) resolved from the session's principal. The in-memory broker looks up
+ * subscribers in the {@link IndexedSubscriptionRegistry}, whose cost does not grow with the number of sessions.
  */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private static final String[] ALLOWED_ORIGINS = {"http://localhost:3000", "https://flexi-med-front-itcp.vercel.app"};
+
+    private final StompClusterBridge stompClusterBridge;
+    private final StompAuthInterceptor stompAuthInterceptor;
+    private final StompChannelExecutors stompChannelExecutors;
+    private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
+    private final String broker;
+    private final String relayHost;
+    private final int relayPort;
+    private final String relayLogin;
+    private final String relayPasscode;
+
+    /**
+     * Constructs a WebSocketConfig.
+     *
+     * @param stompClusterBridge The bridge forwarding topic messages between nodes when the in-memory broker is used.
+     * @param stompAuthInterceptor The interceptor authenticating STOMP connections and guarding subscriptions.
+     * @param stompChannelExecutors The bounded executors of the client inbound and outbound channels.
+     * @param jwtHandshakeInterceptor The interceptor authenticating handshakes on the native WebSocket endpoint.
+     * @param broker             The broker to use: "simple" or "relay".
+     * @param relayHost          The host of the external STOMP broker.
+     * @param relayPort          The STOMP port of the external broker.
+     * @param relayLogin         The login used for both client and system connections to the external broker.
+     * @param relayPasscode      The passcode used for both client and system connections to the external broker.
+     */
+    public WebSocketConfig(StompClusterBridge stompClusterBridge, StompAuthInterceptor stompAuthInterceptor,
+                           StompChannelExecutors stompChannelExecutors,
+                           JwtHandshakeInterceptor jwtHandshakeInterceptor,
+                           @Value("${websocket.broker:simple}") String broker,
+                           @Value("${websocket.relay.host:localhost}") String relayHost,
+                           @Value("${websocket.relay.port:61613}") int relayPort,
+                           @Value("${websocket.relay.login:guest}") String relayLogin,
+                           @Value("${websocket.relay.passcode:guest}") String relayPasscode) {
+        this.stompClusterBridge = stompClusterBridge;
+        this.stompAuthInterceptor = stompAuthInterceptor;
+        this.stompChannelExecutors = stompChannelExecutors;
+        this.jwtHandshakeInterceptor = jwtHandshakeInterceptor;
+        this.broker = broker;
+        this.relayHost = relayHost;
+        this.relayPort = relayPort;
+        this.relayLogin = relayLogin;
+        this.relayPasscode = relayPasscode;
+    }
+
     /**
      * Registers STOMP endpoints for WebSocket connections.
+     * {@code /ws} and {@code /ws/ambulance-updates} use SockJS, for clients that cannot open a WebSocket;
+     * {@code /ws/stomp} is a plain WebSocket endpoint with the same STOMP semantics and none of the SockJS
+     * info request, session URLs or JSON framing. It is authenticated on the handshake, by a bearer token in the
+     * Authorization header or the access_token query parameter, so its CONNECT frame needs no token.
      *
      * @param registry The StompEndpointRegistry used to register STOMP endpoints.
      */
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // After the raw endpoints (/ws/locations, /ws/driver), which the SockJS /ws/** mapping would otherwise shadow
+        registry.setOrder(2);
         registry.addEndpoint("/ws", "/ws/ambulance-updates")
-                .setAllowedOrigins("http://localhost:3000", "https://flexi-med-front-itcp.vercel.app")
+                .setAllowedOrigins(ALLOWED_ORIGINS)
                 .withSockJS();
+        registry.addEndpoint("/ws/stomp")
+                .setAllowedOrigins(ALLOWED_ORIGINS)
+                .addInterceptors(jwtHandshakeInterceptor);
     }
 
     /**
@@ -33,7 +100,64 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
      */
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.enableSimpleBroker("/topic");
+        if ("relay".equalsIgnoreCase(broker)) {
+            // User destinations of users connected to another node are rebroadcast through the external broker
+            registry.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+        } else {
+            registry.enableSimpleBroker("/topic", "/queue");
+            registry.configureBrokerChannel().interceptors(stompClusterBridge);
+        }
         registry.setApplicationDestinationPrefixes("/app");
+        registry.setUserDestinationPrefix("/user");
+    }
+
+    /**
+     * Authenticates STOMP connections and guards subscriptions before messages reach the broker, and handles
+     * client messages on a bounded, instrumented executor.
+     *
+     * @param registration The registration of the client inbound channel.
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.executor(stompChannelExecutors.inbound()).interceptors(stompAuthInterceptor);
+    }
+
+    /**
+     * Sends messages to clients on a bounded, instrumented executor.
+     *
+     * @param registration The registration of the client outbound channel.
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.executor(stompChannelExecutors.outbound());
+    }
+
+    /**
+     * Replaces the in-memory broker's subscription registry with the {@link IndexedSubscriptionRegistry}.
+     * Static, so that registering the post-processor does not instantiate this configuration early.
+     *
+     * @param subscriptionRegistry The indexed registry, resolved when the broker is created.
+     * @return The post-processor installing the registry.
+     */
+    @Bean
+    public static BeanPostProcessor subscriptionRegistryInstaller(
+            ObjectProvider<IndexedSubscriptionRegistry> subscriptionRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof SimpleBrokerMessageHandler brokerMessageHandler) {
+                    brokerMessageHandler.setSubscriptionRegistry(subscriptionRegistry.getObject());
+                }
+                return bean;
+            }
+        };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,7 @@
+CREATE TABLE IF NOT EXISTS stored_files (
+    content_hash VARCHAR(64) PRIMARY KEY,
+    path VARCHAR(100) NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    ref_count INTEGER NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
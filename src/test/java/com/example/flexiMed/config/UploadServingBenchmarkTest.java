@@ -0,0 +1,234 @@
+package com.example.flexiMed.config;
+
+import com.example.flexiMed.repository.StoredFileRepository;
+import com.example.flexiMed.service.FileStorageService;
+import com.example.flexiMed.service.ImageVariantService;
+import com.example.flexiMed.utils.Benchmark;
+import com.example.flexiMed.utils.BenchmarkHarness;
+import com.example.flexiMed.utils.BenchmarkHarness.Measurement;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Benchmarks serving a large upload through the real {@link MvcConfig} on an embedded Tomcat, with
+ * {@link SendfileResourceConverters} handing it to sendfile and with every byte copied through the JVM: the CPU
+ * time of the server's threads and the wall time for a few hundred downloads over keep-alive connections. It also
+ * checks that revalidating an avatar by its hash ETag gets a 304 without a body.
+ * <p>
+ * Files are stored under the working directory's {@code uploads}, as the application does, and deleted afterwards.
+ */
+@Benchmark
+class UploadServingBenchmarkTest {
+
+    private static final int CONNECTIONS = 4;
+    private static final int DOWNLOADS_PER_CONNECTION = 100;
+    private static final int LARGE_FILE_BYTES = 4 << 20;
+
+    @Test
+    void download_LargeUpload_SendfileUsesLessServerCpuThanCopying() throws Exception {
+        Result copied = serve("copied", Long.MAX_VALUE);
+        Result sendfile = serve("sendfile", 49152);
+
+        assertEquals(0L, copied.sendfileResponses());
+        assertTrue(sendfile.sendfileResponses() >= CONNECTIONS * DOWNLOADS_PER_CONNECTION,
+                "Large downloads should have been handed to sendfile");
+        // Sendfile spares the server the copies; the wall time is bound by the loopback and should not regress
+        BenchmarkHarness.assertFaster(sendfile.cpu(), copied.cpu(), 2);
+        BenchmarkHarness.assertFaster(sendfile.wall(), copied.wall(), 0.5);
+    }
+
+    @Test
+    void download_AvatarRevalidation_IsNotModifiedWithoutBody() throws Exception {
+        try (ConfigurableApplicationContext context = start(49152)) {
+            FileStorageService fileStorageService = context.getBean(FileStorageService.class);
+            String url = fileStorageService.saveFile(new MockMultipartFile("file", "avatar.jpg", null, avatar()));
+            try {
+                HttpClient http = HttpClient.newHttpClient();
+                URI uri = URI.create("http://localhost:" + port(context) + url);
+                HttpResponse<byte[]> first = http.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofByteArray());
+                String etag = first.headers().firstValue("ETag").orElseThrow();
+                HttpResponse<byte[]> revalidated = http.send(HttpRequest.newBuilder(uri).header("If-None-Match", etag).build(),
+                        HttpResponse.BodyHandlers.ofByteArray());
+
+                BenchmarkHarness.report("Avatar of {} B: revalidation answered {} with {} B of body, Cache-Control: {}",
+                        first.body().length, revalidated.statusCode(), revalidated.body().length,
+                        first.headers().firstValue("Cache-Control").orElse(""));
+                assertEquals(304, revalidated.statusCode());
+                assertEquals(0, revalidated.body().length);
+                assertTrue(first.headers().firstValue("Cache-Control").orElse("").contains("immutable"));
+            } finally {
+                delete(fileStorageService, url);
+            }
+        }
+    }
+
+    private Result serve(String name, long sendfileMinBytes) throws Exception {
+        try (ConfigurableApplicationContext context = start(sendfileMinBytes)) {
+            FileStorageService fileStorageService = context.getBean(FileStorageService.class);
+            byte[] content = new byte[LARGE_FILE_BYTES];
+            new Random(1).nextBytes(content);
+            String url = fileStorageService.saveFile(new MockMultipartFile("file", "large.bin", null, content));
+            try {
+                URI uri = URI.create("http://localhost:" + port(context) + url);
+                download(uri, 2);  // Warm-up
+                ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+                long downloads = (long) CONNECTIONS * DOWNLOADS_PER_CONNECTION;
+                long cpuBefore = serverCpuNanos(threads);
+                Measurement wall = BenchmarkHarness.once(name + ", " + (LARGE_FILE_BYTES >> 20) + " MB download wall time",
+                        downloads, () -> download(uri, DOWNLOADS_PER_CONNECTION));
+                Measurement cpu = BenchmarkHarness.record(name + ", " + (LARGE_FILE_BYTES >> 20) + " MB download server CPU",
+                        downloads, serverCpuNanos(threads) - cpuBefore);
+                Map<String, Object> metrics = context.getBean(SendfileResourceConverters.class).metrics();
+                return new Result(cpu, wall, (long) metrics.get("sendfileResponses"));
+            } finally {
+                delete(fileStorageService, url);
+            }
+        }
+    }
+
+    /**
+     * Downloads the URI the given number of times on each of several keep-alive connections in parallel.
+     */
+    private static void download(URI uri, int downloadsPerConnection) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CONNECTIONS);
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (int connection = 0; connection < CONNECTIONS; connection++) {
+                runs.add(clients.submit(() -> {
+                    HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+                    for (int i = 0; i < downloadsPerConnection; i++) {
+                        HttpResponse<Void> response = http.send(HttpRequest.newBuilder(uri).build(),
+                                HttpResponse.BodyHandlers.discarding());
+                        assertEquals(200, response.statusCode());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> run : runs) {
+                run.get();
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    /**
+     * Sums the CPU time of Tomcat's connector threads, the only threads doing work for the server.
+     */
+    private static long serverCpuNanos(ThreadMXBean threads) {
+        long total = 0;
+        for (var info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith("http-nio-")) {
+                total += Math.max(0, threads.getThreadCpuTime(info.getThreadId()));
+            }
+        }
+        return total;
+    }
+
+    private static ConfigurableApplicationContext start(long sendfileMinBytes) {
+        SpringApplication application = new SpringApplication(Server.class);
+        application.setDefaultProperties(Map.of("spring.main.banner-mode", "off"));
+        return application.run("--server.port=0", "--uploads.sendfile-min-bytes=" + sendfileMinBytes,
+                "--logging.level.root=WARN", "--logging.level.org.springframework.web=WARN",
+                "--logging.level.com.example.flexiMed.utils.BenchmarkHarness=INFO");
+    }
+
+    private static int port(ConfigurableApplicationContext context) {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    private static byte[] avatar() throws IOException {
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        Random random = new Random(2);
+        for (int i = 0; i < 500; i++) {
+            graphics.setColor(new Color(random.nextInt()));
+            graphics.fillOval(random.nextInt(800), random.nextInt(600), 50, 50);
+        }
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Deletes a stored file, any thumbnails generated next to it and the shard directories left empty.
+     */
+    private static void delete(FileStorageService fileStorageService, String url) throws IOException {
+        Path original = fileStorageService.locate(url).orElseThrow();
+        String name = original.getFileName().toString();
+        String hash = name.substring(0, name.lastIndexOf('.'));
+        try (Stream<Path> siblings = Files.list(original.getParent())) {
+            for (Path sibling : siblings.filter(path -> path.getFileName().toString().startsWith(hash)).toList()) {
+                Files.deleteIfExists(sibling);
+            }
+        }
+        // Then the two shard directories, unless other uploads share them
+        for (Path shard = original.getParent(); shard != null && !shard.endsWith("uploads"); shard = shard.getParent()) {
+            try (Stream<Path> entries = Files.list(shard)) {
+                if (entries.findAny().isPresent()) {
+                    return;
+                }
+            }
+            Files.delete(shard);
+        }
+    }
+
+    /**
+     * The upload serving configuration of the application on an embedded server, with a stubbed file repository.
+     * Not a {@code @Configuration}, so that component scans of the application never pick it up.
+     */
+    @ImportAutoConfiguration({ServletWebServerFactoryAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            WebMvcAutoConfiguration.class})
+    @Import({MvcConfig.class, SendfileResourceConverters.class})
+    static class Server {
+
+        @Bean
+        FileStorageService fileStorageService() {
+            return new FileStorageService(mock(StoredFileRepository.class));
+        }
+
+        @Bean(destroyMethod = "shutdown")
+        ImageVariantService imageVariantService(FileStorageService fileStorageService) {
+            return new ImageVariantService(fileStorageService, new int[]{64, 128, 256}, 40_000_000, 2, 100);
+        }
+    }
+
+    private record Result(Measurement cpu, Measurement wall, long sendfileResponses) {
+    }
+}
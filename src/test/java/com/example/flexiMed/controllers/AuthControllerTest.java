@@ -0,0 +1,179 @@
+package com.example.flexiMed.controllers;
+
+import com.example.flexiMed.controller.auth.AuthController;
+import com.example.flexiMed.enums.Role;
+import com.example.flexiMed.exceptions.ErrorResponse;
+import com.example.flexiMed.model.UserEntity;
+import com.example.flexiMed.repository.RevokedTokenRepository;
+import com.example.flexiMed.security.JwtUtil;
+import com.example.flexiMed.security.LoginThrottle;
+import com.example.flexiMed.security.RefreshTokenCookie;
+import com.example.flexiMed.security.TokenRevocationService;
+import com.example.flexiMed.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests the refresh token exchange of {@link AuthController}: token type checks, one-time use of rotated
+ * refresh tokens across nodes, roles reloaded on refresh and the HttpOnly cookie used by OAuth2 logins, and the
+ * per-account login throttle charged only by failed logins.
+ */
+class AuthControllerTest {
+
+    private static final String SECRET = "MjRPK29xS0dWQUgwR2t4NnB2QXhVOVd2ZVVmM1Y0QTZtSzNsbmVhK0krdz0K";
+    private static final String EMAIL = "patient@example.com";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 100, 15, 7);
+    private final UserService userService = mock(UserService.class);
+    private final RevokedTokenRepository revokedTokenRepository = mock(RevokedTokenRepository.class);
+    private final RefreshTokenCookie refreshTokenCookie = new RefreshTokenCookie(7, "Strict");
+
+    /**
+     * Token IDs recorded in the shared database, shared by every node of the test.
+     */
+    private final Set<String> revokedInDatabase = ConcurrentHashMap.newKeySet();
+
+    private UserEntity user;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        user = new UserEntity(UUID.randomUUID(), "Patient", EMAIL, "Password123!", "+15550000000", Role.USER, null);
+        when(userService.loadUserByUsername(EMAIL)).thenAnswer(invocation -> user);
+        when(revokedTokenRepository.insertIfAbsent(any(), any(), any()))
+                .thenAnswer(invocation -> revokedInDatabase.add(invocation.getArgument(0)) ? 1 : 0);
+        mockMvc = node();
+    }
+
+    @AfterEach
+    void tearDown() {
+        // A successful login authenticates the test thread
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void refresh_AccessToken_IsRejected() throws Exception {
+        String accessToken = jwtUtil.generateToken(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+
+        refreshWithBody(mockMvc, accessToken).andExpect(status().isUnauthorized());
+        assertTrue(revokedInDatabase.isEmpty(), "A rejected token must not be rotated");
+    }
+
+    @Test
+    void refresh_RotatedToken_CannotBeReplayedOnAnyNode() throws Exception {
+        String refreshToken = jwtUtil.generateRefreshToken(user);
+
+        refreshWithBody(mockMvc, refreshToken).andExpect(status().isOk());
+        refreshWithBody(mockMvc, refreshToken).andExpect(status().isUnauthorized());
+
+        // A node that has not reloaded the revocations yet must still lose the race on the database insert
+        refreshWithBody(node(), refreshToken).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void refresh_AfterRoleChange_IssuesAccessTokenWithTheNewRole() throws Exception {
+        String refreshToken = jwtUtil.generateRefreshToken(user);
+        user.setRole(Role.DISPATCHER);
+
+        Map<?, ?> body = body(refreshWithBody(mockMvc, refreshToken).andExpect(status().isOk()).andReturn());
+
+        String accessToken = (String) body.get("token");
+        assertEquals(Role.DISPATCHER.name(), jwtUtil.verifyToken(accessToken).get(JwtUtil.CLAIM_ROLE, String.class));
+    }
+
+    @Test
+    void refresh_FromCookie_RotatesTheCookieAndKeepsTheTokenOutOfTheBody() throws Exception {
+        String refreshToken = jwtUtil.generateRefreshToken(user);
+
+        MvcResult result = mockMvc.perform(post("/api/auth/refresh")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .cookie(new Cookie(RefreshTokenCookie.NAME, refreshToken)))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertNull(body(result).get("refreshToken"));
+        Cookie rotated = result.getResponse().getCookie(RefreshTokenCookie.NAME);
+        assertNotNull(rotated);
+        assertTrue(rotated.isHttpOnly());
+        assertTrue(rotated.getSecure());
+        assertNotEquals(refreshToken, rotated.getValue());
+        assertTrue(jwtUtil.isRefreshToken(jwtUtil.verifyToken(rotated.getValue())));
+    }
+
+    @Test
+    void login_OnlyFailedAttemptsCountAgainstTheAccount() throws Exception {
+        AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
+        when(authenticationManager.authenticate(any())).thenAnswer(invocation -> {
+            Authentication attempt = invocation.getArgument(0);
+            if (!"Password123!".equals(attempt.getCredentials())) {
+                throw new BadCredentialsException("Bad credentials");
+            }
+            return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+        });
+        LoginThrottle loginThrottle = new LoginThrottle(1024, 100, 0.01, 3, 0.01);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new AuthController(authenticationManager, jwtUtil, userService,
+                new TokenRevocationService(revokedTokenRepository, 1000, 0.01), loginThrottle, refreshTokenCookie)).build();
+
+        for (int i = 0; i < 10; i++) {
+            login(mockMvc, "Password123!").andExpect(status().isOk());
+        }
+        for (int i = 0; i < 3; i++) {
+            login(mockMvc, "guess" + i).andExpect(status().isUnauthorized());
+        }
+        assertThrows(ErrorResponse.TooManyRequestsException.class, () -> loginThrottle.checkLogin("10.0.0.9", EMAIL));
+    }
+
+    private ResultActions login(MockMvc mockMvc, String password) throws Exception {
+        return mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("email", EMAIL, "password", password))));
+    }
+
+    /**
+     * Creates the controller of a node with its own in-memory revocation state over the shared database.
+     */
+    private MockMvc node() {
+        TokenRevocationService tokenRevocationService = new TokenRevocationService(revokedTokenRepository, 1000, 0.01);
+        AuthController controller = new AuthController(mock(AuthenticationManager.class), jwtUtil, userService,
+                tokenRevocationService, mock(LoginThrottle.class), refreshTokenCookie);
+        return MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    private ResultActions refreshWithBody(MockMvc mockMvc, String refreshToken) throws Exception {
+        return mockMvc.perform(post("/api/auth/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("refreshToken", refreshToken))));
+    }
+
+    private Map<?, ?> body(MvcResult result) throws Exception {
+        return objectMapper.readValue(result.getResponse().getContentAsString(), Map.class);
+    }
+}
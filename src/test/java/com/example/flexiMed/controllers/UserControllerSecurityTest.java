@@ -0,0 +1,137 @@
+package com.example.flexiMed.controllers;
+
+import com.example.flexiMed.config.SendfileResourceConverters;
+import com.example.flexiMed.controller.MetricsController;
+import com.example.flexiMed.controller.UserController;
+import com.example.flexiMed.dto.UserDTO;
+import com.example.flexiMed.enums.Role;
+import com.example.flexiMed.model.UserEntity;
+import com.example.flexiMed.security.*;
+import com.example.flexiMed.service.FileStorageService;
+import com.example.flexiMed.service.ImageVariantService;
+import com.example.flexiMed.service.UserService;
+import com.example.flexiMed.service.oauth.CustomOAuth2UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests that only administrators can change user roles and read runtime metrics, through the real security
+ * filter chain.
+ */
+@WebMvcTest({UserController.class, MetricsController.class})
+@Import({SecurityConfig.class, JwtUtil.class})
+class UserControllerSecurityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @MockitoBean
+    private UserService userService;
+    @MockitoBean
+    private CustomOAuth2UserService customOAuth2UserService;
+    @MockitoBean
+    private OAuth2LoginSuccessHandler oAuth2LoginSuccessHandler;
+    @MockitoBean
+    private PrincipalCache principalCache;
+    @MockitoBean
+    private TokenRevocationService tokenRevocationService;
+    @MockitoBean
+    private PasswordHashingExecutor passwordHashingExecutor;
+    @MockitoBean
+    private FileStorageService fileStorageService;
+    @MockitoBean
+    private ImageVariantService imageVariantService;
+    @MockitoBean
+    private SendfileResourceConverters sendfileResourceConverters;
+
+    private final UUID targetId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        when(userService.updateUserRole(any(), any())).thenReturn(new UserDTO());
+        when(tokenRevocationService.metricsName()).thenReturn("tokenRevocation");
+        when(passwordHashingExecutor.metricsName()).thenReturn("passwordHashing");
+        when(fileStorageService.metricsName()).thenReturn("fileStorage");
+        when(imageVariantService.metricsName()).thenReturn("imageVariants");
+        when(principalCache.metricsName()).thenReturn("principalCache");
+        when(sendfileResourceConverters.metricsName()).thenReturn("sendfile");
+    }
+
+    @Test
+    void updateUserRole_UserToken_Forbidden() throws Exception {
+        mockMvc.perform(put("/api/v1/users/{id}/role", targetId).param("role", "ADMIN")
+                        .header("Authorization", "Bearer " + tokenFor(Role.USER)))
+                .andExpect(status().isForbidden());
+
+        verify(userService, never()).updateUserRole(any(), any());
+    }
+
+    @Test
+    void updateUserRole_NoToken_Rejected() throws Exception {
+        mockMvc.perform(put("/api/v1/users/{id}/role", targetId).param("role", "ADMIN"))
+                .andExpect(result -> {
+                    int status = result.getResponse().getStatus();
+                    if (status != 401 && status != 403 && status != 302) {
+                        throw new AssertionError("Unauthenticated role change answered with " + status);
+                    }
+                });
+
+        verify(userService, never()).updateUserRole(any(), any());
+    }
+
+    @Test
+    void updateUserRole_AdminToken_Allowed() throws Exception {
+        mockMvc.perform(put("/api/v1/users/{id}/role", targetId).param("role", "DRIVER")
+                        .header("Authorization", "Bearer " + tokenFor(Role.ADMIN)))
+                .andExpect(status().isOk());
+
+        verify(userService).updateUserRole(eq(targetId), eq(Role.DRIVER));
+    }
+
+    @Test
+    void getMetrics_UserToken_Forbidden() throws Exception {
+        mockMvc.perform(get("/api/v1/metrics").header("Authorization", "Bearer " + tokenFor(Role.USER)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void getMetrics_NoToken_Rejected() throws Exception {
+        mockMvc.perform(get("/api/v1/metrics"))
+                .andExpect(result -> {
+                    int status = result.getResponse().getStatus();
+                    if (status != 401 && status != 403 && status != 302) {
+                        throw new AssertionError("Unauthenticated metrics request answered with " + status);
+                    }
+                });
+    }
+
+    @Test
+    void getMetrics_AdminToken_Allowed() throws Exception {
+        mockMvc.perform(get("/api/v1/metrics").header("Authorization", "Bearer " + tokenFor(Role.ADMIN)))
+                .andExpect(status().isOk());
+    }
+
+    private String tokenFor(Role role) {
+        UserEntity user = new UserEntity(UUID.randomUUID(), "Test", role.name().toLowerCase() + "@example.com",
+                "password123", "+15550000000", role, null);
+        return jwtUtil.generateToken(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.flexiMed.notifications;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests that {@link AmqpNotificationConsumer} keeps retries in the broker rather than in memory, using an
+ * in-process stub of the listener container and of the retry queue.
+ */
+class AmqpNotificationConsumerTest {
+
+    private final DeadLetterStore deadLetterStore = mock(DeadLetterStore.class);
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final StubBroker broker = new StubBroker();
+    private NotificationDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void deliver_FailingJob_IsRepublishedToTheRetryQueueAndDeliveredLater() {
+        AtomicInteger calls = new AtomicInteger();
+        AmqpNotificationConsumer consumer = consumer(sender(job -> {
+            if (calls.incrementAndGet() <= 2) {
+                throw new Exception("SMTP server unavailable");
+            }
+        }), 5);
+        NotificationJob job = broker.publish(NotificationJob.of(NotificationChannel.EMAIL, "patient@example.com", "Patient", null));
+
+        broker.deliverBatch(consumer);
+
+        assertTrue(broker.queue.isEmpty(), "The batch should have been acknowledged");
+        assertEquals(1, broker.retryQueue.size());
+        assertEquals(AmqpNotificationConfig.retryQueueName(NotificationChannel.EMAIL), broker.retryRoutingKeys.get(0));
+        MessageProperties retry = broker.retryQueue.peek().properties;
+        assertEquals(2, retry.getHeaders().get(AmqpNotificationConsumer.ATTEMPT_HEADER));
+        long ttl = Long.parseLong(retry.getExpiration());
+        assertTrue(ttl >= 50 && ttl <= 100, "The TTL should be the backoff, was " + ttl);
+        assertEquals(0, ((Number) dispatcher.metrics().get("scheduledRetries")).intValue(), "No retry may be held in memory");
+
+        broker.expireRetries();
+        broker.deliverBatch(consumer);
+        broker.expireRetries();
+        broker.deliverBatch(consumer);
+
+        assertEquals(3, calls.get());
+        assertTrue(broker.queue.isEmpty() && broker.retryQueue.isEmpty());
+        verify(deadLetterStore, never()).store(any(), anyInt(), any());
+        assertEquals(job, broker.delivered.get(broker.delivered.size() - 1));
+    }
+
+    @Test
+    void deliver_AttemptsExhausted_IsDeadLetteredInsteadOfRepublished() {
+        AmqpNotificationConsumer consumer = consumer(sender(job -> {
+            throw new Exception("SMTP server unavailable");
+        }), 2);
+        NotificationJob job = broker.publish(NotificationJob.of(NotificationChannel.EMAIL, "patient@example.com", "Patient", null));
+
+        broker.deliverBatch(consumer);
+        broker.expireRetries();
+        broker.deliverBatch(consumer);
+
+        assertTrue(broker.queue.isEmpty() && broker.retryQueue.isEmpty());
+        verify(deadLetterStore).store(eq(job), eq(2), any(Exception.class));
+    }
+
+    @Test
+    void deliver_BrokerRejectsRetry_BatchIsRedelivered() {
+        broker.nackRetries = true;
+        AmqpNotificationConsumer consumer = consumer(sender(job -> {
+            if (job.recipient().startsWith("failing")) {
+                throw new Exception("SMTP server unavailable");
+            }
+        }), 5);
+        broker.publish(NotificationJob.of(NotificationChannel.EMAIL, "patient@example.com", "Patient", null));
+        broker.publish(NotificationJob.of(NotificationChannel.EMAIL, "failing@example.com", "Patient", null));
+
+        assertThrows(AmqpException.class, () -> broker.deliverBatch(consumer));
+
+        assertEquals(2, broker.queue.size(), "A rejected batch must be requeued, not acknowledged");
+        assertEquals(0, ((Number) dispatcher.metrics().get("scheduledRetries")).intValue());
+    }
+
+    private AmqpNotificationConsumer consumer(ChannelSender sender, int maxAttempts) {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("notifications.retry.max-attempts", Integer.toString(maxAttempts))
+                .withProperty("notifications.retry.initial-backoff-ms", "100")
+                .withProperty("notifications.retry.max-backoff-ms", "100");
+        dispatcher = new NotificationDispatcher(List.of(sender), deadLetterStore, environment);
+        broker.stubRetryPublishing(rabbitTemplate);
+        return new AmqpNotificationConsumer(dispatcher, rabbitTemplate, 1000);
+    }
+
+    private ChannelSender sender(FailingSend send) {
+        return new ChannelSender() {
+            @Override
+            public NotificationChannel channel() {
+                return NotificationChannel.EMAIL;
+            }
+
+            @Override
+            public void send(NotificationJob job) throws Exception {
+                send.send(job);
+                broker.delivered.add(job);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface FailingSend {
+        void send(NotificationJob job) throws Exception;
+    }
+
+    /**
+     * A stand-in for the channel queue, its retry queue and the batching listener container with
+     * {@code AcknowledgeMode.AUTO} and requeue on failure.
+     */
+    private static final class StubBroker {
+        private final Deque<Message<NotificationJob>> queue = new ArrayDeque<>();
+        private final Deque<RetryMessage> retryQueue = new ArrayDeque<>();
+        private final List<String> retryRoutingKeys = new ArrayList<>();
+        private final List<NotificationJob> delivered = new ArrayList<>();
+        private boolean nackRetries;
+
+        private NotificationJob publish(NotificationJob job) {
+            queue.add(MessageBuilder.withPayload(job).build());
+            return job;
+        }
+
+        /**
+         * Delivers every queued message as one batch; the batch is acknowledged if the listener returns and
+         * requeued if it throws.
+         */
+        private void deliverBatch(AmqpNotificationConsumer consumer) {
+            List<Message<NotificationJob>> batch = new ArrayList<>(queue);
+            queue.clear();
+            try {
+                consumer.deliver(batch);
+            } catch (RuntimeException e) {
+                queue.addAll(batch);
+                throw e;
+            }
+        }
+
+        /**
+         * Expires every retry message, dead-lettering it back to the channel queue with its headers.
+         */
+        private void expireRetries() {
+            while (!retryQueue.isEmpty()) {
+                RetryMessage retry = retryQueue.poll();
+                queue.add(MessageBuilder.withPayload(retry.job).copyHeaders(retry.properties.getHeaders()).build());
+            }
+        }
+
+        private void stubRetryPublishing(RabbitTemplate rabbitTemplate) {
+            doAnswer(invocation -> {
+                NotificationJob job = invocation.getArgument(2);
+                MessagePostProcessor postProcessor = invocation.getArgument(3);
+                CorrelationData correlation = invocation.getArgument(4);
+                org.springframework.amqp.core.Message message = postProcessor.postProcessMessage(
+                        new org.springframework.amqp.core.Message(new byte[0], new MessageProperties()));
+                if (nackRetries) {
+                    correlation.getFuture().complete(new CorrelationData.Confirm(false, "queue full"));
+                } else {
+                    retryRoutingKeys.add(invocation.getArgument(1));
+                    retryQueue.add(new RetryMessage(job, message.getMessageProperties()));
+                    correlation.getFuture().complete(new CorrelationData.Confirm(true, null));
+                }
+                return null;
+            }).when(rabbitTemplate).convertAndSend(eq(""), anyString(), any(Object.class),
+                    any(MessagePostProcessor.class), any(CorrelationData.class));
+        }
+    }
+
+    private record RetryMessage(NotificationJob job, MessageProperties properties) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.flexiMed.notifications;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests that {@link NotificationDispatcher} does not lose jobs at shutdown and fails over to a job's fallback.
+ */
+class NotificationDispatcherTest {
+
+    private final DeadLetterStore deadLetterStore = mock(DeadLetterStore.class);
+
+    @Test
+    void shutdown_RetryWaitingForBackoff_IsDeadLettered() throws Exception {
+        ChannelSender failing = new ChannelSender() {
+            @Override
+            public NotificationChannel channel() {
+                return NotificationChannel.EMAIL;
+            }
+
+            @Override
+            public void send(NotificationJob job) throws Exception {
+                throw new Exception("SMTP server unavailable");
+            }
+        };
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("notifications.retry.initial-backoff-ms", "60000")
+                .withProperty("notifications.retry.max-backoff-ms", "60000");
+        NotificationDispatcher dispatcher = new NotificationDispatcher(List.of(failing), deadLetterStore, environment);
+
+        NotificationJob job = NotificationJob.of(NotificationChannel.EMAIL, "patient@example.com", "Patient", null);
+        dispatcher.dispatch(job);
+        waitForScheduledRetry(dispatcher);
+
+        dispatcher.shutdown();
+
+        verify(deadLetterStore).store(eq(job), eq(1), isNull());
+    }
+
+    @Test
+    void shutdown_NothingPending_DeadLettersNothing() {
+        NotificationDispatcher dispatcher = new NotificationDispatcher(List.of(), deadLetterStore, new MockEnvironment());
+
+        dispatcher.shutdown();
+
+        verify(deadLetterStore, never()).store(any(), anyInt(), any());
+    }
+
+    @Test
+    void dispatch_SmsFailsForGood_FallsBackToEmail() throws Exception {
+        ChannelSender invalidNumber = new ChannelSender() {
+            @Override
+            public NotificationChannel channel() {
+                return NotificationChannel.SMS;
+            }
+
+            @Override
+            public void send(NotificationJob job) {
+                throw new IllegalArgumentException("Invalid phone number");
+            }
+        };
+        CompletableFuture<NotificationJob> emailed = new CompletableFuture<>();
+        ChannelSender email = new ChannelSender() {
+            @Override
+            public NotificationChannel channel() {
+                return NotificationChannel.EMAIL;
+            }
+
+            @Override
+            public void send(NotificationJob job) {
+                emailed.complete(job);
+            }
+        };
+        NotificationDispatcher dispatcher = new NotificationDispatcher(List.of(invalidNumber, email), deadLetterStore,
+                new MockEnvironment());
+        NotificationJob fallback = NotificationJob.of(NotificationChannel.EMAIL, "patient@example.com", "Patient", null);
+        NotificationJob job = NotificationJob.of(NotificationChannel.SMS, "not-a-number", "Patient", null).withFallback(fallback);
+
+        dispatcher.dispatch(job);
+
+        assertEquals(fallback, emailed.get(5, TimeUnit.SECONDS));
+        verify(deadLetterStore).store(eq(job), eq(1), any(IllegalArgumentException.class));
+        dispatcher.shutdown();
+    }
+
+    private static void waitForScheduledRetry(NotificationDispatcher dispatcher) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            if (((Number) dispatcher.metrics().get("scheduledRetries")).intValue() == 1) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("No retry was scheduled: " + dispatcher.metrics());
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.flexiMed.notifications;
+
+import com.example.flexiMed.cluster.ClusterBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that {@link PresenceTable} shares presence between two nodes connected by an in-process
+ * {@link ClusterBus}, standing in for {@code PostgresClusterBus}.
+ */
+class PresenceTableTest {
+
+    private static final long REFRESH_MILLIS = 50;
+
+    private final List<LinkedClusterBus> cluster = new CopyOnWriteArrayList<>();
+    private final List<PresenceTable> nodes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(PresenceTable::shutdown);
+    }
+
+    @Test
+    void isOnline_UserSubscribedOnOtherNode_IsOnlineOnBothUntilDisconnect() {
+        PresenceTable nodeA = node(Integer.MAX_VALUE);
+        PresenceTable nodeB = node(Integer.MAX_VALUE);
+        UUID userId = UUID.randomUUID();
+
+        nodeA.onSubscribe(subscribe("session-1", "sub-0", "/topic/ambulance/" + userId));
+
+        assertTrue(nodeA.isOnline(userId));
+        assertTrue(nodeB.isOnline(userId), "The subscription on node A should be announced at once");
+
+        nodeA.onDisconnect(disconnect("session-1"));
+
+        assertFalse(nodeA.isOnline(userId));
+        assertFalse(nodeB.isOnline(userId), "The disconnect on node A should withdraw the user at once");
+    }
+
+    @Test
+    void isOnline_UserOnBothNodes_StaysOnlineWhileEitherHasASession() {
+        PresenceTable nodeA = node(Integer.MAX_VALUE);
+        PresenceTable nodeB = node(Integer.MAX_VALUE);
+        UUID userId = UUID.randomUUID();
+
+        nodeA.onSubscribe(subscribe("session-1", "sub-0", "/topic/ambulance/" + userId));
+        nodeB.onSubscribe(subscribe("session-2", "sub-0", "/topic/ambulance/" + userId));
+        nodeA.onDisconnect(disconnect("session-1"));
+
+        assertTrue(nodeA.isOnline(userId), "Node B still has a session for the user");
+        assertTrue(nodeB.isOnline(userId));
+    }
+
+    @Test
+    void isOnline_LeasesRefreshedInSmallMessages_UntilTheNodeStopsAnnouncing() throws Exception {
+        PresenceTable nodeA = node(120);  // Room for about two user IDs per message
+        PresenceTable nodeB = node(120);
+        List<UUID> userIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            userIds.add(UUID.randomUUID());
+            nodeA.onSubscribe(subscribe("session-" + i, "sub-0", "/topic/ambulance/" + userIds.get(i)));
+        }
+
+        Thread.sleep(REFRESH_MILLIS * 6);  // Twice the lease: only the refreshes keep the users online
+        userIds.forEach(userId -> assertTrue(nodeB.isOnline(userId)));
+        assertTrue((long) nodeA.metrics().get("leasesSent") > userIds.size(), "Leases should have been refreshed");
+
+        nodeA.shutdown();  // As if node A crashed without withdrawing its users
+        Thread.sleep(REFRESH_MILLIS * 4);
+
+        userIds.forEach(userId -> assertFalse(nodeB.isOnline(userId), "The lease from node A should have lapsed"));
+        assertEquals(0, nodeB.metrics().get("remoteUsers"));
+    }
+
+    private PresenceTable node(int maxPayloadBytes) {
+        PresenceTable node = new PresenceTable(new LinkedClusterBus(cluster, maxPayloadBytes), REFRESH_MILLIS);
+        nodes.add(node);
+        return node;
+    }
+
+    private static SessionSubscribeEvent subscribe(String sessionId, String subscriptionId, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return new SessionSubscribeEvent(PresenceTableTest.class, message(accessor));
+    }
+
+    private static SessionDisconnectEvent disconnect(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        return new SessionDisconnectEvent(PresenceTableTest.class, message(accessor), sessionId, CloseStatus.NORMAL);
+    }
+
+    private static Message<byte[]> message(StompHeaderAccessor accessor) {
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    /**
+     * A cluster bus delivering every message synchronously to the listeners of the other buses in the same list.
+     */
+    private static final class LinkedClusterBus implements ClusterBus {
+
+        private final List<LinkedClusterBus> cluster;
+        private final int maxPayloadBytes;
+        private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+
+        private LinkedClusterBus(List<LinkedClusterBus> cluster, int maxPayloadBytes) {
+            this.cluster = cluster;
+            this.maxPayloadBytes = maxPayloadBytes;
+            cluster.add(this);
+        }
+
+        @Override
+        public void publish(String channel, String payload) {
+            assertTrue(payload.length() <= maxPayloadBytes, "Payload exceeds the bus limit");
+            for (LinkedClusterBus node : cluster) {
+                if (node != this) {
+                    node.listeners.getOrDefault(channel, List.of()).forEach(listener -> listener.accept(payload));
+                }
+            }
+        }
+
+        @Override
+        public void subscribe(String channel, Consumer<String> listener) {
+            listeners.computeIfAbsent(channel, name -> new CopyOnWriteArrayList<>()).add(listener);
+        }
+
+        @Override
+        public boolean isDistributed() {
+            return true;
+        }
+
+        @Override
+        public int maxPayloadBytes() {
+            return maxPayloadBytes;
+        }
+    }
+}
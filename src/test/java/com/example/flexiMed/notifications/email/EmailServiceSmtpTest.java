@@ -0,0 +1,229 @@
+package com.example.flexiMed.notifications.email;
+
+import com.example.flexiMed.controller.NotificationController.AmbulanceNotificationDTO;
+import com.example.flexiMed.notifications.EmailChannelSender;
+import com.example.flexiMed.notifications.NotificationChannel;
+import com.example.flexiMed.notifications.NotificationJob;
+import jakarta.mail.BodyPart;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link EmailService} against an in-process {@link StubSmtpServer}: connection pooling, batching,
+ * reconnection and pre-rendered templates, plus the pooled throughput against one connection per message.
+ */
+class EmailServiceSmtpTest {
+
+    private static final String TEMPLATE = "ambulance-dispatch";
+
+    private final TemplateEngine templateEngine = templateEngine();
+    private StubSmtpServer server;
+    private EmailService emailService;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (emailService != null) {
+            emailService.shutdown();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void sendEmail_ConcurrentMessages_ShareOneConnectionPerSenderInBatches() throws Exception {
+        server = new StubSmtpServer(1);
+        emailService = emailService(mailSender(), 4, 20);
+
+        int count = 200;
+        long start = System.nanoTime();
+        ExecutorService callers = Executors.newFixedThreadPool(50);
+        try {
+            List<Future<?>> sends = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int n = i;
+                sends.add(callers.submit(() -> {
+                    emailService.sendEmail("patient" + n + "@example.com", "Ambulance Dispatched", TEMPLATE, context("Patient " + n));
+                    return null;
+                }));
+            }
+            for (Future<?> send : sends) {
+                send.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        System.out.printf("Pooled SMTP: %d messages in %d ms (%.0f msg/s) over %d connections%n",
+                count, elapsedMillis, count * 1000.0 / elapsedMillis, server.connectionCount());
+        assertEquals(count, server.messages().size());
+        assertEquals(4, server.connectionCount(), "Each sender thread should keep a single connection open");
+        assertEquals(4L, emailService.metrics().get("connects"));
+        assertTrue((double) emailService.metrics().get("avgBatchSize") > 1.0, "Queued messages should be sent in batches");
+    }
+
+    @Test
+    void sendAsync_ChannelSender_QueuesWithoutWaitingAndSendsInBatchesOverOneSession() throws Exception {
+        server = new StubSmtpServer(1);
+        emailService = emailService(mailSender(), 1, 20);
+        EmailChannelSender sender = new EmailChannelSender(emailService);
+
+        int count = 30;
+        List<CompletableFuture<Void>> sends = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            AmbulanceNotificationDTO payload = new AmbulanceNotificationDTO(UUID.randomUUID(), UUID.randomUUID(),
+                    "Ambulance dispatched", "ABC-123", "Driver", "+15550000000", "7 min");
+            sends.add(sender.sendAsync(NotificationJob.of(NotificationChannel.EMAIL, "patient" + i + "@example.com",
+                    "Patient " + i, payload)));
+        }
+        assertFalse(sends.get(count - 1).isDone(), "A single notification worker should queue every message at once");
+
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+        assertEquals(count, server.messages().size());
+        assertEquals(1, server.connectionCount(), "Queued messages should share one SMTP session");
+        assertTrue((long) emailService.metrics().get("batches") < count, "Queued messages should be sent in batches");
+    }
+
+    @Test
+    void sendEmail_PooledConnections_OutpaceOneConnectionPerMessage() throws Exception {
+        server = new StubSmtpServer(1);
+        JavaMailSenderImpl mailSender = mailSender();
+        int count = 50;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            MimeMessage message = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, MimeMessageHelper.MULTIPART_MODE_MIXED, StandardCharsets.UTF_8.name());
+            helper.setTo("patient" + i + "@example.com");
+            helper.setFrom("noreply@fleximed.test");
+            helper.setSubject("Ambulance Dispatched");
+            helper.setText(templateEngine.process(TEMPLATE, context("Patient " + i)), true);
+            mailSender.send(message);  // Connects, greets and quits for every message
+        }
+        long perMessageMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        int perMessageConnections = server.connectionCount();
+
+        emailService = emailService(mailSender, 1, 20);
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            emailService.sendEmail("patient" + i + "@example.com", "Ambulance Dispatched", TEMPLATE, context("Patient " + i));
+        }
+        long pooledMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        System.out.printf("One sender thread, %d messages: %d ms with a connection per message, %d ms pooled%n",
+                count, perMessageMillis, pooledMillis);
+        assertEquals(count, perMessageConnections);
+        assertEquals(count + 1, server.connectionCount());
+        assertTrue(pooledMillis < perMessageMillis,
+                "Pooled sending should skip the per-message greeting, EHLO and QUIT round trips");
+    }
+
+    @Test
+    void sendEmail_ServerDropsConnection_ReconnectsAndDelivers() throws Exception {
+        server = new StubSmtpServer(0);
+        server.dropAfterMessage(true);
+        emailService = emailService(mailSender(), 1, 20);
+
+        for (int i = 0; i < 3; i++) {
+            emailService.sendEmail("patient" + i + "@example.com", "Ambulance Dispatched", TEMPLATE, context("Patient " + i));
+        }
+
+        assertEquals(3, server.messages().size());
+        assertEquals(3, server.connectionCount());
+        assertEquals(0L, emailService.metrics().get("failed"));
+    }
+
+    @Test
+    void sendEmail_PrerenderedTemplate_SendsTheSameHtmlAsThymeleaf() throws Exception {
+        server = new StubSmtpServer(0);
+        emailService = emailService(mailSender(), 1, 20);
+        Context context = context("O'Brien & <Sons>");
+
+        emailService.sendEmail("patient@example.com", "Ambulance Dispatched", TEMPLATE, context);
+
+        MimeMessage received = new MimeMessage(Session.getInstance(new Properties()),
+                new ByteArrayInputStream(server.messages().get(0).getBytes(StandardCharsets.ISO_8859_1)));
+        // SMTP carries text with CRLF line endings
+        assertEquals(templateEngine.process(TEMPLATE, context), html(received).replace("\r\n", "\n"));
+        assertEquals(1L, emailService.metrics().get("prerenderedRenders"));
+    }
+
+    private EmailService emailService(JavaMailSenderImpl mailSender, int senderThreads, int batchSize) {
+        EmailService service = new EmailService(mailSender, templateEngine, senderThreads, 1000, batchSize,
+                60_000, 30_000, Set.of(TEMPLATE));
+        ReflectionTestUtils.setField(service, "fromEmail", "noreply@fleximed.test");
+        return service;
+    }
+
+    private JavaMailSenderImpl mailSender() {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(server.port());
+        return mailSender;
+    }
+
+    private static Context context(String userName) {
+        Context context = new Context();
+        context.setVariable("userName", userName);
+        context.setVariable("eta", "7 min");
+        context.setVariable("ambulanceNumber", "ABC-123");
+        return context;
+    }
+
+    private static TemplateEngine templateEngine() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+
+    /**
+     * Finds the HTML body of a received message.
+     */
+    private static String html(Part part) throws Exception {
+        if (part.isMimeType("text/html")) {
+            return (String) part.getContent();
+        }
+        if (part.getContent() instanceof Multipart multipart) {
+            for (int i = 0; i < multipart.getCount(); i++) {
+                BodyPart bodyPart = multipart.getBodyPart(i);
+                String html = html(bodyPart);
+                if (html != null) {
+                    return html;
+                }
+            }
+        }
+        return null;
+    }
+}
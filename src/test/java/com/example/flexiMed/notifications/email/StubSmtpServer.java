@@ -0,0 +1,130 @@
+package com.example.flexiMed.notifications.email;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal in-process SMTP server for tests. It accepts every command, records the raw data of every message and
+ * counts connections. Each reply can be delayed to stand in for the network round trip to a real relay.
+ */
+final class StubSmtpServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    private final long replyDelayMillis;
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private volatile boolean dropAfterMessage;
+
+    /**
+     * Starts a server on an ephemeral loopback port.
+     *
+     * @param replyDelayMillis The delay before every reply.
+     */
+    StubSmtpServer(long replyDelayMillis) throws IOException {
+        this.replyDelayMillis = replyDelayMillis;
+        this.serverSocket = new ServerSocket(0, 200, InetAddress.getLoopbackAddress());
+        connections.execute(this::acceptLoop);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return The raw data (headers and body) of every message received so far.
+     */
+    List<String> messages() {
+        return new ArrayList<>(messages);
+    }
+
+    int connectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Makes the server close each connection after accepting a message, as relays do with idle or overused
+     * connections.
+     */
+    void dropAfterMessage(boolean drop) {
+        this.dropAfterMessage = drop;
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionCount.incrementAndGet();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;  // Closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.ISO_8859_1)) {
+            reply(out, "220 stub ESMTP ready");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase(Locale.ROOT);
+                if (command.startsWith("EHLO")) {
+                    reply(out, "250-stub\r\n250 8BITMIME");
+                } else if (command.startsWith("DATA")) {
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    StringBuilder data = new StringBuilder();
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        data.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+                    }
+                    messages.add(data.toString());
+                    reply(out, "250 OK queued");
+                    if (dropAfterMessage) {
+                        return;
+                    }
+                } else if (command.startsWith("QUIT")) {
+                    reply(out, "221 Bye");
+                    return;
+                } else {
+                    reply(out, "250 OK");  // HELO, MAIL, RCPT, RSET, NOOP
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+
+    private void reply(Writer out, String reply) throws IOException {
+        if (replyDelayMillis > 0) {
+            try {
+                Thread.sleep(replyDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+        }
+        out.write(reply + "\r\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+}
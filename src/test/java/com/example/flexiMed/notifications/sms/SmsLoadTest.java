@@ -0,0 +1,111 @@
+package com.example.flexiMed.notifications.sms;
+
+import com.example.flexiMed.controller.NotificationController.AmbulanceNotificationDTO;
+import com.example.flexiMed.notifications.DeadLetterStore;
+import com.example.flexiMed.notifications.NotificationChannel;
+import com.example.flexiMed.notifications.NotificationDispatcher;
+import com.example.flexiMed.notifications.NotificationJob;
+import com.example.flexiMed.notifications.SmsChannelSender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Load tests of the SMS pipeline against the in-process {@link FakeSmsTransport}: parallelism, rate limiting
+ * and coalescing, alone and behind the {@link NotificationDispatcher}.
+ */
+class SmsLoadTest {
+
+    private final List<SMSService> services = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(SMSService::shutdown);
+    }
+
+    @Test
+    void sendAsync_UnlimitedRate_SendsOnEveryThreadAndCoalescesDuplicates() {
+        FakeSmsTransport transport = new FakeSmsTransport(20);
+        SMSService smsService = service(transport, 16, 1_000_000);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> sends = new ArrayList<>();
+        for (int i = 0; i < 800; i++) {
+            sends.add(smsService.sendAsync(number(i), "Ambulance dispatched"));
+        }
+        for (int i = 0; i < 200; i++) {
+            sends.add(smsService.sendAsync(number(i), "Ambulance dispatched"));  // Duplicates within the window
+        }
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        System.out.printf("SMS unlimited: 800 messages in %d ms (%.0f msg/s)%n", elapsedMillis, 800_000.0 / elapsedMillis);
+        assertEquals(800, transport.sentCount());
+        assertEquals(200L, smsService.metrics().get("coalesced"));
+        assertTrue(elapsedMillis < 2_000, "16 threads at 20 ms should take about 1 s, took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void sendAsync_RateLimited_HoldsProviderRate() {
+        FakeSmsTransport transport = new FakeSmsTransport(1);
+        SMSService smsService = service(transport, 16, 100);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> sends = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            sends.add(smsService.sendAsync(number(i), "Ambulance dispatched"));
+        }
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        double rate = 200_000.0 / elapsedMillis;
+        System.out.printf("SMS limited to 100/s: 200 messages in %d ms (%.0f msg/s)%n", elapsedMillis, rate);
+        assertEquals(200, transport.sentCount());
+        assertTrue(elapsedMillis >= 1_800, "A 10-message burst then 100 msg/s should take at least 1.9 s");
+    }
+
+    @Test
+    void dispatch_SmsJobs_UseTheWholeSmsPoolNotJustTheNotificationWorkers() {
+        FakeSmsTransport transport = new FakeSmsTransport(100);
+        SMSService smsService = service(transport, 16, 1_000_000);
+        MockEnvironment environment = new MockEnvironment().withProperty("notifications.sms.threads", "4");
+        NotificationDispatcher dispatcher = new NotificationDispatcher(List.of(new SmsChannelSender(smsService)),
+                mock(DeadLetterStore.class), environment);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 64; i++) {
+            AmbulanceNotificationDTO payload = new AmbulanceNotificationDTO(UUID.randomUUID(), UUID.randomUUID(),
+                    "Ambulance dispatched", "ABC-123", "Driver", "+15550000000", "7 min");
+            dispatcher.dispatch(NotificationJob.of(NotificationChannel.SMS, number(i), "Patient", payload));
+        }
+        while (transport.sentCount() < 64 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+            Thread.onSpinWait();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        dispatcher.shutdown();
+
+        System.out.printf("SMS through the dispatcher: 64 messages in %d ms%n", elapsedMillis);
+        assertEquals(64, transport.sentCount());
+        // 4 blocking notification workers would need 16 rounds of 100 ms; the 16 SMS threads need 4
+        assertTrue(elapsedMillis < 1_000, "Expected the 16 SMS threads to be used, took " + elapsedMillis + " ms");
+    }
+
+    private SMSService service(SmsTransport transport, int threads, double ratePerSecond) {
+        SMSService smsService = new SMSService(transport, threads, 5_000, ratePerSecond, 10, 30_000, 30_000);
+        services.add(smsService);
+        return smsService;
+    }
+
+    private static String number(int i) {
+        return String.format("+1555%07d", i);
+    }
+}
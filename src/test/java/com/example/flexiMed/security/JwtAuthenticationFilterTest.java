@@ -0,0 +1,68 @@
+package com.example.flexiMed.security;
+
+import com.example.flexiMed.enums.Role;
+import com.example.flexiMed.model.UserEntity;
+import com.example.flexiMed.repository.RevokedTokenRepository;
+import com.example.flexiMed.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests that {@link JwtAuthenticationFilter} only authenticates requests carrying a live access token.
+ */
+class JwtAuthenticationFilterTest {
+
+    private static final String SECRET = "MjRPK29xS0dWQUgwR2t4NnB2QXhVOVd2ZVVmM1Y0QTZtSzNsbmVhK0krdz0K";
+
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 100, 15, 7);
+    private final JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtil, mock(UserService.class),
+            new PrincipalCache(100, 300), true,
+            new TokenRevocationService(mock(RevokedTokenRepository.class), 1000, 0.01));
+    private final UserEntity user = new UserEntity(UUID.randomUUID(), "Driver", "driver@example.com",
+            "Password123!", "+15550000000", Role.DRIVER, null);
+
+    @BeforeEach
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_AccessToken_Authenticates() throws Exception {
+        String accessToken = jwtUtil.generateToken(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+
+        Authentication authentication = filter(accessToken);
+
+        assertNotNull(authentication);
+        assertEquals(user.getUsername(), authentication.getName());
+    }
+
+    @Test
+    void doFilter_RefreshTokenAsBearer_IsNotAuthenticated() throws Exception {
+        assertNull(filter(jwtUtil.generateRefreshToken(user)));
+    }
+
+    private Authentication filter(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/requests");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest(), "The request should continue down the chain");
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
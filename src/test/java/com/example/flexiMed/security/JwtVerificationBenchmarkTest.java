@@ -0,0 +1,70 @@
+package com.example.flexiMed.security;
+
+import com.example.flexiMed.enums.Role;
+import com.example.flexiMed.model.UserEntity;
+import com.example.flexiMed.utils.Benchmark;
+import com.example.flexiMed.utils.BenchmarkHarness;
+import com.example.flexiMed.utils.BenchmarkHarness.Measurement;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmarks the cost of authenticating a request with a JWT: the former path, which built a parser and verified
+ * the signature three times per request (subject, then subject and expiry again), against {@link JwtUtil#verifyToken}
+ * on a token seen for the first time and on a cached one.
+ */
+@Benchmark
+class JwtVerificationBenchmarkTest {
+
+    private static final String SECRET = "MjRPK29xS0dWQUgwR2t4NnB2QXhVOVd2ZVVmM1Y0QTZtSzNsbmVhK0krdz0K";
+    private static final int TOKENS = 20_000;
+    private static final int WARMUPS = 1;
+    private static final int ROUNDS = 4;
+
+    @Test
+    void verifyToken_CachedClaims_CostFarLessThanRepeatedVerification() throws Exception {
+        Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        JwtUtil jwtUtil = new JwtUtil(SECRET, TOKENS * 2, 15, 7);
+        List<String> tokens = tokens(jwtUtil);
+
+        List<String> sample = tokens.subList(0, TOKENS / 4);
+        Measurement before = BenchmarkHarness.measure("3 parser builds and verifications", WARMUPS, ROUNDS,
+                sample.size(), () -> sample.forEach(token -> {
+                    for (int i = 0; i < 3; i++) {
+                        Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+                    }
+                }));
+        // With room for a single token, every token misses the cache and is verified once
+        JwtUtil uncached = new JwtUtil(SECRET, 1, 15, 7);
+        Measurement firstSeen = BenchmarkHarness.measure("verifyToken, first seen", WARMUPS, ROUNDS, TOKENS,
+                () -> tokens.forEach(uncached::verifyToken));
+        tokens.forEach(jwtUtil::verifyToken);
+        Measurement cached = BenchmarkHarness.measure("verifyToken, cached", WARMUPS, ROUNDS, TOKENS,
+                () -> tokens.forEach(jwtUtil::verifyToken));
+
+        BenchmarkHarness.assertFaster(firstSeen, before, 2);
+        BenchmarkHarness.assertFaster(cached, firstSeen, 2);
+        assertEquals((long) TOKENS, jwtUtil.metrics().get("signatureVerifications"));
+        assertEquals((long) TOKENS * (WARMUPS + ROUNDS), uncached.metrics().get("signatureVerifications"));
+    }
+
+    private static List<String> tokens(JwtUtil jwtUtil) {
+        List<String> tokens = new ArrayList<>(TOKENS);
+        for (int i = 0; i < TOKENS; i++) {
+            UserEntity user = new UserEntity(UUID.randomUUID(), "User " + i, "user" + i + "@example.com",
+                    "password123", "+15550000000", Role.USER, null);
+            tokens.add(jwtUtil.generateToken(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities())));
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.flexiMed.security;
+
+import com.example.flexiMed.exceptions.ErrorResponse;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link LoginThrottle}: attempts are limited per IP, failed attempts per account, and successful
+ * sign-ins cannot be used to lock an account out.
+ */
+class LoginThrottleTest {
+
+    /**
+     * 5 attempts per IP and 3 failures per account, refilling too slowly to matter during a test.
+     */
+    private final LoginThrottle throttle = new LoginThrottle(1024, 5, 0.01, 3, 0.01);
+
+    @Test
+    void checkLogin_AttemptsFromManyIps_DoNotDrainTheAccount() {
+        for (int i = 0; i < 50; i++) {
+            throttle.checkLogin("10.0.0." + i, "patient@example.com");
+        }
+    }
+
+    @Test
+    void checkLogin_FailedAttemptsFromManyIps_AreLimitedPerAccount() {
+        for (int i = 0; i < 3; i++) {
+            throttle.checkLogin("10.0.1." + i, "Patient@Example.com");
+            throttle.recordFailure("Patient@Example.com");
+        }
+
+        ErrorResponse.TooManyRequestsException e = assertThrows(ErrorResponse.TooManyRequestsException.class,
+                () -> throttle.checkLogin("10.0.1.99", "patient@example.com"));
+        assertTrue(e.getRetryAfterSeconds() >= 1);
+
+        // Other accounts are unaffected
+        throttle.checkLogin("10.0.1.100", "driver@example.com");
+    }
+
+    @Test
+    void checkLogin_ManyAttemptsFromOneIp_AreLimitedPerIp() {
+        for (int i = 0; i < 5; i++) {
+            throttle.checkLogin("10.0.2.1", "user" + i + "@example.com");
+        }
+
+        assertThrows(ErrorResponse.TooManyRequestsException.class,
+                () -> throttle.checkLogin("10.0.2.1", "user5@example.com"));
+        assertThrows(ErrorResponse.TooManyRequestsException.class, () -> throttle.checkIp("10.0.2.1"));
+        throttle.checkIp("10.0.2.2");
+    }
+
+    @Test
+    void checkLogin_NoAccount_OnlyChecksTheIp() {
+        throttle.checkLogin("10.0.3.1", null);
+        throttle.recordFailure(null);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.flexiMed.security;
+
+import com.example.flexiMed.exceptions.ErrorResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that {@link PasswordHashingExecutor} runs hashing off the caller's thread and rejects callers with
+ * HTTP 429 instead of queueing without bound.
+ */
+class PasswordHashingExecutorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private PasswordHashingExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void execute_ReturnsTheResultFromAHashingThread() {
+        executor = new PasswordHashingExecutor(1, 1, 5_000, 1);
+
+        String thread = executor.execute(() -> Thread.currentThread().getName());
+
+        assertTrue(thread.startsWith("password-hashing-"));
+        assertEquals(1L, executor.metrics().get("completed"));
+    }
+
+    @Test
+    void execute_SaturatedQueue_IsRejectedWithTooManyRequests() throws Exception {
+        executor = new PasswordHashingExecutor(1, 1, 5_000, 3);
+        CountDownLatch started = new CountDownLatch(1);
+
+        // Occupy the only thread and the only queue slot
+        callers.submit(() -> executor.execute(() -> {
+            started.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        callers.submit(() -> executor.execute(() -> true));
+        waitForQueueDepth(1);
+
+        ErrorResponse.TooManyRequestsException e = assertThrows(ErrorResponse.TooManyRequestsException.class,
+                () -> executor.execute(() -> true));
+        assertEquals(3, e.getRetryAfterSeconds());
+        assertEquals(1L, executor.metrics().get("rejected"));
+    }
+
+    @Test
+    void execute_HashSlowerThanTimeout_IsRejectedWithTooManyRequests() {
+        executor = new PasswordHashingExecutor(1, 1, 50, 1);
+
+        assertThrows(ErrorResponse.TooManyRequestsException.class,
+                () -> executor.execute(() -> release.await(10, TimeUnit.SECONDS)));
+        assertEquals(1L, executor.metrics().get("timedOut"));
+    }
+
+    @Test
+    void execute_TaskFailure_IsRethrownToTheCaller() {
+        executor = new PasswordHashingExecutor(1, 1, 5_000, 1);
+
+        assertThrows(IllegalArgumentException.class, () -> executor.execute(() -> {
+            throw new IllegalArgumentException("Invalid salt");
+        }));
+    }
+
+    private void waitForQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((int) executor.metrics().get("queueDepth") < depth) {
+            assertTrue(System.nanoTime() < deadline, "Task was never queued");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.flexiMed.security;
+
+import com.example.flexiMed.enums.Role;
+import com.example.flexiMed.model.UserEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that {@link PrincipalCache} cannot keep a principal loaded before a change committed.
+ */
+class PrincipalCacheTest {
+
+    private static final String EMAIL = "driver@example.com";
+
+    private final PrincipalCache cache = new PrincipalCache(100, 300);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void invalidate_InTransaction_EvictsAgainAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidate(EMAIL);
+
+        // A concurrent request reloads the row before the transaction commits
+        cache.get(EMAIL, email -> user(Role.USER));
+        UserEntity beforeCommit = cache.get(EMAIL, email -> user(Role.ADMIN));
+        assertEquals(Role.USER, beforeCommit.getRole());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(Role.ADMIN, cache.get(EMAIL, email -> user(Role.ADMIN)).getRole());
+    }
+
+    @Test
+    void get_LoadOverlappingInvalidation_IsNotCached() {
+        UserEntity loaded = cache.get(EMAIL, email -> {
+            cache.invalidate(EMAIL);  // The user changes while their old row is being loaded
+            return user(Role.USER);
+        });
+        assertEquals(Role.USER, loaded.getRole());
+
+        assertEquals(Role.ADMIN, cache.get(EMAIL, email -> user(Role.ADMIN)).getRole());
+    }
+
+    private static UserEntity user(Role role) {
+        return new UserEntity(UUID.randomUUID(), "Test", EMAIL, "password123", "+15550000000", role, null);
+    }
+}
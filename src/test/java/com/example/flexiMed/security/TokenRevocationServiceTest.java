@@ -0,0 +1,109 @@
+package com.example.flexiMed.security;
+
+import com.example.flexiMed.model.RevokedTokenEntity;
+import com.example.flexiMed.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link TokenRevocationService}: revocation checks through the Bloom filter, one-time revocation,
+ * expiry of revocations and reloading the revoked set from the {@code revoked_tokens} table.
+ */
+class TokenRevocationServiceTest {
+
+    private final RevokedTokenRepository repository = mock(RevokedTokenRepository.class);
+    private final Set<String> revokedInDatabase = ConcurrentHashMap.newKeySet();
+    private TokenRevocationService service;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.insertIfAbsent(any(), any(), any()))
+                .thenAnswer(invocation -> revokedInDatabase.add(invocation.getArgument(0)) ? 1 : 0);
+        service = new TokenRevocationService(repository, 1000, 0.01);
+    }
+
+    @Test
+    void isRevoked_AfterRevoke_IsTrueOnlyForTheRevokedToken() {
+        assertFalse(service.isRevoked("token-1"));
+
+        assertTrue(service.revoke("token-1", inMinutes(10)));
+
+        assertTrue(service.isRevoked("token-1"));
+        assertFalse(service.isRevoked("token-2"));
+        assertFalse(service.isRevoked(null));
+    }
+
+    @Test
+    void revoke_SameTokenTwice_OnlyTheFirstCallRevokes() {
+        assertTrue(service.revoke("token-1", inMinutes(10)));
+        assertFalse(service.revoke("token-1", inMinutes(10)));
+
+        // Another node that has not seen the revocation yet loses on the database insert
+        TokenRevocationService otherNode = new TokenRevocationService(repository, 1000, 0.01);
+        assertFalse(otherNode.revoke("token-1", inMinutes(10)));
+        assertTrue(otherNode.isRevoked("token-1"));
+    }
+
+    @Test
+    void revoke_ExpiredOrAnonymousToken_IsIgnored() {
+        assertFalse(service.revoke("token-1", inMinutes(-1)));
+        assertFalse(service.revoke(null, inMinutes(10)));
+
+        assertFalse(service.isRevoked("token-1"));
+        verify(repository, never()).insertIfAbsent(any(), any(), any());
+    }
+
+    @Test
+    void isRevoked_RevocationPastTheTokenExpiry_IsIgnoredAndPurgedOnRefresh() throws Exception {
+        assertTrue(service.revoke("short-lived", new Date(System.currentTimeMillis() + 50)));
+        assertTrue(service.isRevoked("short-lived"));
+
+        Thread.sleep(100);
+        assertFalse(service.isRevoked("short-lived"), "A revocation must not outlive the token");
+
+        when(repository.findByExpiresAtAfter(any())).thenReturn(List.of());
+        service.refresh();
+
+        verify(repository).deleteExpired(any());
+        assertEquals(0, service.metrics().get("revokedTokens"));
+    }
+
+    @Test
+    void refresh_RevokedTokensTable_IsLoadedIntoTheFilter() {
+        LocalDateTime now = LocalDateTime.now();
+        when(repository.findByExpiresAtAfter(any())).thenReturn(List.of(
+                new RevokedTokenEntity("remote-1", now.plusMinutes(10), now),
+                new RevokedTokenEntity("remote-2", now.plusDays(7), now)));
+
+        service.refresh();
+
+        assertTrue(service.isRevoked("remote-1"));
+        assertTrue(service.isRevoked("remote-2"));
+        assertFalse(service.isRevoked("never-revoked"));
+        assertEquals(2, service.metrics().get("revokedTokens"));
+    }
+
+    @Test
+    void refresh_LocalRevocationNotYetInSnapshot_IsKept() {
+        assertTrue(service.revoke("local", inMinutes(10)));
+        when(repository.findByExpiresAtAfter(any())).thenReturn(List.of());
+
+        service.refresh();
+
+        assertTrue(service.isRevoked("local"));
+    }
+
+    private static Date inMinutes(long minutes) {
+        return new Date(System.currentTimeMillis() + minutes * 60_000);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.flexiMed.service;
+
+import com.example.flexiMed.enums.Role;
+import com.example.flexiMed.model.AmbulanceEntity;
+import com.example.flexiMed.model.UserEntity;
+import com.example.flexiMed.repository.AmbulanceRepository;
+import com.example.flexiMed.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link DispatcherDirectory}: lookups across phone number formatting, updates applied only once their
+ * transaction commits, and old phone numbers evicted on deletion and phone changes.
+ */
+class DispatcherDirectoryTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final AmbulanceRepository ambulanceRepository = mock(AmbulanceRepository.class);
+    private final DispatcherDirectory directory = new DispatcherDirectory(userRepository, ambulanceRepository);
+
+    private UserEntity driver;
+
+    @BeforeEach
+    void setUp() {
+        driver = user("+1 (555) 000-1234");
+        when(userRepository.findAll()).thenReturn(List.of(driver));
+        when(userRepository.findByPhoneNumber(anyString())).thenReturn(Optional.empty());
+        when(ambulanceRepository.findAll()).thenReturn(List.of());
+        directory.reload();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void findByPhone_FormattingVariants_ResolveToTheSameContact() {
+        for (String variant : List.of("+15550001234", "+1 555 000 1234", "+1.555.000.1234", "001-555-000-1234")) {
+            assertEquals(driver.getUserId(), directory.findByPhone(variant).map(DispatcherDirectory.Contact::userId)
+                    .orElseThrow(() -> new AssertionError("No contact for " + variant)));
+        }
+    }
+
+    @Test
+    void resolveForAmbulance_DriverContactFormattedDifferently_HitsTheDirectory() {
+        AmbulanceEntity ambulance = ambulance("001 555 000 1234");
+
+        assertEquals(driver.getUserId(), directory.resolveForAmbulance(ambulance).orElseThrow().userId());
+        verify(userRepository, never()).findByPhoneNumber(anyString());
+        assertEquals(1L, directory.metrics().get("hits"));
+    }
+
+    @Test
+    void onUserSaved_InTransaction_IsAppliedOnlyAfterCommit() {
+        UserEntity dispatcher = user("+1 555 999 0000");
+
+        TransactionSynchronizationManager.initSynchronization();
+        directory.onUserSaved(dispatcher);
+        assertTrue(directory.findByPhone("+15559990000").isEmpty(), "An uncommitted user must not be visible");
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(dispatcher.getUserId(), directory.findByPhone("+15559990000").orElseThrow().userId());
+    }
+
+    @Test
+    void onUserDeleted_RolledBack_IsNeverApplied() {
+        TransactionSynchronizationManager.initSynchronization();
+        directory.onUserDeleted(driver.getUserId());
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertTrue(directory.findByPhone("+15550001234").isPresent());
+    }
+
+    @Test
+    void onUserSaved_PhoneChanged_EvictsTheOldNumber() {
+        driver.setPhoneNumber("+1 555 777 8888");
+
+        directory.onUserSaved(driver);
+
+        assertTrue(directory.findByPhone("+15550001234").isEmpty(), "The old number must no longer resolve");
+        assertEquals(driver.getUserId(), directory.findByPhone("+15557778888").orElseThrow().userId());
+    }
+
+    @Test
+    void onUserSaved_OldNumberTakenByAnotherUser_KeepsTheNewOwner() {
+        UserEntity newOwner = user("+15550001234");
+        directory.onUserSaved(newOwner);
+
+        driver.setPhoneNumber("+1 555 777 8888");
+        directory.onUserSaved(driver);
+
+        assertEquals(newOwner.getUserId(), directory.findByPhone("+15550001234").orElseThrow().userId());
+    }
+
+    @Test
+    void onUserDeleted_EvictsTheUsersNumber() {
+        directory.onUserDeleted(driver.getUserId());
+
+        assertTrue(directory.findByPhone("+15550001234").isEmpty());
+        assertTrue(directory.resolveForAmbulance(ambulance("+15550001234")).isEmpty());
+    }
+
+    @Test
+    void onAmbulanceSaved_DriverChanged_ResolvesTheNewDriver() {
+        UserEntity otherDriver = user("+1 555 222 3333");
+        directory.onUserSaved(otherDriver);
+        AmbulanceEntity ambulance = ambulance("+15550001234");
+        directory.onAmbulanceSaved(ambulance);
+        assertEquals(driver.getUserId(), directory.findByAmbulanceId(ambulance.getId()).orElseThrow().userId());
+
+        ambulance.setDriverContact("+1-555-222-3333");
+        directory.onAmbulanceSaved(ambulance);
+
+        assertEquals(otherDriver.getUserId(), directory.findByAmbulanceId(ambulance.getId()).orElseThrow().userId());
+
+        directory.onAmbulanceDeleted(ambulance.getId());
+        assertTrue(directory.findByAmbulanceId(ambulance.getId()).isEmpty());
+    }
+
+    private static UserEntity user(String phoneNumber) {
+        return new UserEntity(UUID.randomUUID(), "Driver", UUID.randomUUID() + "@example.com", "Password123!",
+                phoneNumber, Role.DRIVER, null);
+    }
+
+    private static AmbulanceEntity ambulance(String driverContact) {
+        AmbulanceEntity ambulance = new AmbulanceEntity();
+        ambulance.setId(UUID.randomUUID());
+        ambulance.setDriverContact(driverContact);
+        return ambulance;
+    }
+}
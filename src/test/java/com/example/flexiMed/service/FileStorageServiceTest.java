@@ -0,0 +1,294 @@
+package com.example.flexiMed.service;
+
+import com.example.flexiMed.model.StoredFileEntity;
+import com.example.flexiMed.repository.StoredFileRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests {@link FileStorageService} against an in-memory model of the {@code stored_files} table: deduplication
+ * of identical uploads, deletion only once the last reference is released and committed, cleanup of files saved
+ * by rolled-back transactions, and concurrent saves and releases of the same content.
+ * Files are stored under the working directory's {@code uploads}, as the application does, and deleted afterwards.
+ */
+class FileStorageServiceTest {
+
+    /**
+     * The {@code stored_files} table, keyed by content hash. Every access is synchronized on the map, standing in
+     * for the database's row locks.
+     */
+    private final Map<String, StoredFileEntity> table = new HashMap<>();
+    private final StoredFileRepository repository = mock(StoredFileRepository.class);
+    private final List<Path> storedFiles = new ArrayList<>();
+    private FileStorageService fileStorageService;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.addReference(anyString(), anyString(), anyLong())).thenAnswer(invocation -> {
+            synchronized (table) {
+                StoredFileEntity entity = table.computeIfAbsent(invocation.getArgument(0), hash -> {
+                    StoredFileEntity created = new StoredFileEntity();
+                    created.setContentHash(hash);
+                    created.setPath(invocation.getArgument(1));
+                    created.setSizeBytes(invocation.getArgument(2));
+                    return created;
+                });
+                entity.setRefCount(entity.getRefCount() + 1);
+                return 1;
+            }
+        });
+        when(repository.removeReference(anyString())).thenAnswer(invocation -> {
+            synchronized (table) {
+                StoredFileEntity entity = table.get(invocation.<String>getArgument(0));
+                if (entity == null || entity.getRefCount() <= 0) {
+                    return 0;
+                }
+                entity.setRefCount(entity.getRefCount() - 1);
+                return 1;
+            }
+        });
+        when(repository.deleteIfUnreferenced(anyString())).thenAnswer(invocation -> {
+            synchronized (table) {
+                StoredFileEntity entity = table.get(invocation.<String>getArgument(0));
+                if (entity == null || entity.getRefCount() > 0) {
+                    return 0;
+                }
+                table.remove(entity.getContentHash());
+                return 1;
+            }
+        });
+        when(repository.findById(anyString())).thenAnswer(invocation -> {
+            synchronized (table) {
+                return Optional.ofNullable(table.get(invocation.<String>getArgument(0)));
+            }
+        });
+        when(repository.existsById(any())).thenAnswer(invocation -> {
+            synchronized (table) {
+                return table.containsKey(invocation.<String>getArgument(0));
+            }
+        });
+        fileStorageService = new FileStorageService(repository);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        for (Path file : storedFiles) {
+            Files.deleteIfExists(file);
+            deleteIfEmpty(file.getParent());
+            deleteIfEmpty(file.getParent().getParent());
+        }
+    }
+
+    @Test
+    void saveFile_SameBytesUnderDifferentNames_AreStoredOnceWithTwoReferences() throws IOException {
+        byte[] content = content();
+
+        String first = save("report.pdf", content);
+        String second = save("copy-of-report.txt", content);
+
+        assertEquals(first, second, "Identical content must share one path, whatever its name");
+        assertTrue(first.endsWith(".pdf"), "A non-image upload keeps its original extension");
+        assertArrayEquals(content, Files.readAllBytes(path(first)));
+        assertEquals(2, entity(first).getRefCount());
+        assertEquals(1L, fileStorageService.metrics().get("deduplicated"));
+    }
+
+    @Test
+    void saveFile_Image_GetsTheExtensionOfItsFormat() {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 1, 2, 3, 4, 5, 6, 7, 8};
+        png[15] = (byte) UUID.randomUUID().hashCode();
+
+        String url = save("photo.jpeg", png);
+
+        assertTrue(url.endsWith(".png"), url);
+    }
+
+    @Test
+    void release_DeletesOnlyAfterTheLastReferenceIsReleasedAndCommitted() {
+        byte[] content = content();
+        String url = save("report.pdf", content);
+        save("report.pdf", content);
+
+        List<TransactionSynchronization> first = inTransaction(() -> fileStorageService.release(url));
+        first.forEach(TransactionSynchronization::afterCommit);
+        assertTrue(Files.exists(path(url)), "A file with a remaining reference must be kept");
+
+        List<TransactionSynchronization> last = inTransaction(() -> fileStorageService.release(url));
+        assertTrue(Files.exists(path(url)), "The file must be kept until the release commits");
+
+        last.forEach(TransactionSynchronization::afterCommit);
+        assertFalse(Files.exists(path(url)));
+        assertFalse(table.containsKey(hash(url)));
+    }
+
+    @Test
+    void release_RolledBack_KeepsTheFile() {
+        String url = save("report.pdf", content());
+
+        List<TransactionSynchronization> synchronizations = inTransaction(() -> fileStorageService.release(url));
+        entity(url).setRefCount(1);  // The database undoes the decrement
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertTrue(Files.exists(path(url)));
+    }
+
+    @Test
+    void saveFile_RolledBack_DeletesTheFileItMovedIntoPlace() {
+        List<String> urls = new ArrayList<>();
+        List<TransactionSynchronization> synchronizations = inTransaction(() -> urls.add(save("report.pdf", content())));
+        String url = urls.get(0);
+        assertTrue(Files.exists(path(url)));
+
+        table.remove(hash(url));  // The database undoes the insert
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertFalse(Files.exists(path(url)), "A rolled-back save must not leave an unreferenced file behind");
+    }
+
+    @Test
+    void saveFile_RolledBackDuplicate_KeepsTheFileOfTheCommittedReference() {
+        byte[] content = content();
+        String url = save("report.pdf", content);
+
+        List<TransactionSynchronization> synchronizations = inTransaction(() -> save("report.pdf", content));
+        entity(url).setRefCount(1);  // The database undoes the increment
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertTrue(Files.exists(path(url)));
+    }
+
+    @Test
+    void saveFile_RolledBackWhileAnIdenticalSaveIsInFlight_KeepsTheFile() throws Exception {
+        byte[] content = content();
+        List<String> urls = new ArrayList<>();
+        List<TransactionSynchronization> rolledBack = inTransaction(() -> urls.add(save("report.pdf", content)));
+
+        // A second transaction, on another thread, saves the same content before the first one completes
+        ExecutorService otherThread = Executors.newSingleThreadExecutor();
+        try {
+            List<TransactionSynchronization> committed = otherThread.submit(
+                    () -> inTransaction(() -> save("report.pdf", content))).get();
+
+            entity(urls.get(0)).setRefCount(1);  // The database undoes the first transaction's increment
+            rolledBack.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            assertTrue(Files.exists(path(urls.get(0))), "The in-flight save still needs the file");
+
+            committed.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            assertTrue(Files.exists(path(urls.get(0))));
+        } finally {
+            otherThread.shutdownNow();
+        }
+    }
+
+    @Test
+    void saveAndRelease_ConcurrentlyOnTheSameContent_NeverLoseAReferencedFile() throws Exception {
+        byte[] content = content();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        String url = save("report.pdf", content);
+                        // While this thread holds a reference, no other thread's release may delete the file
+                        assertArrayEquals(content, Files.readAllBytes(path(url)));
+                        fileStorageService.release(url);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Path file = storedFiles.get(0);
+        assertFalse(Files.exists(file), "The last release must delete the file");
+        assertTrue(table.isEmpty());
+    }
+
+    /**
+     * Runs the action in a simulated transaction and returns the synchronizations it registered, which the test
+     * then completes.
+     */
+    private static List<TransactionSynchronization> inTransaction(Runnable action) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            action.run();
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private String save(String name, byte[] content) {
+        String url = fileStorageService.saveFile(new MockMultipartFile("file", name, null, content));
+        synchronized (storedFiles) {
+            Path file = path(url);
+            if (!storedFiles.contains(file)) {
+                storedFiles.add(file);
+            }
+        }
+        return url;
+    }
+
+    private Path path(String url) {
+        return fileStorageService.locate(url).orElseThrow();
+    }
+
+    private StoredFileEntity entity(String url) {
+        synchronized (table) {
+            return table.get(hash(url));
+        }
+    }
+
+    private static String hash(String url) {
+        String name = url.substring(url.lastIndexOf('/') + 1);
+        return name.substring(0, name.indexOf('.'));
+    }
+
+    private static byte[] content() {
+        return ("Discharge summary " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void deleteIfEmpty(Path directory) throws IOException {
+        try (var entries = Files.list(directory)) {
+            if (entries.findAny().isEmpty()) {
+                Files.delete(directory);
+            }
+        } catch (NoSuchFileException e) {
+            // Already removed along with another file of the same shard
+        }
+    }
+}
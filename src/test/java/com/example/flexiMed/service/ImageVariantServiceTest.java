@@ -0,0 +1,107 @@
+package com.example.flexiMed.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests which originals {@link ImageVariantService} decodes, and that it never queues the same unusable original
+ * twice.
+ */
+class ImageVariantServiceTest {
+
+    private static final long MAX_PIXELS = 100 * 100;
+
+    @TempDir
+    Path directory;
+
+    private final ImageVariantService imageVariantService =
+            new ImageVariantService(mock(FileStorageService.class), new int[]{64}, MAX_PIXELS, 1, 10);
+
+    @AfterEach
+    void tearDown() {
+        imageVariantService.shutdown();
+    }
+
+    @Test
+    void findVariant_DecodableImage_GeneratesVariant() throws Exception {
+        Path original = image("ab12.png", 100, 80);
+
+        assertEquals(Optional.empty(), imageVariantService.findVariant(original, 64));
+        awaitIdle();
+
+        Path variant = directory.resolve("ab12-64.png");
+        assertEquals(Optional.of(variant), imageVariantService.findVariant(original, 64));
+        assertEquals(64, ImageIO.read(variant.toFile()).getWidth());
+    }
+
+    @Test
+    void findVariant_WebpOriginal_IsServedWithoutQueueingADecode() throws Exception {
+        Path original = Files.write(directory.resolve("cd34.webp"), new byte[]{'R', 'I', 'F', 'F', 0, 0, 0, 0, 'W', 'E', 'B', 'P'});
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Optional.of(original), imageVariantService.findVariant(original, 64));
+        }
+
+        assertEquals(0L, imageVariantService.metrics().get("queued"));
+    }
+
+    @Test
+    void findVariant_TooManyPixels_IsRejectedFromTheHeaderAndNotQueuedAgain() throws Exception {
+        Path original = image("ef56.png", 101, 100);
+
+        assertEquals(Optional.empty(), imageVariantService.findVariant(original, 64));
+        awaitIdle();
+
+        assertEquals(1L, imageVariantService.metrics().get("oversized"));
+        assertFalse(Files.exists(directory.resolve("ef56-64.png")));
+        assertEquals(Optional.of(original), imageVariantService.findVariant(original, 64));
+        assertEquals(1L, imageVariantService.metrics().get("queued"));
+    }
+
+    @Test
+    void findVariant_CorruptOriginal_IsNotQueuedAgain() throws Exception {
+        Path original = Files.write(directory.resolve("0a1b.jpg"), new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0});
+
+        assertEquals(Optional.empty(), imageVariantService.findVariant(original, 64));
+        awaitIdle();
+
+        assertEquals(Optional.of(original), imageVariantService.findVariant(original, 64));
+        assertEquals(1L, imageVariantService.metrics().get("queued"));
+        assertEquals(1, imageVariantService.metrics().get("unusable"));
+    }
+
+    private Path image(String name, int width, int height) throws Exception {
+        Path path = directory.resolve(name);
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", path.toFile());
+        return path;
+    }
+
+    /**
+     * Waits until the queued work has been picked up and finished.
+     */
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            long done = (long) imageVariantService.metrics().get("generated")
+                    + (long) imageVariantService.metrics().get("oversized")
+                    + (long) imageVariantService.metrics().get("failed")
+                    + (int) imageVariantService.metrics().get("unusable");
+            if (done > 0 && (int) imageVariantService.metrics().get("queueDepth") == 0) {
+                Thread.sleep(50);  // Let the worker leave the pending set
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("The variant worker did not finish");
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.flexiMed.service;
+
+import com.example.flexiMed.enums.Role;
+import com.example.flexiMed.model.AmbulanceEntity;
+import com.example.flexiMed.notifications.NotificationChannel;
+import com.example.flexiMed.notifications.NotificationJob;
+import com.example.flexiMed.notifications.NotificationPublisher;
+import com.example.flexiMed.notifications.PresenceTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the channel routing and acknowledgement rules of {@link NotificationService}.
+ */
+class NotificationServiceTest {
+
+    private static final long ACK_TIMEOUT_MILLIS = 50;
+
+    private final NotificationPublisher publisher = mock(NotificationPublisher.class);
+    private final PresenceTable presenceTable = mock(PresenceTable.class);
+    private final NotificationService notificationService =
+            new NotificationService(publisher, presenceTable, ACK_TIMEOUT_MILLIS, 100);
+
+    private final DispatcherDirectory.Contact recipient = new DispatcherDirectory.Contact(UUID.randomUUID(),
+            "Patient", "patient@example.com", "+15550000000", Role.USER);
+    private final AmbulanceEntity ambulance = ambulance();
+
+    @AfterEach
+    void tearDown() {
+        notificationService.shutdown();
+    }
+
+    @Test
+    void sendUserNotifications_Offline_SendsSmsWithEmailOnlyAsFailureFallback() throws Exception {
+        notificationService.sendUserNotifications("Ambulance dispatched", recipient, ambulance, "7 min");
+        Thread.sleep(ACK_TIMEOUT_MILLIS * 4);
+
+        NotificationJob job = published().get(0);
+        verify(publisher, times(1)).publish(any());  // A delivered SMS is final: no email after the timeout
+        assertEquals(NotificationChannel.SMS, job.channel());
+        assertEquals("+15550000000", job.recipient());
+        assertEquals(NotificationChannel.EMAIL, job.fallback().channel());
+        assertEquals("patient@example.com", job.fallback().recipient());
+        assertNull(job.fallback().fallback());
+    }
+
+    @Test
+    void sendUserNotifications_OnlineNotAcknowledged_FallsBackToSmsOnce() throws Exception {
+        when(presenceTable.isOnline(recipient.userId())).thenReturn(true);
+
+        notificationService.sendUserNotifications("Ambulance dispatched", recipient, ambulance, "7 min");
+        Thread.sleep(ACK_TIMEOUT_MILLIS * 4);
+
+        List<NotificationJob> jobs = published();
+        assertEquals(2, jobs.size());
+        assertEquals(NotificationChannel.WEBSOCKET, jobs.get(0).channel());
+        assertNull(jobs.get(0).fallback());
+        assertEquals(NotificationChannel.SMS, jobs.get(1).channel());
+        assertEquals(NotificationChannel.EMAIL, jobs.get(1).fallback().channel());
+    }
+
+    @Test
+    void acknowledge_ByRecipient_CancelsFallback() throws Exception {
+        when(presenceTable.isOnline(recipient.userId())).thenReturn(true);
+        notificationService.sendUserNotifications("Ambulance dispatched", recipient, ambulance, "7 min");
+        UUID notificationId = published().get(0).payload().getNotificationId();
+
+        assertTrue(notificationService.acknowledge(notificationId, recipient.userId()));
+        Thread.sleep(ACK_TIMEOUT_MILLIS * 4);
+
+        verify(publisher, times(1)).publish(any());
+    }
+
+    @Test
+    void acknowledge_ByAnotherUser_IsIgnored() throws Exception {
+        when(presenceTable.isOnline(recipient.userId())).thenReturn(true);
+        notificationService.sendUserNotifications("Ambulance dispatched", recipient, ambulance, "7 min");
+        UUID notificationId = published().get(0).payload().getNotificationId();
+
+        assertFalse(notificationService.acknowledge(notificationId, UUID.randomUUID()));
+        assertFalse(notificationService.acknowledge(notificationId, null));
+        Thread.sleep(ACK_TIMEOUT_MILLIS * 4);
+
+        verify(publisher, times(2)).publish(any());  // The fallback still went out
+        assertEquals(2L, notificationService.metrics().get("foreignAcks"));
+    }
+
+    private List<NotificationJob> published() {
+        ArgumentCaptor<NotificationJob> jobs = ArgumentCaptor.forClass(NotificationJob.class);
+        verify(publisher, atLeastOnce()).publish(jobs.capture());
+        return jobs.getAllValues();
+    }
+
+    private static AmbulanceEntity ambulance() {
+        AmbulanceEntity ambulance = new AmbulanceEntity();
+        ambulance.setId(UUID.randomUUID());
+        ambulance.setPlateNumber("ABC-123");
+        ambulance.setDriverName("Driver");
+        ambulance.setDriverContact("+15550000001");
+        return ambulance;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.flexiMed.service;
+
+import com.example.flexiMed.dto.AmbulanceDTO;
+import com.example.flexiMed.dto.RequestDTO;
+import com.example.flexiMed.enums.RequestStatus;
+import com.example.flexiMed.enums.Role;
+import com.example.flexiMed.exceptions.ErrorResponse;
+import com.example.flexiMed.model.AmbulanceEntity;
+import com.example.flexiMed.model.RequestEntity;
+import com.example.flexiMed.model.UserEntity;
+import com.example.flexiMed.repository.AmbulanceRepository;
+import com.example.flexiMed.repository.RequestRepository;
+import com.example.flexiMed.repository.UserRepository;
+import com.example.flexiMed.websocket.LocationPipeline;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests that {@link RequestService#createRequest} chooses the closest reporting ambulance and uses it for the
+ * dispatch, the notifications and the location streams.
+ */
+@ExtendWith(MockitoExtension.class)
+class RequestServiceTest {
+
+    @Mock
+    private RequestRepository requestRepository;
+    @Mock
+    private AmbulanceRepository ambulanceRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private PatientRecordsService patientRecordsService;
+    @Mock
+    private AmbulanceService ambulanceService;
+    @Mock
+    private ServiceHistoryService serviceHistoryService;
+    @Mock
+    private UserService userService;
+    @Mock
+    private NotificationService notificationService;
+    @Mock
+    private DispatcherDirectory dispatcherDirectory;
+    @Mock
+    private LocationPipeline locationPipeline;
+
+    @InjectMocks
+    private RequestService requestService;
+
+    private final UserEntity user = new UserEntity(UUID.randomUUID(), "Patient", "patient@example.com",
+            "password123", "+15550000000", Role.USER, null);
+    private final DispatcherDirectory.Contact dispatcher = new DispatcherDirectory.Contact(UUID.randomUUID(),
+            "Dispatcher", "dispatch@example.com", "+15550000001", Role.DRIVER);
+    private final AmbulanceEntity chosen = new AmbulanceEntity(UUID.randomUUID(), "ABC-123", -1.29, 36.82, true,
+            "Driver", "+15550000001", LocalDateTime.now());
+    private RequestDTO request;
+
+    @BeforeEach
+    void setUp() {
+        request = new RequestDTO(null, user.getUserId(), null, RequestStatus.PENDING, LocalDateTime.now(),
+                null, null, -1.30, 36.80, "Chest pain");
+        when(userRepository.findById(user.getUserId())).thenReturn(Optional.of(user));
+        AmbulanceDTO closest = new AmbulanceDTO();
+        closest.setId(chosen.getId());
+        when(ambulanceService.findClosestAmbulance(request.getLatitude(), request.getLongitude())).thenReturn(closest);
+        when(ambulanceRepository.findById(chosen.getId())).thenReturn(Optional.of(chosen));
+        when(requestRepository.save(any(RequestEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void createRequest_DispatchesNotifiesAndFollowsTheSameAmbulance() {
+        RequestDTO dispatched = new RequestDTO();
+        when(ambulanceService.dispatchAmbulance(any(RequestEntity.class), same(chosen))).thenReturn(dispatched);
+        when(dispatcherDirectory.resolveForAmbulance(chosen)).thenReturn(Optional.of(dispatcher));
+
+        assertSame(dispatched, requestService.createRequest(request));
+
+        verify(notificationService).sendUserNotifications(anyString(), same(user), same(chosen), anyString());
+        verify(notificationService).sendUserNotifications(anyString(), same(dispatcher), same(chosen), anyString());
+        verify(locationPipeline).follow(chosen.getId(), user.getUserId().toString());
+        verify(locationPipeline).follow(chosen.getId(), dispatcher.userId().toString());
+    }
+
+    @Test
+    void createRequest_DriverContactMatchesNoUser_StillDispatchesAndNotifiesThePatient() {
+        RequestDTO dispatched = new RequestDTO();
+        when(ambulanceService.dispatchAmbulance(any(RequestEntity.class), same(chosen))).thenReturn(dispatched);
+        when(dispatcherDirectory.resolveForAmbulance(chosen)).thenReturn(Optional.empty());
+
+        assertSame(dispatched, requestService.createRequest(request));
+
+        verify(notificationService).sendUserNotifications(anyString(), same(user), same(chosen), anyString());
+        verify(notificationService, never()).sendUserNotifications(anyString(), any(DispatcherDirectory.Contact.class),
+                any(), anyString());
+        verify(locationPipeline).follow(chosen.getId(), user.getUserId().toString());
+        verifyNoMoreInteractions(locationPipeline);
+    }
+
+    @Test
+    void createRequest_NoReportingAmbulance_FailsBeforeSavingTheRequest() {
+        reset(ambulanceService, ambulanceRepository, requestRepository);
+        when(ambulanceService.findClosestAmbulance(request.getLatitude(), request.getLongitude()))
+                .thenThrow(new RuntimeException("No available ambulances at the moment"));
+
+        assertThrows(RuntimeException.class, () -> requestService.createRequest(request));
+
+        verifyNoInteractions(requestRepository, notificationService, locationPipeline);
+    }
+
+    @Test
+    void createRequest_AmbulanceTakenBeforeDispatch_NotifiesAndFollowsNothing() {
+        when(ambulanceService.dispatchAmbulance(any(RequestEntity.class), same(chosen)))
+                .thenThrow(new ErrorResponse.AmbulanceNotAvailableException("Ambulance ABC-123 is no longer available."));
+
+        assertThrows(ErrorResponse.AmbulanceNotAvailableException.class, () -> requestService.createRequest(request));
+
+        verifyNoInteractions(notificationService, locationPipeline);
+    }
+}
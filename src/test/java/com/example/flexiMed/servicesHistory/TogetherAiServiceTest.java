@@ -0,0 +1,132 @@
+package com.example.flexiMed.servicesHistory;
+
+import com.example.flexiMed.exceptions.ErrorResponse.AiApiRequestException;
+import com.example.flexiMed.service.TogetherAiService;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the response cache and request coalescing of {@link TogetherAiService} against a local stub of the
+ * chat completions API.
+ */
+class TogetherAiServiceTest {
+
+    private HttpServer server;
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile long latencyMillis;
+
+    private TogetherAiService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v1/chat/completions", exchange -> {
+            int call = upstreamCalls.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("{\"id\":\"" + call + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(1000);
+        requestFactory.setReadTimeout(1000);
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+        service = new TogetherAiService(new RestTemplate(requestFactory), "test-key", url, "test-model", 200, 100, 60);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void chatWithAi_SamePromptWrittenDifferently_CallsApiOnce() {
+        String first = service.chatWithAi("How do I treat a burn?");
+        String second = service.chatWithAi("  how do I   treat a BURN?\n");
+
+        assertEquals(first, second);
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(1L, service.metrics().get("hits"));
+    }
+
+    @Test
+    void chatWithAi_DifferentPrompt_CallsApiAgain() {
+        service.chatWithAi("How do I treat a burn?");
+        service.chatWithAi("How do I treat a sprain?");
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void chatWithAi_ConcurrentIdenticalPrompts_ShareOneCall() throws Exception {
+        latencyMillis = 200;
+        int callers = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> responses = new ArrayList<>();
+        try {
+            for (int i = 0; i < callers; i++) {
+                responses.add(executor.submit(() -> {
+                    start.await();
+                    return service.chatWithAi("What should I do for a nosebleed?");
+                }));
+            }
+            start.countDown();
+            for (Future<String> response : responses) {
+                assertEquals("{\"id\":\"1\"}", response.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(1L, service.metrics().get("upstreamCalls"));
+    }
+
+    @Test
+    void chatWithAi_ApiError_ThrowsAndIsNotCached() {
+        status = 500;
+        assertThrows(AiApiRequestException.class, () -> service.chatWithAi("How do I treat a burn?"));
+
+        status = 200;
+        assertEquals("{\"id\":\"2\"}", service.chatWithAi("How do I treat a burn?"));
+        assertEquals(2, upstreamCalls.get());
+        assertEquals(1L, service.metrics().get("failures"));
+    }
+
+    @Test
+    void chatWithAi_SlowApi_TimesOut() {
+        latencyMillis = 1500;
+        assertThrows(AiApiRequestException.class, () -> service.chatWithAi("How do I treat a burn?"));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.flexiMed.servicesHistory;
+
+import com.example.flexiMed.config.AppConfig;
+import com.example.flexiMed.service.TogetherAiStreamingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link TogetherAiStreamingService} against a local stub of the streaming chat completions API.
+ */
+class TogetherAiStreamingServiceTest {
+
+    private HttpServer server;
+    private ConnectionProvider connectionProvider;
+    private volatile int status = 200;
+    private volatile long stallMillis;
+
+    private TogetherAiStreamingService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v1/chat/completions", exchange -> {
+            String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            if (status != 200 || !request.contains("\"stream\":true")) {
+                exchange.sendResponseHeaders(status != 200 ? status : 400, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (String token : List.of("Apply ", "pressure", ".")) {
+                    out.write(("data: {\"choices\":[{\"delta\":{\"content\":\"" + token + "\"}}]}\n\n")
+                            .getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    Thread.sleep(stallMillis);
+                }
+                out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException | InterruptedException e) {
+                // The client gave up on the stream
+            }
+        });
+        server.start();
+
+        AppConfig config = new AppConfig();
+        connectionProvider = config.aiConnectionProvider(4, 10, 1000, 10000);
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+        service = new TogetherAiStreamingService(config.aiWebClient(connectionProvider, 1000, 500),
+                new ObjectMapper(), "test-key", url, "test-model", 200);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        connectionProvider.dispose();
+    }
+
+    @Test
+    void streamChat_RelaysTokensThenDone() {
+        List<ServerSentEvent<String>> events = service.streamChat("Nosebleed?").collectList().block(Duration.ofSeconds(5));
+
+        assertNotNull(events);
+        assertEquals(List.of("token", "token", "token", "done"), events.stream().map(ServerSentEvent::event).toList());
+        assertEquals(List.of("Apply ", "pressure", ".", ""), events.stream().map(ServerSentEvent::data).toList());
+        assertEquals(3L, service.metrics().get("tokens"));
+        assertEquals(1L, service.metrics().get("completed"));
+        assertEquals(0, service.metrics().get("activeStreams"));
+    }
+
+    @Test
+    void streamChat_ApiError_EndsWithErrorEvent() {
+        status = 500;
+        List<ServerSentEvent<String>> events = service.streamChat("Nosebleed?").collectList().block(Duration.ofSeconds(5));
+
+        assertNotNull(events);
+        assertEquals(1, events.size());
+        assertEquals("error", events.get(0).event());
+        assertEquals(1L, service.metrics().get("failed"));
+    }
+
+    @Test
+    void streamChat_StalledApi_TimesOutAfterPartialResponse() {
+        stallMillis = 2000;
+        List<ServerSentEvent<String>> events = service.streamChat("Nosebleed?").collectList().block(Duration.ofSeconds(5));
+
+        assertNotNull(events);
+        assertEquals("token", events.get(0).event());
+        assertEquals("error", events.get(events.size() - 1).event());
+        assertEquals("AI API did not respond in time.", events.get(events.size() - 1).data());
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.flexiMed.utils;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a test class as a benchmark: tagged {@code benchmark} and skipped unless the build is run with
+ * {@code -Dbenchmarks=true}, for example {@code mvn test -Dtest=JwtVerificationBenchmarkTest -Dbenchmarks=true}.
+ * Benchmarks time their work with {@link BenchmarkHarness}.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+public @interface Benchmark {
+}
@@ -0,0 +1,185 @@
+package com.example.flexiMed.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Shared timing harness for the {@link Benchmark} tests.
+ * JMH cannot be resolved by the offline build, so benchmarks run as JUnit tests: each measurement runs a few
+ * untimed warm-up rounds, then times several rounds and keeps the first, best and median time per operation.
+ * Results are logged through SLF4J, and benchmarks assert loose bounds on them, such as a minimum speedup over a
+ * baseline, so that a regression fails the run instead of only changing a number in the output.
+ */
+public final class BenchmarkHarness {
+
+    private static final Logger logger = LoggerFactory.getLogger(BenchmarkHarness.class);
+
+    private BenchmarkHarness() {
+    }
+
+    /**
+     * A unit of benchmarked work, which may throw.
+     */
+    @FunctionalInterface
+    public interface Round {
+
+        /**
+         * Runs the work once.
+         *
+         * @throws Exception if the work fails, which fails the benchmark.
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * Runs the given work for a number of untimed warm-up rounds and timed rounds, and logs the result.
+     *
+     * @param name       The name of the measurement, used in the log and in assertion messages.
+     * @param warmups    The number of untimed rounds run first.
+     * @param rounds     The number of timed rounds.
+     * @param operations The number of operations performed by one round, to report the time per operation.
+     * @param round      The work of one round.
+     * @return The measurement.
+     * @throws Exception if a round fails.
+     */
+    public static Measurement measure(String name, int warmups, int rounds, long operations, Round round)
+            throws Exception {
+        for (int i = 0; i < warmups; i++) {
+            round.run();
+        }
+        long[] nanos = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            round.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        return record(name, operations, nanos);
+    }
+
+    /**
+     * Times a single run of the given work, without warm-up, and logs the result.
+     *
+     * @param name       The name of the measurement.
+     * @param operations The number of operations performed by the work.
+     * @param round      The work.
+     * @return The measurement.
+     * @throws Exception if the work fails.
+     */
+    public static Measurement once(String name, long operations, Round round) throws Exception {
+        return measure(name, 0, 1, operations, round);
+    }
+
+    /**
+     * Records a quantity measured by the benchmark itself, such as CPU time, and logs it.
+     *
+     * @param name       The name of the measurement.
+     * @param operations The number of operations the quantity covers.
+     * @param nanos      The measured time of each round, in nanoseconds.
+     * @return The measurement.
+     */
+    public static Measurement record(String name, long operations, long... nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        Measurement measurement = new Measurement(name, operations, nanos.length, nanos[0], sorted[0],
+                sorted[sorted.length / 2]);
+        logger.info("{}", measurement);
+        return measurement;
+    }
+
+    /**
+     * Logs a fact observed by a benchmark that is not a timing, such as a frame size.
+     *
+     * @param format The SLF4J message format.
+     * @param args   The message arguments.
+     */
+    public static void report(String format, Object... args) {
+        logger.info(format, args);
+    }
+
+    /**
+     * Asserts that a candidate's best time is at least {@code minSpeedup} times better than a baseline's.
+     * A speedup below 1 bounds how much slower the candidate may be, for changes expected to be at parity.
+     *
+     * @param candidate  The measurement expected to be faster.
+     * @param baseline   The measurement it is compared with.
+     * @param minSpeedup The minimum ratio of the baseline's best time to the candidate's.
+     */
+    public static void assertFaster(Measurement candidate, Measurement baseline, double minSpeedup) {
+        double speedup = baseline.bestPerOperation() / candidate.bestPerOperation();
+        logger.info("{} is {}x as fast as {}", candidate.name(), String.format(Locale.ROOT, "%.1f", speedup),
+                baseline.name());
+        assertTrue(speedup >= minSpeedup, String.format(Locale.ROOT, "%s should be at least %.1fx as fast as %s, "
+                + "but was %.2fx (%s vs %s per operation)", candidate.name(), minSpeedup, baseline.name(), speedup,
+                format(candidate.bestPerOperation()), format(baseline.bestPerOperation())));
+    }
+
+    /**
+     * Asserts that the best time per operation of a measurement stays within a bound.
+     *
+     * @param measurement  The measurement.
+     * @param perOperation The maximum time per operation.
+     */
+    public static void assertAtMost(Measurement measurement, Duration perOperation) {
+        assertTrue(measurement.bestPerOperation() <= perOperation.toNanos(), String.format(Locale.ROOT,
+                "%s should take at most %s per operation, but took %s", measurement.name(),
+                format(perOperation.toNanos()), format(measurement.bestPerOperation())));
+    }
+
+    private static String format(double nanos) {
+        if (nanos >= 1e9) {
+            return String.format(Locale.ROOT, "%.2f s", nanos / 1e9);
+        }
+        if (nanos >= 1e6) {
+            return String.format(Locale.ROOT, "%.2f ms", nanos / 1e6);
+        }
+        if (nanos >= 1e3) {
+            return String.format(Locale.ROOT, "%.2f us", nanos / 1e3);
+        }
+        return String.format(Locale.ROOT, "%.0f ns", nanos);
+    }
+
+    /**
+     * The result of a measurement.
+     *
+     * @param name        The name of the measurement.
+     * @param operations  The number of operations per round.
+     * @param rounds      The number of timed rounds.
+     * @param firstNanos  The time of the first timed round.
+     * @param bestNanos   The time of the fastest round.
+     * @param medianNanos The median round time.
+     */
+    public record Measurement(String name, long operations, int rounds, long firstNanos, long bestNanos,
+                              long medianNanos) {
+
+        /**
+         * @return The best time per operation, in nanoseconds.
+         */
+        public double bestPerOperation() {
+            return (double) bestNanos / operations;
+        }
+
+        /**
+         * @return The median time per operation, in nanoseconds.
+         */
+        public double medianPerOperation() {
+            return (double) medianNanos / operations;
+        }
+
+        @Override
+        public String toString() {
+            if (rounds == 1) {
+                return operations == 1 ? name + ": " + format(bestNanos) : String.format(Locale.ROOT,
+                        "%s: %s per operation (%d operations)", name, format(bestPerOperation()), operations);
+            }
+            return String.format(Locale.ROOT, "%s: best %s, median %s, first %s per operation (%d rounds of %d)",
+                    name, format(bestPerOperation()), format(medianPerOperation()),
+                    format((double) firstNanos / operations), rounds, operations);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.flexiMed.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that {@link BloomFilter} never misses an inserted key and that its false positive rate stays close to
+ * the rate it was sized for.
+ */
+class BloomFilterTest {
+
+    @Test
+    void mightContain_InsertedKeys_HasNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.001);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            String key = UUID.randomUUID().toString();
+            keys.add(key);
+            filter.put(key);
+        }
+
+        for (String key : keys) {
+            assertTrue(filter.mightContain(key), "Inserted key reported absent: " + key);
+        }
+    }
+
+    @Test
+    void mightContain_AbsentKeysAtCapacity_FalsePositiveRateNearConfigured() {
+        double configuredRate = 0.01;
+        BloomFilter filter = new BloomFilter(10_000, configuredRate);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(UUID.randomUUID().toString());
+        }
+
+        int probes = 200_000;
+        int falsePositives = 0;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+
+        double rate = (double) falsePositives / probes;
+        assertTrue(rate < configuredRate * 1.5, "False positive rate " + rate + " is well above " + configuredRate);
+        assertTrue(rate > configuredRate / 3, "False positive rate " + rate + " suggests a mis-sized filter");
+    }
+
+    @Test
+    void mightContain_EmptyFilter_ContainsNothing() {
+        BloomFilter filter = new BloomFilter(1_000, 0.001);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertFalse(filter.mightContain(UUID.randomUUID().toString()));
+        }
+    }
+}
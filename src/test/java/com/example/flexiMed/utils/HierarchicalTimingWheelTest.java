@@ -0,0 +1,155 @@
+package com.example.flexiMed.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link HierarchicalTimingWheel} against a brute-force model: a map of deadlines that is scanned in full on
+ * every advance. Random schedules, reschedules, cancels and advances, over spans that reach every level of the
+ * wheel and beyond it, must expire exactly the same keys at the same advance, in deadline order.
+ */
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK_MILLIS = 10;
+    private static final long START_MILLIS = 1_700_000_000_005L;
+
+    @Test
+    void advance_RandomOperations_MatchesBruteForceModel() {
+        for (long seed = 1; seed <= 10; seed++) {
+            runAgainstModel(new Random(seed), 1_000);
+        }
+    }
+
+    @Test
+    void advance_DeadlineBeyondTheWheelSpan_ExpiresOnTimeAfterBeingParked() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(1, 0);
+        long span = 1L << 24;  // 64^4 ticks
+        wheel.schedule("far", span * 2 + 5);
+
+        assertEquals(0, wheel.advance(span * 2 + 4, key -> fail("Expired early")));
+        List<String> expired = new ArrayList<>();
+        assertEquals(1, wheel.advance(span * 2 + 5, expired::add));
+        assertEquals(List.of("far"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_CallbackReschedulesKey_KeyExpiresAgainLater() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK_MILLIS, 0);
+        wheel.schedule("ambulance", 100);
+        List<Long> expiries = new ArrayList<>();
+
+        for (long now = 0; now <= 1_000; now += TICK_MILLIS) {
+            long at = now;
+            wheel.advance(now, key -> {
+                expiries.add(at);
+                if (expiries.size() < 3) {
+                    wheel.schedule(key, at + 300);
+                }
+            });
+        }
+
+        assertEquals(List.of(100L, 400L, 700L), expiries);
+        assertEquals(0, wheel.size());
+    }
+
+    private static void runAgainstModel(Random random, int operations) {
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(TICK_MILLIS, START_MILLIS);
+        Model model = new Model(START_MILLIS);
+        long now = START_MILLIS;
+
+        for (int i = 0; i < operations; i++) {
+            int key = random.nextInt(200);
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                long deadline = now + randomSpan(random, 26) - TICK_MILLIS * 2;  // Sometimes already past
+                wheel.schedule(key, deadline);
+                model.schedule(key, deadline);
+            } else if (operation < 6) {
+                assertEquals(model.cancel(key), wheel.cancel(key));
+            } else {
+                now += randomSpan(random, 20);
+                List<Integer> expected = model.advance(now);
+                List<Integer> actual = new ArrayList<>();
+                assertEquals(expected.size(), wheel.advance(now, actual::add));
+                assertEquals(expected.size(), actual.size(), "Expired at " + now);
+                assertEquals(new HashMap<>(model.countsOf(expected)), model.countsOf(actual));
+                // Keys due in the same tick may come out in any order, but ticks must not go backwards
+                for (int k = 1; k < actual.size(); k++) {
+                    assertTrue(model.expiredTick(actual.get(k - 1)) <= model.expiredTick(actual.get(k)),
+                            "Keys expired out of deadline order");
+                }
+            }
+            assertEquals(model.size(), wheel.size());
+        }
+    }
+
+    /**
+     * Picks a span of up to 2^maxBits ticks with a uniformly chosen magnitude, so every level of the wheel is hit.
+     * Deadlines reach 2^26 ticks, four times the wheel's span; advances stay shorter to keep the test quick.
+     */
+    private static long randomSpan(Random random, int maxBits) {
+        int bits = random.nextInt(maxBits + 1);
+        return (long) (random.nextDouble() * (1L << bits) * TICK_MILLIS);
+    }
+
+    /**
+     * The brute-force reference: deadlines rounded up to the tick exactly as the wheel documents, expired by a full
+     * scan.
+     */
+    private static final class Model {
+
+        private final Map<Integer, Long> deadlineTicks = new HashMap<>();
+        private final Map<Integer, Long> expiredTicks = new HashMap<>();
+        private long currentTick;
+
+        private Model(long nowMillis) {
+            this.currentTick = nowMillis / TICK_MILLIS;
+        }
+
+        void schedule(int key, long deadlineMillis) {
+            deadlineTicks.put(key, Math.max(currentTick + 1, (deadlineMillis + TICK_MILLIS - 1) / TICK_MILLIS));
+        }
+
+        boolean cancel(int key) {
+            return deadlineTicks.remove(key) != null;
+        }
+
+        List<Integer> advance(long nowMillis) {
+            long targetTick = nowMillis / TICK_MILLIS;
+            List<Integer> expired = new ArrayList<>();
+            expiredTicks.clear();
+            deadlineTicks.entrySet().removeIf(entry -> {
+                if (entry.getValue() <= targetTick) {
+                    expired.add(entry.getKey());
+                    expiredTicks.put(entry.getKey(), entry.getValue());
+                    return true;
+                }
+                return false;
+            });
+            currentTick = Math.max(currentTick, targetTick);
+            return expired;
+        }
+
+        long expiredTick(int key) {
+            return expiredTicks.get(key);
+        }
+
+        Map<Integer, Integer> countsOf(List<Integer> keys) {
+            Map<Integer, Integer> counts = new HashMap<>();
+            keys.forEach(key -> counts.merge(key, 1, Integer::sum));
+            return counts;
+        }
+
+        int size() {
+            return deadlineTicks.size();
+        }
+    }
+}
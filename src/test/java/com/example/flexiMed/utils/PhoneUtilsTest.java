@@ -0,0 +1,40 @@
+package com.example.flexiMed.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that {@link PhoneUtils#normalize(String)} maps differently formatted numbers to one key.
+ */
+class PhoneUtilsTest {
+
+    @Test
+    void normalize_FormattingVariants_AreEqual() {
+        String expected = "+15550001234";
+
+        assertEquals(expected, PhoneUtils.normalize("+1 555 000 1234"));
+        assertEquals(expected, PhoneUtils.normalize("+1 (555) 000-1234"));
+        assertEquals(expected, PhoneUtils.normalize("+1.555.000.1234"));
+        assertEquals(expected, PhoneUtils.normalize("001 555 000 1234"));
+        assertEquals(expected, PhoneUtils.normalize(" +15550001234 "));
+    }
+
+    @Test
+    void normalize_LocalNumber_KeepsItsLeadingZero() {
+        assertEquals("08031234567", PhoneUtils.normalize("0803 123 4567"));
+        assertNotEquals(PhoneUtils.normalize("+2348031234567"), PhoneUtils.normalize("08031234567"));
+    }
+
+    @Test
+    void normalize_PlusAfterDigits_IsIgnored() {
+        assertEquals("5550001234", PhoneUtils.normalize("555+000+1234"));
+    }
+
+    @Test
+    void normalize_NoDigits_IsNull() {
+        assertNull(PhoneUtils.normalize(null));
+        assertNull(PhoneUtils.normalize(""));
+        assertNull(PhoneUtils.normalize("+ ( ) -"));
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.flexiMed.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that {@link StripedTokenBuckets} rate limits each key on its own bucket.
+ */
+class StripedTokenBucketsTest {
+
+    @Test
+    void tryConsume_ExhaustedKey_DoesNotThrottleOtherKeys() {
+        StripedTokenBuckets buckets = new StripedTokenBuckets(1 << 16, 2, 0.001);
+
+        assertEquals(0, buckets.tryConsume("attacker@example.com"));
+        assertEquals(0, buckets.tryConsume("attacker@example.com"));
+        assertTrue(buckets.tryConsume("attacker@example.com") > 0);
+
+        int throttled = 0;
+        for (int i = 0; i < 100; i++) {
+            if (buckets.tryConsume(UUID.randomUUID() + "@example.com") > 0) {
+                throttled++;
+            }
+        }
+        assertTrue(throttled <= 1, throttled + " unrelated keys were throttled");  // Allow one stripe collision
+    }
+
+    @Test
+    void tryConsume_SameKey_AlwaysHitsTheSameBucket() {
+        StripedTokenBuckets buckets = new StripedTokenBuckets(16, 3, 0.001);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, buckets.tryConsume(new String("10.0.0.1")));
+        }
+        assertTrue(buckets.peek("10.0.0.1") > 0);
+        assertTrue(buckets.tryConsume("10.0.0.1") > 0);
+    }
+
+    @Test
+    void constructor_NonPositiveStripes_IsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new StripedTokenBuckets(0, 1, 1));
+    }
+}
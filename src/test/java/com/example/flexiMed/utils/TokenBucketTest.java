@@ -0,0 +1,64 @@
+package com.example.flexiMed.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link TokenBucket}: bursts up to capacity, continuous refill and peeking without consuming.
+ */
+class TokenBucketTest {
+
+    @Test
+    void tryConsume_BurstBeyondCapacity_IsRejectedWithTheWaitForTheNextToken() {
+        TokenBucket bucket = new TokenBucket(3, 1);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.tryConsume());
+        }
+        long waitNanos = bucket.tryConsume();
+
+        assertTrue(waitNanos > 0);
+        assertTrue(waitNanos <= TimeUnit.SECONDS.toNanos(1), "One token refills within a second at 1/s");
+    }
+
+    @Test
+    void tryConsume_AfterRefillInterval_PermitsAgain() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 50);
+        assertEquals(0, bucket.tryConsume());
+        assertTrue(bucket.tryConsume() > 0);
+
+        Thread.sleep(60);
+
+        assertEquals(0, bucket.tryConsume());
+    }
+
+    @Test
+    void peek_DoesNotConsume() {
+        TokenBucket bucket = new TokenBucket(1, 0.001);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, bucket.peek());
+        }
+        assertEquals(0, bucket.tryConsume());
+        assertTrue(bucket.peek() > 0);
+    }
+
+    @Test
+    void constructor_NonPositiveRate_IsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+
+    @Test
+    void acquire_EmptyBucket_WaitsForRefill() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 20);
+        bucket.tryConsume();
+
+        long waited = bucket.acquire();
+
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(20), "Waited only " + waited + " ns");
+    }
+}
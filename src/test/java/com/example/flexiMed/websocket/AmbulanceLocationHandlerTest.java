@@ -0,0 +1,41 @@
+package com.example.flexiMed.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests that location sessions belong to the user authenticated during the handshake.
+ */
+class AmbulanceLocationHandlerTest {
+
+    private final SessionRegistry sessionRegistry = mock(SessionRegistry.class);
+    private final LocationBroadcaster locationBroadcaster = mock(LocationBroadcaster.class);
+    private final AmbulanceLocationHandler handler = new AmbulanceLocationHandler(sessionRegistry, locationBroadcaster);
+
+    @Test
+    void afterConnectionEstablished_UserIdQueryParameter_IsIgnored() {
+        UUID authenticated = UUID.randomUUID();
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(JwtHandshakeInterceptor.USER_ID_ATTRIBUTE, authenticated);
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("session-1");
+        when(session.getAttributes()).thenReturn(attributes);
+        when(session.getUri()).thenReturn(URI.create("ws://localhost/ws/locations?userId=" + UUID.randomUUID()));
+        when(session.getExtensions()).thenReturn(List.of());
+
+        handler.afterConnectionEstablished(session);
+
+        verify(sessionRegistry).register(authenticated.toString(), session);
+        verify(locationBroadcaster).subscribe(eq("session-1"), eq(authenticated.toString()), isNull(), anyBoolean(), anyBoolean());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.flexiMed.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the location broadcast end to end through the {@link SessionRegistry}: delta-encoded binary frames decode to
+ * the latest positions, and the bytes per position update of binary frames against JSON.
+ */
+class LocationBroadcasterTest {
+
+    private static final String USER = "user-1";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SessionRegistry sessionRegistry = new SessionRegistry(5000, 1 << 20, 4);
+    private final LocationBroadcaster broadcaster = new LocationBroadcaster(sessionRegistry, objectMapper,
+            new MockEnvironment().withProperty("websocket.broadcast.default.tick-ms", "5"));
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+        sessionRegistry.shutdown();
+    }
+
+    @Test
+    void publish_MovingAmbulances_BinaryDeltasDecodeToLatestPositionsWithFewerBytesThanJson() throws Exception {
+        List<WebSocketMessage<?>> binaryFrames = Collections.synchronizedList(new ArrayList<>());
+        List<WebSocketMessage<?>> jsonFrames = Collections.synchronizedList(new ArrayList<>());
+        connect("binary", true, binaryFrames);
+        connect("json", false, jsonFrames);
+
+        int ambulances = 20;
+        List<UUID> ids = new ArrayList<>();
+        Map<UUID, double[]> latest = new HashMap<>();
+        for (int i = 0; i < ambulances; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < ambulances; i++) {
+                // About 10 m per ping, as a driver reporting every second at city speed
+                double[] position = {-1.2921 + i * 0.01 + round * 0.0001, 36.8219 + round * 0.00007};
+                latest.put(ids.get(i), position);
+                broadcaster.publish(USER, ids.get(i), position[0], position[1]);
+            }
+            Thread.sleep(1);
+        }
+
+        LocationFrameCodec.Decoder decoder = new LocationFrameCodec.Decoder();
+        Map<UUID, LocationBroadcaster.Position> decoded = new HashMap<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        int consumed = 0;
+        while (!matches(decoded, latest) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            List<WebSocketMessage<?>> frames = new ArrayList<>(binaryFrames);
+            for (; consumed < frames.size(); consumed++) {
+                byte[] frame = bytes(frames.get(consumed));
+                decoder.decode(frame).forEach(position -> decoded.put(position.ambulanceId(), position));
+            }
+        }
+        assertTrue(matches(decoded, latest), "Binary deltas applied in order should end at the latest positions");
+
+        long binaryBytes = 0;
+        long binaryPositions = 0;
+        LocationFrameCodec.Decoder counter = new LocationFrameCodec.Decoder();
+        for (WebSocketMessage<?> frame : new ArrayList<>(binaryFrames)) {
+            byte[] payload = bytes(frame);
+            binaryBytes += payload.length;
+            binaryPositions += counter.decode(payload).size();
+        }
+        long jsonBytes = 0;
+        long jsonPositions = 0;
+        for (WebSocketMessage<?> frame : new ArrayList<>(jsonFrames)) {
+            String payload = ((TextMessage) frame).getPayload();
+            jsonBytes += payload.length();
+            jsonPositions += objectMapper.readTree(payload).size();
+        }
+        double binaryPerUpdate = (double) binaryBytes / binaryPositions;
+        double jsonPerUpdate = (double) jsonBytes / jsonPositions;
+        System.out.printf("Location frames: binary %.1f bytes/update over %d frames, JSON %.1f bytes/update over %d frames%n",
+                binaryPerUpdate, binaryFrames.size(), jsonPerUpdate, jsonFrames.size());
+        assertTrue(binaryPerUpdate * 5 < jsonPerUpdate, "Binary deltas should be several times smaller than JSON");
+    }
+
+    private void connect(String sessionId, boolean binary, List<WebSocketMessage<?>> frames) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(sessionId);
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> frames.add(invocation.getArgument(0))).when(session).sendMessage(any());
+        sessionRegistry.register(USER, session);
+        broadcaster.subscribe(sessionId, USER, null, binary, false);
+    }
+
+    private static byte[] bytes(WebSocketMessage<?> frame) {
+        ByteBuffer payload = ((BinaryMessage) frame).getPayload().duplicate();
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        return bytes;
+    }
+
+    private static boolean matches(Map<UUID, LocationBroadcaster.Position> decoded, Map<UUID, double[]> latest) {
+        if (decoded.size() != latest.size()) {
+            return false;
+        }
+        for (Map.Entry<UUID, double[]> entry : latest.entrySet()) {
+            LocationBroadcaster.Position position = decoded.get(entry.getKey());
+            if (position == null || Math.abs(position.lat() - entry.getValue()[0]) > 1e-6
+                    || Math.abs(position.lng() - entry.getValue()[1]) > 1e-6) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
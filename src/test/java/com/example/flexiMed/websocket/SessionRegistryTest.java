@@ -0,0 +1,102 @@
+package com.example.flexiMed.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the per-session ordering and slow-consumer limits of {@link SessionRegistry}.
+ */
+class SessionRegistryTest {
+
+    private SessionRegistry sessionRegistry;
+
+    @AfterEach
+    void tearDown() {
+        sessionRegistry.shutdown();
+    }
+
+    @Test
+    void sendToSession_ManySessionsSharingThreads_DeliversEachSessionInOrder() throws Exception {
+        sessionRegistry = new SessionRegistry(5000, 1 << 20, 4);
+        int sessionCount = 8;
+        int messageCount = 500;
+        List<List<String>> received = new ArrayList<>();
+        for (int s = 0; s < sessionCount; s++) {
+            List<String> payloads = Collections.synchronizedList(new ArrayList<>());
+            received.add(payloads);
+            sessionRegistry.register("user-" + s, session("session-" + s, message -> {
+                LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(200_000));  // Uneven socket writes
+                payloads.add((String) message.getPayload());
+            }));
+        }
+
+        for (int i = 0; i < messageCount; i++) {
+            for (int s = 0; s < sessionCount; s++) {
+                assertTrue(sessionRegistry.sendToSession("session-" + s, new TextMessage(Integer.toString(i))));
+            }
+        }
+
+        List<String> expected = IntStream.range(0, messageCount).mapToObj(Integer::toString).toList();
+        for (List<String> payloads : received) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (payloads.size() < messageCount && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(expected, new ArrayList<>(payloads));
+        }
+    }
+
+    @Test
+    void sendToSession_ClientStopsReading_IsDroppedAsSlowConsumer() throws Exception {
+        sessionRegistry = new SessionRegistry(5000, 100, 1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WebSocketSession stuck = session("stuck", message -> {
+            blocked.countDown();
+            release.await();  // The socket write never completes
+        });
+        sessionRegistry.register("user", stuck);
+
+        assertTrue(sessionRegistry.sendToSession("stuck", new TextMessage("x".repeat(40))));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        assertTrue(sessionRegistry.sendToSession("stuck", new TextMessage("x".repeat(40))));
+        assertTrue(sessionRegistry.sendToSession("stuck", new TextMessage("x".repeat(40))));
+        assertFalse(sessionRegistry.sendToSession("stuck", new TextMessage("x".repeat(40))), "Over the buffer limit");
+
+        verify(stuck).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(1L, sessionRegistry.metrics().get("slowConsumersDropped"));
+        release.countDown();
+    }
+
+    private static WebSocketSession session(String id, MessageSink sink) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            sink.accept(invocation.getArgument(0));
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+
+    @FunctionalInterface
+    private interface MessageSink {
+        void accept(WebSocketMessage<?> message) throws Exception;
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.flexiMed.websocket;
+
+import com.example.flexiMed.cluster.LocalClusterBus;
+import com.example.flexiMed.cluster.StompClusterBridge;
+import com.example.flexiMed.enums.Role;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import com.example.flexiMed.utils.Benchmark;
+import com.example.flexiMed.utils.BenchmarkHarness;
+import com.example.flexiMed.utils.BenchmarkHarness.Measurement;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketServletAutoConfiguration;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+import org.springframework.web.socket.sockjs.frame.Jackson2SockJsMessageCodec;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmarks the native STOMP endpoint ({@code /ws/stomp}) against SockJS ({@code /ws}) on an embedded Tomcat
+ * running the real {@link WebSocketConfig}: connect-and-subscribe time, heap per connection and notification
+ * delivery for a few hundred clients per transport, the SockJS {@code /info} round trip browsers pay on every
+ * connection, and the framing overhead of a notification. It also checks that unauthenticated native handshakes
+ * are refused and that SockJS does not shadow the raw {@code /ws/locations} handler.
+ */
+@Benchmark
+class StompTransportBenchmarkTest {
+
+    private static final int CONNECTIONS = 300;
+    private static final String NOTIFICATION = "{\"notificationId\":\"6f1c8e2a-3b7d-4a51-9c0e-2f4d8a1b7c33\","
+            + "\"message\":\"Ambulance KDA 123A dispatched to your location\",\"eta\":\"7 min\","
+            + "\"driverName\":\"John\",\"driverContact\":\"+254700000000\"}";
+
+    private static ConfigurableApplicationContext context;
+    private static int port;
+    private static ThreadPoolTaskScheduler scheduler;
+
+    @BeforeAll
+    static void startServer() {
+        SpringApplication application = new SpringApplication(Server.class);
+        application.setDefaultProperties(Map.of("spring.main.banner-mode", "off"));
+        // Quieter than application.properties, whose request logging would dominate the output
+        context = application.run("--server.port=0", "--logging.level.root=WARN",
+                "--logging.level.org.springframework.web=WARN",
+                "--logging.level.com.example.flexiMed.utils.BenchmarkHarness=INFO");
+        port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        scheduler.shutdown();
+        context.close();
+    }
+
+    @Test
+    void connect_NativeAndSockJs_DeliverEveryNotification() throws Exception {
+        // The first round of each transport warms up the server and the clients
+        measure(true);
+        measure(false);
+        Result nativeResult = measure(true);
+        Result sockJsResult = measure(false);
+
+        // Connection times are noisy and close between transports; only a clear regression should fail
+        BenchmarkHarness.assertFaster(nativeResult.connect(), sockJsResult.connect(), 0.5);
+        BenchmarkHarness.assertAtMost(nativeResult.connect(), Duration.ofMillis(100));
+        BenchmarkHarness.assertAtMost(nativeResult.delivery(), Duration.ofMillis(20));
+        BenchmarkHarness.assertAtMost(sockJsResult.delivery(), Duration.ofMillis(20));
+    }
+
+    @Test
+    void connect_NativeWithoutToken_IsRejected() {
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        assertThrows(ExecutionException.class, () -> client.connectAsync("ws://localhost:" + port + "/ws/stomp",
+                new StompSessionHandlerAdapter() {
+                }).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void connect_RawLocationsEndpoint_IsNotShadowedBySockJs() throws Exception {
+        BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+        WebSocketSession session = new StandardWebSocketClient().execute(new TextWebSocketHandler() {
+            @Override
+            protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+                replies.add(message.getPayload());
+            }
+        }, "ws://localhost:" + port + "/ws/locations").get(5, TimeUnit.SECONDS);
+        session.sendMessage(new TextMessage("ping"));
+
+        assertEquals("raw:ping", replies.poll(5, TimeUnit.SECONDS));
+        session.close();
+    }
+
+    @Test
+    void info_SockJsRoundTripAndFramingOverhead() throws Exception {
+        HttpClient http = HttpClient.newHttpClient();
+        HttpRequest info = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/ws/info")).build();
+        Measurement roundTrip = BenchmarkHarness.measure("SockJS /info round trip", 1, 3, CONNECTIONS, () -> {
+            for (int i = 0; i < CONNECTIONS; i++) {
+                assertEquals(200, http.send(info, HttpResponse.BodyHandlers.ofString()).statusCode());
+            }
+        });
+        BenchmarkHarness.assertAtMost(roundTrip, Duration.ofMillis(50));
+
+        StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        headers.setDestination("/user/queue/ambulance");
+        headers.setSubscriptionId("sub-0");
+        headers.setMessageId("abc-1");
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.setContentLength(NOTIFICATION.length());
+        byte[] frame = new StompEncoder().encode(headers.getMessageHeaders(), NOTIFICATION.getBytes(StandardCharsets.UTF_8));
+        String sockJsFrame = "a" + new Jackson2SockJsMessageCodec().encode(new String(frame, StandardCharsets.UTF_8));
+        int sockJsFrameLength = sockJsFrame.getBytes(StandardCharsets.UTF_8).length;
+        BenchmarkHarness.report("Notification of {} B: native STOMP frame {} B, SockJS frame {} B",
+                NOTIFICATION.length(), frame.length, sockJsFrameLength);
+        assertTrue(frame.length < sockJsFrameLength, "SockJS framing should add to the native frame");
+    }
+
+    private Result measure(boolean nativeTransport) throws Exception {
+        String transport = nativeTransport ? "native" : "SockJS";
+        WebSocketStompClient client = nativeTransport
+                ? new WebSocketStompClient(new StandardWebSocketClient())
+                : new WebSocketStompClient(new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        client.setMessageConverter(new StringMessageConverter());
+        client.setTaskScheduler(scheduler);
+        SimpMessagingTemplate messagingTemplate = context.getBean(SimpMessagingTemplate.class);
+
+        long heapBefore = usedHeap();
+        List<StompSession> sessions = new ArrayList<>();
+        CountDownLatch received = new CountDownLatch(CONNECTIONS);
+        Measurement connect = BenchmarkHarness.once(transport + ", connect and subscribe", CONNECTIONS, () -> {
+            for (int i = 0; i < CONNECTIONS; i++) {
+                String token = "u-" + i;
+                StompSession session;
+                if (nativeTransport) {
+                    session = client.connectAsync("ws://localhost:" + port + "/ws/stomp?access_token={token}",
+                            new WebSocketHttpHeaders(), new StompHeaders(), new StompSessionHandlerAdapter() {
+                            }, token).get(10, TimeUnit.SECONDS);
+                } else {
+                    StompHeaders connectHeaders = new StompHeaders();
+                    connectHeaders.add("Authorization", "Bearer " + token);
+                    session = client.connectAsync("http://localhost:" + port + "/ws", new WebSocketHttpHeaders(),
+                            connectHeaders, new StompSessionHandlerAdapter() {
+                            }).get(10, TimeUnit.SECONDS);
+                }
+                session.subscribe("/user/queue/ambulance", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return String.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        received.countDown();
+                    }
+                });
+                sessions.add(session);
+            }
+        });
+        Thread.sleep(500);  // Let the last subscriptions reach the broker
+        long heapAfter = usedHeap();
+
+        BenchmarkHarness.report("{}: heap {} KB per connection (client and server)", transport,
+                (heapAfter - heapBefore) / 1024 / CONNECTIONS);
+
+        Measurement delivery = BenchmarkHarness.once(transport + ", notification delivery", CONNECTIONS, () -> {
+            for (int i = 0; i < CONNECTIONS; i++) {
+                messagingTemplate.convertAndSendToUser(userId("u-" + i).toString(), "/queue/ambulance", NOTIFICATION);
+            }
+            assertTrue(received.await(30, TimeUnit.SECONDS), "Every notification should be delivered");
+        });
+        sessions.forEach(StompSession::disconnect);
+        client.stop();
+        Thread.sleep(1000);
+        return new Result(connect, delivery);
+    }
+
+    private static UUID userId(String token) {
+        return UUID.nameUUIDFromBytes(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The WebSocket configuration of the application on an embedded server, with tokens "u-<n>" accepted as
+     * users. Not a {@code @Configuration}, so that component scans of the application never pick it up.
+     */
+    @ImportAutoConfiguration({ServletWebServerFactoryAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            WebMvcAutoConfiguration.class, WebSocketServletAutoConfiguration.class, JacksonAutoConfiguration.class})
+    @Import({WebSocketConfig.class, StompClusterBridge.class, LocalClusterBus.class, StompAuthInterceptor.class,
+            StompChannelExecutors.class, JwtHandshakeInterceptor.class, IndexedSubscriptionRegistry.class,
+            RawEndpoint.class})
+    static class Server {
+
+        @Bean
+        WebSocketAuthenticator webSocketAuthenticator() {
+            return new WebSocketAuthenticator(null, null, null, null) {
+                @Override
+                public AuthenticatedUser authenticate(String token) {
+                    return token != null && token.startsWith("u-") ? new AuthenticatedUser(userId(token), Role.USER) : null;
+                }
+            };
+        }
+    }
+
+    private record Result(Measurement connect, Measurement delivery) {
+    }
+
+    /**
+     * A stand-in for the raw {@code /ws/locations} handler, echoing every message.
+     */
+    @EnableWebSocket
+    static class RawEndpoint implements WebSocketConfigurer {
+
+        @Override
+        public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+            registry.addHandler(new TextWebSocketHandler() {
+                @Override
+                protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+                    session.sendMessage(new TextMessage("raw:" + message.getPayload()));
+                }
+            }, "/ws/locations");
+        }
+    }
+}
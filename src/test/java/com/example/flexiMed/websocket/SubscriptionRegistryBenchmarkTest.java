@@ -0,0 +1,111 @@
+package com.example.flexiMed.websocket;
+
+import com.example.flexiMed.utils.Benchmark;
+import com.example.flexiMed.utils.BenchmarkHarness;
+import com.example.flexiMed.utils.BenchmarkHarness.Measurement;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmarks the in-memory broker with 100k sessions, each subscribed to its own user queue and to a shared
+ * topic, with Spring's {@link DefaultSubscriptionRegistry} and with the {@link IndexedSubscriptionRegistry}:
+ * lookups for one user's queue that are not cached, and broadcasts of one message to every session through
+ * {@link SimpleBrokerMessageHandler}, the first one (before the topic is cached) and then several more.
+ */
+@Benchmark
+class SubscriptionRegistryBenchmarkTest {
+
+    private static final int SESSIONS = 100_000;
+    private static final int LOOKUPS = 500;
+    private static final int BROADCASTS = 10;
+    private static final String TOPIC = "/topic/fleet";
+
+    @Test
+    void findSubscriptions_100kSessions_IndexedRegistryIsFasterForColdLookupsAndAtParityForBroadcasts()
+            throws Exception {
+        Result standard = measure("default registry", new DefaultSubscriptionRegistry());
+        Result indexed = measure("indexed registry", new IndexedSubscriptionRegistry());
+
+        // Indexed lookups do not scan every subscription; broadcasts reach every session either way
+        BenchmarkHarness.assertFaster(indexed.lookup(), standard.lookup(), 10);
+        BenchmarkHarness.assertFaster(indexed.broadcast(), standard.broadcast(), 0.5);
+    }
+
+    private static Result measure(String name, SubscriptionRegistry registry) throws Exception {
+        for (int session = 0; session < SESSIONS; session++) {
+            registry.registerSubscription(subscribe(session, "sub-0", userQueue(session)));
+            registry.registerSubscription(subscribe(session, "sub-1", TOPIC));
+        }
+
+        // Distinct random users, more than the default registry caches, so (nearly) every lookup is a miss
+        Random random = new Random(1);
+        Measurement lookup = BenchmarkHarness.measure(name + ", cold user lookup", 1, 3, LOOKUPS, () -> {
+            for (int i = 0; i < LOOKUPS; i++) {
+                int session = random.nextInt(SESSIONS);
+                assertEquals(1, registry.findSubscriptions(message(userQueue(session))).size());
+            }
+        });
+
+        AtomicInteger delivered = new AtomicInteger();
+        MessageChannel clientOutbound = (message, timeout) -> delivered.incrementAndGet() > 0;
+        SimpleBrokerMessageHandler broker = new SimpleBrokerMessageHandler(new ExecutorSubscribableChannel(),
+                clientOutbound, new ExecutorSubscribableChannel(), List.of("/topic", "/queue"));
+        broker.setSubscriptionRegistry(registry);
+        broker.start();
+        for (int session = 0; session < SESSIONS; session++) {
+            broker.handleMessage(connect(session));  // The broker only delivers to connected sessions
+        }
+        delivered.set(0);
+        Measurement broadcast;
+        try {
+            BenchmarkHarness.once(name + ", first broadcast to all", 1, () -> broker.handleMessage(message(TOPIC)));
+            broadcast = BenchmarkHarness.measure(name + ", broadcast to all", 0, BROADCASTS - 1, 1,
+                    () -> broker.handleMessage(message(TOPIC)));
+        } finally {
+            broker.stop();
+        }
+        assertEquals(SESSIONS * BROADCASTS, delivered.get());
+        return new Result(lookup, broadcast);
+    }
+
+    private static String userQueue(int session) {
+        return "/queue/ambulance-user" + session;
+    }
+
+    private static Message<byte[]> subscribe(int session, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(Integer.toString(session));
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> connect(int session) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+        accessor.setSessionId(Integer.toString(session));
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> message(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage("{\"message\":\"Ambulance dispatched\"}".getBytes(), accessor.getMessageHeaders());
+    }
+
+    private record Result(Measurement lookup, Measurement broadcast) {
+    }
+}